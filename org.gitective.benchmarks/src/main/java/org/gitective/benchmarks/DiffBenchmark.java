@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2012 Kevin Sawicki <kevinsawicki@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+package org.gitective.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jgit.lib.ObjectId;
+import org.gitective.core.BlobUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Benchmarks of {@link BlobUtils#diff(org.eclipse.jgit.lib.Repository,
+ * ObjectId, ObjectId)} between two versions of the same file
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+public class DiffBenchmark {
+
+	/**
+	 * Number of first parent commits between the versions being diffed
+	 */
+	private static final int DEPTH = 400;
+
+	private ObjectId oldBlob;
+
+	private ObjectId newBlob;
+
+	/**
+	 * Resolve blobs being diffed
+	 *
+	 * @param state
+	 */
+	@Setup(Level.Trial)
+	public void setUp(final RepositoryState state) {
+		final String path = state.generator.getPath(0);
+		oldBlob = BlobUtils.getId(state.repository, "master~" + DEPTH, path);
+		newBlob = BlobUtils.getId(state.repository, "master", path);
+	}
+
+	/**
+	 * Diff two versions of a file 400 first parent commits apart
+	 *
+	 * @param state
+	 * @return number of edits
+	 */
+	@Benchmark
+	public int diff(final RepositoryState state) {
+		return BlobUtils.diff(state.repository, oldBlob, newBlob).size();
+	}
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2012 Kevin Sawicki <kevinsawicki@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+package org.gitective.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.gitective.core.CommitFinder;
+import org.gitective.core.PathFilterUtils;
+import org.gitective.core.filter.commit.AndCommitFilter;
+import org.gitective.core.filter.commit.AuthorFilter;
+import org.gitective.core.filter.commit.CommitCountFilter;
+import org.gitective.core.filter.commit.CommitMessageFindFilter;
+import org.gitective.core.filter.commit.CommitPipelineFilter;
+import org.gitective.core.filter.commit.DiffFileCountFilter;
+import org.gitective.core.filter.commit.DiffLineCountFilter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+
+/**
+ * Benchmarks of {@link CommitFinder#find()} over the whole history of a
+ * {@link RepositoryState} with filter stacks of increasing cost.
+ * <p>
+ * Each invocation walks the entire history of master, including merged side
+ * branches, so scores and allocation rates are reported per commit of the
+ * {@link RepositoryState#TOTAL_COMMITS} visited.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@OperationsPerInvocation(RepositoryState.TOTAL_COMMITS)
+public class FinderBenchmark {
+
+	/**
+	 * Walk with a filter that only reads commit headers
+	 *
+	 * @param state
+	 * @return number of matching commits
+	 */
+	@Benchmark
+	public long headerOnly(final RepositoryState state) {
+		final CommitCountFilter count = new CommitCountFilter();
+		new CommitFinder(state.repository).setFilter(
+				new AndCommitFilter(new AuthorFilter(
+						RepositoryState.AUTHOR_NAME,
+						RepositoryState.AUTHOR_EMAIL), count)).find();
+		return count.getCount();
+	}
+
+	/**
+	 * Walk with a filter that diffs the tree of every commit
+	 *
+	 * @param state
+	 * @return number of files changed
+	 */
+	@Benchmark
+	public long diff(final RepositoryState state) {
+		final DiffFileCountFilter count = new DiffFileCountFilter();
+		new CommitFinder(state.repository).setFilter(count).find();
+		return count.getTotal();
+	}
+
+	/**
+	 * Walk with a filter that computes the line edits of every commit
+	 *
+	 * @param state
+	 * @return number of lines changed
+	 */
+	@Benchmark
+	public long diffEdit(final RepositoryState state) {
+		final DiffLineCountFilter count = new DiffLineCountFilter();
+		new CommitFinder(state.repository).setFilter(count).find();
+		return count.getTotal();
+	}
+
+	/**
+	 * Walk with a pipeline of a message filter, a path filter and a counting
+	 * filter
+	 *
+	 * @param state
+	 * @return number of matching commits
+	 */
+	@Benchmark
+	public long pipeline(final RepositoryState state) {
+		final CommitCountFilter count = new CommitCountFilter();
+		final CommitPipelineFilter pipeline = new CommitPipelineFilter();
+		pipeline.add(new CommitMessageFindFilter("Merge"));
+		pipeline.add(PathFilterUtils.andSuffix("0.txt"));
+		pipeline.add(count);
+		new CommitFinder(state.repository).setFilter(pipeline).find();
+		return count.getCount();
+	}
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2012 Kevin Sawicki <kevinsawicki@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+package org.gitective.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.eclipse.jgit.lib.Repository;
+import org.gitective.core.CommitFinder;
+import org.gitective.core.filter.commit.CommitCountFilter;
+import org.gitective.tests.RepositoryGenerator;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Benchmark state holding a repository written by the core
+ * {@link RepositoryGenerator} shared by all threads of a trial.
+ * <p>
+ * Every commit edits a few lines in a few files of a tree spread over several
+ * directories and every twentieth master commit is a merge of a short side
+ * branch.
+ */
+@State(Scope.Benchmark)
+public class RepositoryState {
+
+	/**
+	 * Number of commits reachable from master including merged side branches
+	 */
+	public static final int TOTAL_COMMITS = 572;
+
+	/**
+	 * Number of files in each tree
+	 */
+	public static final int FILES = 200;
+
+	/**
+	 * Number of lines in each file
+	 */
+	public static final int LINES = 40;
+
+	/**
+	 * Number of distinct authors
+	 */
+	public static final int AUTHORS = 10;
+
+	/**
+	 * Number of master commits between merges of a side branch
+	 */
+	public static final int MERGE_INTERVAL = 20;
+
+	/**
+	 * Number of commits on each merged side branch
+	 */
+	public static final int BRANCH_LENGTH = 3;
+
+	/**
+	 * Name of the first author
+	 */
+	public static final String AUTHOR_NAME = "Person 0";
+
+	/**
+	 * Email address of the first author
+	 */
+	public static final String AUTHOR_EMAIL = "person0@example.com";
+
+	/**
+	 * Seed used to generate the repository
+	 */
+	public static final long SEED = 42L;
+
+	private static void delete(final File file) {
+		final File[] children = file.listFiles();
+		if (children != null)
+			for (File child : children)
+				delete(child);
+		file.delete();
+	}
+
+	/**
+	 * Generator of the repository
+	 */
+	public RepositoryGenerator generator;
+
+	/**
+	 * Repository being benchmarked
+	 */
+	public Repository repository;
+
+	/**
+	 * Generate repository
+	 *
+	 * @throws IOException
+	 */
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		final File directory = File.createTempFile("gitective-benchmark",
+				".git");
+		directory.delete();
+		generator = new RepositoryGenerator(SEED).setCommits(TOTAL_COMMITS)
+				.setFiles(FILES).setLines(LINES).setAuthors(AUTHORS)
+				.setMerges(MERGE_INTERVAL, BRANCH_LENGTH, 2);
+		repository = generator.generate(directory);
+		final CommitCountFilter count = new CommitCountFilter();
+		new CommitFinder(repository).setFilter(count).find();
+		if (count.getCount() != TOTAL_COMMITS)
+			throw new IllegalStateException("Generated " + count.getCount()
+					+ " commits instead of " + TOTAL_COMMITS);
+	}
+
+	/**
+	 * Delete repository
+	 */
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		final File directory = repository.getDirectory();
+		repository.close();
+		delete(directory);
+	}
+}
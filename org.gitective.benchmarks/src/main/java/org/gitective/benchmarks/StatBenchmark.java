@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2012 Kevin Sawicki <kevinsawicki@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+package org.gitective.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.gitective.core.CommitFinder;
+import org.gitective.core.stat.AuthorHistogramFilter;
+import org.gitective.core.stat.CommitCalendar;
+import org.gitective.core.stat.UserCommitActivity;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Benchmarks of building a {@link org.gitective.core.stat.CommitHistogram}
+ * and a {@link CommitCalendar} from the history of a {@link RepositoryState}.
+ * <p>
+ * Scores are reported per commit of history.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@OperationsPerInvocation(RepositoryState.TOTAL_COMMITS)
+@State(Scope.Benchmark)
+public class StatBenchmark {
+
+	private UserCommitActivity[] activity;
+
+	/**
+	 * Build activity used by the calendar benchmark
+	 *
+	 * @param state
+	 */
+	@Setup(Level.Trial)
+	public void setUp(final RepositoryState state) {
+		activity = buildHistogram(state);
+	}
+
+	private UserCommitActivity[] buildHistogram(final RepositoryState state) {
+		final AuthorHistogramFilter filter = new AuthorHistogramFilter();
+		new CommitFinder(state.repository).setFilter(filter).find();
+		return filter.getHistogram().getUserActivity();
+	}
+
+	/**
+	 * Build an author histogram of the entire history
+	 *
+	 * @param state
+	 * @return activity of all authors
+	 */
+	@Benchmark
+	public UserCommitActivity[] histogram(final RepositoryState state) {
+		return buildHistogram(state);
+	}
+
+	/**
+	 * Build a calendar from the activity of all authors
+	 *
+	 * @return calendar
+	 */
+	@Benchmark
+	public CommitCalendar calendar() {
+		return new CommitCalendar(activity);
+	}
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2012 Kevin Sawicki <kevinsawicki@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+package org.gitective.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.gitective.core.CommitUtils;
+import org.gitective.core.TreeUtils;
+import org.gitective.core.TreeUtils.ITreeVisitor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Benchmarks of {@link TreeUtils#visit(org.eclipse.jgit.lib.Repository,
+ * ObjectId, ITreeVisitor)} over the tree of the head commit
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+public class TreeBenchmark {
+
+	private ObjectId tree;
+
+	/**
+	 * Resolve tree being visited
+	 *
+	 * @param state
+	 */
+	@Setup(Level.Trial)
+	public void setUp(final RepositoryState state) {
+		tree = CommitUtils.getHead(state.repository).getTree();
+	}
+
+	/**
+	 * Visit every entry of the head tree
+	 *
+	 * @param state
+	 * @return number of entries visited
+	 */
+	@Benchmark
+	public int visit(final RepositoryState state) {
+		final int[] count = new int[1];
+		TreeUtils.visit(state.repository, tree, new ITreeVisitor() {
+
+			public boolean accept(final FileMode mode, final String path,
+					final String name, final AnyObjectId id) {
+				count[0]++;
+				return true;
+			}
+		});
+		return count[0];
+	}
+}
@@ -0,0 +1,368 @@
+/*
+ * Copyright (c) 2012 Kevin Sawicki <kevinsawicki@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+package org.gitective.core;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevFlag;
+import org.eclipse.jgit.revwalk.RevSort;
+import org.eclipse.jgit.revwalk.RevWalk;
+
+/**
+ * Walk that computes how many commits each tip is ahead and behind each base
+ * and the merge bases of each pair in a single shared traversal.
+ * <p>
+ * Every commit carries a bitset of the tips and bases it is reachable from
+ * and a bitset of the tip and base pairs it is a strict ancestor of a common
+ * commit of. Bits are pushed from each commit into its parents as commits are
+ * visited in descending commit time order and the walk ends once only
+ * commits reachable from everything remain. If clock skew causes a commit to
+ * be visited before one of its children the results are recomputed with a
+ * full topological walk.
+ */
+class AheadBehindWalk {
+
+	private static class BitsCommit extends RevCommit {
+
+		private static final long serialVersionUID = 6117532095396563412L;
+
+		long[] reach;
+
+		long[] covered;
+
+		BitsCommit(final AnyObjectId id) {
+			super(id);
+		}
+	}
+
+	private static class BitsWalk extends RevWalk {
+
+		BitsWalk(final Repository repository) {
+			super(repository);
+		}
+
+		@Override
+		protected RevCommit createCommit(final AnyObjectId id) {
+			return new BitsCommit(id);
+		}
+	}
+
+	private static class SkewException extends Exception {
+
+		private static final long serialVersionUID = -2209377850155373802L;
+	}
+
+	private static final Comparator<RevCommit> NEWEST_FIRST = new Comparator<RevCommit>() {
+
+		public int compare(final RevCommit c1, final RevCommit c2) {
+			final int t1 = c1.getCommitTime();
+			final int t2 = c2.getCommitTime();
+			return t1 > t2 ? -1 : t1 < t2 ? 1 : 0;
+		}
+	};
+
+	private static long[] bits(final int count) {
+		return new long[(count + 63) >>> 6];
+	}
+
+	private static boolean get(final long[] bits, final int index) {
+		return (bits[index >>> 6] & (1L << index)) != 0;
+	}
+
+	private static void set(final long[] bits, final int index) {
+		bits[index >>> 6] |= 1L << index;
+	}
+
+	private static boolean isFull(final long[] bits, final int count) {
+		for (int i = 0; i < count; i++)
+			if (!get(bits, i))
+				return false;
+		return true;
+	}
+
+	private static void or(final long[] target, final long[] source) {
+		for (int i = 0; i < target.length; i++)
+			target[i] |= source[i];
+	}
+
+	private final Repository repository;
+
+	private final ObjectId[] tips;
+
+	private final ObjectId[] bases;
+
+	private final int points;
+
+	private final int pairs;
+
+	private final long[] ahead;
+
+	private final long[] behind;
+
+	private final List<List<RevCommit>> mergeBases;
+
+	/**
+	 * Create walk
+	 *
+	 * @param repository
+	 * @param tips
+	 * @param bases
+	 */
+	AheadBehindWalk(final Repository repository, final ObjectId[] tips,
+			final ObjectId[] bases) {
+		this.repository = repository;
+		this.tips = tips;
+		this.bases = bases;
+		points = tips.length + bases.length;
+		pairs = tips.length * bases.length;
+		ahead = new long[pairs];
+		behind = new long[pairs];
+		mergeBases = new ArrayList<List<RevCommit>>(pairs);
+		for (int i = 0; i < pairs; i++)
+			mergeBases.add(new ArrayList<RevCommit>(1));
+	}
+
+	private int pair(final int tip, final int base) {
+		return tip * bases.length + base;
+	}
+
+	/**
+	 * Get number of commits reachable from tip and not base
+	 *
+	 * @param tip
+	 * @param base
+	 * @return count
+	 */
+	long getAhead(final int tip, final int base) {
+		return ahead[pair(tip, base)];
+	}
+
+	/**
+	 * Get number of commits reachable from base and not tip
+	 *
+	 * @param tip
+	 * @param base
+	 * @return count
+	 */
+	long getBehind(final int tip, final int base) {
+		return behind[pair(tip, base)];
+	}
+
+	/**
+	 * Get merge bases of tip and base
+	 *
+	 * @param tip
+	 * @param base
+	 * @return merge bases
+	 */
+	List<RevCommit> getMergeBases(final int tip, final int base) {
+		return mergeBases.get(pair(tip, base));
+	}
+
+	private void clear() {
+		for (int i = 0; i < pairs; i++) {
+			ahead[i] = 0;
+			behind[i] = 0;
+			mergeBases.get(i).clear();
+		}
+	}
+
+	private List<BitsCommit> start(final RevWalk walk) throws IOException {
+		final List<BitsCommit> starts = new ArrayList<BitsCommit>(points);
+		for (int i = 0; i < points; i++) {
+			final ObjectId id = i < tips.length ? tips[i] : bases[i
+					- tips.length];
+			final BitsCommit commit = (BitsCommit) walk.parseCommit(id);
+			if (commit.reach == null) {
+				commit.reach = bits(points);
+				commit.covered = bits(pairs);
+				starts.add(commit);
+			}
+			set(commit.reach, i);
+		}
+		return starts;
+	}
+
+	/**
+	 * Count the commit and push its bits into its parents
+	 *
+	 * @param walk
+	 * @param commit
+	 * @param visited
+	 * @return true if the commit is reachable from everything and an ancestor
+	 *         of every pair's common commits, false otherwise
+	 * @throws IOException
+	 * @throws SkewException
+	 */
+	private boolean visit(final RevWalk walk, final BitsCommit commit,
+			final RevFlag visited) throws IOException, SkewException {
+		commit.add(visited);
+		final long[] reach = commit.reach;
+		final long[] covered = commit.covered;
+		final long[] inherited = covered.clone();
+		final int tipCount = tips.length;
+		final int baseCount = bases.length;
+		for (int tip = 0; tip < tipCount; tip++) {
+			final boolean fromTip = get(reach, tip);
+			for (int base = 0; base < baseCount; base++) {
+				final boolean fromBase = get(reach, tipCount + base);
+				final int pair = pair(tip, base);
+				if (fromTip && !fromBase)
+					ahead[pair]++;
+				else if (fromBase && !fromTip)
+					behind[pair]++;
+				else if (fromTip) {
+					if (!get(covered, pair))
+						mergeBases.get(pair).add(commit);
+					set(inherited, pair);
+				}
+			}
+		}
+
+		for (RevCommit parent : commit.getParents()) {
+			final BitsCommit bits = (BitsCommit) parent;
+			if (bits.has(visited))
+				throw new SkewException();
+			walk.parseHeaders(bits);
+			if (bits.reach == null) {
+				bits.reach = reach.clone();
+				bits.covered = inherited.clone();
+			} else {
+				or(bits.reach, reach);
+				or(bits.covered, inherited);
+			}
+		}
+		final boolean stale = isFull(reach, points)
+				&& isFull(inherited, pairs);
+		commit.reach = null;
+		commit.covered = null;
+		return stale;
+	}
+
+	private boolean isStale(final BitsCommit commit) {
+		return isFull(commit.reach, points) && isFull(commit.covered, pairs);
+	}
+
+	/**
+	 * Parse the bodies of the merge bases found so they can be used like any
+	 * other commit once the walk is released
+	 */
+	private void parseMergeBases(final RevWalk walk) throws IOException {
+		for (List<RevCommit> commits : mergeBases)
+			for (RevCommit commit : commits)
+				walk.parseBody(commit);
+	}
+
+	private void walkByDate() throws IOException, SkewException {
+		final RevWalk walk = new BitsWalk(repository);
+		walk.setRetainBody(false);
+		try {
+			final RevFlag visited = walk.newFlag("visited");
+			final RevFlag queued = walk.newFlag("queued");
+			// Queued commits that are not yet stale, bits are only ever added
+			// to a queued commit so it can only go from active to stale
+			final RevFlag active = walk.newFlag("active");
+			int activeCount = 0;
+			final PriorityQueue<BitsCommit> queue = new PriorityQueue<BitsCommit>(
+					64, NEWEST_FIRST);
+			for (BitsCommit commit : start(walk)) {
+				commit.add(queued);
+				queue.add(commit);
+				if (!isStale(commit)) {
+					commit.add(active);
+					activeCount++;
+				}
+			}
+			BitsCommit commit;
+			while ((commit = queue.poll()) != null) {
+				if (commit.has(active)) {
+					commit.remove(active);
+					activeCount--;
+				}
+				final boolean stale = visit(walk, commit, visited);
+				for (RevCommit parent : commit.getParents()) {
+					final BitsCommit bits = (BitsCommit) parent;
+					if (!bits.has(queued)) {
+						bits.add(queued);
+						queue.add(bits);
+						if (!isStale(bits)) {
+							bits.add(active);
+							activeCount++;
+						}
+					} else if (bits.has(active) && isStale(bits)) {
+						bits.remove(active);
+						activeCount--;
+					}
+				}
+				if (stale && activeCount == 0)
+					break;
+			}
+			parseMergeBases(walk);
+		} finally {
+			walk.release();
+		}
+	}
+
+	private void walkByTopology() throws IOException, SkewException {
+		final RevWalk walk = new BitsWalk(repository);
+		walk.setRetainBody(false);
+		walk.sort(RevSort.TOPO);
+		try {
+			final RevFlag visited = walk.newFlag("visited");
+			walk.markStart(new ArrayList<RevCommit>(start(walk)));
+			RevCommit commit;
+			while ((commit = walk.next()) != null)
+				visit(walk, (BitsCommit) commit, visited);
+			parseMergeBases(walk);
+		} finally {
+			walk.release();
+		}
+	}
+
+	/**
+	 * Run the walk
+	 *
+	 * @return this walk
+	 * @throws IOException
+	 */
+	AheadBehindWalk walk() throws IOException {
+		try {
+			walkByDate();
+		} catch (SkewException skewed) {
+			clear();
+			try {
+				walkByTopology();
+			} catch (SkewException impossible) {
+				throw new IllegalStateException(impossible);
+			}
+		}
+		return this;
+	}
+}
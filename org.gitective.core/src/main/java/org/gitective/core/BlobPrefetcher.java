@@ -0,0 +1,340 @@
+/*
+ * Copyright (c) 2012 Kevin Sawicki <kevinsawicki@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+package org.gitective.core;
+
+import static org.eclipse.jgit.lib.Constants.OBJ_BLOB;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.ObjectDatabase;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectLoader;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.storage.file.ObjectDirectory;
+import org.eclipse.jgit.storage.file.PackFile;
+import org.eclipse.jgit.storage.file.PackIndex;
+
+/**
+ * Loads a batch of blobs in the order they are stored in the repository's
+ * packs into a bounded buffer.
+ * <p>
+ * Blobs needed by a set of diffs are added and then loaded together sorted by
+ * pack and by offset within the pack so that reads move forward through each
+ * pack file and deltas are inflated right after the bases stored before them.
+ * Loose objects are loaded after all packed objects. Blobs that do not fit in
+ * the buffer are left to be read when requested.
+ * <p>
+ * Pack offsets are found by reading each pack's <code>.idx</code> file into a
+ * copy held on the heap in addition to the one cached by JGit. Indexes are
+ * read once and kept until their combined file size reaches the index cache
+ * size. Packs whose index does not fit are never indexed and their blobs are
+ * loaded after the located blobs in id order, the same as loose objects.
+ * {@link #release()} releases all kept indexes.
+ */
+public class BlobPrefetcher {
+
+	/**
+	 * Default number of bytes of pack indexes kept
+	 */
+	public static final long DEFAULT_INDEX_CACHE_SIZE = 16 * 1024 * 1024;
+
+	/**
+	 * Location of a blob in the object database
+	 */
+	private static class Location implements Comparable<Location> {
+
+		final ObjectId id;
+
+		final int pack;
+
+		final long offset;
+
+		Location(final ObjectId id, final int pack, final long offset) {
+			this.id = id;
+			this.pack = pack;
+			this.offset = offset;
+		}
+
+		public int compareTo(final Location other) {
+			if (pack != other.pack)
+				return pack < other.pack ? -1 : 1;
+			if (offset != other.offset)
+				return offset < other.offset ? -1 : 1;
+			return id.compareTo(other.id);
+		}
+	}
+
+	private final Repository repository;
+
+	private final long bufferSize;
+
+	private final long indexCacheSize;
+
+	private final Set<ObjectId> pending = new HashSet<ObjectId>();
+
+	private final Map<ObjectId, byte[]> buffer = new HashMap<ObjectId, byte[]>();
+
+	private final Map<File, PackIndex> indexes = new HashMap<File, PackIndex>();
+
+	private final Set<File> unindexed = new HashSet<File>();
+
+	private long buffered;
+
+	private long indexCached;
+
+	/**
+	 * Create prefetcher for repository keeping up to
+	 * {@link #DEFAULT_INDEX_CACHE_SIZE} bytes of pack indexes
+	 *
+	 * @param repository
+	 *            must be non-null
+	 * @param bufferSize
+	 *            maximum number of bytes of blob content to hold
+	 */
+	public BlobPrefetcher(final Repository repository, final long bufferSize) {
+		this(repository, bufferSize, DEFAULT_INDEX_CACHE_SIZE);
+	}
+
+	/**
+	 * Create prefetcher for repository
+	 *
+	 * @param repository
+	 *            must be non-null
+	 * @param bufferSize
+	 *            maximum number of bytes of blob content to hold
+	 * @param indexCacheSize
+	 *            maximum number of bytes of pack indexes to read and keep,
+	 *            packs whose index does not fit are not indexed
+	 */
+	public BlobPrefetcher(final Repository repository, final long bufferSize,
+			final long indexCacheSize) {
+		if (repository == null)
+			throw new IllegalArgumentException(
+					Assert.formatNotNull("Repository"));
+		if (bufferSize < 0)
+			throw new IllegalArgumentException(
+					"Buffer size cannot be negative");
+		if (indexCacheSize < 0)
+			throw new IllegalArgumentException(
+					"Index cache size cannot be negative");
+
+		this.repository = repository;
+		this.bufferSize = bufferSize;
+		this.indexCacheSize = indexCacheSize;
+	}
+
+	/**
+	 * Get the repository blobs are loaded from
+	 *
+	 * @return repository
+	 */
+	public Repository getRepository() {
+		return repository;
+	}
+
+	/**
+	 * Get the maximum number of bytes of blob content held
+	 *
+	 * @return buffer size
+	 */
+	public long getBufferSize() {
+		return bufferSize;
+	}
+
+	/**
+	 * Get the maximum number of bytes of pack indexes kept
+	 *
+	 * @return index cache size
+	 */
+	public long getIndexCacheSize() {
+		return indexCacheSize;
+	}
+
+	/**
+	 * Get the number of bytes of pack indexes currently kept
+	 *
+	 * @return byte count
+	 */
+	public long getIndexCached() {
+		return indexCached;
+	}
+
+	/**
+	 * Get the number of bytes of blob content currently held
+	 *
+	 * @return byte count
+	 */
+	public long getBuffered() {
+		return buffered;
+	}
+
+	/**
+	 * Add blob to be loaded by the next call to {@link #prefetch(ObjectReader)}
+	 * <p>
+	 * The zero id is ignored.
+	 *
+	 * @param blob
+	 * @return this prefetcher
+	 */
+	public BlobPrefetcher add(final AnyObjectId blob) {
+		if (blob != null && !ObjectId.zeroId().equals(blob)
+				&& !buffer.containsKey(blob))
+			pending.add(blob.copy());
+		return this;
+	}
+
+	private PackIndex getIndex(final PackFile pack) throws IOException {
+		final File packFile = pack.getPackFile();
+		PackIndex index = indexes.get(packFile);
+		if (index != null || unindexed.contains(packFile))
+			return index;
+
+		final String name = packFile.getName();
+		final File indexFile = new File(packFile.getParentFile(),
+				name.substring(0, name.length() - ".pack".length()) + ".idx");
+		final long length = indexFile.length();
+		if (indexCached + length > indexCacheSize) {
+			unindexed.add(packFile);
+			return null;
+		}
+		index = PackIndex.open(indexFile);
+		indexes.put(packFile, index);
+		indexCached += length;
+		return index;
+	}
+
+	private List<Location> locate() throws IOException {
+		final List<Location> locations = new ArrayList<Location>(
+				pending.size());
+		final ObjectDatabase database = repository.getObjectDatabase();
+		final List<PackIndex> packs = new ArrayList<PackIndex>();
+		if (database instanceof ObjectDirectory)
+			for (PackFile pack : ((ObjectDirectory) database).getPacks()) {
+				final PackIndex index = getIndex(pack);
+				if (index != null)
+					packs.add(index);
+			}
+		for (ObjectId id : pending) {
+			Location location = null;
+			for (int i = 0; i < packs.size() && location == null; i++) {
+				final long offset = packs.get(i).findOffset(id);
+				if (offset != -1)
+					location = new Location(id, i, offset);
+			}
+			if (location == null)
+				location = new Location(id, Integer.MAX_VALUE, 0);
+			locations.add(location);
+		}
+		Collections.sort(locations);
+		return locations;
+	}
+
+	/**
+	 * Load the added blobs in pack order until the buffer is full
+	 *
+	 * @param reader
+	 *            must be non-null
+	 * @return number of blobs loaded into the buffer
+	 */
+	public int prefetch(final ObjectReader reader) {
+		if (reader == null)
+			throw new IllegalArgumentException(Assert.formatNotNull("Reader"));
+		if (pending.isEmpty())
+			return 0;
+
+		int loaded = 0;
+		try {
+			for (Location location : locate()) {
+				final long remaining = bufferSize - buffered;
+				if (remaining <= 0)
+					break;
+				final ObjectLoader loader = reader.open(location.id, OBJ_BLOB);
+				if (loader.getSize() > remaining)
+					continue;
+				final byte[] content = BlobUtils.loaded(loader
+						.getCachedBytes(Integer.MAX_VALUE));
+				buffer.put(location.id, content);
+				buffered += content.length;
+				loaded++;
+			}
+		} catch (IOException e) {
+			throw new GitException(e, repository);
+		} finally {
+			pending.clear();
+		}
+		return loaded;
+	}
+
+	/**
+	 * Get the content of the given blob from the buffer, or from the reader if
+	 * the blob was not prefetched.
+	 * <p>
+	 * The zero id has empty content.
+	 *
+	 * @param reader
+	 * @param blob
+	 * @return content
+	 */
+	public byte[] getBytes(final ObjectReader reader, final ObjectId blob) {
+		if (blob == null)
+			throw new IllegalArgumentException(Assert.formatNotNull("Blob id"));
+		if (ObjectId.zeroId().equals(blob))
+			return new byte[0];
+		final byte[] content = buffer.get(blob);
+		return content != null ? content : BlobUtils.getBytes(reader, blob);
+	}
+
+	/**
+	 * Release the buffered content and any blobs added but not yet loaded
+	 *
+	 * @return this prefetcher
+	 */
+	public BlobPrefetcher clear() {
+		pending.clear();
+		buffer.clear();
+		buffered = 0;
+		return this;
+	}
+
+	/**
+	 * Release the buffered content, any blobs added but not yet loaded and
+	 * the kept pack indexes
+	 *
+	 * @return this prefetcher
+	 */
+	public BlobPrefetcher release() {
+		indexes.clear();
+		unindexed.clear();
+		indexCached = 0;
+		return clear();
+	}
+}
@@ -45,6 +45,8 @@ import org.eclipse.jgit.lib.ObjectStream;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.revwalk.RevCommit;
 import org.eclipse.jgit.treewalk.TreeWalk;
+import org.gitective.core.monitor.WalkListener;
+import org.gitective.core.monitor.WalkMonitor;
 
 /**
  * Utilities for dealing with Git blobs.
@@ -67,7 +69,8 @@ public abstract class BlobUtils {
 	protected static byte[] getBytes(final Repository repository,
 			final ObjectId id) {
 		try {
-			return repository.open(id, OBJ_BLOB).getCachedBytes(MAX_VALUE);
+			return loaded(repository.open(id, OBJ_BLOB).getCachedBytes(
+					MAX_VALUE));
 		} catch (IOException e) {
 			throw new GitException(e, repository);
 		}
@@ -83,12 +86,46 @@ public abstract class BlobUtils {
 	protected static byte[] getBytes(final ObjectReader reader,
 			final ObjectId id) {
 		try {
-			return reader.open(id, OBJ_BLOB).getCachedBytes(MAX_VALUE);
+			return loaded(reader.open(id, OBJ_BLOB).getCachedBytes(MAX_VALUE));
 		} catch (IOException e) {
 			throw new GitException(e, null);
 		}
 	}
 
+	/**
+	 * Notify the walk listener of the given loaded blob content
+	 *
+	 * @param content
+	 * @return content
+	 */
+	static byte[] loaded(final byte[] content) {
+		final WalkListener listener = WalkMonitor.getListener();
+		if (listener != null)
+			listener.blobLoaded(content.length);
+		return content;
+	}
+
+	/**
+	 * Diff the given non-binary contents and notify the walk listener
+	 *
+	 * @param comparator
+	 * @param content1
+	 * @param content2
+	 * @return list of edits
+	 */
+	private static Collection<Edit> diff(final RawTextComparator comparator,
+			final byte[] content1, final byte[] content2) {
+		final WalkListener listener = WalkMonitor.getListener();
+		final long start = listener != null ? System.nanoTime() : 0L;
+		final Collection<Edit> edits = new HistogramDiff().diff(comparator, //
+				content1.length > 0 ? new RawText(content1) : EMPTY_TEXT, //
+				content2.length > 0 ? new RawText(content2) : EMPTY_TEXT);
+		if (listener != null)
+			listener.blobDiffed(content1.length, content2.length,
+					edits.size(), System.nanoTime() - start);
+		return edits;
+	}
+
 	/**
 	 * Convert byte array to UTF-8 {@link String}
 	 *
@@ -483,9 +520,7 @@ public abstract class BlobUtils {
 		} else
 			data2 = new byte[0];
 
-		return new HistogramDiff().diff(comparator, //
-				data1.length > 0 ? new RawText(data1) : EMPTY_TEXT, //
-				data2.length > 0 ? new RawText(data2) : EMPTY_TEXT);
+		return diff(comparator, data1, data2);
 	}
 
 	/**
@@ -549,8 +584,34 @@ public abstract class BlobUtils {
 		} else
 			data2 = new byte[0];
 
-		return new HistogramDiff().diff(comparator, //
-				data1.length > 0 ? new RawText(data1) : EMPTY_TEXT, //
-				data2.length > 0 ? new RawText(data2) : EMPTY_TEXT);
+		return diff(comparator, data1, data2);
+	}
+
+	/**
+	 * Diff the given blob contents.
+	 * <p>
+	 * This method will return an empty list if either content is binary.
+	 *
+	 * @param content1
+	 * @param content2
+	 * @param comparator
+	 * @return list of edits, never null
+	 */
+	public static Collection<Edit> diff(final byte[] content1,
+			final byte[] content2, final RawTextComparator comparator) {
+		if (content1 == null)
+			throw new IllegalArgumentException(
+					Assert.formatNotNull("Content 1"));
+		if (content2 == null)
+			throw new IllegalArgumentException(
+					Assert.formatNotNull("Content 2"));
+		if (comparator == null)
+			throw new IllegalArgumentException(
+					Assert.formatNotNull("Comparator"));
+
+		if (RawText.isBinary(content1) || RawText.isBinary(content2))
+			return Collections.emptyList();
+
+		return diff(comparator, content1, content2);
 	}
 }
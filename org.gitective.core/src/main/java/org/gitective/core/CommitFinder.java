@@ -26,7 +26,10 @@ import static org.eclipse.jgit.lib.Constants.HEAD;
 import java.io.File;
 import java.io.IOException;
 import java.util.Collection;
+import java.util.Collections;
 
+import org.eclipse.jgit.errors.IncorrectObjectTypeException;
+import org.eclipse.jgit.errors.MissingObjectException;
 import org.eclipse.jgit.errors.StopWalkException;
 import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.Repository;
@@ -37,6 +40,8 @@ import org.eclipse.jgit.revwalk.filter.RevFilter;
 import org.eclipse.jgit.treewalk.filter.TreeFilter;
 import org.gitective.core.filter.commit.CommitFilter;
 import org.gitective.core.filter.tree.BaseTreeFilter;
+import org.gitective.core.monitor.WalkListener;
+import org.gitective.core.monitor.WalkMonitor;
 
 /**
  * Commit finder class for locating commits based on combining
@@ -45,6 +50,116 @@ import org.gitective.core.filter.tree.BaseTreeFilter;
  */
 public class CommitFinder extends RepositoryService {
 
+	/**
+	 * Filter that passes each commit to a delegate filter and then excludes it
+	 * so that the walk disposes of the commit body
+	 */
+	private static class DisposeBodyFilter extends RevFilter {
+
+		private final RevFilter filter;
+
+		DisposeBodyFilter(final RevFilter filter) {
+			this.filter = filter;
+		}
+
+		@Override
+		public boolean include(final RevWalk walker, final RevCommit commit)
+				throws StopWalkException, MissingObjectException,
+				IncorrectObjectTypeException, IOException {
+			filter.include(walker, commit);
+			return false;
+		}
+
+		@Override
+		public boolean requiresCommitBody() {
+			return filter.requiresCommitBody();
+		}
+
+		@Override
+		public RevFilter clone() {
+			return new DisposeBodyFilter(filter.clone());
+		}
+	}
+
+	/**
+	 * Filter that notifies a walk listener of each commit passed to and
+	 * included by a delegate filter
+	 */
+	private static class MonitoredFilter extends RevFilter {
+
+		private final RevFilter filter;
+
+		private final WalkListener listener;
+
+		MonitoredFilter(final RevFilter filter, final WalkListener listener) {
+			this.filter = filter;
+			this.listener = listener;
+		}
+
+		@Override
+		public boolean include(final RevWalk walker, final RevCommit commit)
+				throws StopWalkException, MissingObjectException,
+				IncorrectObjectTypeException, IOException {
+			listener.commitVisited(commit);
+			final boolean include = filter.include(walker, commit);
+			if (include)
+				listener.commitAccepted(commit);
+			return include;
+		}
+
+		@Override
+		public boolean requiresCommitBody() {
+			return filter.requiresCommitBody();
+		}
+
+		@Override
+		public RevFilter clone() {
+			return new MonitoredFilter(filter.clone(), listener);
+		}
+	}
+
+	/**
+	 * Filter that runs a delegate filter once for each commit shared by
+	 * repositories with the same object store
+	 */
+	private static class ForkFilter extends RevFilter {
+
+		private final RevFilter filter;
+
+		private final ForkIndex index;
+
+		private final ForkIndex.Fork fork;
+
+		ForkFilter(final RevFilter filter, final ForkIndex index,
+				final ForkIndex.Fork fork) {
+			this.filter = filter;
+			this.index = index;
+			this.fork = fork;
+		}
+
+		@Override
+		public boolean include(final RevWalk walker, final RevCommit commit)
+				throws StopWalkException, MissingObjectException,
+				IncorrectObjectTypeException, IOException {
+			final Boolean result = index.getResult(fork, commit);
+			if (result != null)
+				return result.booleanValue();
+			final boolean include = filter.include(walker, commit);
+			index.setResult(fork, commit, include);
+			return include;
+		}
+
+		@Override
+		public boolean requiresCommitBody() {
+			return filter.requiresCommitBody();
+		}
+
+		@Override
+		public RevFilter clone() {
+			return new ForkFilter(filter.clone(), index, fork);
+		}
+	}
+
 	/**
 	 * Commit filter for selecting commits to match
 	 */
@@ -60,6 +175,27 @@ public class CommitFinder extends RepositoryService {
 	 */
 	protected RevSort sort;
 
+	/**
+	 * Whether commit bodies are disposed of once the filters have seen them
+	 */
+	protected boolean disposeBodies;
+
+	/**
+	 * Number of commits visited per segment, zero to walk without segments
+	 */
+	protected int segmentSize;
+
+	/**
+	 * Whether only the first parent of each commit is followed
+	 */
+	protected boolean firstParent;
+
+	/**
+	 * Index of commits processed across repositories sharing an object store,
+	 * null when not fork-aware
+	 */
+	protected ForkIndex forkIndex;
+
 	/**
 	 * Create a commit finder for the given Git directories.
 	 *
@@ -96,6 +232,37 @@ public class CommitFinder extends RepositoryService {
 		super(repositories);
 	}
 
+	/**
+	 * Create a commit finder for the given Git directories that are opened on
+	 * first use from the given pool
+	 *
+	 * @param pool
+	 * @param gitDirs
+	 */
+	public CommitFinder(final RepositoryPool pool, final File... gitDirs) {
+		super(pool, gitDirs);
+	}
+
+	/**
+	 * Create a commit finder for the given Git directory paths that are opened
+	 * on first use from the given pool
+	 *
+	 * @param pool
+	 * @param gitDirs
+	 */
+	public CommitFinder(final RepositoryPool pool, final String... gitDirs) {
+		super(pool, gitDirs);
+	}
+
+	/**
+	 * Create a commit finder for the repositories of the given service
+	 *
+	 * @param service
+	 */
+	CommitFinder(final RepositoryService service) {
+		super(service);
+	}
+
 	/**
 	 * Set the {@link RevFilter} to use to filter commits during searches.
 	 *
@@ -118,21 +285,178 @@ public class CommitFinder extends RepositoryService {
 		return this;
 	}
 
+	/**
+	 * Set whether the body of each commit should be disposed of once the
+	 * configured filters have seen it.
+	 * <p>
+	 * This keeps memory use bounded on walks over long histories but filters
+	 * that keep references to the commits visited will not be able to access
+	 * the message, author, or committer of those commits after they are
+	 * visited.
+	 *
+	 * @param dispose
+	 * @return this finder
+	 */
+	public CommitFinder setDisposeBodies(final boolean dispose) {
+		disposeBodies = dispose;
+		return this;
+	}
+
+	/**
+	 * Are commit bodies disposed of once the filters have seen them?
+	 *
+	 * @return true if disposing, false otherwise
+	 */
+	public boolean isDisposeBodies() {
+		return disposeBodies;
+	}
+
+	/**
+	 * Set the number of commits to visit in each segment of a walk.
+	 * <p>
+	 * When set to a value greater than zero the walk releases all the commits
+	 * it has parsed after visiting this many commits and continues from the
+	 * pending commits with a new walk. Only the ids of the commits seen are
+	 * kept between segments, which bounds memory use on very large histories.
+	 * <p>
+	 * Segmented walks always visit commits in descending commit time order and
+	 * ignore any configured {@link RevSort}. A configured {@link TreeFilter}
+	 * includes a commit when it differs from each of its parents in the
+	 * filtered paths but does not simplify history, so every parent is
+	 * followed.
+	 *
+	 * @param segmentSize
+	 *            must be zero or greater, zero disables segmenting
+	 * @return this finder
+	 */
+	public CommitFinder setSegmentSize(final int segmentSize) {
+		if (segmentSize < 0)
+			throw new IllegalArgumentException(
+					"Segment size cannot be negative");
+
+		this.segmentSize = segmentSize;
+		return this;
+	}
+
+	/**
+	 * Get the number of commits visited in each segment of a walk
+	 *
+	 * @return segment size, zero if not segmenting
+	 */
+	public int getSegmentSize() {
+		return segmentSize;
+	}
+
+	/**
+	 * Set whether only the first parent of each commit visited is followed.
+	 * <p>
+	 * First-parent walks visit only the mainline of each starting commit so
+	 * the commits of merged branches are never passed to the filters and the
+	 * cost of a walk is proportional to the length of the mainline. Commits
+	 * reachable from the end commit of a range are still excluded through all
+	 * of their parents.
+	 * <p>
+	 * First-parent walks visit commits in descending commit time order and
+	 * ignore any configured {@link RevSort}. A configured {@link TreeFilter}
+	 * includes a commit when it differs from its first parent in the filtered
+	 * paths. Diff filters visiting merges in this mode will usually want to use
+	 * {@link org.gitective.core.filter.commit.CommitDiffFilter.MergeDiff#FIRST_PARENT}.
+	 *
+	 * @param firstParent
+	 * @return this finder
+	 */
+	public CommitFinder setFirstParent(final boolean firstParent) {
+		this.firstParent = firstParent;
+		return this;
+	}
+
+	/**
+	 * Set whether commits shared by repositories with the same object store
+	 * are only passed to the commit filter once.
+	 * <p>
+	 * Fork-aware searches group repositories by the object store at the end of
+	 * their chain of <code>objects/info/alternates</code>. Each unique commit of
+	 * a group is filtered for the first repository that reaches it and the
+	 * recorded result is reused for all other repositories of the group so
+	 * filters that collect, count or diff commits see each shared commit once.
+	 * Per repository aggregates are available from {@link #getForkIndex()}.
+	 * <p>
+	 * Enabling this mode starts a new, empty index that spans all searches
+	 * performed by this finder until the mode is enabled again.
+	 *
+	 * @param forkAware
+	 * @return this finder
+	 */
+	public CommitFinder setForkAware(final boolean forkAware) {
+		forkIndex = forkAware ? new ForkIndex() : null;
+		return this;
+	}
+
+	/**
+	 * Is this finder filtering commits shared by forks only once?
+	 *
+	 * @return true if fork-aware, false otherwise
+	 */
+	public boolean isForkAware() {
+		return forkIndex != null;
+	}
+
+	/**
+	 * Get index of commits processed by fork-aware searches
+	 *
+	 * @return index or null if not fork-aware
+	 */
+	public ForkIndex getForkIndex() {
+		return forkIndex;
+	}
+
+	/**
+	 * Is this finder only following the first parent of each commit?
+	 *
+	 * @return true if first-parent only, false otherwise
+	 */
+	public boolean isFirstParent() {
+		return firstParent;
+	}
+
+	/**
+	 * Set the repository on the configured filters
+	 *
+	 * @param repository
+	 */
+	private void setRepository(final Repository repository) {
+		if (commitFilter instanceof CommitFilter)
+			((CommitFilter) commitFilter).setRepository(repository);
+		if (treeFilter instanceof BaseTreeFilter)
+			((BaseTreeFilter) treeFilter).setRepository(repository);
+	}
+
 	/**
 	 * Create a newly configured {@link RevWalk} for the repository
+	 * <p>
+	 * Commit bodies are only retained when the configured commit filter
+	 * requires them.
 	 *
+	 * @see RevFilter#requiresCommitBody()
 	 * @param repository
 	 * @return new {@link RevWalk}
 	 */
 	protected RevWalk createWalk(final Repository repository) {
 		final RevWalk walk = new RevWalk(repository);
-		walk.setRetainBody(true);
-		walk.setRevFilter(commitFilter);
+		RevFilter filter = commitFilter != null ? commitFilter : RevFilter.ALL;
+		walk.setRetainBody(filter.requiresCommitBody());
+		if (forkIndex != null)
+			filter = new ForkFilter(filter, forkIndex,
+					forkIndex.getOrCreate(repository));
+		final WalkListener listener = WalkMonitor.getListener();
+		if (listener != null)
+			filter = new MonitoredFilter(filter, listener);
+		if (disposeBodies)
+			walk.setRevFilter(new DisposeBodyFilter(filter));
+		else
+			walk.setRevFilter(filter);
 		walk.setTreeFilter(treeFilter);
-		if (commitFilter instanceof CommitFilter)
-			((CommitFilter) commitFilter).setRepository(repository);
-		if (treeFilter instanceof BaseTreeFilter)
-			((BaseTreeFilter) treeFilter).setRepository(repository);
+		setRepository(repository);
 		if (sort != null)
 			walk.sort(sort);
 		return walk;
@@ -156,25 +480,70 @@ public class CommitFinder extends RepositoryService {
 	}
 
 	/**
-	 * Walk the commits between the start commit id and end commit id.
+	 * Walk the commits reachable from the start commit ids and not reachable
+	 * from the end commit id.
 	 *
 	 * @param repository
-	 * @param start
+	 * @param starts
 	 *            must be non-null
 	 * @param end
 	 * @return this service
 	 */
 	protected CommitFinder walk(final Repository repository,
-			final ObjectId start, final ObjectId end) {
-		if (start == null)
+			final Collection<? extends ObjectId> starts, final ObjectId end) {
+		if (starts == null)
 			throw new IllegalArgumentException(
-					Assert.formatNotNull("Starting commit id"));
+					Assert.formatNotNull("Starting commit ids"));
+
+		final WalkListener listener = WalkMonitor.getListener();
+		if (listener == null)
+			return walkStarts(repository, starts, end);
+
+		listener.walkStarted(repository);
+		final long start = System.nanoTime();
+		try {
+			return walkStarts(repository, starts, end);
+		} finally {
+			listener.walkFinished(repository, System.nanoTime() - start);
+		}
+	}
+
+	private CommitFinder walkStarts(final Repository repository,
+			final Collection<? extends ObjectId> starts, final ObjectId end) {
+		if (segmentSize > 0 || firstParent) {
+			setRepository(repository);
+			RevFilter filter = commitFilter;
+			if (forkIndex != null)
+				filter = new ForkFilter(filter != null ? filter : RevFilter.ALL,
+						forkIndex, forkIndex.getOrCreate(repository));
+			final WalkListener listener = WalkMonitor.getListener();
+			if (listener != null)
+				filter = new MonitoredFilter(filter != null ? filter
+						: RevFilter.ALL, listener);
+			try {
+				new SegmentedCommitWalk(repository, filter, treeFilter,
+						segmentSize > 0 ? segmentSize : Integer.MAX_VALUE)
+						.setFirstParent(firstParent).walk(starts, end);
+			} catch (IOException e) {
+				throw new GitException(e, repository);
+			}
+			return this;
+		}
 
 		final RevWalk walk = createWalk(repository);
 		try {
-			walk.markStart(walk.parseCommit(start));
-			if (end != null)
-				walk.markUninteresting(walk.parseCommit(end));
+			for (ObjectId start : starts)
+				walk.markStart(walk.parseCommit(start));
+			if (end != null) {
+				final CommitGraphIndex index = CommitGraphIndex.get(repository);
+				final Collection<ObjectId> boundary = index != null ? index
+						.getBoundary(starts, end) : null;
+				if (boundary != null)
+					for (ObjectId commit : boundary)
+						walk.markUninteresting(walk.parseCommit(commit));
+				else
+					walk.markUninteresting(walk.parseCommit(end));
+			}
 			walk(walk);
 		} catch (IOException e) {
 			throw new GitException(e, repository);
@@ -184,6 +553,24 @@ public class CommitFinder extends RepositoryService {
 		return this;
 	}
 
+	/**
+	 * Walk the commits between the start commit id and end commit id.
+	 *
+	 * @param repository
+	 * @param start
+	 *            must be non-null
+	 * @param end
+	 * @return this service
+	 */
+	protected CommitFinder walk(final Repository repository,
+			final ObjectId start, final ObjectId end) {
+		if (start == null)
+			throw new IllegalArgumentException(
+					Assert.formatNotNull("Starting commit id"));
+
+		return walk(repository, Collections.singleton(start), end);
+	}
+
 	/**
 	 * Search the commits starting from the given commit id.
 	 *
@@ -221,22 +608,16 @@ public class CommitFinder extends RepositoryService {
 	 * @return this finder
 	 */
 	public CommitFinder findInTags() {
-		final Repository[] repos = repositories;
-		final int repoCount = repositories.length;
+		final int repoCount = getRepositoryCount();
 		Repository repo;
 		for (int i = 0; i < repoCount; i++) {
-			repo = repos[i];
-			final Collection<RevCommit> commits = CommitUtils.getTags(repo);
-			if (commits.isEmpty())
-				continue;
-			final RevWalk walk = createWalk(repo);
+			repo = openRepository(i);
 			try {
-				walk.markStart(commits);
-				walk(walk);
-			} catch (IOException e) {
-				throw new GitException(e, repo);
+				final Collection<RevCommit> commits = CommitUtils.getTags(repo);
+				if (!commits.isEmpty())
+					walk(repo, commits, null);
 			} finally {
-				walk.release();
+				closeRepository(repo);
 			}
 		}
 		return this;
@@ -251,22 +632,17 @@ public class CommitFinder extends RepositoryService {
 	 * @return this finder
 	 */
 	public CommitFinder findInBranches() {
-		final Repository[] repos = repositories;
-		final int repoCount = repositories.length;
+		final int repoCount = getRepositoryCount();
 		Repository repo;
 		for (int i = 0; i < repoCount; i++) {
-			repo = repos[i];
-			final Collection<RevCommit> commits = CommitUtils.getBranches(repo);
-			if (commits.isEmpty())
-				continue;
-			final RevWalk walk = createWalk(repo);
+			repo = openRepository(i);
 			try {
-				walk.markStart(commits);
-				walk(walk);
-			} catch (IOException e) {
-				throw new GitException(e, repo);
+				final Collection<RevCommit> commits = CommitUtils
+						.getBranches(repo);
+				if (!commits.isEmpty())
+					walk(repo, commits, null);
 			} finally {
-				walk.release();
+				closeRepository(repo);
 			}
 		}
 		return this;
@@ -280,10 +656,16 @@ public class CommitFinder extends RepositoryService {
 	 * @return this service
 	 */
 	public CommitFinder findBetween(final ObjectId start, final ObjectId end) {
-		final Repository[] repos = repositories;
-		final int repoCount = repositories.length;
-		for (int i = 0; i < repoCount; i++)
-			walk(repos[i], start, end);
+		final int repoCount = getRepositoryCount();
+		Repository repo;
+		for (int i = 0; i < repoCount; i++) {
+			repo = openRepository(i);
+			try {
+				walk(repo, start, end);
+			} finally {
+				closeRepository(repo);
+			}
+		}
 		return this;
 	}
 
@@ -296,12 +678,15 @@ public class CommitFinder extends RepositoryService {
 	 * @return this service
 	 */
 	public CommitFinder findBetween(final String start, final ObjectId end) {
-		final Repository[] repos = repositories;
-		final int repoCount = repositories.length;
+		final int repoCount = getRepositoryCount();
 		Repository repo;
 		for (int i = 0; i < repoCount; i++) {
-			repo = repos[i];
-			walk(repo, CommitUtils.getCommit(repo, start), end);
+			repo = openRepository(i);
+			try {
+				walk(repo, CommitUtils.getCommit(repo, start), end);
+			} finally {
+				closeRepository(repo);
+			}
 		}
 		return this;
 	}
@@ -315,12 +700,15 @@ public class CommitFinder extends RepositoryService {
 	 * @return this service
 	 */
 	public CommitFinder findBetween(final ObjectId start, final String end) {
-		final Repository[] repos = repositories;
-		final int repoCount = repositories.length;
+		final int repoCount = getRepositoryCount();
 		Repository repo;
 		for (int i = 0; i < repoCount; i++) {
-			repo = repos[i];
-			walk(repo, start, CommitUtils.getCommit(repo, end));
+			repo = openRepository(i);
+			try {
+				walk(repo, start, CommitUtils.getCommit(repo, end));
+			} finally {
+				closeRepository(repo);
+			}
 		}
 		return this;
 	}
@@ -334,13 +722,16 @@ public class CommitFinder extends RepositoryService {
 	 * @return this service
 	 */
 	public CommitFinder findBetween(final String start, final String end) {
-		final Repository[] repos = repositories;
-		final int repoCount = repositories.length;
+		final int repoCount = getRepositoryCount();
 		Repository repo;
 		for (int i = 0; i < repoCount; i++) {
-			repo = repos[i];
-			walk(repo, CommitUtils.getCommit(repo, start),
-					CommitUtils.getCommit(repo, end));
+			repo = openRepository(i);
+			try {
+				walk(repo, CommitUtils.getCommit(repo, start),
+						CommitUtils.getCommit(repo, end));
+			} finally {
+				closeRepository(repo);
+			}
 		}
 		return this;
 	}
@@ -0,0 +1,789 @@
+/*
+ * Copyright (c) 2012 Kevin Sawicki <kevinsawicki@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+package org.gitective.core;
+
+import java.io.IOException;
+import java.lang.ref.Reference;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.eclipse.jgit.events.ListenerHandle;
+import org.eclipse.jgit.events.RefsChangedEvent;
+import org.eclipse.jgit.events.RefsChangedListener;
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevFlag;
+import org.eclipse.jgit.revwalk.RevObject;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.util.NB;
+
+/**
+ * Compact in-memory graph of the commits reachable from the refs in a
+ * repository.
+ * <p>
+ * Commits are stored as dense int positions with parallel arrays of packed
+ * ids, commit times, generation numbers and parent positions so that ancestry
+ * queries are answered without reading from the object database. Parents are
+ * always indexed before their children and so have lower positions.
+ * <p>
+ * An index attached to a repository with {@link #attach(Repository)} is used
+ * by {@link CommitUtils#getBase(Repository, ObjectId...)} and by the range
+ * resolution of {@link CommitFinder} when all the commits involved are
+ * indexed. Attached indexes are marked stale when the repository reports that
+ * its refs changed and only the commits added since the last refresh are
+ * read on the next query.
+ * <p>
+ * Indexes only hold weak references to their repositories so an attached
+ * index is released along with its repository once the repository is no
+ * longer referenced elsewhere.
+ */
+public class CommitGraphIndex {
+
+	private static final Map<Repository, CommitGraphIndex> INDEXES = new WeakHashMap<Repository, CommitGraphIndex>();
+
+	/**
+	 * Build an index of the given repository and attach it so that it is used
+	 * for ancestry queries against that repository.
+	 *
+	 * @param repository
+	 *            must be non-null
+	 * @return attached index
+	 */
+	public static CommitGraphIndex attach(final Repository repository) {
+		final CommitGraphIndex index = new CommitGraphIndex(repository);
+		index.handle = repository.getListenerList().addRefsChangedListener(
+				new RefsChangedListener() {
+
+					public void onRefsChanged(final RefsChangedEvent event) {
+						index.stale = true;
+					}
+				});
+		final CommitGraphIndex previous;
+		synchronized (INDEXES) {
+			previous = INDEXES.put(repository, index);
+		}
+		if (previous != null && previous.handle != null)
+			previous.handle.remove();
+		return index;
+	}
+
+	/**
+	 * Get the index attached to the given repository
+	 *
+	 * @param repository
+	 * @return index or null if none attached
+	 */
+	public static CommitGraphIndex get(final Repository repository) {
+		synchronized (INDEXES) {
+			return INDEXES.get(repository);
+		}
+	}
+
+	/**
+	 * Detach the index from the given repository
+	 *
+	 * @param repository
+	 * @return detached index or null if none attached
+	 */
+	public static CommitGraphIndex detach(final Repository repository) {
+		final CommitGraphIndex index;
+		synchronized (INDEXES) {
+			index = INDEXES.remove(repository);
+		}
+		if (index != null && index.handle != null)
+			index.handle.remove();
+		return index;
+	}
+
+	private static final int ID_LENGTH = Constants.OBJECT_ID_LENGTH;
+
+	private static final long QUEUED = 1L << 63;
+
+	private static final long STALE = 1L << 62;
+
+	private static final long VISITED = 1L << 61;
+
+	/**
+	 * Maximum number of commits supported by a single merge base query
+	 */
+	private static final int MAX_BASE_COMMITS = 61;
+
+	private final Reference<Repository> repository;
+
+	private ListenerHandle handle;
+
+	private volatile boolean stale;
+
+	private int count;
+
+	private byte[] ids;
+
+	private long[] times;
+
+	private int[] generations;
+
+	private int[] parentOffsets;
+
+	private int[] parents;
+
+	private int parentCount;
+
+	private int[] table;
+
+	private long[] marks;
+
+	private int[] touched;
+
+	private int touchedCount;
+
+	/**
+	 * Create index of all commits reachable from the refs in the given
+	 * repository
+	 *
+	 * @param repository
+	 *            must be non-null
+	 */
+	public CommitGraphIndex(final Repository repository) {
+		if (repository == null)
+			throw new IllegalArgumentException(
+					Assert.formatNotNull("Repository"));
+
+		this.repository = new WeakReference<Repository>(repository);
+		ids = new byte[1024 * ID_LENGTH];
+		times = new long[1024];
+		generations = new int[1024];
+		parentOffsets = new int[1025];
+		parents = new int[1024];
+		table = new int[2048];
+		touched = new int[64];
+		refresh();
+	}
+
+	/**
+	 * Add the commits that have become reachable from the refs in the
+	 * repository since the index was built or last refreshed.
+	 * <p>
+	 * Commits that are no longer reachable from any ref are kept in the index.
+	 *
+	 * @return this index
+	 */
+	public synchronized CommitGraphIndex refresh() {
+		final Repository repository = this.repository.get();
+		if (repository == null)
+			throw new GitException("Indexed repository is no longer available",
+					(Repository) null);
+		stale = false;
+		final RevWalk walk = new RevWalk(repository);
+		walk.setRetainBody(false);
+		try {
+			final RevFlag expanded = walk.newFlag("expanded");
+			final List<RevCommit> stack = new ArrayList<RevCommit>();
+			for (Ref ref : repository.getAllRefs().values()) {
+				final ObjectId id = ref.getObjectId();
+				if (id == null || position(id) >= 0)
+					continue;
+				final RevObject object = walk.peel(walk.parseAny(id));
+				if (object instanceof RevCommit)
+					add(walk, (RevCommit) object, expanded, stack);
+			}
+		} catch (IOException e) {
+			throw new GitException(e, repository);
+		} finally {
+			walk.release();
+		}
+		return this;
+	}
+
+	/**
+	 * Add the commit and its unindexed ancestors in post-order so that parents
+	 * are always assigned a position before their children
+	 */
+	private void add(final RevWalk walk, final RevCommit tip,
+			final RevFlag expanded, final List<RevCommit> stack)
+			throws IOException {
+		stack.add(tip);
+		while (!stack.isEmpty()) {
+			final RevCommit commit = stack.get(stack.size() - 1);
+			if (position(commit) >= 0) {
+				stack.remove(stack.size() - 1);
+				continue;
+			}
+			if (!commit.has(expanded)) {
+				commit.add(expanded);
+				walk.parseHeaders(commit);
+				for (RevCommit parent : commit.getParents())
+					if (!parent.has(expanded) && position(parent) < 0)
+						stack.add(parent);
+				continue;
+			}
+			stack.remove(stack.size() - 1);
+			append(commit);
+		}
+	}
+
+	private void append(final RevCommit commit) {
+		final RevCommit[] commitParents = commit.getParents();
+		if (count == times.length)
+			grow(count * 2);
+		if (parentCount + commitParents.length > parents.length) {
+			final int[] newParents = new int[Math.max(parents.length * 2,
+					parentCount + commitParents.length)];
+			System.arraycopy(parents, 0, newParents, 0, parentCount);
+			parents = newParents;
+		}
+
+		final int position = count++;
+		commit.copyRawTo(ids, position * ID_LENGTH);
+		times[position] = commit.getCommitTime() * 1000L;
+		int generation = 0;
+		for (RevCommit parent : commitParents) {
+			final int parentPosition = position(parent);
+			parents[parentCount++] = parentPosition;
+			generation = Math.max(generation, generations[parentPosition]);
+		}
+		generations[position] = generation + 1;
+		parentOffsets[position + 1] = parentCount;
+
+		if (count * 4 > table.length * 3)
+			rehash(table.length * 2);
+		else
+			insert(table, position);
+	}
+
+	private void grow(final int capacity) {
+		final byte[] newIds = new byte[capacity * ID_LENGTH];
+		System.arraycopy(ids, 0, newIds, 0, count * ID_LENGTH);
+		ids = newIds;
+		final long[] newTimes = new long[capacity];
+		System.arraycopy(times, 0, newTimes, 0, count);
+		times = newTimes;
+		final int[] newGenerations = new int[capacity];
+		System.arraycopy(generations, 0, newGenerations, 0, count);
+		generations = newGenerations;
+		final int[] newOffsets = new int[capacity + 1];
+		System.arraycopy(parentOffsets, 0, newOffsets, 0, count + 1);
+		parentOffsets = newOffsets;
+		if (marks != null) {
+			final long[] newMarks = new long[capacity];
+			System.arraycopy(marks, 0, newMarks, 0, marks.length);
+			marks = newMarks;
+		}
+	}
+
+	private void rehash(final int capacity) {
+		final int[] newTable = new int[capacity];
+		for (int i = 0; i < count; i++)
+			insert(newTable, i);
+		table = newTable;
+	}
+
+	private void insert(final int[] slots, final int position) {
+		final int mask = slots.length - 1;
+		int slot = NB.decodeInt32(ids, position * ID_LENGTH + 4) & mask;
+		while (slots[slot] != 0)
+			slot = (slot + 1) & mask;
+		slots[slot] = position + 1;
+	}
+
+	private int position(final AnyObjectId id) {
+		final int mask = table.length - 1;
+		int slot = id.hashCode() & mask;
+		int entry;
+		while ((entry = table[slot]) != 0) {
+			if (id.compareTo(ids, (entry - 1) * ID_LENGTH) == 0)
+				return entry - 1;
+			slot = (slot + 1) & mask;
+		}
+		return -1;
+	}
+
+	private int indexed(final AnyObjectId id) {
+		if (id == null)
+			throw new IllegalArgumentException(Assert.formatNotNull("Commit"));
+		final int position = position(id);
+		if (position < 0)
+			throw new IllegalArgumentException("Commit " + id.name()
+					+ " is not indexed");
+		return position;
+	}
+
+	private void checkStale() {
+		if (stale)
+			refresh();
+	}
+
+	private ObjectId id(final int position) {
+		return ObjectId.fromRaw(ids, position * ID_LENGTH);
+	}
+
+	private void mark(final int position, final long bits) {
+		if (marks == null)
+			marks = new long[times.length];
+		if (marks[position] == 0) {
+			if (touchedCount == touched.length) {
+				final int[] newTouched = new int[touched.length * 2];
+				System.arraycopy(touched, 0, newTouched, 0, touchedCount);
+				touched = newTouched;
+			}
+			touched[touchedCount++] = position;
+		}
+		marks[position] |= bits;
+	}
+
+	private void clearMarks() {
+		for (int i = 0; i < touchedCount; i++)
+			marks[touched[i]] = 0;
+		touchedCount = 0;
+	}
+
+	/**
+	 * Mark every commit reachable from the given position with the given bit
+	 *
+	 * @return number of commits newly marked
+	 */
+	private int paint(final int start, final long bit) {
+		if (marks != null && (marks[start] & bit) != 0)
+			return 0;
+		int painted = 0;
+		final IntStack pending = new IntStack();
+		mark(start, bit);
+		pending.push(start);
+		while (!pending.isEmpty()) {
+			final int position = pending.pop();
+			painted++;
+			for (int i = parentOffsets[position]; i < parentOffsets[position + 1]; i++) {
+				final int parent = parents[i];
+				if ((marks[parent] & bit) == 0) {
+					mark(parent, bit);
+					pending.push(parent);
+				}
+			}
+		}
+		return painted;
+	}
+
+	/**
+	 * Get the number of commits in the index
+	 *
+	 * @return commit count
+	 */
+	public synchronized int size() {
+		checkStale();
+		return count;
+	}
+
+	/**
+	 * Is the given commit in the index?
+	 *
+	 * @param commit
+	 * @return true if indexed, false otherwise
+	 */
+	public synchronized boolean contains(final AnyObjectId commit) {
+		if (commit == null)
+			return false;
+		checkStale();
+		return position(commit) >= 0;
+	}
+
+	/**
+	 * Are all the given commits in the index and are there few enough of them
+	 * to be used in a single merge base query?
+	 *
+	 * @param commits
+	 * @return true if all indexed, false otherwise
+	 */
+	public synchronized boolean containsAll(final AnyObjectId... commits) {
+		if (commits == null || commits.length > MAX_BASE_COMMITS)
+			return false;
+		checkStale();
+		for (AnyObjectId commit : commits)
+			if (commit == null || position(commit) < 0)
+				return false;
+		return true;
+	}
+
+	/**
+	 * Get the time of the given commit
+	 *
+	 * @param commit
+	 *            must be indexed
+	 * @return time in milliseconds
+	 */
+	public synchronized long getCommitTime(final AnyObjectId commit) {
+		checkStale();
+		return times[indexed(commit)];
+	}
+
+	/**
+	 * Is the given ancestor commit reachable from the given descendant commit?
+	 * <p>
+	 * A commit is considered to be an ancestor of itself.
+	 *
+	 * @param ancestor
+	 *            must be indexed
+	 * @param descendant
+	 *            must be indexed
+	 * @return true if ancestor, false otherwise
+	 */
+	public synchronized boolean isAncestor(final AnyObjectId ancestor,
+			final AnyObjectId descendant) {
+		checkStale();
+		final int target = indexed(ancestor);
+		final int start = indexed(descendant);
+		if (target == start)
+			return true;
+		final int floor = generations[target];
+		if (generations[start] <= floor)
+			return false;
+
+		final IntStack pending = new IntStack();
+		try {
+			mark(start, VISITED);
+			pending.push(start);
+			while (!pending.isEmpty()) {
+				final int position = pending.pop();
+				for (int i = parentOffsets[position]; i < parentOffsets[position + 1]; i++) {
+					final int parent = parents[i];
+					if (parent == target)
+						return true;
+					if ((marks[parent] & VISITED) == 0
+							&& generations[parent] > floor) {
+						mark(parent, VISITED);
+						pending.push(parent);
+					}
+				}
+			}
+			return false;
+		} finally {
+			clearMarks();
+		}
+	}
+
+	/**
+	 * Get the best common ancestor of the given commits.
+	 * <p>
+	 * When there are several merge bases the one with the highest generation
+	 * is returned.
+	 *
+	 * @param commits
+	 *            must all be indexed
+	 * @return merge base or null if the commits share no history
+	 */
+	public synchronized ObjectId getMergeBase(final AnyObjectId... commits) {
+		final List<ObjectId> bases = getMergeBases(commits);
+		return !bases.isEmpty() ? bases.get(0) : null;
+	}
+
+	/**
+	 * Get all the best common ancestors of the given commits ordered by
+	 * descending generation.
+	 * <p>
+	 * A best common ancestor is a commit reachable from all the given commits
+	 * that is not an ancestor of any other common ancestor.
+	 *
+	 * @param commits
+	 *            must all be indexed
+	 * @return non-null but possibly empty list of merge bases
+	 */
+	public synchronized List<ObjectId> getMergeBases(
+			final AnyObjectId... commits) {
+		if (commits == null)
+			throw new IllegalArgumentException(Assert.formatNotNull("Commits"));
+		if (commits.length == 0)
+			throw new IllegalArgumentException(Assert.formatNotEmpty("Commits"));
+		if (commits.length > MAX_BASE_COMMITS)
+			throw new IllegalArgumentException("At most " + MAX_BASE_COMMITS
+					+ " commits are supported");
+		checkStale();
+
+		final long all = (1L << commits.length) - 1;
+		final IntHeap queue = new IntHeap();
+		final List<ObjectId> bases = new ArrayList<ObjectId>(1);
+		try {
+			int active = 0;
+			for (int i = 0; i < commits.length; i++) {
+				final int position = indexed(commits[i]);
+				if (marks == null || (marks[position] & QUEUED) == 0) {
+					mark(position, QUEUED);
+					queue.add(position);
+					active++;
+				}
+				mark(position, 1L << i);
+			}
+
+			// Children have higher generations than their parents so each
+			// commit is popped only after all its descendants in the walk and
+			// stale commits keep being walked so no ancestor of a merge base
+			// is reported as another merge base
+			while (active > 0) {
+				final int position = queue.remove();
+				long flags = marks[position];
+				if ((flags & STALE) == 0) {
+					active--;
+					if ((flags & all) == all) {
+						bases.add(id(position));
+						flags |= STALE;
+					}
+				}
+				final long inherited = flags & (all | STALE);
+				for (int i = parentOffsets[position]; i < parentOffsets[position + 1]; i++) {
+					final int parent = parents[i];
+					final long previous = marks[parent];
+					if ((previous | inherited) == previous)
+						continue;
+					if ((previous & QUEUED) == 0) {
+						mark(parent, inherited | QUEUED);
+						queue.add(parent);
+						if ((inherited & STALE) == 0)
+							active++;
+					} else {
+						mark(parent, inherited);
+						if ((previous & STALE) == 0
+								&& (inherited & STALE) != 0)
+							active--;
+					}
+				}
+			}
+		} finally {
+			clearMarks();
+		}
+		return bases;
+	}
+
+	/**
+	 * Get the number of commits reachable from the given commit, including
+	 * the commit itself
+	 *
+	 * @param start
+	 *            must be indexed
+	 * @return commit count
+	 */
+	public synchronized int count(final AnyObjectId start) {
+		checkStale();
+		try {
+			return paint(indexed(start), VISITED);
+		} finally {
+			clearMarks();
+		}
+	}
+
+	/**
+	 * Get the number of commits reachable from the start commit and not
+	 * reachable from the end commit
+	 *
+	 * @param start
+	 *            must be indexed
+	 * @param end
+	 *            must be indexed
+	 * @return commit count
+	 */
+	public synchronized int countBetween(final AnyObjectId start,
+			final AnyObjectId end) {
+		checkStale();
+		final int startPosition = indexed(start);
+		final int endPosition = indexed(end);
+		try {
+			paint(endPosition, STALE);
+			return paint(startPosition, STALE);
+		} finally {
+			clearMarks();
+		}
+	}
+
+	/**
+	 * Get the chain of first parents starting at the given commit
+	 *
+	 * @param start
+	 *            must be indexed
+	 * @param limit
+	 *            maximum number of commits to return, negative for no limit
+	 * @return non-null list of commit ids starting with the given commit
+	 */
+	public synchronized List<ObjectId> getFirstParents(
+			final AnyObjectId start, final int limit) {
+		checkStale();
+		int position = indexed(start);
+		final List<ObjectId> chain = new ArrayList<ObjectId>();
+		while (position >= 0 && (limit < 0 || chain.size() < limit)) {
+			chain.add(id(position));
+			if (parentOffsets[position] == parentOffsets[position + 1])
+				break;
+			position = parents[parentOffsets[position]];
+		}
+		return chain;
+	}
+
+	/**
+	 * Get the commits that bound the range of commits reachable from the start
+	 * commits and not reachable from the end commit.
+	 * <p>
+	 * The boundary contains every parent of a commit in the range that is
+	 * reachable from the end commit as well as every start commit that is
+	 * reachable from the end commit. Marking the boundary commits as
+	 * uninteresting in a walk from the start commits produces the same commits
+	 * as marking the end commit uninteresting without walking the history of
+	 * the end commit that is outside of the range.
+	 *
+	 * @param starts
+	 * @param end
+	 * @return boundary commits or null if any commit is not indexed
+	 */
+	public synchronized Collection<ObjectId> getBoundary(
+			final Collection<? extends AnyObjectId> starts,
+			final AnyObjectId end) {
+		if (starts == null)
+			throw new IllegalArgumentException(
+					Assert.formatNotNull("Starting commit ids"));
+		checkStale();
+		final int endPosition = end != null ? position(end) : -1;
+		if (endPosition < 0)
+			return null;
+		final int[] startPositions = new int[starts.size()];
+		int index = 0;
+		for (AnyObjectId start : starts) {
+			final int position = start != null ? position(start) : -1;
+			if (position < 0)
+				return null;
+			startPositions[index++] = position;
+		}
+
+		final Collection<ObjectId> boundary = new LinkedHashSet<ObjectId>();
+		try {
+			paint(endPosition, STALE);
+			final IntStack pending = new IntStack();
+			for (int start : startPositions) {
+				final long flags = marks[start];
+				if ((flags & STALE) != 0)
+					boundary.add(id(start));
+				else if ((flags & VISITED) == 0) {
+					mark(start, VISITED);
+					pending.push(start);
+				}
+			}
+			while (!pending.isEmpty()) {
+				final int position = pending.pop();
+				for (int i = parentOffsets[position]; i < parentOffsets[position + 1]; i++) {
+					final int parent = parents[i];
+					final long flags = marks[parent];
+					if ((flags & STALE) != 0)
+						boundary.add(id(parent));
+					else if ((flags & VISITED) == 0) {
+						mark(parent, VISITED);
+						pending.push(parent);
+					}
+				}
+			}
+		} finally {
+			clearMarks();
+		}
+		return boundary;
+	}
+
+	/**
+	 * Growable stack of int positions
+	 */
+	private static class IntStack {
+
+		private int[] values = new int[64];
+
+		private int size;
+
+		void push(final int value) {
+			if (size == values.length) {
+				final int[] newValues = new int[size * 2];
+				System.arraycopy(values, 0, newValues, 0, size);
+				values = newValues;
+			}
+			values[size++] = value;
+		}
+
+		int pop() {
+			return values[--size];
+		}
+
+		boolean isEmpty() {
+			return size == 0;
+		}
+	}
+
+	/**
+	 * Binary heap of positions ordered by descending generation and then by
+	 * descending commit time
+	 */
+	private class IntHeap {
+
+		private int[] values = new int[64];
+
+		private int size;
+
+		private boolean before(final int a, final int b) {
+			final int generationA = generations[a];
+			final int generationB = generations[b];
+			if (generationA != generationB)
+				return generationA > generationB;
+			return times[a] > times[b];
+		}
+
+		void add(final int value) {
+			if (size == values.length) {
+				final int[] newValues = new int[size * 2];
+				System.arraycopy(values, 0, newValues, 0, size);
+				values = newValues;
+			}
+			int child = size++;
+			while (child > 0) {
+				final int parent = (child - 1) >>> 1;
+				if (!before(value, values[parent]))
+					break;
+				values[child] = values[parent];
+				child = parent;
+			}
+			values[child] = value;
+		}
+
+		int remove() {
+			final int top = values[0];
+			final int last = values[--size];
+			int parent = 0;
+			int child;
+			while ((child = parent * 2 + 1) < size) {
+				if (child + 1 < size && before(values[child + 1], values[child]))
+					child++;
+				if (!before(values[child], last))
+					break;
+				values[parent] = values[child];
+				parent = child;
+			}
+			values[parent] = last;
+			return top;
+		}
+	}
+}
@@ -0,0 +1,414 @@
+/*
+ * Copyright (c) 2012 Kevin Sawicki <kevinsawicki@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+package org.gitective.core;
+
+import static org.eclipse.jgit.lib.Constants.HEAD;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.revwalk.filter.CommitTimeRevFilter;
+import org.eclipse.jgit.revwalk.filter.RevFilter;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+import org.gitective.core.filter.commit.AndCommitFilter;
+import org.gitective.core.filter.commit.AuthorFilter;
+import org.gitective.core.filter.commit.CommitDiffFilter;
+import org.gitective.core.filter.commit.CommitFilter;
+import org.gitective.core.filter.commit.CommitLimitFilter;
+import org.gitective.core.filter.commit.CommitMessageFindFilter;
+import org.gitective.core.filter.commit.CommitPathFilter;
+import org.gitective.core.filter.commit.CommitterDateFilter;
+import org.gitective.core.filter.commit.CommitterFilter;
+import org.gitective.core.filter.commit.DateFilter;
+
+/**
+ * Declarative commit query that is compiled into a configured
+ * {@link CommitFinder}.
+ * <p>
+ * The planner applies each predicate at the cheapest point available: the
+ * lower date bound terminates the walk once older commits are reached, paths
+ * become a {@link TreeFilter} on the {@link RevWalk}, the person and message
+ * predicates are matched by an adaptive {@link AndCommitFilter}, the limit
+ * stops the walk once enough commits have matched and the requested
+ * aggregates run last so that diffs are only computed for matching commits.
+ * <p>
+ * A {@link RevWalk} applies its tree filter before its commit filter so when a
+ * lower date bound is also set the paths are instead matched by a
+ * {@link CommitPathFilter} after the person and message predicates. The date
+ * bound then sees every commit walked and can stop the walk even when the
+ * paths are rarely changed.
+ * <p>
+ * The plan chosen can be described by calling {@link #explain()}.
+ */
+public class CommitQuery extends RepositoryService {
+
+	private String[] refs = new String[] { HEAD };
+
+	private PersonIdent author;
+
+	private PersonIdent committer;
+
+	private Date after;
+
+	private Date before;
+
+	private String[] paths;
+
+	private String message;
+
+	private long limit = -1;
+
+	private boolean firstParent;
+
+	private final List<CommitFilter> aggregates = new ArrayList<CommitFilter>();
+
+	/**
+	 * Create a commit query for the given Git directories.
+	 *
+	 * @param gitDirs
+	 */
+	public CommitQuery(final File... gitDirs) {
+		super(gitDirs);
+	}
+
+	/**
+	 * Create a commit query for the given Git repositories.
+	 *
+	 * @param repositories
+	 */
+	public CommitQuery(final Repository... repositories) {
+		super(repositories);
+	}
+
+	/**
+	 * Create a commit query for the given Git directory paths.
+	 *
+	 * @param gitDirs
+	 */
+	public CommitQuery(final String... gitDirs) {
+		super(gitDirs);
+	}
+
+	/**
+	 * Create a commit query for the given repository collection
+	 *
+	 * @param repositories
+	 */
+	public CommitQuery(final Collection<?> repositories) {
+		super(repositories);
+	}
+
+	/**
+	 * Create a commit query for the given Git directories that are opened on
+	 * first use from the given pool
+	 *
+	 * @param pool
+	 * @param gitDirs
+	 */
+	public CommitQuery(final RepositoryPool pool, final File... gitDirs) {
+		super(pool, gitDirs);
+	}
+
+	/**
+	 * Set the revisions to start walking from, defaults to HEAD
+	 *
+	 * @param refs
+	 *            must be non-null and non-empty
+	 * @return this query
+	 */
+	public CommitQuery setRefs(final String... refs) {
+		if (refs == null)
+			throw new IllegalArgumentException(Assert.formatNotNull("Refs"));
+		if (refs.length == 0)
+			throw new IllegalArgumentException(Assert.formatNotEmpty("Refs"));
+
+		this.refs = refs;
+		return this;
+	}
+
+	/**
+	 * Set the author that matching commits must have
+	 *
+	 * @param author
+	 * @return this query
+	 */
+	public CommitQuery setAuthor(final PersonIdent author) {
+		this.author = author;
+		return this;
+	}
+
+	/**
+	 * Set the committer that matching commits must have
+	 *
+	 * @param committer
+	 * @return this query
+	 */
+	public CommitQuery setCommitter(final PersonIdent committer) {
+		this.committer = committer;
+		return this;
+	}
+
+	/**
+	 * Set the date that matching commits must have been committed at or after
+	 *
+	 * @param after
+	 * @return this query
+	 */
+	public CommitQuery setAfter(final Date after) {
+		this.after = after;
+		return this;
+	}
+
+	/**
+	 * Set the date that matching commits must have been committed at or before
+	 *
+	 * @param before
+	 * @return this query
+	 */
+	public CommitQuery setBefore(final Date before) {
+		this.before = before;
+		return this;
+	}
+
+	/**
+	 * Set the paths that matching commits must have changed at least one of
+	 *
+	 * @param paths
+	 * @return this query
+	 */
+	public CommitQuery setPaths(final String... paths) {
+		this.paths = paths;
+		return this;
+	}
+
+	/**
+	 * Set the pattern that must be found in the message of matching commits
+	 *
+	 * @param pattern
+	 * @return this query
+	 */
+	public CommitQuery setMessage(final String pattern) {
+		message = pattern;
+		return this;
+	}
+
+	/**
+	 * Set the maximum number of commits to match across all repositories, a
+	 * negative value means no limit
+	 *
+	 * @param limit
+	 * @return this query
+	 */
+	public CommitQuery setLimit(final long limit) {
+		this.limit = limit;
+		return this;
+	}
+
+	/**
+	 * Set whether only the first parent of each commit is followed
+	 *
+	 * @param firstParent
+	 * @return this query
+	 * @see CommitFinder#setFirstParent(boolean)
+	 */
+	public CommitQuery setFirstParent(final boolean firstParent) {
+		this.firstParent = firstParent;
+		return this;
+	}
+
+	/**
+	 * Add filters that aggregate information about each matching commit
+	 *
+	 * @param filters
+	 *            must be non-null
+	 * @return this query
+	 */
+	public CommitQuery addAggregate(final CommitFilter... filters) {
+		if (filters == null)
+			throw new IllegalArgumentException(Assert.formatNotNull("Filters"));
+
+		for (CommitFilter filter : filters)
+			if (filter != null)
+				aggregates.add(filter);
+		return this;
+	}
+
+	/**
+	 * Compile this query into a new {@link CommitFinder}
+	 *
+	 * @return commit finder
+	 */
+	public CommitFinder compile() {
+		return plan(null);
+	}
+
+	/**
+	 * Describe the plan this query compiles into, one stage per line in the
+	 * order the stages are applied to each visited commit
+	 *
+	 * @return plan description
+	 */
+	public String explain() {
+		final List<String> stages = new ArrayList<String>();
+		plan(stages);
+		final StringBuilder plan = new StringBuilder();
+		final int size = stages.size();
+		for (int i = 0; i < size; i++)
+			plan.append(i + 1).append(". ").append(stages.get(i)).append('\n');
+		return plan.toString();
+	}
+
+	/**
+	 * Run this query against every repository
+	 *
+	 * @return this query
+	 */
+	public CommitQuery find() {
+		final CommitFinder finder = compile();
+		final int repoCount = getRepositoryCount();
+		Repository repo;
+		for (int i = 0; i < repoCount; i++) {
+			repo = openRepository(i);
+			try {
+				final List<ObjectId> starts = new ArrayList<ObjectId>(
+						refs.length);
+				for (String ref : refs)
+					starts.add(CommitUtils.getCommit(repo, ref));
+				finder.walk(repo, starts, null);
+			} finally {
+				closeRepository(repo);
+			}
+		}
+		return this;
+	}
+
+	private CommitFinder plan(final List<String> stages) {
+		final CommitFinder finder = new CommitFinder(this);
+		finder.setFirstParent(firstParent);
+		final List<RevFilter> filters = new ArrayList<RevFilter>();
+		if (stages != null)
+			stages.add("Walk " + (firstParent ? "first parents of " : "")
+					+ join(refs) + " in " + getRepositoryCount()
+					+ (getRepositoryCount() != 1 ? " repositories" : " repository")
+					+ " by descending commit time");
+
+		// The since filter only counts the commits it sees and so must come
+		// before every other commit filter and cannot be combined with a tree
+		// filter on the walk since the walk applies that first
+		final boolean hasPaths = paths != null && paths.length > 0;
+		if (hasPaths && after == null) {
+			finder.setFilter(PathFilterUtils.or(paths));
+			if (stages != null)
+				stages.add("Tree filter on walk: changes to " + join(paths));
+		}
+
+		if (after != null) {
+			filters.add(new CommitterDateFilter(after).setSince(true));
+			if (stages != null)
+				stages.add("Stop walk after " + DateFilter.DEFAULT_SLOP
+						+ " consecutive commits committed before " + after);
+		}
+		if (before != null) {
+			filters.add(CommitTimeRevFilter.before(before));
+			if (stages != null)
+				stages.add("Skip commits committed after " + before);
+		}
+
+		final List<RevFilter> predicates = new ArrayList<RevFilter>();
+		if (author != null) {
+			predicates.add(new AuthorFilter(author));
+			if (stages != null)
+				stages.add("Match author " + author.getName() + " <"
+						+ author.getEmailAddress() + '>');
+		}
+		if (committer != null) {
+			predicates.add(new CommitterFilter(committer));
+			if (stages != null)
+				stages.add("Match committer " + committer.getName() + " <"
+						+ committer.getEmailAddress() + '>');
+		}
+		if (message != null) {
+			predicates.add(new CommitMessageFindFilter(message));
+			if (stages != null)
+				stages.add("Match message pattern " + message);
+		}
+		if (predicates.size() > 1) {
+			filters.add(new AndCommitFilter(predicates
+					.toArray(new RevFilter[predicates.size()])).setAdaptive(true));
+			if (stages != null)
+				stages.add("Reorder the " + predicates.size()
+						+ " match stages above by measured cost");
+		} else if (predicates.size() == 1)
+			filters.add(predicates.get(0));
+
+		if (hasPaths && after != null) {
+			filters.add(new CommitPathFilter(PathFilterUtils.or(paths)));
+			if (stages != null)
+				stages.add("Match changes to " + join(paths));
+		}
+
+		if (limit >= 0) {
+			filters.add(new CommitLimitFilter(limit).setStop(true));
+			if (stages != null)
+				stages.add("Stop walk after " + limit + " matching commits");
+		}
+
+		for (CommitFilter aggregate : aggregates)
+			if (!(aggregate instanceof CommitDiffFilter)) {
+				filters.add(aggregate);
+				if (stages != null)
+					stages.add("Aggregate with "
+							+ aggregate.getClass().getSimpleName());
+			}
+		for (CommitFilter aggregate : aggregates)
+			if (aggregate instanceof CommitDiffFilter) {
+				filters.add(aggregate);
+				if (stages != null)
+					stages.add("Diff and aggregate with "
+							+ aggregate.getClass().getSimpleName());
+			}
+
+		if (filters.size() == 1)
+			finder.setFilter(filters.get(0));
+		else if (!filters.isEmpty())
+			finder.setFilter(new AndCommitFilter(filters
+					.toArray(new RevFilter[filters.size()])));
+		return finder;
+	}
+
+	private static String join(final String[] values) {
+		final StringBuilder joined = new StringBuilder();
+		for (int i = 0; i < values.length; i++) {
+			if (i > 0)
+				joined.append(", ");
+			joined.append(values[i]);
+		}
+		return joined.toString();
+	}
+}
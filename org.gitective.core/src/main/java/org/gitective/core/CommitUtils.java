@@ -30,8 +30,12 @@ import static org.eclipse.jgit.revwalk.filter.RevFilter.MERGE_BASE;
 
 import java.io.IOException;
 import java.text.MessageFormat;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.ObjectReader;
@@ -156,6 +160,79 @@ public abstract class CommitUtils {
 		return walkToBase(repository, commits);
 	}
 
+	/**
+	 * Get the common base commit of each given commit and the base commit.
+	 * <p>
+	 * A single walk is shared by all the commits so that history common to
+	 * the commits is only walked once.
+	 * <p>
+	 * Each commit visited carries a bit per given commit so the walk costs
+	 * about one pass over the history not shared by all of them. To get the
+	 * bases of pairs with many different base commits, group the pairs by
+	 * base and call this method once per group.
+	 *
+	 * @param repository
+	 * @param base
+	 * @param commits
+	 * @return non-null map of each commit to its base commit, the value will
+	 *         be null for commits with no common base
+	 */
+	public static Map<ObjectId, RevCommit> getBases(
+			final Repository repository, final ObjectId base,
+			final Collection<? extends ObjectId> commits) {
+		if (repository == null)
+			throw new IllegalArgumentException(
+					Assert.formatNotNull("Repository"));
+		if (base == null)
+			throw new IllegalArgumentException(Assert.formatNotNull("Base"));
+		if (commits == null)
+			throw new IllegalArgumentException(Assert.formatNotNull("Commits"));
+
+		return walkToBases(repository, base, commits);
+	}
+
+	/**
+	 * Get the common base commit of each given revision and the base revision.
+	 * <p>
+	 * A single walk is shared by all the revisions so that history common to
+	 * the revisions is only walked once.
+	 * <p>
+	 * Each commit visited carries a bit per given revision so the walk costs
+	 * about one pass over the history not shared by all of them. To get the
+	 * bases of pairs with many different base commits, group the pairs by
+	 * base and call this method once per group.
+	 *
+	 * @param repository
+	 * @param base
+	 * @param revisions
+	 * @return non-null map of each revision to its base commit, the value will
+	 *         be null for revisions with no common base
+	 */
+	public static Map<String, RevCommit> getBases(final Repository repository,
+			final String base, final Collection<String> revisions) {
+		if (repository == null)
+			throw new IllegalArgumentException(
+					Assert.formatNotNull("Repository"));
+		if (base == null)
+			throw new IllegalArgumentException(Assert.formatNotNull("Base"));
+		if (revisions == null)
+			throw new IllegalArgumentException(
+					Assert.formatNotNull("Revisions"));
+
+		final List<ObjectId> commits = new ArrayList<ObjectId>(
+				revisions.size());
+		for (String revision : revisions)
+			commits.add(strictResolve(repository, revision));
+		final Map<ObjectId, RevCommit> commitBases = walkToBases(repository,
+				strictResolve(repository, base), commits);
+		final Map<String, RevCommit> bases = new LinkedHashMap<String, RevCommit>(
+				revisions.size());
+		int index = 0;
+		for (String revision : revisions)
+			bases.put(revision, commitBases.get(commits.get(index++)));
+		return bases;
+	}
+
 	/**
 	 * Get the commit that the given name references.
 	 *
@@ -315,8 +392,40 @@ public abstract class CommitUtils {
 		return resolved;
 	}
 
+	private static Map<ObjectId, RevCommit> walkToBases(
+			final Repository repository, final ObjectId base,
+			final Collection<? extends ObjectId> commits) {
+		final Map<ObjectId, RevCommit> bases = new LinkedHashMap<ObjectId, RevCommit>(
+				commits.size());
+		if (commits.isEmpty())
+			return bases;
+		final ObjectId[] tips = new ObjectId[commits.size()];
+		int index = 0;
+		for (ObjectId commit : commits)
+			tips[index++] = commit.copy();
+		final AheadBehindWalk walk = new AheadBehindWalk(repository, tips,
+				new ObjectId[] { base });
+		try {
+			walk.walk();
+		} catch (IOException e) {
+			throw new GitException(e, repository);
+		}
+		for (int i = 0; i < tips.length; i++) {
+			final List<RevCommit> mergeBases = walk.getMergeBases(i, 0);
+			bases.put(tips[i], !mergeBases.isEmpty() ? mergeBases.get(0)
+					: null);
+		}
+		return bases;
+	}
+
 	private static RevCommit walkToBase(final Repository repository,
 			final ObjectId... commits) {
+		final CommitGraphIndex index = CommitGraphIndex.get(repository);
+		if (index != null && index.containsAll(commits)) {
+			final ObjectId base = index.getMergeBase(commits);
+			return base != null ? parse(repository, base) : null;
+		}
+
 		final RevWalk walk = new RevWalk(repository);
 		walk.setRevFilter(MERGE_BASE);
 		try {
@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2012 Kevin Sawicki <kevinsawicki@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+package org.gitective.core;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counter that can be safely incremented by many threads at once.
+ * <p>
+ * Updates are spread over several padded stripes selected by the id of the
+ * updating thread so that concurrent walks rarely contend on the same slot.
+ * Reading the value sums the stripes without locking and may not reflect
+ * updates that are in progress at the time of the read.
+ */
+public class ConcurrentCounter {
+
+	/**
+	 * Number of array slots between stripes, keeps each stripe on its own
+	 * cache line
+	 */
+	private static final int PADDING = 8;
+
+	private static int getStripeCount() {
+		final int processors = Runtime.getRuntime().availableProcessors();
+		int stripes = 1;
+		while (stripes < processors * 2)
+			stripes <<= 1;
+		return stripes;
+	}
+
+	private final AtomicLongArray cells;
+
+	private final int mask;
+
+	/**
+	 * Create counter with a stripe count based on the number of available
+	 * processors
+	 */
+	public ConcurrentCounter() {
+		final int stripes = getStripeCount();
+		mask = stripes - 1;
+		cells = new AtomicLongArray(stripes * PADDING);
+	}
+
+	private int index() {
+		final long id = Thread.currentThread().getId();
+		final int hash = (int) (id ^ (id >>> 32)) * 0x9E3779B9;
+		return ((hash >>> 16) & mask) * PADDING;
+	}
+
+	/**
+	 * Add given amount to counter
+	 *
+	 * @param amount
+	 * @return this counter
+	 */
+	public ConcurrentCounter add(final long amount) {
+		cells.getAndAdd(index(), amount);
+		return this;
+	}
+
+	/**
+	 * Increment counter by one
+	 *
+	 * @return this counter
+	 */
+	public ConcurrentCounter increment() {
+		return add(1L);
+	}
+
+	/**
+	 * Get current sum of all stripes
+	 *
+	 * @return count
+	 */
+	public long get() {
+		final int length = cells.length();
+		long sum = 0L;
+		for (int i = 0; i < length; i += PADDING)
+			sum += cells.get(i);
+		return sum;
+	}
+
+	/**
+	 * Reset counter to zero
+	 *
+	 * @return this counter
+	 */
+	public ConcurrentCounter reset() {
+		final int length = cells.length();
+		for (int i = 0; i < length; i += PADDING)
+			cells.set(i, 0L);
+		return this;
+	}
+
+	public String toString() {
+		return Long.toString(get());
+	}
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2012 Kevin Sawicki <kevinsawicki@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+package org.gitective.core;
+
+import java.util.Arrays;
+
+/**
+ * Compact summary of the content of a blob used to score how similar two
+ * blobs are.
+ * <p>
+ * The content is split into lines of at most 64 bytes, each line is hashed
+ * and the number of bytes seen for each hash is recorded. Two blobs share the
+ * bytes of the lines they have in common.
+ */
+class ContentSimilarity {
+
+	private static final int MAX_LINE = 64;
+
+	/**
+	 * Create similarity summary of the given content
+	 *
+	 * @param content
+	 * @return similarity
+	 */
+	static ContentSimilarity create(final byte[] content) {
+		int[] keys = new int[64];
+		int[] counts = new int[64];
+		int size = 0;
+		int mask = keys.length - 1;
+		boolean[] used = new boolean[keys.length];
+
+		int start = 0;
+		while (start < content.length) {
+			int hash = 5381;
+			int end = start;
+			final int max = Math.min(start + MAX_LINE, content.length);
+			while (end < max) {
+				final int c = content[end++] & 0xff;
+				if (c == '\r' && end < content.length
+						&& content[end] == '\n')
+					continue;
+				hash = (hash << 5) + hash + c;
+				if (c == '\n')
+					break;
+			}
+			final int key = (hash * 0x9e370001) >>> 1;
+			final int length = end - start;
+			start = end;
+
+			int slot = key & mask;
+			while (used[slot] && keys[slot] != key)
+				slot = (slot + 1) & mask;
+			if (used[slot]) {
+				counts[slot] += length;
+				continue;
+			}
+			used[slot] = true;
+			keys[slot] = key;
+			counts[slot] = length;
+			if (++size * 4 > keys.length * 3) {
+				final int[] oldKeys = keys;
+				final int[] oldCounts = counts;
+				final boolean[] oldUsed = used;
+				keys = new int[oldKeys.length * 2];
+				counts = new int[keys.length];
+				used = new boolean[keys.length];
+				mask = keys.length - 1;
+				for (int i = 0; i < oldKeys.length; i++) {
+					if (!oldUsed[i])
+						continue;
+					int newSlot = oldKeys[i] & mask;
+					while (used[newSlot])
+						newSlot = (newSlot + 1) & mask;
+					used[newSlot] = true;
+					keys[newSlot] = oldKeys[i];
+					counts[newSlot] = oldCounts[i];
+				}
+			}
+		}
+
+		final long[] entries = new long[size];
+		int index = 0;
+		for (int i = 0; i < keys.length; i++)
+			if (used[i])
+				entries[index++] = ((long) keys[i] << 32)
+						| (counts[i] & 0xffffffffL);
+		Arrays.sort(entries);
+		return new ContentSimilarity(entries, content.length);
+	}
+
+	private final long[] entries;
+
+	private final long length;
+
+	private ContentSimilarity(final long[] entries, final long length) {
+		this.entries = entries;
+		this.length = length;
+	}
+
+	/**
+	 * Get the length of the content summarized
+	 *
+	 * @return length in bytes
+	 */
+	long getLength() {
+		return length;
+	}
+
+	/**
+	 * Score the similarity of this content with the given content
+	 *
+	 * @param other
+	 * @return score between 0 and 100
+	 */
+	int score(final ContentSimilarity other) {
+		final long max = Math.max(length, other.length);
+		if (max == 0)
+			return 100;
+		final long[] otherEntries = other.entries;
+		long common = 0;
+		int i = 0;
+		int j = 0;
+		while (i < entries.length && j < otherEntries.length) {
+			final long key = entries[i] >>> 32;
+			final long otherKey = otherEntries[j] >>> 32;
+			if (key < otherKey)
+				i++;
+			else if (key > otherKey)
+				j++;
+			else
+				common += Math.min(entries[i++] & 0xffffffffL,
+						otherEntries[j++] & 0xffffffffL);
+		}
+		return (int) (common * 100 / max);
+	}
+}
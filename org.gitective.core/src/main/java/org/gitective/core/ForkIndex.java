@@ -0,0 +1,348 @@
+/*
+ * Copyright (c) 2012 Kevin Sawicki <kevinsawicki@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+package org.gitective.core;
+
+import static org.eclipse.jgit.lib.Constants.CHARACTER_ENCODING;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.ObjectDatabase;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.storage.file.ObjectDirectory;
+
+/**
+ * Index of the commits processed while searching repositories that share an
+ * object store, such as forks that borrow objects from a common repository
+ * through <code>objects/info/alternates</code>.
+ * <p>
+ * Repositories are grouped by the object store at the end of their chain of
+ * alternates. The commit filter of a search runs once for each unique commit
+ * in a group and the result is recorded so that every other repository of the
+ * group that reaches the same commit reuses it without repeating any diff
+ * work. Per repository {@link Fork} aggregates still count every commit
+ * reachable from that repository and list the accepted commits.
+ */
+public class ForkIndex {
+
+	/**
+	 * Commits processed for repositories sharing an object store
+	 */
+	private static class Group {
+
+		final ObjectIdSet processed = new ObjectIdSet();
+
+		final ObjectIdSet accepted = new ObjectIdSet();
+	}
+
+	/**
+	 * Aggregates of the commits reachable from a single repository
+	 */
+	public static class Fork {
+
+		private final Object key;
+
+		private final String store;
+
+		private final Group group;
+
+		private long visited;
+
+		private long shared;
+
+		private final List<ObjectId> accepted = new ArrayList<ObjectId>();
+
+		Fork(final Object key, final String store, final Group group) {
+			this.key = key;
+			this.store = store;
+			this.group = group;
+		}
+
+		/**
+		 * Get Git directory of repository
+		 *
+		 * @return directory or null for repositories not stored in a directory
+		 */
+		public File getDirectory() {
+			return key instanceof File ? (File) key : null;
+		}
+
+		/**
+		 * Get object store shared by this fork
+		 *
+		 * @return canonical object directory path or a description of the
+		 *         repository when it has no object directory
+		 */
+		public String getObjectStore() {
+			return store;
+		}
+
+		/**
+		 * Get number of commits visited in this repository
+		 *
+		 * @return visited count
+		 */
+		public synchronized long getVisited() {
+			return visited;
+		}
+
+		/**
+		 * Get number of visited commits that were already processed for
+		 * another repository sharing the same object store
+		 *
+		 * @return shared count
+		 */
+		public synchronized long getShared() {
+			return shared;
+		}
+
+		/**
+		 * Get number of commits accepted by the commit filter that are
+		 * reachable from this repository
+		 *
+		 * @return accepted count
+		 */
+		public synchronized long getAcceptedCount() {
+			return accepted.size();
+		}
+
+		/**
+		 * Get commits accepted by the commit filter that are reachable from
+		 * this repository
+		 *
+		 * @return non-null but possibly empty list of commit ids
+		 */
+		public synchronized List<ObjectId> getAccepted() {
+			return new ArrayList<ObjectId>(accepted);
+		}
+
+		public String toString() {
+			return key + " visited=" + getVisited() + ", shared="
+					+ getShared() + ", accepted=" + getAcceptedCount();
+		}
+	}
+
+	/**
+	 * Get object store of the given repository at the end of its chain of
+	 * alternates
+	 *
+	 * @param repository
+	 * @return canonical path of object store or null if the repository does
+	 *         not store objects in a directory
+	 */
+	public static String getObjectStore(final Repository repository) {
+		if (repository == null)
+			throw new IllegalArgumentException(
+					Assert.formatNotNull("Repository"));
+
+		final ObjectDatabase database = repository.getObjectDatabase();
+		if (!(database instanceof ObjectDirectory))
+			return null;
+		File directory = ((ObjectDirectory) database).getDirectory();
+		final Set<File> seen = new HashSet<File>();
+		try {
+			directory = directory.getCanonicalFile();
+			while (seen.add(directory)) {
+				final File alternate = getAlternate(directory);
+				if (alternate == null || !alternate.isDirectory())
+					break;
+				directory = alternate.getCanonicalFile();
+			}
+		} catch (IOException e) {
+			throw new GitException(e, repository);
+		}
+		return directory.getPath();
+	}
+
+	private static File getAlternate(final File objects) throws IOException {
+		final File file = new File(objects, "info/alternates");
+		if (!file.isFile())
+			return null;
+		final BufferedReader reader = new BufferedReader(new InputStreamReader(
+				new FileInputStream(file), CHARACTER_ENCODING));
+		try {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				line = line.trim();
+				if (line.length() == 0 || line.charAt(0) == '#')
+					continue;
+				final File alternate = new File(line);
+				return alternate.isAbsolute() ? alternate : new File(objects,
+						line);
+			}
+			return null;
+		} finally {
+			reader.close();
+		}
+	}
+
+	private final Map<String, Group> groups = new LinkedHashMap<String, Group>();
+
+	private final Map<Object, Fork> forks = new LinkedHashMap<Object, Fork>();
+
+	private long unique;
+
+	/**
+	 * Get fork aggregates for the given repository, creating them if the
+	 * repository has not been seen yet
+	 *
+	 * @param repository
+	 * @return fork
+	 */
+	synchronized Fork getOrCreate(final Repository repository) {
+		final File directory = repository.getDirectory();
+		final Object key = directory != null ? directory : repository;
+		Fork fork = forks.get(key);
+		if (fork != null)
+			return fork;
+
+		String store = getObjectStore(repository);
+		if (store == null)
+			store = repository.toString();
+		Group group = groups.get(store);
+		if (group == null) {
+			group = new Group();
+			groups.put(store, group);
+		}
+		fork = new Fork(key, store, group);
+		forks.put(key, fork);
+		return fork;
+	}
+
+	/**
+	 * Get recorded filter result of a commit already processed for a
+	 * repository sharing the fork's object store
+	 *
+	 * @param fork
+	 * @param commit
+	 * @return {@link Boolean#TRUE} if accepted, {@link Boolean#FALSE} if
+	 *         rejected and null if not yet processed
+	 */
+	Boolean getResult(final Fork fork, final AnyObjectId commit) {
+		final boolean processed;
+		final boolean accepted;
+		synchronized (this) {
+			final Group group = fork.group;
+			processed = group.processed.contains(commit);
+			accepted = processed && group.accepted.contains(commit);
+		}
+		if (!processed)
+			return null;
+		synchronized (fork) {
+			fork.visited++;
+			fork.shared++;
+			if (accepted)
+				fork.accepted.add(commit.copy());
+		}
+		return Boolean.valueOf(accepted);
+	}
+
+	/**
+	 * Record filter result of a commit processed for the given fork
+	 *
+	 * @param fork
+	 * @param commit
+	 * @param accepted
+	 */
+	void setResult(final Fork fork, final AnyObjectId commit,
+			final boolean accepted) {
+		synchronized (this) {
+			final Group group = fork.group;
+			if (group.processed.add(commit))
+				unique++;
+			if (accepted)
+				group.accepted.add(commit);
+		}
+		synchronized (fork) {
+			fork.visited++;
+			if (accepted)
+				fork.accepted.add(commit.copy());
+		}
+	}
+
+	/**
+	 * Get aggregates of each repository searched in the order they were
+	 * searched
+	 *
+	 * @return non-null but possibly empty collection of forks
+	 */
+	public synchronized Collection<Fork> getForks() {
+		return Collections.unmodifiableCollection(new ArrayList<Fork>(forks
+				.values()));
+	}
+
+	/**
+	 * Get aggregates of the given repository
+	 *
+	 * @param repository
+	 * @return fork or null if the repository has not been searched
+	 */
+	public synchronized Fork getFork(final Repository repository) {
+		if (repository == null)
+			return null;
+		final File directory = repository.getDirectory();
+		return forks.get(directory != null ? directory : repository);
+	}
+
+	/**
+	 * Get number of distinct object stores searched
+	 *
+	 * @return group count
+	 */
+	public synchronized int getObjectStoreCount() {
+		return groups.size();
+	}
+
+	/**
+	 * Get number of unique commits passed to the commit filter
+	 *
+	 * @return unique commit count
+	 */
+	public synchronized long getUniqueCommits() {
+		return unique;
+	}
+
+	/**
+	 * Clear all processed commits and aggregates
+	 *
+	 * @return this index
+	 */
+	public synchronized ForkIndex reset() {
+		groups.clear();
+		forks.clear();
+		unique = 0;
+		return this;
+	}
+}
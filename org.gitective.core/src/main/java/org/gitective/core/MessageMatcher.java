@@ -0,0 +1,422 @@
+/*
+ * Copyright (c) 2012 Kevin Sawicki <kevinsawicki@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+package org.gitective.core;
+
+import static java.util.regex.Pattern.CASE_INSENSITIVE;
+import static java.util.regex.Pattern.DOTALL;
+import static java.util.regex.Pattern.LITERAL;
+import static java.util.regex.Pattern.MULTILINE;
+import static java.util.regex.Pattern.UNIX_LINES;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.util.RawParseUtils;
+
+/**
+ * Matcher of many patterns against a commit's full message in a single pass.
+ * <p>
+ * Literal patterns, including regular expressions that only match a literal
+ * such as those created by {@link Pattern#quote(String)}, are compiled into an
+ * Aho-Corasick automaton that scans the raw bytes of the message once without
+ * decoding it. The remaining regular expressions all run against a single
+ * decoded copy of the message.
+ * <p>
+ * Instances are not thread-safe, use {@link #copy()} to get a matcher for
+ * another thread.
+ */
+public class MessageMatcher {
+
+	/**
+	 * Flags that do not change what a regular expression without any
+	 * metacharacters matches
+	 */
+	private static final int LITERAL_FLAGS = MULTILINE | DOTALL | UNIX_LINES
+			| LITERAL;
+
+	private static final String METACHARACTERS = "\\^$.|?*+()[]{}";
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	/**
+	 * Get the literal text matched by the given regular expression
+	 *
+	 * @param pattern
+	 * @param flags
+	 * @return literal or null if the pattern is not a literal
+	 */
+	static String toLiteral(final String pattern, final int flags) {
+		if ((flags & ~LITERAL_FLAGS) != 0)
+			return null;
+		if ((flags & LITERAL) != 0)
+			return pattern;
+		if (pattern.length() > 4 && pattern.startsWith("\\Q")
+				&& pattern.endsWith("\\E")) {
+			final String quoted = pattern.substring(2, pattern.length() - 2);
+			return quoted.indexOf("\\E") == -1 ? quoted : null;
+		}
+		for (int i = 0; i < pattern.length(); i++)
+			if (METACHARACTERS.indexOf(pattern.charAt(i)) != -1)
+				return null;
+		return pattern;
+	}
+
+	/**
+	 * Aho-Corasick automaton over bytes with the failure transitions folded
+	 * into a complete transition table
+	 */
+	private static class Automaton {
+
+		private final int[] next;
+
+		private final int[][] outputs;
+
+		private final boolean ascii;
+
+		private final int count;
+
+		Automaton(final List<byte[]> literals, final int[] indexes) {
+			int capacity = 1;
+			boolean allAscii = true;
+			for (byte[] literal : literals) {
+				capacity += literal.length;
+				for (byte b : literal)
+					if (b < 0)
+						allAscii = false;
+			}
+			ascii = allAscii;
+			count = literals.size();
+
+			final int[] table = new int[capacity << 8];
+			final int[][] found = new int[capacity][];
+			int states = 1;
+			for (int i = 0; i < literals.size(); i++) {
+				int state = 0;
+				for (byte b : literals.get(i)) {
+					final int slot = (state << 8) | (b & 0xFF);
+					if (table[slot] == 0)
+						table[slot] = states++;
+					state = table[slot];
+				}
+				found[state] = append(found[state], indexes[i]);
+			}
+
+			final int[] fail = new int[states];
+			final int[] queue = new int[states];
+			int head = 0;
+			int tail = 0;
+			for (int b = 0; b < 256; b++)
+				if (table[b] != 0)
+					queue[tail++] = table[b];
+			while (head < tail) {
+				final int state = queue[head++];
+				final int base = state << 8;
+				final int failBase = fail[state] << 8;
+				for (int b = 0; b < 256; b++) {
+					final int child = table[base | b];
+					if (child != 0) {
+						fail[child] = table[failBase | b];
+						found[child] = merge(found[child],
+								found[fail[child]]);
+						queue[tail++] = child;
+					} else
+						table[base | b] = table[failBase | b];
+				}
+			}
+
+			next = new int[states << 8];
+			System.arraycopy(table, 0, next, 0, next.length);
+			outputs = new int[states][];
+			System.arraycopy(found, 0, outputs, 0, states);
+		}
+
+		private static int[] append(final int[] indexes, final int index) {
+			if (indexes == null)
+				return new int[] { index };
+			final int[] appended = new int[indexes.length + 1];
+			System.arraycopy(indexes, 0, appended, 0, indexes.length);
+			appended[indexes.length] = index;
+			return appended;
+		}
+
+		private static int[] merge(final int[] own, final int[] inherited) {
+			if (inherited == null)
+				return own;
+			if (own == null)
+				return inherited;
+			final int[] merged = new int[own.length + inherited.length];
+			System.arraycopy(own, 0, merged, 0, own.length);
+			System.arraycopy(inherited, 0, merged, own.length,
+					inherited.length);
+			return merged;
+		}
+
+		/**
+		 * Scan buffer and set the index of each literal found
+		 *
+		 * @param buffer
+		 * @param start
+		 * @param end
+		 * @param matched
+		 */
+		void scan(final byte[] buffer, final int start, final int end,
+				final BitSet matched) {
+			final int[] next = this.next;
+			final int[][] outputs = this.outputs;
+			int remaining = count;
+			int state = 0;
+			for (int i = start; i < end; i++) {
+				state = next[(state << 8) | (buffer[i] & 0xFF)];
+				final int[] found = outputs[state];
+				if (found != null)
+					for (int index : found)
+						if (!matched.get(index)) {
+							matched.set(index);
+							if (--remaining == 0)
+								return;
+						}
+			}
+		}
+	}
+
+	private final List<String> patterns;
+
+	private final List<String> literals;
+
+	private final List<Integer> flags;
+
+	private Automaton automaton;
+
+	private Matcher[] matchers;
+
+	private int[] matcherIndexes;
+
+	/**
+	 * Create matcher with no patterns
+	 */
+	public MessageMatcher() {
+		patterns = new ArrayList<String>();
+		literals = new ArrayList<String>();
+		flags = new ArrayList<Integer>();
+	}
+
+	private MessageMatcher(final MessageMatcher matcher) {
+		patterns = new ArrayList<String>(matcher.patterns);
+		literals = new ArrayList<String>(matcher.literals);
+		flags = new ArrayList<Integer>(matcher.flags);
+		if (matcher.matchers != null) {
+			automaton = matcher.automaton;
+			matcherIndexes = matcher.matcherIndexes;
+			matchers = new Matcher[matcher.matchers.length];
+			for (int i = 0; i < matchers.length; i++)
+				matchers[i] = matcher.matchers[i].pattern().matcher("");
+		}
+	}
+
+	private MessageMatcher add(final String pattern, final String literal,
+			final int patternFlags) {
+		patterns.add(pattern);
+		literals.add(literal);
+		flags.add(Integer.valueOf(patternFlags));
+		automaton = null;
+		matchers = null;
+		matcherIndexes = null;
+		return this;
+	}
+
+	/**
+	 * Add literal text to find in commit messages
+	 *
+	 * @param literal
+	 * @return this matcher
+	 */
+	public MessageMatcher addLiteral(final String literal) {
+		if (literal == null)
+			throw new IllegalArgumentException(Assert.formatNotNull("Literal"));
+		if (literal.length() == 0)
+			throw new IllegalArgumentException(Assert.formatNotEmpty("Literal"));
+
+		return add(literal, literal, LITERAL);
+	}
+
+	/**
+	 * Add regular expression to find in commit messages
+	 *
+	 * @param pattern
+	 * @return this matcher
+	 */
+	public MessageMatcher addPattern(final String pattern) {
+		return addPattern(pattern, 0);
+	}
+
+	/**
+	 * Add regular expression to find in commit messages
+	 *
+	 * @param pattern
+	 * @param flags
+	 * @return this matcher
+	 */
+	public MessageMatcher addPattern(final String pattern, final int flags) {
+		if (pattern == null)
+			throw new IllegalArgumentException(Assert.formatNotNull("Pattern"));
+		if (pattern.length() == 0)
+			throw new IllegalArgumentException(Assert.formatNotEmpty("Pattern"));
+
+		final String literal = toLiteral(pattern, flags);
+		if (literal == null || literal.length() == 0)
+			Pattern.compile(pattern, flags);
+		return add(pattern, literal != null && literal.length() > 0 ? literal
+				: null, flags);
+	}
+
+	/**
+	 * Get number of patterns added
+	 *
+	 * @return pattern count
+	 */
+	public int getPatternCount() {
+		return patterns.size();
+	}
+
+	/**
+	 * Get pattern at index
+	 *
+	 * @param index
+	 * @return pattern
+	 */
+	public String getPattern(final int index) {
+		return patterns.get(index);
+	}
+
+	/**
+	 * Is the pattern at index found by the literal automaton instead of a
+	 * regular expression?
+	 *
+	 * @param index
+	 * @return true if literal, false otherwise
+	 */
+	public boolean isLiteral(final int index) {
+		return literals.get(index) != null;
+	}
+
+	private void compile() {
+		final List<byte[]> bytes = new ArrayList<byte[]>();
+		final List<Integer> literalIndexes = new ArrayList<Integer>();
+		final List<Matcher> regexes = new ArrayList<Matcher>();
+		final List<Integer> regexIndexes = new ArrayList<Integer>();
+		for (int i = 0; i < patterns.size(); i++) {
+			final String literal = literals.get(i);
+			if (literal != null) {
+				bytes.add(Constants.encode(literal));
+				literalIndexes.add(Integer.valueOf(i));
+			} else {
+				regexes.add(Pattern.compile(patterns.get(i),
+						flags.get(i).intValue()).matcher(""));
+				regexIndexes.add(Integer.valueOf(i));
+			}
+		}
+		if (!bytes.isEmpty())
+			automaton = new Automaton(bytes, toArray(literalIndexes));
+		matchers = regexes.toArray(new Matcher[regexes.size()]);
+		matcherIndexes = toArray(regexIndexes);
+	}
+
+	private static int[] toArray(final List<Integer> values) {
+		final int[] array = new int[values.size()];
+		for (int i = 0; i < array.length; i++)
+			array[i] = values.get(i).intValue();
+		return array;
+	}
+
+	/**
+	 * Find all patterns in the full message of the given commit
+	 * <p>
+	 * The given set is cleared and then has the index of each pattern found
+	 * set.
+	 *
+	 * @param commit
+	 * @param matched
+	 * @return number of patterns found
+	 */
+	public int match(final RevCommit commit, final BitSet matched) {
+		if (commit == null)
+			throw new IllegalArgumentException(Assert.formatNotNull("Commit"));
+		if (matched == null)
+			throw new IllegalArgumentException(
+					Assert.formatNotNull("Matched set"));
+
+		matched.clear();
+		if (matchers == null)
+			compile();
+
+		final byte[] raw = commit.getRawBuffer();
+		int start = RawParseUtils.commitMessage(raw, 0);
+		if (start < 0)
+			start = raw.length;
+		Charset encoding = null;
+		String message = null;
+
+		if (automaton != null) {
+			if (!automaton.ascii)
+				encoding = RawParseUtils.parseEncoding(raw);
+			if (automaton.ascii || UTF_8.equals(encoding))
+				automaton.scan(raw, start, raw.length, matched);
+			else {
+				message = RawParseUtils.decode(encoding, raw, start,
+						raw.length);
+				for (int i = 0; i < literals.size(); i++) {
+					final String literal = literals.get(i);
+					if (literal != null && message.indexOf(literal) != -1)
+						matched.set(i);
+				}
+			}
+		}
+
+		if (matchers.length > 0) {
+			if (message == null) {
+				if (encoding == null)
+					encoding = RawParseUtils.parseEncoding(raw);
+				message = RawParseUtils.decode(encoding, raw, start,
+						raw.length);
+			}
+			for (int i = 0; i < matchers.length; i++)
+				if (matchers[i].reset(message).find())
+					matched.set(matcherIndexes[i]);
+		}
+		return matched.cardinality();
+	}
+
+	/**
+	 * Create a copy of this matcher that shares the compiled automaton
+	 *
+	 * @return matcher
+	 */
+	public MessageMatcher copy() {
+		return new MessageMatcher(this);
+	}
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2012 Kevin Sawicki <kevinsawicki@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+package org.gitective.core;
+
+import org.eclipse.jgit.lib.AnyObjectId;
+
+/**
+ * Compact open addressing set of object ids.
+ * <p>
+ * Each id is stored as five packed integers in a single array so that a
+ * member costs a few dozen bytes instead of a full object per entry.
+ */
+class ObjectIdSet {
+
+	private static final int WORDS = 5;
+
+	private static final int INITIAL_CAPACITY = 1024;
+
+	private final int[] words = new int[WORDS];
+
+	private int[] table;
+
+	private long[] used;
+
+	private int mask;
+
+	private int size;
+
+	/**
+	 * Create empty set
+	 */
+	ObjectIdSet() {
+		allocate(INITIAL_CAPACITY);
+	}
+
+	private void allocate(final int capacity) {
+		table = new int[capacity * WORDS];
+		used = new long[(capacity + 63) >>> 6];
+		mask = capacity - 1;
+	}
+
+	private boolean isUsed(final int slot) {
+		return (used[slot >>> 6] & (1L << slot)) != 0;
+	}
+
+	private boolean matches(final int slot, final int[] id) {
+		final int offset = slot * WORDS;
+		for (int i = 0; i < WORDS; i++)
+			if (table[offset + i] != id[i])
+				return false;
+		return true;
+	}
+
+	private int find(final int[] id) {
+		int slot = id[1] & mask;
+		while (isUsed(slot) && !matches(slot, id))
+			slot = (slot + 1) & mask;
+		return slot;
+	}
+
+	private void insert(final int slot, final int[] id) {
+		System.arraycopy(id, 0, table, slot * WORDS, WORDS);
+		used[slot >>> 6] |= 1L << slot;
+	}
+
+	private void grow() {
+		final int[] oldTable = table;
+		final long[] oldUsed = used;
+		final int oldCapacity = mask + 1;
+		allocate(oldCapacity << 1);
+		final int[] id = new int[WORDS];
+		for (int slot = 0; slot < oldCapacity; slot++)
+			if ((oldUsed[slot >>> 6] & (1L << slot)) != 0) {
+				System.arraycopy(oldTable, slot * WORDS, id, 0, WORDS);
+				insert(find(id), id);
+			}
+	}
+
+	/**
+	 * Add id to set
+	 *
+	 * @param id
+	 * @return true if added, false if already present
+	 */
+	boolean add(final AnyObjectId id) {
+		id.copyRawTo(words, 0);
+		final int slot = find(words);
+		if (isUsed(slot))
+			return false;
+		insert(slot, words);
+		if (++size * 4 > (mask + 1) * 3)
+			grow();
+		return true;
+	}
+
+	/**
+	 * Is id in set?
+	 *
+	 * @param id
+	 * @return true if present, false otherwise
+	 */
+	boolean contains(final AnyObjectId id) {
+		id.copyRawTo(words, 0);
+		return isUsed(find(words));
+	}
+
+	/**
+	 * @return number of ids in set
+	 */
+	int size() {
+		return size;
+	}
+}
@@ -0,0 +1,246 @@
+/*
+ * Copyright (c) 2012 Kevin Sawicki <kevinsawicki@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+package org.gitective.core;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.storage.file.PackIndex;
+import org.eclipse.jgit.storage.file.PackIndex.MutableEntry;
+import org.eclipse.jgit.util.IO;
+import org.eclipse.jgit.util.NB;
+
+/**
+ * Reader of the version 1 reachability bitmap file written by
+ * <code>git repack -b</code> next to a pack file.
+ * <p>
+ * Each bitmap has one bit per object in the pack ordered by the offset of the
+ * object in the pack file. Bitmaps are stored compressed using EWAH and may be
+ * stored as the exclusive or of a previous bitmap in the file.
+ */
+class PackBitmapIndex {
+
+	private static final byte[] MAGIC = { 'B', 'I', 'T', 'M' };
+
+	private static final int VERSION = 1;
+
+	private static final int HEADER_LENGTH = 32;
+
+	private static final int CACHE_SIZE = 16;
+
+	/**
+	 * Open the bitmap index for the given pack file
+	 *
+	 * @param pack
+	 * @return index or null if the pack has no readable bitmap
+	 * @throws IOException
+	 */
+	static PackBitmapIndex open(final File pack) throws IOException {
+		final String path = pack.getPath();
+		if (!path.endsWith(".pack"))
+			return null;
+		final String base = path.substring(0, path.length() - 5);
+		final File bitmap = new File(base + ".bitmap");
+		final File idx = new File(base + ".idx");
+		if (!bitmap.isFile() || !idx.isFile())
+			return null;
+
+		final byte[] data = IO.readFully(bitmap);
+		if (data.length < HEADER_LENGTH)
+			return null;
+		for (int i = 0; i < MAGIC.length; i++)
+			if (data[i] != MAGIC[i])
+				return null;
+		if (NB.decodeUInt16(data, 4) != VERSION)
+			return null;
+		final byte[] checksum = new byte[20];
+		final RandomAccessFile packFile = new RandomAccessFile(pack, "r");
+		try {
+			packFile.seek(packFile.length() - checksum.length);
+			packFile.readFully(checksum);
+		} finally {
+			packFile.close();
+		}
+		for (int i = 0; i < checksum.length; i++)
+			if (data[12 + i] != checksum[i])
+				return null;
+
+		final FileInputStream input = new FileInputStream(idx);
+		try {
+			return new PackBitmapIndex(PackIndex.read(input), data);
+		} finally {
+			input.close();
+		}
+	}
+
+	private final PackIndex index;
+
+	private final byte[] data;
+
+	private final int words;
+
+	private final long[] commits;
+
+	private final Map<ObjectId, Integer> entries;
+
+	private final int[] entryOffsets;
+
+	private final int[] entryXors;
+
+	private final Map<Integer, long[]> cache = new LinkedHashMap<Integer, long[]>(
+			CACHE_SIZE, 0.75F, true) {
+
+		private static final long serialVersionUID = 4651204539447541556L;
+
+		protected boolean removeEldestEntry(final Entry<Integer, long[]> eldest) {
+			return size() > CACHE_SIZE;
+		}
+	};
+
+	private long[] sortedOffsets;
+
+	private PackBitmapIndex(final PackIndex index, final byte[] data) {
+		this.index = index;
+		this.data = data;
+		words = (int) ((index.getObjectCount() + 63) >>> 6);
+
+		int offset = HEADER_LENGTH;
+		commits = decode(offset);
+		// Skip commit, tree, blob and tag type bitmaps
+		for (int i = 0; i < 4; i++)
+			offset = skip(offset);
+
+		final int count = (int) NB.decodeUInt32(data, 8);
+		entries = new HashMap<ObjectId, Integer>(count * 2);
+		entryOffsets = new int[count];
+		entryXors = new int[count];
+		for (int i = 0; i < count; i++) {
+			final long position = NB.decodeUInt32(data, offset);
+			entryXors[i] = data[offset + 4] & 0xFF;
+			entryOffsets[i] = offset + 6;
+			entries.put(index.getObjectId(position), Integer.valueOf(i));
+			offset = skip(offset + 6);
+		}
+	}
+
+	private int skip(final int offset) {
+		final int length = (int) NB.decodeUInt32(data, offset + 4);
+		return offset + 8 + length * 8 + 4;
+	}
+
+	private long[] decode(final int offset) {
+		final long[] bits = new long[words];
+		final int length = (int) NB.decodeUInt32(data, offset + 4);
+		int position = offset + 8;
+		final int end = position + length * 8;
+		int word = 0;
+		while (position < end) {
+			final long marker = NB.decodeUInt64(data, position);
+			position += 8;
+			final long run = (marker >>> 1) & 0xFFFFFFFFL;
+			final long literals = marker >>> 33;
+			if ((marker & 1) != 0)
+				Arrays.fill(bits, word, (int) Math.min(words, word + run), -1L);
+			word += run;
+			for (long i = 0; i < literals; i++) {
+				if (word < words)
+					bits[word] = NB.decodeUInt64(data, position);
+				word++;
+				position += 8;
+			}
+		}
+		return bits;
+	}
+
+	private long[] resolve(final int entry) {
+		final Integer key = Integer.valueOf(entry);
+		long[] bits = cache.get(key);
+		if (bits != null)
+			return bits;
+
+		bits = decode(entryOffsets[entry]);
+		final int xor = entryXors[entry];
+		if (xor > 0) {
+			final long[] base = resolve(entry - xor);
+			for (int i = 0; i < words; i++)
+				bits[i] ^= base[i];
+		}
+		cache.put(key, bits);
+		return bits;
+	}
+
+	/**
+	 * @return number of words in each bitmap
+	 */
+	int getWordCount() {
+		return words;
+	}
+
+	/**
+	 * @return bitmap of commit objects in the pack
+	 */
+	long[] getCommits() {
+		return commits;
+	}
+
+	/**
+	 * Get reachability bitmap of given commit
+	 *
+	 * @param commit
+	 * @return bitmap or null if commit has no bitmap
+	 */
+	long[] getBitmap(final AnyObjectId commit) {
+		final Integer entry = entries.get(commit);
+		return entry != null ? resolve(entry.intValue()) : null;
+	}
+
+	/**
+	 * Get the position of the given object in pack order
+	 *
+	 * @param id
+	 * @return position or -1 if not in pack
+	 */
+	int findPosition(final AnyObjectId id) {
+		final long offset = index.findOffset(id);
+		if (offset == -1)
+			return -1;
+		if (sortedOffsets == null) {
+			final long[] offsets = new long[(int) index.getObjectCount()];
+			final Iterator<MutableEntry> iterator = index.iterator();
+			for (int i = 0; iterator.hasNext(); i++)
+				offsets[i] = iterator.next().getOffset();
+			Arrays.sort(offsets);
+			sortedOffsets = offsets;
+		}
+		return Arrays.binarySearch(sortedOffsets, offset);
+	}
+}
@@ -0,0 +1,300 @@
+/*
+ * Copyright (c) 2012 Kevin Sawicki <kevinsawicki@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+package org.gitective.core;
+
+import static org.eclipse.jgit.storage.file.WindowCacheConfig.KB;
+import static org.eclipse.jgit.storage.file.WindowCacheConfig.MB;
+
+import org.eclipse.jgit.storage.file.WindowCache;
+import org.eclipse.jgit.storage.file.WindowCacheConfig;
+
+/**
+ * Configuration of the JGit caches used when reading objects from the pack
+ * files of repositories opened from disk.
+ * <p>
+ * The window cache and delta base cache are shared by every file repository
+ * in the process so {@link #apply()} affects all repositories and not just
+ * the ones of a single {@link RepositoryService}.
+ * <p>
+ * The presets returned from {@link #fullHistoryScan()} and
+ * {@link #smallLookups()} size the caches relative to the maximum heap of the
+ * running JVM.
+ */
+public class PackCacheConfig {
+
+	private static volatile PackCacheConfig active = new PackCacheConfig();
+
+	/**
+	 * Get configuration most recently applied through {@link #apply()}
+	 *
+	 * @return configuration, JGit defaults if none applied
+	 */
+	public static PackCacheConfig getActive() {
+		return active;
+	}
+
+	private static long fraction(final long divisor, final long min,
+			final long max) {
+		final long heap = Runtime.getRuntime().maxMemory();
+		return Math.max(min, Math.min(max, heap / divisor));
+	}
+
+	/**
+	 * Create configuration for walks that visit all the commits, trees and
+	 * blobs of large repositories.
+	 * <p>
+	 * Uses large memory mapped windows, a quarter of the heap for pack data and
+	 * a large delta base cache so that long delta chains are resolved from
+	 * memory.
+	 *
+	 * @return configuration
+	 */
+	public static PackCacheConfig fullHistoryScan() {
+		return new PackCacheConfig()
+				.setWindowCacheLimit(fraction(4, 32 * MB, 1024 * MB))
+				.setWindowSize(256 * KB).setMemoryMapped(true)
+				.setOpenFiles(256)
+				.setDeltaBaseCacheLimit((int) fraction(16, 10 * MB, 256 * MB));
+	}
+
+	/**
+	 * Create configuration for many small reads of single objects across many
+	 * repositories such as resolving refs and loading individual blobs.
+	 * <p>
+	 * Uses small windows so that little data is read for each object, a larger
+	 * number of open pack files and a moderate cache size.
+	 *
+	 * @return configuration
+	 */
+	public static PackCacheConfig smallLookups() {
+		return new PackCacheConfig()
+				.setWindowCacheLimit(fraction(8, 16 * MB, 128 * MB))
+				.setWindowSize(8 * KB).setMemoryMapped(false)
+				.setOpenFiles(512)
+				.setDeltaBaseCacheLimit((int) fraction(32, 10 * MB, 32 * MB));
+	}
+
+	private long windowCacheLimit;
+
+	private int windowSize;
+
+	private int openFiles;
+
+	private boolean memoryMapped;
+
+	private int deltaBaseCacheLimit;
+
+	private int streamFileThreshold;
+
+	/**
+	 * Create configuration with the JGit defaults
+	 */
+	public PackCacheConfig() {
+		final WindowCacheConfig defaults = new WindowCacheConfig();
+		windowCacheLimit = defaults.getPackedGitLimit();
+		windowSize = defaults.getPackedGitWindowSize();
+		openFiles = defaults.getPackedGitOpenFiles();
+		memoryMapped = defaults.isPackedGitMMAP();
+		deltaBaseCacheLimit = defaults.getDeltaBaseCacheLimit();
+		streamFileThreshold = (int) Math.min(
+				defaults.getStreamFileThreshold(), Runtime.getRuntime()
+						.maxMemory() / 4);
+	}
+
+	/**
+	 * Set maximum number of bytes of pack data held in the window cache
+	 *
+	 * @param limit
+	 * @return this configuration
+	 */
+	public PackCacheConfig setWindowCacheLimit(final long limit) {
+		if (limit < 1)
+			throw new IllegalArgumentException(
+					"Window cache limit must be greater than zero");
+		windowCacheLimit = limit;
+		return this;
+	}
+
+	/**
+	 * Get maximum number of bytes of pack data held in the window cache
+	 *
+	 * @return limit
+	 */
+	public long getWindowCacheLimit() {
+		return windowCacheLimit;
+	}
+
+	/**
+	 * Set number of bytes read from a pack file into a single window
+	 * <p>
+	 * JGit rounds the size up to the next power of two.
+	 *
+	 * @param size
+	 * @return this configuration
+	 */
+	public PackCacheConfig setWindowSize(final int size) {
+		if (size < 1)
+			throw new IllegalArgumentException(
+					"Window size must be greater than zero");
+		windowSize = size;
+		return this;
+	}
+
+	/**
+	 * Get number of bytes read from a pack file into a single window
+	 *
+	 * @return size
+	 */
+	public int getWindowSize() {
+		return windowSize;
+	}
+
+	/**
+	 * Set maximum number of pack files open at once
+	 *
+	 * @param files
+	 * @return this configuration
+	 */
+	public PackCacheConfig setOpenFiles(final int files) {
+		if (files < 1)
+			throw new IllegalArgumentException(
+					"Open files must be greater than zero");
+		openFiles = files;
+		return this;
+	}
+
+	/**
+	 * Get maximum number of pack files open at once
+	 *
+	 * @return files
+	 */
+	public int getOpenFiles() {
+		return openFiles;
+	}
+
+	/**
+	 * Set whether windows are memory mapped instead of read onto the heap
+	 *
+	 * @param memoryMapped
+	 * @return this configuration
+	 */
+	public PackCacheConfig setMemoryMapped(final boolean memoryMapped) {
+		this.memoryMapped = memoryMapped;
+		return this;
+	}
+
+	/**
+	 * Are windows memory mapped instead of read onto the heap?
+	 *
+	 * @return true if memory mapped, false otherwise
+	 */
+	public boolean isMemoryMapped() {
+		return memoryMapped;
+	}
+
+	/**
+	 * Set maximum number of bytes held in the cache of inflated delta bases
+	 *
+	 * @param limit
+	 * @return this configuration
+	 */
+	public PackCacheConfig setDeltaBaseCacheLimit(final int limit) {
+		if (limit < 0)
+			throw new IllegalArgumentException(
+					"Delta base cache limit cannot be negative");
+		deltaBaseCacheLimit = limit;
+		return this;
+	}
+
+	/**
+	 * Get maximum number of bytes held in the cache of inflated delta bases
+	 *
+	 * @return limit
+	 */
+	public int getDeltaBaseCacheLimit() {
+		return deltaBaseCacheLimit;
+	}
+
+	/**
+	 * Set size above which objects are streamed instead of loaded into a
+	 * single byte array
+	 *
+	 * @param threshold
+	 * @return this configuration
+	 */
+	public PackCacheConfig setStreamFileThreshold(final int threshold) {
+		if (threshold < 1)
+			throw new IllegalArgumentException(
+					"Stream file threshold must be greater than zero");
+		streamFileThreshold = threshold;
+		return this;
+	}
+
+	/**
+	 * Get size above which objects are streamed instead of loaded into a
+	 * single byte array
+	 *
+	 * @return threshold
+	 */
+	public int getStreamFileThreshold() {
+		return streamFileThreshold;
+	}
+
+	/**
+	 * Create JGit window cache configuration from this configuration
+	 *
+	 * @return window cache configuration
+	 */
+	public WindowCacheConfig toWindowCacheConfig() {
+		final WindowCacheConfig config = new WindowCacheConfig();
+		config.setPackedGitLimit(windowCacheLimit);
+		config.setPackedGitWindowSize(windowSize);
+		config.setPackedGitOpenFiles(openFiles);
+		config.setPackedGitMMAP(memoryMapped);
+		config.setDeltaBaseCacheLimit(deltaBaseCacheLimit);
+		config.setStreamFileThreshold(streamFileThreshold);
+		return config;
+	}
+
+	/**
+	 * Apply this configuration to the process-wide JGit caches
+	 * <p>
+	 * All cached pack data is discarded.
+	 *
+	 * @return this configuration
+	 */
+	public PackCacheConfig apply() {
+		if (windowSize > windowCacheLimit)
+			throw new IllegalArgumentException(
+					"Window size cannot be larger than window cache limit");
+		WindowCache.reconfigure(toWindowCacheConfig());
+		active = this;
+		return this;
+	}
+
+	public String toString() {
+		return "limit=" + windowCacheLimit + ", window=" + windowSize
+				+ ", files=" + openFiles + ", mmap=" + memoryMapped
+				+ ", deltaBase=" + deltaBaseCacheLimit + ", streamThreshold="
+				+ streamFileThreshold;
+	}
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright (c) 2012 Kevin Sawicki <kevinsawicki@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+package org.gitective.core;
+
+import java.lang.reflect.Method;
+
+import org.eclipse.jgit.storage.file.WindowCache;
+
+/**
+ * Snapshot of the occupancy of the process-wide JGit window cache.
+ * <p>
+ * JGit does not count window cache hits and misses so occupancy is the
+ * closest available measure of how well pack data fits in the cache. A cache
+ * that is at its byte limit after a walk is evicting windows that are likely
+ * to be read again and a larger {@link PackCacheConfig#getWindowCacheLimit()}
+ * or window size will reduce the amount of pack data read from disk.
+ * <p>
+ * The occupancy is read from methods that are not part of the public JGit API
+ * and is reported as -1 when it is not available in the JGit version in use.
+ */
+public class PackCacheStatistics {
+
+	private static final Method GET_INSTANCE;
+
+	private static final Method GET_OPEN_FILES;
+
+	private static final Method GET_OPEN_BYTES;
+
+	static {
+		Method instance = null;
+		Method files = null;
+		Method bytes = null;
+		try {
+			instance = WindowCache.class.getDeclaredMethod("getInstance");
+			files = WindowCache.class.getDeclaredMethod("getOpenFiles");
+			bytes = WindowCache.class.getDeclaredMethod("getOpenBytes");
+			instance.setAccessible(true);
+			files.setAccessible(true);
+			bytes.setAccessible(true);
+		} catch (Exception e) {
+			instance = null;
+		}
+		GET_INSTANCE = instance;
+		GET_OPEN_FILES = files;
+		GET_OPEN_BYTES = bytes;
+	}
+
+	/**
+	 * Capture current occupancy of the window cache
+	 *
+	 * @return statistics
+	 */
+	public static PackCacheStatistics snapshot() {
+		long files = -1;
+		long bytes = -1;
+		if (GET_INSTANCE != null)
+			try {
+				final Object cache = GET_INSTANCE.invoke(null);
+				files = ((Number) GET_OPEN_FILES.invoke(cache)).longValue();
+				bytes = ((Number) GET_OPEN_BYTES.invoke(cache)).longValue();
+			} catch (Exception e) {
+				files = -1;
+				bytes = -1;
+			}
+		return new PackCacheStatistics(PackCacheConfig.getActive(), files,
+				bytes);
+	}
+
+	private final PackCacheConfig config;
+
+	private final long openFiles;
+
+	private final long openBytes;
+
+	private PackCacheStatistics(final PackCacheConfig config,
+			final long openFiles, final long openBytes) {
+		this.config = config;
+		this.openFiles = openFiles;
+		this.openBytes = openBytes;
+	}
+
+	/**
+	 * Get configuration in effect when these statistics were captured
+	 *
+	 * @return configuration
+	 */
+	public PackCacheConfig getConfig() {
+		return config;
+	}
+
+	/**
+	 * Get number of pack files open
+	 *
+	 * @return open files or -1 if unavailable
+	 */
+	public long getOpenFiles() {
+		return openFiles;
+	}
+
+	/**
+	 * Get number of bytes of pack data held in cached windows
+	 *
+	 * @return open bytes or -1 if unavailable
+	 */
+	public long getOpenBytes() {
+		return openBytes;
+	}
+
+	/**
+	 * Get fraction of the window cache limit in use
+	 *
+	 * @return fraction or -1 if unavailable
+	 */
+	public double getUtilization() {
+		if (openBytes < 0)
+			return -1;
+		return openBytes / (double) config.getWindowCacheLimit();
+	}
+
+	/**
+	 * Is the window cache at its byte or open file limit?
+	 *
+	 * @return true if saturated, false if not or if unavailable
+	 */
+	public boolean isSaturated() {
+		if (openBytes < 0)
+			return false;
+		return openBytes + config.getWindowSize() > config
+				.getWindowCacheLimit()
+				|| openFiles >= config.getOpenFiles();
+	}
+
+	public String toString() {
+		final StringBuilder report = new StringBuilder();
+		report.append("window cache: ");
+		if (openBytes < 0)
+			report.append("unavailable");
+		else
+			report.append(openBytes / 1024).append(" KiB of ")
+					.append(config.getWindowCacheLimit() / 1024)
+					.append(" KiB (")
+					.append(Math.round(getUtilization() * 100))
+					.append("%), ").append(openFiles).append(" of ")
+					.append(config.getOpenFiles()).append(" files");
+		if (isSaturated())
+			report.append(", saturated");
+		return report.toString();
+	}
+}
@@ -0,0 +1,295 @@
+/*
+ * Copyright (c) 2012 Kevin Sawicki <kevinsawicki@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+package org.gitective.core;
+
+import static org.eclipse.jgit.lib.Constants.R_HEADS;
+import static org.eclipse.jgit.lib.Constants.R_TAGS;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.jgit.lib.ObjectDatabase;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevFlag;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.storage.file.ObjectDirectory;
+import org.eclipse.jgit.storage.file.PackFile;
+
+/**
+ * Class for counting the commits reachable from one or more commits.
+ * <p>
+ * When a pack in the repository has a reachability bitmap written by
+ * <code>git repack -b</code> the counts are computed from the bitmaps and only
+ * the commits outside of that pack or without a bitmap are walked. Otherwise
+ * every reachable commit is walked.
+ */
+public class ReachabilityCounter {
+
+	/**
+	 * Commits reachable from a set of start commits
+	 */
+	private static class Reach {
+
+		final long[] bits;
+
+		final Set<ObjectId> unpacked = new HashSet<ObjectId>();
+
+		Reach(final int words) {
+			bits = new long[words];
+		}
+	}
+
+	private final Repository repository;
+
+	private PackBitmapIndex bitmaps;
+
+	private boolean loaded;
+
+	/**
+	 * Create counter for repository
+	 *
+	 * @param repository
+	 *            must be non-null
+	 */
+	public ReachabilityCounter(final Repository repository) {
+		if (repository == null)
+			throw new IllegalArgumentException(
+					Assert.formatNotNull("Repository"));
+
+		this.repository = repository;
+	}
+
+	private PackBitmapIndex getBitmaps() throws IOException {
+		if (!loaded) {
+			loaded = true;
+			final ObjectDatabase database = repository.getObjectDatabase();
+			if (database instanceof ObjectDirectory)
+				for (PackFile pack : ((ObjectDirectory) database).getPacks()) {
+					bitmaps = PackBitmapIndex.open(pack.getPackFile());
+					if (bitmaps != null)
+						break;
+				}
+		}
+		return bitmaps;
+	}
+
+	/**
+	 * Does the repository have a reachability bitmap that is used for counts?
+	 *
+	 * @return true if bitmapped, false otherwise
+	 */
+	public boolean isBitmapped() {
+		try {
+			return getBitmaps() != null;
+		} catch (IOException e) {
+			throw new GitException(e, repository);
+		}
+	}
+
+	private Reach reach(final PackBitmapIndex index,
+			final Collection<? extends ObjectId> starts) throws IOException {
+		final Reach reach = new Reach(index.getWordCount());
+		final long[] bits = reach.bits;
+		final RevWalk walk = new RevWalk(repository);
+		walk.setRetainBody(false);
+		try {
+			final RevFlag visited = walk.newFlag("visited");
+			final List<RevCommit> pending = new ArrayList<RevCommit>();
+			for (ObjectId start : starts)
+				pending.add(walk.parseCommit(start));
+			while (!pending.isEmpty()) {
+				final RevCommit commit = pending.remove(pending.size() - 1);
+				if (commit.has(visited))
+					continue;
+				commit.add(visited);
+
+				final long[] bitmap = index.getBitmap(commit);
+				if (bitmap != null) {
+					for (int i = 0; i < bits.length; i++)
+						bits[i] |= bitmap[i];
+					continue;
+				}
+				final int position = index.findPosition(commit);
+				if (position >= 0) {
+					final long mask = 1L << position;
+					if ((bits[position >>> 6] & mask) != 0)
+						continue;
+					bits[position >>> 6] |= mask;
+				} else
+					reach.unpacked.add(commit.copy());
+				for (RevCommit parent : commit.getParents()) {
+					walk.parseHeaders(parent);
+					pending.add(parent);
+				}
+			}
+		} finally {
+			walk.release();
+		}
+		return reach;
+	}
+
+	private long walkCount(final Collection<? extends ObjectId> starts,
+			final ObjectId end) throws IOException {
+		final RevWalk walk = new RevWalk(repository);
+		walk.setRetainBody(false);
+		try {
+			for (ObjectId start : starts)
+				walk.markStart(walk.parseCommit(start));
+			if (end != null)
+				walk.markUninteresting(walk.parseCommit(end));
+			long count = 0;
+			while (walk.next() != null)
+				count++;
+			return count;
+		} finally {
+			walk.release();
+		}
+	}
+
+	/**
+	 * Count the commits reachable from the given start commits
+	 *
+	 * @param starts
+	 *            must be non-null
+	 * @return commit count
+	 */
+	public long count(final Collection<? extends ObjectId> starts) {
+		if (starts == null)
+			throw new IllegalArgumentException(
+					Assert.formatNotNull("Starting commit ids"));
+		if (starts.isEmpty())
+			return 0;
+
+		try {
+			final PackBitmapIndex index = getBitmaps();
+			if (index == null)
+				return walkCount(starts, null);
+
+			final Reach reach = reach(index, starts);
+			final long[] commits = index.getCommits();
+			long count = reach.unpacked.size();
+			for (int i = 0; i < commits.length; i++)
+				count += Long.bitCount(reach.bits[i] & commits[i]);
+			return count;
+		} catch (IOException e) {
+			throw new GitException(e, repository);
+		}
+	}
+
+	/**
+	 * Count the commits reachable from the given start commit
+	 *
+	 * @param start
+	 *            must be non-null
+	 * @return commit count
+	 */
+	public long count(final ObjectId start) {
+		if (start == null)
+			throw new IllegalArgumentException(
+					Assert.formatNotNull("Starting commit id"));
+
+		return count(Collections.singleton(start));
+	}
+
+	/**
+	 * Count the commits reachable from the start commit that are not reachable
+	 * from the end commit
+	 *
+	 * @param start
+	 *            must be non-null
+	 * @param end
+	 *            must be non-null
+	 * @return commit count
+	 */
+	public long countBetween(final ObjectId start, final ObjectId end) {
+		if (start == null)
+			throw new IllegalArgumentException(
+					Assert.formatNotNull("Starting commit id"));
+		if (end == null)
+			throw new IllegalArgumentException(
+					Assert.formatNotNull("Ending commit id"));
+
+		try {
+			final PackBitmapIndex index = getBitmaps();
+			if (index == null)
+				return walkCount(Collections.singleton(start), end);
+
+			final Reach included = reach(index, Collections.singleton(start));
+			final Reach excluded = reach(index, Collections.singleton(end));
+			final long[] commits = index.getCommits();
+			long count = 0;
+			for (int i = 0; i < commits.length; i++)
+				count += Long.bitCount(included.bits[i] & ~excluded.bits[i]
+						& commits[i]);
+			for (ObjectId commit : included.unpacked)
+				if (!excluded.unpacked.contains(commit))
+					count++;
+			return count;
+		} catch (IOException e) {
+			throw new GitException(e, repository);
+		}
+	}
+
+	private Map<String, Long> countRefs(final String prefix) {
+		final Map<String, Long> counts = new LinkedHashMap<String, Long>();
+		final Map<String, Ref> refs;
+		try {
+			refs = repository.getRefDatabase().getRefs(prefix);
+		} catch (IOException e) {
+			throw new GitException(e, repository);
+		}
+		for (Ref ref : refs.values()) {
+			final RevCommit commit = CommitUtils.getRef(repository, ref);
+			if (commit != null)
+				counts.put(ref.getName(), Long.valueOf(count(commit)));
+		}
+		return counts;
+	}
+
+	/**
+	 * Count the commits reachable from each local branch
+	 *
+	 * @return map of full branch ref names to commit counts
+	 */
+	public Map<String, Long> countBranches() {
+		return countRefs(R_HEADS);
+	}
+
+	/**
+	 * Count the commits reachable from each tag
+	 *
+	 * @return map of full tag ref names to commit counts
+	 */
+	public Map<String, Long> countTags() {
+		return countRefs(R_TAGS);
+	}
+}
@@ -0,0 +1,541 @@
+/*
+ * Copyright (c) 2012 Kevin Sawicki <kevinsawicki@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+package org.gitective.core;
+
+import static org.eclipse.jgit.lib.Constants.OBJ_BLOB;
+import static org.eclipse.jgit.lib.FileMode.TYPE_FILE;
+import static org.eclipse.jgit.lib.FileMode.TYPE_MASK;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.eclipse.jgit.diff.DiffEntry;
+import org.eclipse.jgit.diff.DiffEntry.ChangeType;
+import org.eclipse.jgit.lib.AbbreviatedObjectId;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+
+/**
+ * Rename detector with limits on the work done for each set of differences.
+ * <p>
+ * Added and deleted paths with identical content are always paired as
+ * renames. Content similarity is only scored when the number of added and
+ * deleted pairs is within the pair limit, for blobs no larger than the blob
+ * size limit and until the time budget for the current set of differences is
+ * spent. The similarity summary of each blob is kept in a bounded cache keyed
+ * by blob id so blobs that appear in many commits are only read and hashed
+ * once.
+ * <p>
+ * Pairs are scored on the calling thread unless an executor is configured, in
+ * which case the added paths are scored against the deleted paths in parallel.
+ * <p>
+ * Instances may be shared between filters and threads.
+ */
+public class RenameFinder {
+
+	/**
+	 * Default minimum similarity score of a rename
+	 */
+	public static final int DEFAULT_SCORE = 60;
+
+	/**
+	 * Default maximum number of added and deleted path pairs scored
+	 */
+	public static final int DEFAULT_PAIR_LIMIT = 200 * 200;
+
+	/**
+	 * Default maximum size of a blob whose content is scored
+	 */
+	public static final long DEFAULT_BLOB_SIZE_LIMIT = 1024 * 1024;
+
+	/**
+	 * Default number of blob similarity summaries cached
+	 */
+	public static final int DEFAULT_CACHE_SIZE = 1024;
+
+	/**
+	 * Diff entry for a detected rename
+	 */
+	private static class RenameEntry extends DiffEntry {
+
+		RenameEntry(final DiffEntry deleted, final DiffEntry added,
+				final int score) {
+			oldPath = deleted.getOldPath();
+			oldMode = deleted.getOldMode();
+			oldId = deleted.getOldId();
+			newPath = added.getNewPath();
+			newMode = added.getNewMode();
+			newId = added.getNewId();
+			changeType = ChangeType.RENAME;
+			this.score = score;
+		}
+	}
+
+	/**
+	 * Scored pair of a deleted and added entry
+	 */
+	private static class Match implements Comparable<Match> {
+
+		final int deleted;
+
+		final int added;
+
+		final int score;
+
+		Match(final int deleted, final int added, final int score) {
+			this.deleted = deleted;
+			this.added = added;
+			this.score = score;
+		}
+
+		public int compareTo(final Match other) {
+			if (score != other.score)
+				return score > other.score ? -1 : 1;
+			if (added != other.added)
+				return added < other.added ? -1 : 1;
+			return deleted < other.deleted ? -1 : deleted > other.deleted ? 1
+					: 0;
+		}
+	}
+
+	private int score = DEFAULT_SCORE;
+
+	private int pairLimit = DEFAULT_PAIR_LIMIT;
+
+	private long blobSizeLimit = DEFAULT_BLOB_SIZE_LIMIT;
+
+	private long timeBudget;
+
+	private ExecutorService executor;
+
+	private final Map<ObjectId, ContentSimilarity> cache;
+
+	private final ConcurrentCounter limited = new ConcurrentCounter();
+
+	/**
+	 * Create rename finder with a cache of {@link #DEFAULT_CACHE_SIZE}
+	 * similarity summaries
+	 */
+	public RenameFinder() {
+		this(DEFAULT_CACHE_SIZE);
+	}
+
+	/**
+	 * Create rename finder
+	 *
+	 * @param cacheSize
+	 *            maximum number of blob similarity summaries to cache, zero to
+	 *            disable caching
+	 */
+	public RenameFinder(final int cacheSize) {
+		if (cacheSize < 0)
+			throw new IllegalArgumentException("Cache size cannot be negative");
+
+		cache = new LinkedHashMap<ObjectId, ContentSimilarity>(16, 0.75F,
+				true) {
+
+			private static final long serialVersionUID = 1L;
+
+			protected boolean removeEldestEntry(
+					final Map.Entry<ObjectId, ContentSimilarity> eldest) {
+				return size() > cacheSize;
+			}
+		};
+	}
+
+	/**
+	 * Set the minimum similarity score of a rename
+	 *
+	 * @param score
+	 *            between 0 and 100
+	 * @return this finder
+	 */
+	public RenameFinder setScore(final int score) {
+		if (score < 0 || score > 100)
+			throw new IllegalArgumentException(
+					"Score must be between 0 and 100");
+
+		this.score = score;
+		return this;
+	}
+
+	/**
+	 * Get the minimum similarity score of a rename
+	 *
+	 * @return score
+	 */
+	public int getScore() {
+		return score;
+	}
+
+	/**
+	 * Set the maximum number of added and deleted path pairs whose content is
+	 * scored for a single set of differences
+	 *
+	 * @param pairLimit
+	 *            zero to only detect renames of identical content
+	 * @return this finder
+	 */
+	public RenameFinder setPairLimit(final int pairLimit) {
+		if (pairLimit < 0)
+			throw new IllegalArgumentException("Pair limit cannot be negative");
+
+		this.pairLimit = pairLimit;
+		return this;
+	}
+
+	/**
+	 * Get the maximum number of pairs scored for a single set of differences
+	 *
+	 * @return pair limit
+	 */
+	public int getPairLimit() {
+		return pairLimit;
+	}
+
+	/**
+	 * Set the size of the largest blob whose content is scored
+	 *
+	 * @param blobSizeLimit
+	 *            in bytes
+	 * @return this finder
+	 */
+	public RenameFinder setBlobSizeLimit(final long blobSizeLimit) {
+		if (blobSizeLimit < 0)
+			throw new IllegalArgumentException(
+					"Blob size limit cannot be negative");
+
+		this.blobSizeLimit = blobSizeLimit;
+		return this;
+	}
+
+	/**
+	 * Get the size of the largest blob whose content is scored
+	 *
+	 * @return size in bytes
+	 */
+	public long getBlobSizeLimit() {
+		return blobSizeLimit;
+	}
+
+	/**
+	 * Set the wall-clock time that may be spent scoring the content of a
+	 * single set of differences. Pairs not scored once the budget is spent
+	 * are left as additions and deletions.
+	 *
+	 * @param timeBudget
+	 *            in milliseconds, zero for no budget
+	 * @return this finder
+	 */
+	public RenameFinder setTimeBudget(final long timeBudget) {
+		if (timeBudget < 0)
+			throw new IllegalArgumentException(
+					"Time budget cannot be negative");
+
+		this.timeBudget = timeBudget;
+		return this;
+	}
+
+	/**
+	 * Get the time that may be spent scoring a single set of differences
+	 *
+	 * @return time in milliseconds, zero for no budget
+	 */
+	public long getTimeBudget() {
+		return timeBudget;
+	}
+
+	/**
+	 * Set the executor used to score pairs in parallel. The executor is not
+	 * shut down by this finder.
+	 *
+	 * @param executor
+	 *            null to score on the calling thread
+	 * @return this finder
+	 */
+	public RenameFinder setExecutor(final ExecutorService executor) {
+		this.executor = executor;
+		return this;
+	}
+
+	/**
+	 * Get the number of sets of differences where a limit or the time budget
+	 * stopped some content from being scored
+	 *
+	 * @return count
+	 */
+	public long getLimitedCount() {
+		return limited.get();
+	}
+
+	/**
+	 * Get the number of cached similarity summaries
+	 *
+	 * @return cache size
+	 */
+	public int getCacheSize() {
+		synchronized (cache) {
+			return cache.size();
+		}
+	}
+
+	private static boolean isFile(final FileMode mode) {
+		return TYPE_FILE == (mode.getBits() & TYPE_MASK);
+	}
+
+	private static ObjectId getId(final AbbreviatedObjectId id) {
+		return id != null && id.isComplete() ? id.toObjectId() : null;
+	}
+
+	/**
+	 * Get the similarity summary of the given blob
+	 *
+	 * @param reader
+	 * @param id
+	 * @return similarity or null if the blob is over the size limit
+	 * @throws IOException
+	 */
+	private ContentSimilarity getSimilarity(final ObjectReader reader,
+			final ObjectId id) throws IOException {
+		synchronized (cache) {
+			final ContentSimilarity cached = cache.get(id);
+			if (cached != null)
+				return cached;
+		}
+		if (reader.getObjectSize(id, OBJ_BLOB) > blobSizeLimit)
+			return null;
+		final ContentSimilarity similarity = ContentSimilarity
+				.create(BlobUtils.loaded(reader.open(id, OBJ_BLOB)
+						.getCachedBytes(Integer.MAX_VALUE)));
+		synchronized (cache) {
+			cache.put(id, similarity);
+		}
+		return similarity;
+	}
+
+	/**
+	 * Score the given added entries against all the deleted entries
+	 */
+	private List<Match> score(final ObjectReader reader,
+			final List<DiffEntry> deleted, final List<DiffEntry> added,
+			final int from, final int to, final long deadline,
+			final boolean[] overLimit) throws IOException {
+		final List<Match> matches = new ArrayList<Match>();
+		final ContentSimilarity[] deletedSimilarities = new ContentSimilarity[deleted
+				.size()];
+		final boolean[] skipped = new boolean[deleted.size()];
+		for (int a = from; a < to; a++) {
+			if (deadline > 0 && System.currentTimeMillis() > deadline) {
+				overLimit[0] = true;
+				break;
+			}
+			final ContentSimilarity addedSimilarity = getSimilarity(reader,
+					getId(added.get(a).getNewId()));
+			if (addedSimilarity == null) {
+				overLimit[0] = true;
+				continue;
+			}
+			final long addedLength = addedSimilarity.getLength();
+			for (int d = 0; d < deleted.size(); d++) {
+				if (skipped[d])
+					continue;
+				ContentSimilarity deletedSimilarity = deletedSimilarities[d];
+				if (deletedSimilarity == null) {
+					deletedSimilarity = getSimilarity(reader,
+							getId(deleted.get(d).getOldId()));
+					if (deletedSimilarity == null) {
+						overLimit[0] = true;
+						skipped[d] = true;
+						continue;
+					}
+					deletedSimilarities[d] = deletedSimilarity;
+				}
+				final long deletedLength = deletedSimilarity.getLength();
+				final long max = Math.max(addedLength, deletedLength);
+				if (max > 0
+						&& Math.min(addedLength, deletedLength) * 100 / max < score)
+					continue;
+				final int pairScore = addedSimilarity.score(deletedSimilarity);
+				if (pairScore >= score)
+					matches.add(new Match(d, a, pairScore));
+			}
+		}
+		return matches;
+	}
+
+	private List<Match> score(final ObjectReader reader,
+			final List<DiffEntry> deleted, final List<DiffEntry> added,
+			final boolean[] overLimit) throws IOException {
+		final long deadline = timeBudget > 0 ? System.currentTimeMillis()
+				+ timeBudget : 0;
+		final ExecutorService service = executor;
+		if (service == null || added.size() < 2)
+			return score(reader, deleted, added, 0, added.size(), deadline,
+					overLimit);
+
+		final int tasks = Math.min(added.size(), Runtime.getRuntime()
+				.availableProcessors());
+		final List<Future<List<Match>>> futures = new ArrayList<Future<List<Match>>>(
+				tasks);
+		for (int i = 0; i < tasks; i++) {
+			final int from = i * added.size() / tasks;
+			final int to = (i + 1) * added.size() / tasks;
+			futures.add(service.submit(new Callable<List<Match>>() {
+
+				public List<Match> call() throws IOException {
+					final ObjectReader taskReader = reader.newReader();
+					try {
+						return score(taskReader, deleted, added, from, to,
+								deadline, overLimit);
+					} finally {
+						taskReader.release();
+					}
+				}
+			}));
+		}
+		final List<Match> matches = new ArrayList<Match>();
+		try {
+			for (Future<List<Match>> future : futures)
+				matches.addAll(future.get());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException(e.getMessage());
+		} catch (ExecutionException e) {
+			final Throwable cause = e.getCause();
+			if (cause instanceof IOException)
+				throw (IOException) cause;
+			if (cause instanceof RuntimeException)
+				throw (RuntimeException) cause;
+			throw new IOException(cause != null ? cause.getMessage() : null);
+		}
+		return matches;
+	}
+
+	/**
+	 * Find the renames in the given differences
+	 *
+	 * @param reader
+	 *            must be non-null
+	 * @param diffs
+	 *            must be non-null
+	 * @return differences with paired additions and deletions replaced by
+	 *         renames
+	 * @throws IOException
+	 */
+	public List<DiffEntry> compute(final ObjectReader reader,
+			final Collection<DiffEntry> diffs) throws IOException {
+		if (reader == null)
+			throw new IllegalArgumentException(Assert.formatNotNull("Reader"));
+		if (diffs == null)
+			throw new IllegalArgumentException(Assert.formatNotNull("Diffs"));
+
+		final List<DiffEntry> result = new ArrayList<DiffEntry>(diffs.size());
+		final List<DiffEntry> added = new ArrayList<DiffEntry>();
+		final List<DiffEntry> deleted = new ArrayList<DiffEntry>();
+		for (DiffEntry diff : diffs)
+			if (diff.getChangeType() == ChangeType.ADD
+					&& isFile(diff.getNewMode())
+					&& getId(diff.getNewId()) != null)
+				added.add(diff);
+			else if (diff.getChangeType() == ChangeType.DELETE
+					&& isFile(diff.getOldMode())
+					&& getId(diff.getOldId()) != null)
+				deleted.add(diff);
+			else
+				result.add(diff);
+		if (added.isEmpty() || deleted.isEmpty()) {
+			result.addAll(deleted);
+			result.addAll(added);
+			return result;
+		}
+
+		// Pair identical content first
+		final Map<AbbreviatedObjectId, List<DiffEntry>> deletedById = new HashMap<AbbreviatedObjectId, List<DiffEntry>>();
+		for (DiffEntry diff : deleted) {
+			List<DiffEntry> entries = deletedById.get(diff.getOldId());
+			if (entries == null) {
+				entries = new ArrayList<DiffEntry>(1);
+				deletedById.put(diff.getOldId(), entries);
+			}
+			entries.add(diff);
+		}
+		final List<DiffEntry> unmatchedAdded = new ArrayList<DiffEntry>();
+		for (DiffEntry diff : added) {
+			final List<DiffEntry> entries = deletedById.get(diff.getNewId());
+			if (entries != null && !entries.isEmpty())
+				result.add(new RenameEntry(entries.remove(0), diff, 100));
+			else
+				unmatchedAdded.add(diff);
+		}
+		final List<DiffEntry> unmatchedDeleted = new ArrayList<DiffEntry>();
+		for (DiffEntry diff : deleted)
+			if (deletedById.get(diff.getOldId()).contains(diff))
+				unmatchedDeleted.add(diff);
+
+		if (!unmatchedAdded.isEmpty() && !unmatchedDeleted.isEmpty()) {
+			final boolean[] overLimit = new boolean[1];
+			if ((long) unmatchedAdded.size() * unmatchedDeleted.size() > pairLimit)
+				overLimit[0] = true;
+			else {
+				final List<Match> matches = score(reader, unmatchedDeleted,
+						unmatchedAdded, overLimit);
+				final Match[] sorted = matches.toArray(new Match[matches
+						.size()]);
+				Arrays.sort(sorted);
+				final boolean[] addedUsed = new boolean[unmatchedAdded.size()];
+				final boolean[] deletedUsed = new boolean[unmatchedDeleted
+						.size()];
+				for (Match match : sorted) {
+					if (addedUsed[match.added] || deletedUsed[match.deleted])
+						continue;
+					addedUsed[match.added] = true;
+					deletedUsed[match.deleted] = true;
+					result.add(new RenameEntry(unmatchedDeleted
+							.get(match.deleted), unmatchedAdded
+							.get(match.added), match.score));
+				}
+				for (int i = unmatchedDeleted.size() - 1; i >= 0; i--)
+					if (deletedUsed[i])
+						unmatchedDeleted.remove(i);
+				for (int i = unmatchedAdded.size() - 1; i >= 0; i--)
+					if (addedUsed[i])
+						unmatchedAdded.remove(i);
+			}
+			if (overLimit[0])
+				limited.increment();
+		}
+		result.addAll(unmatchedDeleted);
+		result.addAll(unmatchedAdded);
+		return result;
+	}
+}
@@ -0,0 +1,250 @@
+/*
+ * Copyright (c) 2012 Kevin Sawicki <kevinsawicki@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+package org.gitective.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+
+/**
+ * Bounded pool of repositories opened from disk on first use.
+ * <p>
+ * At most {@link #getCapacity()} repositories are held open at once. When the
+ * pool is full the least recently used repository is closed, releasing its
+ * pack indexes and cached pack windows. The closed {@link Repository} instance
+ * is retained through a soft reference so that its cached config and refs can
+ * be reused when the same directory is acquired again, JGit re-reads packs and
+ * checks refs for modification when a closed repository is used.
+ * <p>
+ * Repositories returned from {@link #acquire(File)} must be passed to
+ * {@link #release(Repository)} when no longer in use. Repositories that are in
+ * use when evicted stay open until released.
+ */
+public class RepositoryPool {
+
+	/**
+	 * Soft reference to a closed repository
+	 */
+	private static class ClosedRepository extends SoftReference<Repository> {
+
+		final File gitDir;
+
+		ClosedRepository(final File gitDir, final Repository repository,
+				final ReferenceQueue<Repository> queue) {
+			super(repository, queue);
+			this.gitDir = gitDir;
+		}
+	}
+
+	/**
+	 * Default number of repositories held open
+	 */
+	public static final int DEFAULT_CAPACITY = 64;
+
+	private final int capacity;
+
+	private final Map<File, Repository> open;
+
+	private final Map<File, ClosedRepository> closed = new HashMap<File, ClosedRepository>();
+
+	private final ReferenceQueue<Repository> cleared = new ReferenceQueue<Repository>();
+
+	private long hits;
+
+	private long reopened;
+
+	private long opened;
+
+	private long evictions;
+
+	/**
+	 * Create pool with default capacity
+	 */
+	public RepositoryPool() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Create pool holding at most the given number of repositories open
+	 *
+	 * @param capacity
+	 */
+	public RepositoryPool(final int capacity) {
+		if (capacity < 1)
+			throw new IllegalArgumentException(
+					"Capacity must be greater than zero");
+		this.capacity = capacity;
+		open = new LinkedHashMap<File, Repository>(16, 0.75F, true);
+	}
+
+	/**
+	 * Get maximum number of repositories held open
+	 *
+	 * @return capacity
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * Get number of repositories currently held open
+	 *
+	 * @return size
+	 */
+	public synchronized int size() {
+		return open.size();
+	}
+
+	/**
+	 * Get number of acquisitions of an already open repository
+	 *
+	 * @return hits
+	 */
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	/**
+	 * Get number of acquisitions that reused a previously closed repository
+	 *
+	 * @return reopened count
+	 */
+	public synchronized long getReopened() {
+		return reopened;
+	}
+
+	/**
+	 * Get number of repositories opened from disk
+	 *
+	 * @return opened count
+	 */
+	public synchronized long getOpened() {
+		return opened;
+	}
+
+	/**
+	 * Get number of repositories closed to stay within capacity
+	 *
+	 * @return eviction count
+	 */
+	public synchronized long getEvictions() {
+		return evictions;
+	}
+
+	/**
+	 * Acquire repository for the given Git directory
+	 *
+	 * @param gitDir
+	 * @return repository that must be released after use
+	 * @throws GitException
+	 *             if the repository cannot be opened
+	 */
+	public synchronized Repository acquire(final File gitDir) {
+		if (gitDir == null)
+			throw new IllegalArgumentException(Assert.formatNotNull("Directory"));
+
+		Repository repository = open.get(gitDir);
+		if (repository != null)
+			hits++;
+		else {
+			purge();
+			final ClosedRepository reference = closed.remove(gitDir);
+			repository = reference != null ? reference.get() : null;
+			if (repository != null) {
+				repository.incrementOpen();
+				reopened++;
+			} else {
+				try {
+					repository = new FileRepositoryBuilder().setGitDir(gitDir)
+							.setMustExist(true).build();
+				} catch (IOException e) {
+					throw new GitException("Unable to open " + gitDir, e, null);
+				}
+				opened++;
+			}
+			open.put(gitDir, repository);
+			evict();
+		}
+		repository.incrementOpen();
+		return repository;
+	}
+
+	private void purge() {
+		Reference<? extends Repository> reference;
+		while ((reference = cleared.poll()) != null) {
+			final File gitDir = ((ClosedRepository) reference).gitDir;
+			if (closed.get(gitDir) == reference)
+				closed.remove(gitDir);
+		}
+	}
+
+	private void evict() {
+		final Iterator<Entry<File, Repository>> entries = open.entrySet()
+				.iterator();
+		while (open.size() > capacity) {
+			final Entry<File, Repository> eldest = entries.next();
+			entries.remove();
+			close(eldest.getKey(), eldest.getValue());
+			evictions++;
+		}
+	}
+
+	private void close(final File gitDir, final Repository repository) {
+		repository.close();
+		closed.put(gitDir, new ClosedRepository(gitDir, repository, cleared));
+	}
+
+	/**
+	 * Release repository previously acquired from this pool
+	 *
+	 * @param repository
+	 * @return this pool
+	 */
+	public RepositoryPool release(final Repository repository) {
+		if (repository != null)
+			repository.close();
+		return this;
+	}
+
+	/**
+	 * Close all open repositories and discard closed repositories
+	 *
+	 * @return this pool
+	 */
+	public synchronized RepositoryPool close() {
+		for (Entry<File, Repository> entry : open.entrySet())
+			entry.getValue().close();
+		open.clear();
+		closed.clear();
+		return this;
+	}
+}
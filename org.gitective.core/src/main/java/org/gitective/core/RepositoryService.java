@@ -36,10 +36,14 @@ import org.eclipse.jgit.storage.file.FileRepository;
 public class RepositoryService {
 
 	/**
-	 * Repositories
+	 * Repositories, empty when repositories are opened from a pool
 	 */
 	protected final Repository[] repositories;
 
+	private final File[] directories;
+
+	private final RepositoryPool pool;
+
 	/**
 	 * Create a repository service for the repositories at the specified
 	 * directory paths.
@@ -54,6 +58,8 @@ public class RepositoryService {
 			throw new IllegalArgumentException(
 					Assert.formatNotEmpty("Directories"));
 
+		directories = null;
+		pool = null;
 		final int length = gitDirs.length;
 		repositories = new Repository[length];
 		try {
@@ -78,6 +84,8 @@ public class RepositoryService {
 			throw new IllegalArgumentException(
 					Assert.formatNotEmpty("Directories"));
 
+		directories = null;
+		pool = null;
 		final int length = gitDirs.length;
 		repositories = new Repository[length];
 		try {
@@ -101,6 +109,8 @@ public class RepositoryService {
 			throw new IllegalArgumentException(
 					Assert.formatNotEmpty("Repositories"));
 
+		directories = null;
+		pool = null;
 		this.repositories = new Repository[repositories.length];
 		System.arraycopy(repositories, 0, this.repositories, 0,
 				repositories.length);
@@ -121,6 +131,8 @@ public class RepositoryService {
 			throw new IllegalArgumentException(
 					Assert.formatNotEmpty("Repositories"));
 
+		directories = null;
+		pool = null;
 		final List<Repository> created = new ArrayList<Repository>(
 				repositories.size());
 		try {
@@ -136,4 +148,150 @@ public class RepositoryService {
 		}
 		this.repositories = created.toArray(new Repository[created.size()]);
 	}
+
+	/**
+	 * Create a repository service for the repositories at the specified
+	 * directories that are opened on first use from the given pool.
+	 * <p>
+	 * The {@link #repositories} field is empty for services created with this
+	 * constructor and sub-classes must use {@link #openRepository(int)} and
+	 * {@link #closeRepository(Repository)} instead.
+	 *
+	 * @param pool
+	 * @param gitDirs
+	 */
+	public RepositoryService(final RepositoryPool pool, final File... gitDirs) {
+		if (pool == null)
+			throw new IllegalArgumentException(Assert.formatNotNull("Pool"));
+		if (gitDirs == null)
+			throw new IllegalArgumentException(
+					Assert.formatNotNull("Directories"));
+		if (gitDirs.length == 0)
+			throw new IllegalArgumentException(
+					Assert.formatNotEmpty("Directories"));
+
+		this.pool = pool;
+		directories = new File[gitDirs.length];
+		System.arraycopy(gitDirs, 0, directories, 0, gitDirs.length);
+		repositories = new Repository[0];
+	}
+
+	/**
+	 * Create a repository service for the repositories at the specified
+	 * directory paths that are opened on first use from the given pool.
+	 *
+	 * @see #RepositoryService(RepositoryPool, File...)
+	 * @param pool
+	 * @param gitDirs
+	 */
+	public RepositoryService(final RepositoryPool pool, final String... gitDirs) {
+		this(pool, toFiles(gitDirs));
+	}
+
+	/**
+	 * Create a repository service for the same repositories as the given
+	 * service
+	 *
+	 * @param service
+	 */
+	protected RepositoryService(final RepositoryService service) {
+		if (service == null)
+			throw new IllegalArgumentException(Assert.formatNotNull("Service"));
+
+		repositories = service.repositories;
+		directories = service.directories;
+		pool = service.pool;
+	}
+
+	private static File[] toFiles(final String... gitDirs) {
+		if (gitDirs == null)
+			throw new IllegalArgumentException(
+					Assert.formatNotNull("Directories"));
+
+		final File[] files = new File[gitDirs.length];
+		for (int i = 0; i < gitDirs.length; i++)
+			files[i] = new File(gitDirs[i]);
+		return files;
+	}
+
+	/**
+	 * Get pool repositories are opened from
+	 *
+	 * @return pool or null if repositories were opened when this service was
+	 *         created
+	 */
+	public RepositoryPool getPool() {
+		return pool;
+	}
+
+	/**
+	 * Get number of repositories of this service
+	 *
+	 * @return repository count
+	 */
+	protected int getRepositoryCount() {
+		return pool != null ? directories.length : repositories.length;
+	}
+
+	/**
+	 * Open repository at the given index
+	 * <p>
+	 * The returned repository must be passed to
+	 * {@link #closeRepository(Repository)} when no longer in use.
+	 *
+	 * @param index
+	 * @return repository
+	 */
+	protected Repository openRepository(final int index) {
+		return pool != null ? pool.acquire(directories[index])
+				: repositories[index];
+	}
+
+	/**
+	 * Close repository returned from {@link #openRepository(int)}
+	 *
+	 * @param repository
+	 */
+	protected void closeRepository(final Repository repository) {
+		if (pool != null)
+			pool.release(repository);
+	}
+
+	/**
+	 * Apply the given pack cache configuration
+	 * <p>
+	 * The JGit window cache is shared by all repositories opened from disk so
+	 * the configuration applies to every repository in the process.
+	 *
+	 * @see PackCacheConfig#fullHistoryScan()
+	 * @see PackCacheConfig#smallLookups()
+	 * @param config
+	 * @return this service
+	 */
+	public RepositoryService setCacheConfig(final PackCacheConfig config) {
+		if (config == null)
+			throw new IllegalArgumentException(
+					Assert.formatNotNull("Cache configuration"));
+
+		config.apply();
+		return this;
+	}
+
+	/**
+	 * Get pack cache configuration in effect
+	 *
+	 * @return configuration
+	 */
+	public PackCacheConfig getCacheConfig() {
+		return PackCacheConfig.getActive();
+	}
+
+	/**
+	 * Get current occupancy of the pack cache
+	 *
+	 * @return statistics
+	 */
+	public PackCacheStatistics getCacheStatistics() {
+		return PackCacheStatistics.snapshot();
+	}
 }
@@ -39,9 +39,11 @@ import java.util.Map;
 import java.util.Set;
 
 import org.eclipse.jgit.api.LsRemoteCommand;
+import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.PersonIdent;
 import org.eclipse.jgit.lib.Ref;
 import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
 import org.eclipse.jgit.transport.RemoteConfig;
 
 /**
@@ -51,7 +53,8 @@ import org.eclipse.jgit.transport.RemoteConfig;
  * references in a repository.
  * <p>
  * This class also provides helpers for knowing which references differ between
- * a local and remote repository.
+ * a local and remote repository and how far references have diverged from one
+ * or more base revisions.
  */
 public abstract class RepositoryUtils {
 
@@ -94,6 +97,86 @@ public abstract class RepositoryUtils {
 		}
 	}
 
+	/**
+	 * Wrapper class for how far a ref has diverged from a base revision
+	 */
+	public static class AheadBehind {
+
+		private final String ref;
+
+		private final String base;
+
+		private final long ahead;
+
+		private final long behind;
+
+		private final Collection<RevCommit> mergeBases;
+
+		/**
+		 * Create ahead behind
+		 *
+		 * @param ref
+		 * @param base
+		 * @param ahead
+		 * @param behind
+		 * @param mergeBases
+		 */
+		protected AheadBehind(final String ref, final String base,
+				final long ahead, final long behind,
+				final Collection<RevCommit> mergeBases) {
+			this.ref = ref;
+			this.base = base;
+			this.ahead = ahead;
+			this.behind = behind;
+			this.mergeBases = mergeBases;
+		}
+
+		/**
+		 * Get ref name
+		 *
+		 * @return ref
+		 */
+		public String getRef() {
+			return ref;
+		}
+
+		/**
+		 * Get base revision
+		 *
+		 * @return base
+		 */
+		public String getBase() {
+			return base;
+		}
+
+		/**
+		 * Get number of commits reachable from the ref but not the base
+		 *
+		 * @return ahead count
+		 */
+		public long getAhead() {
+			return ahead;
+		}
+
+		/**
+		 * Get number of commits reachable from the base but not the ref
+		 *
+		 * @return behind count
+		 */
+		public long getBehind() {
+			return behind;
+		}
+
+		/**
+		 * Get the best common ancestors of the ref and the base
+		 *
+		 * @return non-null but possibly empty collection of commits
+		 */
+		public Collection<RevCommit> getMergeBases() {
+			return mergeBases;
+		}
+	}
+
 	/**
 	 * Get the refs with prefix in repository
 	 *
@@ -306,4 +389,76 @@ public abstract class RepositoryUtils {
 		}
 		return emailsToNames;
 	}
+
+	/**
+	 * Compute how far each given ref is ahead and behind each base revision
+	 * and their merge bases using a single walk shared by all refs and bases.
+	 * <p>
+	 * Refs that do not exist are ignored.
+	 *
+	 * @param repository
+	 * @param refs
+	 * @param bases
+	 * @return non-null but possibly empty collection with one
+	 *         {@link AheadBehind} for each ref and base pair
+	 */
+	public static Collection<AheadBehind> getAheadBehind(
+			final Repository repository, final Collection<String> refs,
+			final String... bases) {
+		if (repository == null)
+			throw new IllegalArgumentException(
+					Assert.formatNotNull("Repository"));
+		if (refs == null)
+			throw new IllegalArgumentException(Assert.formatNotNull("Refs"));
+		if (bases == null)
+			throw new IllegalArgumentException(Assert.formatNotNull("Bases"));
+		if (bases.length == 0)
+			throw new IllegalArgumentException(Assert.formatNotEmpty("Bases"));
+
+		final List<String> names = new ArrayList<String>(refs.size());
+		final List<ObjectId> tips = new ArrayList<ObjectId>(refs.size());
+		for (String ref : refs) {
+			final RevCommit tip = CommitUtils.getRef(repository, ref);
+			if (tip != null) {
+				names.add(ref);
+				tips.add(tip);
+			}
+		}
+		final ObjectId[] baseIds = new ObjectId[bases.length];
+		for (int i = 0; i < bases.length; i++)
+			baseIds[i] = CommitUtils.strictResolve(repository, bases[i]);
+		if (tips.isEmpty())
+			return Collections.emptyList();
+
+		final AheadBehindWalk walk = new AheadBehindWalk(repository,
+				tips.toArray(new ObjectId[tips.size()]), baseIds);
+		try {
+			walk.walk();
+		} catch (IOException e) {
+			throw new GitException(e, repository);
+		}
+		final List<AheadBehind> results = new ArrayList<AheadBehind>(
+				tips.size() * bases.length);
+		for (int tip = 0; tip < tips.size(); tip++)
+			for (int base = 0; base < bases.length; base++)
+				results.add(new AheadBehind(names.get(tip), bases[base], walk
+						.getAhead(tip, base), walk.getBehind(tip, base), walk
+						.getMergeBases(tip, base)));
+		return results;
+	}
+
+	/**
+	 * Compute how far each local and remote tracking branch is ahead and
+	 * behind each base revision using a single shared walk.
+	 *
+	 * @see #getAheadBehind(Repository, Collection, String...)
+	 * @param repository
+	 * @param bases
+	 * @return non-null but possibly empty collection with one
+	 *         {@link AheadBehind} for each branch and base pair
+	 */
+	public static Collection<AheadBehind> getBranchesAheadBehind(
+			final Repository repository, final String... bases) {
+		return getAheadBehind(repository, getBranches(repository), bases);
+	}
 }
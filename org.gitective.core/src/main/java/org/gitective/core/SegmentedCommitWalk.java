@@ -0,0 +1,275 @@
+/*
+ * Copyright (c) 2012 Kevin Sawicki <kevinsawicki@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+package org.gitective.core;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import org.eclipse.jgit.errors.StopWalkException;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.revwalk.filter.RevFilter;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.AndTreeFilter;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+
+/**
+ * Commit walk that visits history in descending commit time order while only
+ * keeping a bounded number of {@link RevCommit} instances in memory.
+ * <p>
+ * A new {@link RevWalk} is used for each segment of commits visited and only
+ * the pending frontier and compact sets of the ids seen are carried between
+ * segments.
+ * <p>
+ * Commits are not rewritten by the tree filter so every parent is followed
+ * and a commit is included when it differs from each of its parents in the
+ * paths selected by the tree filter.
+ * <p>
+ * In first-parent mode only the first parent of each interesting commit is
+ * followed and the tree filter compares a commit against its first parent
+ * only. The history of the end commit is still painted through every parent.
+ */
+class SegmentedCommitWalk {
+
+	private static class Entry {
+
+		final ObjectId id;
+
+		final int time;
+
+		final long order;
+
+		boolean interesting;
+
+		Entry(final RevCommit commit, final long order,
+				final boolean interesting) {
+			id = commit.copy();
+			time = commit.getCommitTime();
+			this.order = order;
+			this.interesting = interesting;
+		}
+	}
+
+	private static final Comparator<Entry> NEWEST_FIRST = new Comparator<Entry>() {
+
+		public int compare(final Entry e1, final Entry e2) {
+			if (e1.time != e2.time)
+				return e1.time > e2.time ? -1 : 1;
+			return e1.order < e2.order ? -1 : e1.order > e2.order ? 1 : 0;
+		}
+	};
+
+	private final Repository repository;
+
+	private final RevFilter filter;
+
+	private final TreeFilter treeFilter;
+
+	private final int segmentSize;
+
+	private boolean firstParent;
+
+	private final PriorityQueue<Entry> queue = new PriorityQueue<Entry>(64,
+			NEWEST_FIRST);
+
+	private final ObjectIdSet seen = new ObjectIdSet();
+
+	private final ObjectIdSet uninteresting = new ObjectIdSet();
+
+	/**
+	 * Queued entries by id
+	 */
+	private final Map<ObjectId, Entry> pending = new HashMap<ObjectId, Entry>();
+
+	/**
+	 * Number of queued entries that are not uninteresting
+	 */
+	private int interesting;
+
+	private long enqueued;
+
+	private RevWalk walk;
+
+	private TreeWalk treeWalk;
+
+	/**
+	 * Create segmented walk
+	 *
+	 * @param repository
+	 * @param filter
+	 * @param treeFilter
+	 * @param segmentSize
+	 */
+	SegmentedCommitWalk(final Repository repository, final RevFilter filter,
+			final TreeFilter treeFilter, final int segmentSize) {
+		this.repository = repository;
+		this.filter = filter != null ? filter : RevFilter.ALL;
+		if (treeFilter != null && treeFilter != TreeFilter.ALL)
+			this.treeFilter = AndTreeFilter.create(treeFilter,
+					TreeFilter.ANY_DIFF);
+		else
+			this.treeFilter = null;
+		this.segmentSize = segmentSize;
+	}
+
+	/**
+	 * Set whether only the first parent of each commit is followed
+	 *
+	 * @param firstParent
+	 * @return this walk
+	 */
+	SegmentedCommitWalk setFirstParent(final boolean firstParent) {
+		this.firstParent = firstParent;
+		return this;
+	}
+
+	private void enqueue(final RevCommit commit) throws IOException {
+		if (seen.add(commit)) {
+			walk.parseHeaders(commit);
+			final Entry entry = new Entry(commit, enqueued++,
+					!uninteresting.contains(commit));
+			queue.add(entry);
+			pending.put(entry.id, entry);
+			if (entry.interesting)
+				interesting++;
+		}
+	}
+
+	private Entry poll() {
+		final Entry entry = queue.poll();
+		if (entry != null) {
+			pending.remove(entry.id);
+			if (entry.interesting)
+				interesting--;
+		}
+		return entry;
+	}
+
+	private void markUninteresting(final RevCommit commit) {
+		if (uninteresting.add(commit)) {
+			final Entry entry = pending.get(commit);
+			if (entry != null && entry.interesting) {
+				entry.interesting = false;
+				interesting--;
+			}
+		}
+	}
+
+	private boolean touches(final RevCommit commit) throws IOException {
+		final RevCommit[] parents = commit.getParents();
+		if (parents.length == 0) {
+			treeWalk.reset(commit.getTree());
+			return treeWalk.next();
+		}
+		if (firstParent) {
+			walk.parseHeaders(parents[0]);
+			treeWalk.reset(parents[0].getTree(), commit.getTree());
+			return treeWalk.next();
+		}
+		for (RevCommit parent : parents) {
+			walk.parseHeaders(parent);
+			treeWalk.reset(parent.getTree(), commit.getTree());
+			if (!treeWalk.next())
+				return false;
+		}
+		return true;
+	}
+
+	private void newSegment() {
+		if (walk != null)
+			walk.release();
+		walk = new RevWalk(repository);
+		walk.setRetainBody(false);
+	}
+
+	/**
+	 * Visit every commit reachable from the start commits that is not
+	 * reachable from the end commit
+	 *
+	 * @param starts
+	 * @param end
+	 * @throws IOException
+	 */
+	void walk(final Collection<? extends ObjectId> starts, final ObjectId end)
+			throws IOException {
+		newSegment();
+		if (treeFilter != null) {
+			treeWalk = new TreeWalk(repository);
+			treeWalk.setFilter(treeFilter);
+			treeWalk.setRecursive(treeFilter.shouldBeRecursive());
+		}
+		final boolean body = filter.requiresCommitBody();
+		try {
+			if (end != null) {
+				final RevCommit commit = walk.parseCommit(end);
+				markUninteresting(commit);
+				enqueue(commit);
+			}
+			for (ObjectId start : starts)
+				enqueue(walk.parseCommit(start));
+
+			int visited = 0;
+			Entry entry;
+			while ((entry = poll()) != null) {
+				if (visited++ == segmentSize) {
+					newSegment();
+					visited = 1;
+				}
+				final RevCommit commit = walk.parseCommit(entry.id);
+				if (uninteresting.contains(commit)) {
+					for (RevCommit parent : commit.getParents()) {
+						markUninteresting(parent);
+						enqueue(parent);
+					}
+					if (interesting == 0)
+						break;
+					continue;
+				}
+
+				if (body)
+					walk.parseBody(commit);
+				try {
+					if (treeFilter == null || touches(commit))
+						filter.include(walk, commit);
+				} catch (StopWalkException ignored) {
+					break;
+				}
+				if (firstParent) {
+					if (commit.getParentCount() > 0)
+						enqueue(commit.getParent(0));
+				} else
+					for (RevCommit parent : commit.getParents())
+						enqueue(parent);
+			}
+		} finally {
+			if (treeWalk != null)
+				treeWalk.release();
+			walk.release();
+		}
+	}
+}
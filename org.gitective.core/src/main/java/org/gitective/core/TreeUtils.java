@@ -93,21 +93,76 @@ public abstract class TreeUtils {
 	 */
 	protected static TreeWalk withParents(final ObjectReader reader,
 			final RevWalk rWalk, final RevCommit commit) throws IOException {
-		final TreeWalk walk = new TreeWalk(reader);
+		return resetWithParents(new TreeWalk(reader), rWalk, commit);
+	}
+
+	/**
+	 * Reset a tree walk to the trees of the commit's parents followed by the
+	 * tree of the commit.
+	 * <p>
+	 * Tree parsers already held by the tree walk are reused.
+	 *
+	 * @param walk
+	 * @param rWalk
+	 * @param commit
+	 * @return tree walk
+	 * @throws IOException
+	 */
+	protected static TreeWalk resetWithParents(final TreeWalk walk,
+			final RevWalk rWalk, final RevCommit commit) throws IOException {
 		final int parentCount = commit.getParentCount();
-		switch (parentCount) {
-		case 0:
+		if (parentCount == 0) {
+			walk.reset();
 			walk.addTree(new EmptyTreeIterator());
-			break;
-		case 1:
-			walk.addTree(getTree(rWalk, commit.getParent(0)));
-			break;
-		default:
-			final RevCommit[] parents = commit.getParents();
-			for (int i = 0; i < parentCount; i++)
-				walk.addTree(getTree(rWalk, parents[i]));
+			walk.addTree(getTree(rWalk, commit));
+			return walk;
+		}
+
+		final AnyObjectId[] trees = new AnyObjectId[parentCount + 1];
+		final RevCommit[] parents = commit.getParents();
+		for (int i = 0; i < parentCount; i++)
+			trees[i] = getTree(rWalk, parents[i]);
+		trees[parentCount] = getTree(rWalk, commit);
+		walk.reset(trees);
+		return walk;
+	}
+
+	/**
+	 * Create a tree walk with the commit's first parent.
+	 *
+	 * @param reader
+	 * @param rWalk
+	 * @param commit
+	 * @return tree walk
+	 * @throws IOException
+	 */
+	protected static TreeWalk withFirstParent(final ObjectReader reader,
+			final RevWalk rWalk, final RevCommit commit) throws IOException {
+		return resetWithFirstParent(new TreeWalk(reader), rWalk, commit);
+	}
+
+	/**
+	 * Reset a tree walk to the tree of the commit's first parent followed by
+	 * the tree of the commit.
+	 * <p>
+	 * Tree parsers already held by the tree walk are reused.
+	 *
+	 * @param walk
+	 * @param rWalk
+	 * @param commit
+	 * @return tree walk
+	 * @throws IOException
+	 */
+	protected static TreeWalk resetWithFirstParent(final TreeWalk walk,
+			final RevWalk rWalk, final RevCommit commit) throws IOException {
+		if (commit.getParentCount() > 0)
+			walk.reset(getTree(rWalk, commit.getParent(0)),
+					getTree(rWalk, commit));
+		else {
+			walk.reset();
+			walk.addTree(new EmptyTreeIterator());
+			walk.addTree(getTree(rWalk, commit));
 		}
-		walk.addTree(getTree(rWalk, commit));
 		return walk;
 	}
 
@@ -218,6 +273,91 @@ public abstract class TreeUtils {
 		return treeWalk;
 	}
 
+	/**
+	 * Reset the given tree walk to diff the given commit against all the
+	 * parent commits.
+	 * <p>
+	 * This method allows a single tree walk, such as one obtained from a
+	 * {@link TreeWalkCache}, to be reused for every commit visited by a walk.
+	 *
+	 * @param treeWalk
+	 * @param walk
+	 * @param commit
+	 * @return given tree walk
+	 */
+	public static TreeWalk diffWithParents(final TreeWalk treeWalk,
+			final RevWalk walk, final RevCommit commit) {
+		if (treeWalk == null)
+			throw new IllegalArgumentException(
+					Assert.formatNotNull("Tree walk"));
+		if (walk == null)
+			throw new IllegalArgumentException(Assert.formatNotNull("Walk"));
+		if (commit == null)
+			throw new IllegalArgumentException(Assert.formatNotNull("Commit"));
+
+		try {
+			resetWithParents(treeWalk, walk, commit);
+		} catch (IOException e) {
+			throw new GitException(e, null);
+		}
+		treeWalk.setFilter(ANY_DIFF);
+		return treeWalk;
+	}
+
+	/**
+	 * Create a tree walk configured to diff the given commit against only its
+	 * first parent commit.
+	 *
+	 * @param walk
+	 * @param commit
+	 * @return tree walk
+	 */
+	public static TreeWalk diffWithFirstParent(final RevWalk walk,
+			final RevCommit commit) {
+		if (walk == null)
+			throw new IllegalArgumentException(Assert.formatNotNull("Walk"));
+		if (commit == null)
+			throw new IllegalArgumentException(Assert.formatNotNull("Commit"));
+
+		try {
+			final TreeWalk treeWalk = withFirstParent(walk.getObjectReader(),
+					walk, commit);
+			treeWalk.setFilter(ANY_DIFF);
+			return treeWalk;
+		} catch (IOException e) {
+			throw new GitException(e, null);
+		}
+	}
+
+	/**
+	 * Reset the given tree walk to diff the given commit against only its
+	 * first parent commit.
+	 *
+	 * @see #diffWithParents(TreeWalk, RevWalk, RevCommit)
+	 * @param treeWalk
+	 * @param walk
+	 * @param commit
+	 * @return given tree walk
+	 */
+	public static TreeWalk diffWithFirstParent(final TreeWalk treeWalk,
+			final RevWalk walk, final RevCommit commit) {
+		if (treeWalk == null)
+			throw new IllegalArgumentException(
+					Assert.formatNotNull("Tree walk"));
+		if (walk == null)
+			throw new IllegalArgumentException(Assert.formatNotNull("Walk"));
+		if (commit == null)
+			throw new IllegalArgumentException(Assert.formatNotNull("Commit"));
+
+		try {
+			resetWithFirstParent(treeWalk, walk, commit);
+		} catch (IOException e) {
+			throw new GitException(e, null);
+		}
+		treeWalk.setFilter(ANY_DIFF);
+		return treeWalk;
+	}
+
 	/**
 	 * Create a tree walk configured to diff the given revision against all the
 	 * parent commits.
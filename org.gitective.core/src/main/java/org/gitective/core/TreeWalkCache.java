@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2012 Kevin Sawicki <kevinsawicki@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+package org.gitective.core;
+
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+
+/**
+ * Holder of a single {@link TreeWalk} that is reused for as long as it is
+ * requested with the same {@link ObjectReader}.
+ * <p>
+ * Filters visiting the trees of every commit of a {@link
+ * org.eclipse.jgit.revwalk.RevWalk} use this class to avoid allocating a new
+ * tree walk and tree parsers for each commit. The returned walk must be reset
+ * to the trees to visit before use and is only valid until the next call to
+ * {@link #get(ObjectReader)}. Instances are not thread-safe, filters that can
+ * be shared by walks running on different threads should use
+ * {@link #perThread()} instead.
+ */
+public class TreeWalkCache {
+
+	private static class PerThreadCache extends TreeWalkCache {
+
+		private final ThreadLocal<TreeWalkCache> caches = new ThreadLocal<TreeWalkCache>() {
+
+			@Override
+			protected TreeWalkCache initialValue() {
+				return new TreeWalkCache();
+			}
+		};
+
+		@Override
+		public TreeWalk get(final ObjectReader reader) {
+			return caches.get().get(reader);
+		}
+
+		@Override
+		public TreeWalkCache clear() {
+			caches.remove();
+			return this;
+		}
+	}
+
+	/**
+	 * Create cache that holds a separate tree walk for each thread
+	 * <p>
+	 * {@link #clear()} only releases the tree walk of the calling thread.
+	 *
+	 * @return cache
+	 */
+	public static TreeWalkCache perThread() {
+		return new PerThreadCache();
+	}
+
+	private TreeWalk walk;
+
+	/**
+	 * Get tree walk using the given reader
+	 * <p>
+	 * The returned walk has no filter, is not recursive and visits trees
+	 * before their children.
+	 *
+	 * @param reader
+	 * @return tree walk
+	 */
+	public TreeWalk get(final ObjectReader reader) {
+		if (reader == null)
+			throw new IllegalArgumentException(Assert.formatNotNull("Reader"));
+
+		final TreeWalk cached = walk;
+		if (cached != null && cached.getObjectReader() == reader) {
+			cached.setFilter(TreeFilter.ALL);
+			cached.setRecursive(false);
+			cached.setPostOrderTraversal(false);
+			return cached;
+		}
+		walk = new TreeWalk(reader);
+		return walk;
+	}
+
+	/**
+	 * Release cached tree walk
+	 *
+	 * @return this cache
+	 */
+	public TreeWalkCache clear() {
+		walk = null;
+		return this;
+	}
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright (c) 2012 Kevin Sawicki <kevinsawicki@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+package org.gitective.core.filter.commit;
+
+import java.io.IOException;
+
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.revwalk.filter.RevFilter;
+
+/**
+ * Evaluation order of child filters that adapts to the measured cost and
+ * selectivity of each filter during a walk.
+ * <p>
+ * The time spent in each filter and how often it decides the outcome of the
+ * composite filter are recorded for every commit. Periodically the filters are
+ * sorted by expected cost per deciding result so cheap and selective filters
+ * are evaluated first.
+ * <p>
+ * Only filters that are {@link CommitFilter#isStateless()} and not configured
+ * to stop the walk are moved. All other filters stay pinned at their original
+ * position and are always evaluated after the same set of filters that
+ * preceded them when added, so the commits they see are unchanged.
+ */
+class AdaptiveFilterOrder {
+
+	/**
+	 * Number of commits visited between reorderings
+	 */
+	static final int INTERVAL = 256;
+
+	/**
+	 * Is the given filter free to move relative to other movable filters?
+	 *
+	 * @param filter
+	 * @return true if movable, false if pinned
+	 */
+	static boolean isMovable(final RevFilter filter) {
+		if (!(filter instanceof CommitFilter))
+			return false;
+		final CommitFilter commitFilter = (CommitFilter) filter;
+		return commitFilter.isStateless() && !commitFilter.isStop();
+	}
+
+	private final RevFilter[] filters;
+
+	private final boolean[] movable;
+
+	private final int[] order;
+
+	private final long[] nanos;
+
+	private final long[] calls;
+
+	private final long[] decided;
+
+	private final double[] scores;
+
+	private int visited;
+
+	/**
+	 * Create order for given filters
+	 *
+	 * @param filters
+	 */
+	AdaptiveFilterOrder(final RevFilter[] filters) {
+		this.filters = filters;
+		final int length = filters.length;
+		movable = new boolean[length];
+		order = new int[length];
+		nanos = new long[length];
+		calls = new long[length];
+		decided = new long[length];
+		scores = new double[length];
+		for (int i = 0; i < length; i++) {
+			movable[i] = isMovable(filters[i]);
+			order[i] = i;
+		}
+	}
+
+	/**
+	 * Evaluate filters in the current order until one returns the given
+	 * deciding value
+	 *
+	 * @param walker
+	 * @param commit
+	 * @param decision
+	 *            false for and semantics, true for or semantics
+	 * @return true if a filter returned the deciding value, false otherwise
+	 * @throws IOException
+	 */
+	boolean decide(final RevWalk walker, final RevCommit commit,
+			final boolean decision) throws IOException {
+		if (++visited == INTERVAL) {
+			visited = 0;
+			reorder();
+		}
+		final int length = order.length;
+		for (int i = 0; i < length; i++) {
+			final int index = order[i];
+			final long start = System.nanoTime();
+			final boolean result;
+			try {
+				result = filters[index].include(walker, commit);
+			} finally {
+				nanos[index] += System.nanoTime() - start;
+				calls[index]++;
+			}
+			if (result == decision) {
+				decided[index]++;
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Is this order for the given filters array?
+	 *
+	 * @param filters
+	 * @return true if same array, false otherwise
+	 */
+	boolean isFor(final RevFilter[] filters) {
+		return this.filters == filters;
+	}
+
+	/**
+	 * Sort each run of movable filters between pinned filters by expected cost
+	 * per deciding result and decay the recorded statistics.
+	 */
+	void reorder() {
+		final int length = order.length;
+		for (int i = 0; i < length; i++) {
+			final long count = calls[i];
+			if (count == 0)
+				// Optimistically try filters that have not been measured yet
+				scores[i] = 0;
+			else {
+				final double cost = (double) nanos[i] / count;
+				final double rate = (decided[i] + 1.0) / (count + 1.0);
+				scores[i] = cost / rate;
+			}
+			nanos[i] >>>= 1;
+			calls[i] >>>= 1;
+			decided[i] >>>= 1;
+		}
+
+		int start = 0;
+		while (start < length) {
+			if (!movable[order[start]]) {
+				start++;
+				continue;
+			}
+			int end = start + 1;
+			while (end < length && movable[order[end]])
+				end++;
+			// Insertion sort, runs are short and mostly ordered already
+			for (int i = start + 1; i < end; i++) {
+				final int index = order[i];
+				int j = i - 1;
+				while (j >= start && scores[order[j]] > scores[index]) {
+					order[j + 1] = order[j];
+					j--;
+				}
+				order[j + 1] = index;
+			}
+			start = end;
+		}
+	}
+}
@@ -33,6 +33,10 @@ import org.eclipse.jgit.revwalk.filter.RevFilter;
  */
 public class AndCommitFilter extends CompositeCommitFilter {
 
+	private boolean adaptive;
+
+	private AdaptiveFilterOrder order;
+
 	/**
 	 * Create an empty and commit filter
 	 */
@@ -49,9 +53,47 @@ public class AndCommitFilter extends CompositeCommitFilter {
 		super(filters);
 	}
 
+	/**
+	 * Set whether child filters should be reordered during the walk based on
+	 * their measured cost and how often each rejects the commit.
+	 * <p>
+	 * Only child filters that are stateless and not configured to stop the
+	 * walk are reordered, all other filters remain at the position they were
+	 * added at.
+	 *
+	 * @see CommitFilter#isStateless()
+	 * @param adaptive
+	 * @return this filter
+	 */
+	public AndCommitFilter setAdaptive(final boolean adaptive) {
+		this.adaptive = adaptive;
+		order = null;
+		return this;
+	}
+
+	/**
+	 * Are child filters reordered during the walk?
+	 *
+	 * @return true if adaptive, false otherwise
+	 */
+	public boolean isAdaptive() {
+		return adaptive;
+	}
+
+	@Override
+	public CommitFilter reset() {
+		order = null;
+		return super.reset();
+	}
+
 	@Override
 	public boolean include(final RevWalk walker, final RevCommit commit)
 			throws IOException {
+		if (adaptive) {
+			if (order == null || !order.isFor(filters))
+				order = new AdaptiveFilterOrder(filters);
+			return order.decide(walker, commit, false) ? include(false) : true;
+		}
 		final int length = filters.length;
 		for (int i = 0; i < length; i++)
 			if (!filters[i].include(walker, commit))
@@ -61,6 +103,6 @@ public class AndCommitFilter extends CompositeCommitFilter {
 
 	@Override
 	public RevFilter clone() {
-		return new AndCommitFilter(cloneFilters());
+		return new AndCommitFilter(cloneFilters()).setAdaptive(adaptive);
 	}
 }
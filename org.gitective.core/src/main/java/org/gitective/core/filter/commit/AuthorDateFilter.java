@@ -57,6 +57,7 @@ public class AuthorDateFilter extends DateFilter {
 
 	@Override
 	public RevFilter clone() {
-		return new AuthorDateFilter(time);
+		return new AuthorDateFilter(time).setSince(isSince()).setSlop(
+				getSlop());
 	}
 }
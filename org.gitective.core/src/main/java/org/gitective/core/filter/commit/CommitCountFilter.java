@@ -34,6 +34,11 @@ public class CommitCountFilter extends CommitFilter {
 
 	private long count;
 
+	@Override
+	public boolean requiresCommitBody() {
+		return false;
+	}
+
 	@Override
 	public boolean include(final RevWalk walker, final RevCommit commit)
 			throws IOException {
@@ -41,7 +41,7 @@ public class CommitCursorFilter extends CommitFilter {
 
 	private RevCommit last;
 
-	private final RevFilter filter;
+	private RevFilter filter;
 
 	/**
 	 * Create cursor filter that retains last commit when not included by the
@@ -93,6 +93,15 @@ public class CommitCursorFilter extends CommitFilter {
 		return super.reset();
 	}
 
+	/**
+	 * Replace the wrapped filter with the filter returned by the given replacer
+	 *
+	 * @param replacer
+	 */
+	void replaceFilters(final ProfilingFilter.Replacer replacer) {
+		filter = replacer.replace(filter);
+	}
+
 	@Override
 	public RevFilter clone() {
 		return new CommitCursorFilter(filter.clone());
@@ -22,13 +22,17 @@
 package org.gitective.core.filter.commit;
 
 import java.util.Collection;
+import java.util.Collections;
 
 import org.eclipse.jgit.diff.DiffEntry;
 import org.eclipse.jgit.diff.Edit;
+import org.eclipse.jgit.diff.RawTextComparator;
 import org.eclipse.jgit.lib.AbbreviatedObjectId;
+import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.ObjectReader;
 import org.eclipse.jgit.revwalk.RevCommit;
 import org.eclipse.jgit.revwalk.RevWalk;
+import org.gitective.core.BlobPrefetcher;
 import org.gitective.core.BlobUtils;
 
 /**
@@ -39,6 +43,13 @@ import org.gitective.core.BlobUtils;
  */
 public class CommitDiffEditFilter extends CommitDiffFilter {
 
+	/**
+	 * Maximum number of bytes of blob content prefetched for each commit
+	 */
+	protected long prefetchSize;
+
+	private BlobPrefetcher prefetcher;
+
 	/**
 	 * Create commit diff edit filter
 	 */
@@ -55,6 +66,74 @@ public class CommitDiffEditFilter extends CommitDiffFilter {
 		super(detectRenames);
 	}
 
+	/**
+	 * Set the number of bytes of blob content to prefetch for each commit.
+	 * <p>
+	 * When greater than zero all the blobs needed to compute the edits of a
+	 * commit are loaded in pack order by a {@link BlobPrefetcher} before any
+	 * edits are computed instead of being read one diff at a time in path
+	 * order. Pack indexes read to order the blobs are also held on the heap
+	 * up to {@link BlobPrefetcher#DEFAULT_INDEX_CACHE_SIZE} bytes until this
+	 * filter is reset, once for each thread walking with a filter that holds
+	 * a prefetcher per thread.
+	 *
+	 * @param prefetchSize
+	 *            in bytes, zero to disable prefetching
+	 * @return this filter
+	 */
+	public CommitDiffEditFilter setPrefetchSize(final long prefetchSize) {
+		if (prefetchSize < 0)
+			throw new IllegalArgumentException(
+					"Prefetch size cannot be negative");
+
+		this.prefetchSize = prefetchSize;
+		return this;
+	}
+
+	/**
+	 * Get the number of bytes of blob content prefetched for each commit
+	 *
+	 * @return size in bytes, zero if not prefetching
+	 */
+	public long getPrefetchSize() {
+		return prefetchSize;
+	}
+
+	/**
+	 * Get the prefetcher held by this filter for the calling thread
+	 * <p>
+	 * Filters that can be shared by walks running on different threads should
+	 * override this method and {@link #setCachedPrefetcher(BlobPrefetcher)} to
+	 * hold a separate prefetcher for each thread.
+	 *
+	 * @return prefetcher, may be null
+	 */
+	protected BlobPrefetcher getCachedPrefetcher() {
+		return prefetcher;
+	}
+
+	/**
+	 * Set the prefetcher held by this filter for the calling thread
+	 *
+	 * @param prefetcher
+	 *            may be null
+	 */
+	protected void setCachedPrefetcher(final BlobPrefetcher prefetcher) {
+		this.prefetcher = prefetcher;
+	}
+
+	private BlobPrefetcher getPrefetcher() {
+		if (prefetchSize <= 0 || repository == null)
+			return null;
+		BlobPrefetcher prefetcher = getCachedPrefetcher();
+		if (prefetcher == null || prefetcher.getRepository() != repository
+				|| prefetcher.getBufferSize() != prefetchSize) {
+			prefetcher = new BlobPrefetcher(repository, prefetchSize);
+			setCachedPrefetcher(prefetcher);
+		}
+		return prefetcher;
+	}
+
 	/**
 	 * Mark the start of a commit being processed
 	 * <p>
@@ -89,20 +168,56 @@ public class CommitDiffEditFilter extends CommitDiffFilter {
 			final Collection<DiffEntry> diffs) {
 		markStart(commit);
 		final ObjectReader reader = walker.getObjectReader();
-		for (DiffEntry diff : diffs) {
-			if (!isFileDiff(diff))
-				continue;
-			final AbbreviatedObjectId oldId = diff.getOldId();
-			if (oldId == null)
-				continue;
-			if (!include(commit, diff, BlobUtils.diff(reader,
-					oldId.toObjectId(), diff.getNewId().toObjectId())))
-				return markEnd(commit).include(false);
+		final BlobPrefetcher prefetcher = getPrefetcher();
+		if (prefetcher != null) {
+			for (DiffEntry diff : diffs)
+				if (isFileDiff(diff) && diff.getOldId() != null) {
+					prefetcher.add(diff.getOldId().toObjectId());
+					prefetcher.add(diff.getNewId().toObjectId());
+				}
+			prefetcher.prefetch(reader);
+		}
+		try {
+			for (DiffEntry diff : diffs) {
+				if (!isFileDiff(diff))
+					continue;
+				final AbbreviatedObjectId oldId = diff.getOldId();
+				if (oldId == null)
+					continue;
+				if (!include(commit, diff,
+						diff(reader, prefetcher, oldId.toObjectId(), diff
+								.getNewId().toObjectId())))
+					return markEnd(commit).include(false);
+			}
+		} finally {
+			if (prefetcher != null)
+				prefetcher.clear();
 		}
 		markEnd(commit);
 		return true;
 	}
 
+	@Override
+	public CommitFilter reset() {
+		final BlobPrefetcher prefetcher = getCachedPrefetcher();
+		if (prefetcher != null) {
+			prefetcher.release();
+			setCachedPrefetcher(null);
+		}
+		return super.reset();
+	}
+
+	private Collection<Edit> diff(final ObjectReader reader,
+			final BlobPrefetcher prefetcher, final ObjectId oldId,
+			final ObjectId newId) {
+		if (prefetcher == null)
+			return BlobUtils.diff(reader, oldId, newId);
+		if (oldId.equals(newId))
+			return Collections.emptyList();
+		return BlobUtils.diff(prefetcher.getBytes(reader, oldId),
+				prefetcher.getBytes(reader, newId), RawTextComparator.DEFAULT);
+	}
+
 	/**
 	 * Handle the edits introduced by given commit.
 	 * <p>
@@ -33,15 +33,25 @@ import java.util.List;
 
 import org.eclipse.jgit.diff.DiffEntry;
 import org.eclipse.jgit.diff.DiffEntry.ChangeType;
+import org.eclipse.jgit.diff.Edit;
 import org.eclipse.jgit.diff.RenameDetector;
 import org.eclipse.jgit.lib.AbbreviatedObjectId;
 import org.eclipse.jgit.lib.FileMode;
 import org.eclipse.jgit.lib.MutableObjectId;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.revwalk.RevCommit;
 import org.eclipse.jgit.revwalk.RevWalk;
 import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+import org.gitective.core.Assert;
+import org.gitective.core.BlobUtils;
+import org.gitective.core.RenameFinder;
 import org.gitective.core.TreeUtils;
+import org.gitective.core.TreeWalkCache;
+import org.gitective.core.monitor.WalkListener;
+import org.gitective.core.monitor.WalkMonitor;
 
 /**
  * Commit diff filter that computes the differences introduced by each commit
@@ -51,6 +61,36 @@ import org.gitective.core.TreeUtils;
  */
 public class CommitDiffFilter extends CommitFilter {
 
+	/**
+	 * How the differences introduced by merge commits are computed
+	 */
+	public static enum MergeDiff {
+
+		/**
+		 * Combined diff of the merge against all of its parents, only paths
+		 * that differ from every parent are reported
+		 */
+		COMBINED,
+
+		/**
+		 * Dense combined diff similar to <code>git diff --cc</code>, files that
+		 * differ from every parent are only reported when some of their lines
+		 * differ from every parent
+		 */
+		DENSE,
+
+		/**
+		 * Diff of the merge against its first parent, reports everything the
+		 * merge brought into the mainline
+		 */
+		FIRST_PARENT,
+
+		/**
+		 * Merges are not diffed and are handled as introducing no differences
+		 */
+		SKIP
+	}
+
 	private static class LocalDiffEntry extends DiffEntry {
 
 		public LocalDiffEntry(final String path) {
@@ -79,6 +119,35 @@ public class CommitDiffFilter extends CommitFilter {
 		}
 	}
 
+	/**
+	 * Tree filter that excludes paths and prunes whole subtrees where the tree
+	 * of the merge commit matches the tree of any of its parents
+	 */
+	private static final TreeFilter COMBINED_DIFF = new TreeFilter() {
+
+		public boolean include(final TreeWalk walker) {
+			final int currentTree = walker.getTreeCount() - 1;
+			final int currentMode = walker.getRawMode(currentTree);
+			for (int i = 0; i < currentTree; i++)
+				if (walker.getRawMode(i) == currentMode
+						&& walker.idEqual(currentTree, i))
+					return false;
+			return true;
+		}
+
+		public boolean shouldBeRecursive() {
+			return false;
+		}
+
+		public TreeFilter clone() {
+			return this;
+		}
+
+		public String toString() {
+			return "COMBINED_DIFF";
+		}
+	};
+
 	/**
 	 * True to detect renames, false otherwise
 	 */
@@ -89,6 +158,21 @@ public class CommitDiffFilter extends CommitFilter {
 	 */
 	protected RenameDetector renameDetector;
 
+	/**
+	 * How merge commits are diffed
+	 */
+	protected MergeDiff mergeDiff = MergeDiff.COMBINED;
+
+	/**
+	 * Rename finder used instead of the rename detector when set
+	 */
+	protected RenameFinder renameFinder;
+
+	/**
+	 * Tree walk reused for each commit visited
+	 */
+	protected final TreeWalkCache treeWalks = createTreeWalkCache();
+
 	/**
 	 * Create commit diff filter
 	 */
@@ -106,6 +190,75 @@ public class CommitDiffFilter extends CommitFilter {
 		this.detectRenames = detectRenames;
 	}
 
+	/**
+	 * Set how the differences introduced by merge commits are computed.
+	 * <p>
+	 * Combined diffs walk the trees of every parent and are the most
+	 * expensive, diffing against the first parent costs the same as a
+	 * non-merge commit and skipping does not read any trees for merges.
+	 *
+	 * @param mergeDiff
+	 *            must be non-null
+	 * @return this filter
+	 */
+	public CommitDiffFilter setMergeDiff(final MergeDiff mergeDiff) {
+		if (mergeDiff == null)
+			throw new IllegalArgumentException(
+					Assert.formatNotNull("Merge diff"));
+
+		this.mergeDiff = mergeDiff;
+		return this;
+	}
+
+	/**
+	 * Get how the differences introduced by merge commits are computed
+	 *
+	 * @return merge diff
+	 */
+	public MergeDiff getMergeDiff() {
+		return mergeDiff;
+	}
+
+	/**
+	 * Set the rename finder used to detect renames.
+	 * <p>
+	 * Renames are detected with the given finder, and its limits and cache,
+	 * regardless of whether this filter was created to detect renames. A
+	 * single finder may be shared by many filters so that the similarity of
+	 * blobs is only computed once.
+	 *
+	 * @param renameFinder
+	 *            null to use the default rename detection
+	 * @return this filter
+	 */
+	public CommitDiffFilter setRenameFinder(final RenameFinder renameFinder) {
+		this.renameFinder = renameFinder;
+		return this;
+	}
+
+	/**
+	 * Get the rename finder used to detect renames
+	 *
+	 * @return rename finder or null if not set
+	 */
+	public RenameFinder getRenameFinder() {
+		return renameFinder;
+	}
+
+	/**
+	 * Create the cache of the tree walk reused for each commit visited
+	 * <p>
+	 * This method is called while this filter is being constructed and so
+	 * must not depend on the state of the sub-class. Sub-classes that can be
+	 * shared by walks running on different threads should return
+	 * {@link TreeWalkCache#perThread()}.
+	 *
+	 * @return tree walk cache
+	 */
+	protected TreeWalkCache createTreeWalkCache() {
+		return new TreeWalkCache();
+	}
+
 	@Override
 	public CommitFilter setRepository(Repository repository) {
 		if (detectRenames)
@@ -121,6 +274,12 @@ public class CommitDiffFilter extends CommitFilter {
 	 * <p>
 	 * The last tree in the tree walk is assumed to be the tree of the current
 	 * commit
+	 * <p>
+	 * The default implementation returns the walk held by {@link #treeWalks},
+	 * reset to the trees of the given commit. The same walk is returned for
+	 * every commit visited by the same reader so callers must not hold on to
+	 * it, or change its filter, beyond the current commit. Overriding
+	 * implementations may return a new walk for each commit instead.
 	 *
 	 * @param walker
 	 * @param commit
@@ -128,7 +287,12 @@ public class CommitDiffFilter extends CommitFilter {
 	 */
 	protected TreeWalk createTreeWalk(final RevWalk walker,
 			final RevCommit commit) {
-		final TreeWalk walk = TreeUtils.diffWithParents(walker, commit);
+		final TreeWalk reused = treeWalks.get(walker.getObjectReader());
+		final TreeWalk walk = mergeDiff == MergeDiff.FIRST_PARENT ? TreeUtils
+				.diffWithFirstParent(reused, walker, commit) : TreeUtils
+				.diffWithParents(reused, walker, commit);
+		if (walk.getTreeCount() > 2)
+			walk.setFilter(COMBINED_DIFF);
 		walk.setRecursive(true);
 		return walk;
 	}
@@ -136,6 +300,13 @@ public class CommitDiffFilter extends CommitFilter {
 	@Override
 	public boolean include(final RevWalk walker, final RevCommit commit)
 			throws IOException {
+		if (mergeDiff == MergeDiff.SKIP && commit.getParentCount() > 1) {
+			final Collection<DiffEntry> none = Collections.emptyList();
+			return include(walker, commit, none) ? true : include(false);
+		}
+
+		final WalkListener listener = WalkMonitor.getListener();
+		final long start = listener != null ? System.nanoTime() : 0L;
 		final TreeWalk walk = createTreeWalk(walker, commit);
 		final List<DiffEntry> diffs;
 		final int treeCount = walk.getTreeCount();
@@ -164,6 +335,9 @@ public class CommitDiffFilter extends CommitFilter {
 				}
 				if (same)
 					continue;
+				if (mergeDiff == MergeDiff.DENSE
+						&& !isDense(walker.getObjectReader(), walk, currentId))
+					continue;
 
 				final LocalDiffEntry diff = new LocalDiffEntry(
 						walk.getPathString());
@@ -180,14 +354,86 @@ public class CommitDiffFilter extends CommitFilter {
 				diffs.add(diff);
 			}
 		}
-		if (detectRenames) {
+		if (listener != null)
+			listener.treeDiffed(treeCount, diffs.size(), System.nanoTime()
+					- start);
+
+		if (renameFinder == null && !detectRenames)
+			return include(walker, commit, diffs) ? true : include(false);
+
+		final long renameStart = listener != null ? System.nanoTime() : 0L;
+		final Collection<DiffEntry> renamed;
+		if (renameFinder != null)
+			renamed = renameFinder.compute(walker.getObjectReader(), diffs);
+		else {
 			renameDetector.reset();
 			renameDetector.addAll(diffs);
-			return include(walker, commit,
-					renameDetector.compute(walker.getObjectReader(), INSTANCE)) ? true
-					: include(false);
-		} else
-			return include(walker, commit, diffs) ? true : include(false);
+			renamed = renameDetector.compute(walker.getObjectReader(),
+					INSTANCE);
+		}
+		if (listener != null)
+			listener.renamesDetected(diffs.size(), System.nanoTime()
+					- renameStart);
+		return include(walker, commit, renamed) ? true : include(false);
+	}
+
+	/**
+	 * Does the current file of the given merge tree walk have lines that differ
+	 * from every parent?
+	 * <p>
+	 * Paths that are not regular files in the merge, and binary files, are
+	 * always considered dense.
+	 *
+	 * @param reader
+	 * @param walk
+	 * @param id
+	 *            scratch id
+	 * @return true if dense, false otherwise
+	 */
+	private boolean isDense(final ObjectReader reader, final TreeWalk walk,
+			final MutableObjectId id) {
+		final int currentTree = walk.getTreeCount() - 1;
+		if (TYPE_FILE != (walk.getRawMode(currentTree) & TYPE_MASK))
+			return true;
+		walk.getObjectId(id, currentTree);
+		final ObjectId current = id.toObjectId();
+
+		// Count per result line how many parents changed it and per gap
+		// between lines how many parents had lines deleted there
+		int[] changed = new int[64];
+		int[] deleted = new int[64];
+		for (int i = 0; i < currentTree; i++) {
+			if (TYPE_FILE != (walk.getRawMode(i) & TYPE_MASK)
+					&& walk.getRawMode(i) != 0)
+				return true;
+			walk.getObjectId(id, i);
+			final Collection<Edit> edits = BlobUtils.diff(reader,
+					id.toObjectId(), current);
+			if (edits.isEmpty())
+				return true;
+			for (Edit edit : edits) {
+				final int end = Math.max(edit.getEndB(), edit.getBeginB() + 1);
+				if (end > changed.length) {
+					changed = grow(changed, end);
+					deleted = grow(deleted, end);
+				}
+				if (edit.getBeginB() == edit.getEndB())
+					deleted[edit.getBeginB()]++;
+				else
+					for (int line = edit.getBeginB(); line < edit.getEndB(); line++)
+						changed[line]++;
+			}
+		}
+		for (int i = 0; i < changed.length; i++)
+			if (changed[i] == currentTree || deleted[i] == currentTree)
+				return true;
+		return false;
+	}
+
+	private static int[] grow(final int[] counts, final int length) {
+		final int[] grown = new int[Math.max(length, counts.length * 2)];
+		System.arraycopy(counts, 0, grown, 0, counts.length);
+		return grown;
 	}
 
 	/**
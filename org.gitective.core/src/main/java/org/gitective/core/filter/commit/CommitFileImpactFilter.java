@@ -24,12 +24,11 @@ package org.gitective.core.filter.commit;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.SortedSet;
-import java.util.TreeSet;
 
 import org.eclipse.jgit.diff.DiffEntry;
 import org.eclipse.jgit.revwalk.RevCommit;
 import org.eclipse.jgit.revwalk.filter.RevFilter;
-import org.gitective.core.filter.commit.CommitImpact.DescendingImpactComparator;
+import org.gitective.core.Assert;
 
 /**
  * Filter that tracks the impact of commits measure in terms of files changed
@@ -39,8 +38,7 @@ public class CommitFileImpactFilter extends CommitDiffFilter implements
 
 	private final int limit;
 
-	private final SortedSet<CommitImpact> commits = new TreeSet<CommitImpact>(
-			new DescendingImpactComparator());
+	private final CommitImpactSet commits;
 
 	/**
 	 * Create an impact filter that retains the given number of most impacting
@@ -52,6 +50,7 @@ public class CommitFileImpactFilter extends CommitDiffFilter implements
 	public CommitFileImpactFilter(final boolean detectRenames, final int limit) {
 		super(detectRenames);
 		this.limit = limit;
+		commits = new CommitImpactSet(limit);
 	}
 
 	/**
@@ -88,10 +87,36 @@ public class CommitFileImpactFilter extends CommitDiffFilter implements
 	}
 
 	/**
-	 * @return commits
+	 * Get the retained commits sorted from most to least impacting
+	 *
+	 * @return non-null but possibly empty sorted set
 	 */
 	public SortedSet<CommitImpact> getCommits() {
-		return commits;
+		return commits.getCommits();
+	}
+
+	/**
+	 * Merge the given impacts into the commits retained by this filter.
+	 * <p>
+	 * This can be used to combine the results of filters used in separate
+	 * walks, such as walks of different repositories or walks running in
+	 * parallel, into a single top list. Impacts for commits already retained
+	 * are ignored.
+	 *
+	 * @param impacts
+	 * @return this filter
+	 */
+	public CommitFileImpactFilter merge(final Iterable<CommitImpact> impacts) {
+		if (impacts == null)
+			throw new IllegalArgumentException(Assert.formatNotNull("Impacts"));
+
+		commits.merge(impacts);
+		return this;
+	}
+
+	@Override
+	public boolean requiresCommitBody() {
+		return false;
 	}
 
 	@Override
@@ -112,10 +137,7 @@ public class CommitFileImpactFilter extends CommitDiffFilter implements
 				delete++;
 				break;
 			}
-		final CommitImpact impact = new CommitImpact(commit, add, edit, delete);
-		commits.add(impact);
-		if (commits.size() > limit)
-			commits.remove(commits.last());
+		commits.offer(commit, add, edit, delete);
 		return true;
 	}
 
@@ -131,6 +153,6 @@ public class CommitFileImpactFilter extends CommitDiffFilter implements
 	}
 
 	public Iterator<CommitImpact> iterator() {
-		return commits.iterator();
+		return getCommits().iterator();
 	}
 }
@@ -65,6 +65,43 @@ public abstract class CommitFilter extends RevFilter implements Cloneable {
 		return this;
 	}
 
+	/**
+	 * Is this filter configured to stop the search when a commit visited is
+	 * not included?
+	 *
+	 * @return true if stopping, false otherwise
+	 */
+	public boolean isStop() {
+		return stop;
+	}
+
+	/**
+	 * Is the include result of this filter determined only by the commit being
+	 * visited?
+	 * <p>
+	 * Stateless filters have no side effects and so may be evaluated in any
+	 * order relative to other stateless filters. The base implementation
+	 * returns false and sub-classes that are pure predicates should override.
+	 *
+	 * @return true if stateless, false otherwise
+	 */
+	public boolean isStateless() {
+		return false;
+	}
+
+	/**
+	 * Does this filter need the message, author, or committer of the commits
+	 * it visits?
+	 * <p>
+	 * The base implementation returns true and sub-classes that only use the
+	 * id, parents, tree, or commit time of a commit should override.
+	 *
+	 * @see RevFilter#requiresCommitBody()
+	 */
+	public boolean requiresCommitBody() {
+		return true;
+	}
+
 	/**
 	 * Set the repository for the walk that is about to begin.
 	 *
@@ -125,6 +125,17 @@ public class CommitImpact {
 		return ObjectId.fromRaw(commit);
 	}
 
+	/**
+	 * Compare the given id with the id of this impact's commit
+	 *
+	 * @param id
+	 * @return negative, zero, or positive as the given id is less than, equal
+	 *         to, or greater than this impact's commit
+	 */
+	int compareCommit(final AnyObjectId id) {
+		return id.compareTo(commit, 0);
+	}
+
 	public String toString() {
 		return getCommit().name() + " +" + add + '/' + edit + "/-" + delete;
 	}
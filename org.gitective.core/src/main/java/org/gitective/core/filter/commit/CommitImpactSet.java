@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2012 Kevin Sawicki <kevinsawicki@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+package org.gitective.core.filter.commit;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.ObjectId;
+import org.gitective.core.filter.commit.CommitImpact.DescendingImpactComparator;
+
+/**
+ * Bounded sorted set of the most impacting commits.
+ * <p>
+ * Once the limit is reached, candidates that are no more impacting than the
+ * least impacting commit retained are rejected with a single comparison and
+ * without allocating a {@link CommitImpact}. The set grows only as commits are
+ * retained so large limits cost nothing up front.
+ */
+class CommitImpactSet {
+
+	private final int limit;
+
+	private final SortedSet<CommitImpact> commits = new TreeSet<CommitImpact>(
+			new DescendingImpactComparator());
+
+	/**
+	 * Create set retaining at most limit commits
+	 *
+	 * @param limit
+	 */
+	CommitImpactSet(final int limit) {
+		this.limit = Math.max(0, limit);
+	}
+
+	/**
+	 * Would the given impact be retained over the least impacting commit?
+	 */
+	private boolean accepts(final AnyObjectId commit, final int total) {
+		if (limit == 0)
+			return false;
+		if (commits.size() < limit)
+			return true;
+		final CommitImpact worst = commits.last();
+		final int worstTotal = worst.getAdd() + worst.getEdit()
+				+ worst.getDelete();
+		if (total != worstTotal)
+			return total > worstTotal;
+		return worst.compareCommit(commit) < 0;
+	}
+
+	private boolean add(final CommitImpact impact) {
+		if (!commits.add(impact))
+			return false;
+		if (commits.size() > limit)
+			commits.remove(commits.last());
+		return true;
+	}
+
+	/**
+	 * Offer commit impact to set
+	 * <p>
+	 * Commits visited by a walk are never offered more than once so no check
+	 * is done for the commit already being retained.
+	 *
+	 * @param commit
+	 * @param add
+	 * @param edit
+	 * @param delete
+	 * @return true if retained, false if rejected
+	 */
+	boolean offer(final AnyObjectId commit, final int add, final int edit,
+			final int delete) {
+		if (!accepts(commit, add + edit + delete))
+			return false;
+		return add(new CommitImpact(commit, add, edit, delete));
+	}
+
+	/**
+	 * Merge the given impacts into this set, ignoring impacts for commits
+	 * already retained
+	 *
+	 * @param impacts
+	 */
+	void merge(final Iterable<CommitImpact> impacts) {
+		final Set<ObjectId> retained = new HashSet<ObjectId>();
+		for (CommitImpact impact : commits)
+			retained.add(impact.getCommit());
+		for (CommitImpact impact : impacts) {
+			final ObjectId commit = impact.getCommit();
+			if (retained.contains(commit))
+				continue;
+			if (accepts(commit, impact.getAdd() + impact.getEdit()
+					+ impact.getDelete())
+					&& add(impact))
+				retained.add(commit);
+		}
+	}
+
+	/**
+	 * Get number of commits retained
+	 *
+	 * @return size
+	 */
+	int size() {
+		return commits.size();
+	}
+
+	/**
+	 * Clear all retained commits
+	 */
+	void clear() {
+		commits.clear();
+	}
+
+	/**
+	 * Get retained commits, most impacting first
+	 *
+	 * @return non-null but possibly empty sorted set
+	 */
+	SortedSet<CommitImpact> getCommits() {
+		return commits;
+	}
+}
@@ -55,6 +55,11 @@ public class CommitLimitFilter extends CommitFilter {
 		return limit;
 	}
 
+	@Override
+	public boolean requiresCommitBody() {
+		return false;
+	}
+
 	@Override
 	public boolean include(final RevWalk walker, final RevCommit commit)
 			throws IOException {
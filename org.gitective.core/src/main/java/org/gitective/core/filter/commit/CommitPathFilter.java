@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2012 Kevin Sawicki <kevinsawicki@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+package org.gitective.core.filter.commit;
+
+import java.util.Collection;
+
+import org.eclipse.jgit.diff.DiffEntry;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.revwalk.filter.RevFilter;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.AndTreeFilter;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+import org.gitective.core.Assert;
+
+/**
+ * Filter that includes commits that changed at least one path matched by a
+ * {@link TreeFilter}.
+ * <p>
+ * Unlike a tree filter set on a {@link RevWalk}, which runs before every
+ * commit filter and hides the commits it excludes from them, this filter can
+ * be placed after other commit filters, such as a since-mode
+ * {@link DateFilter}, that must see every commit walked. History is not
+ * simplified so merges are matched against all their parents and every
+ * parent is walked.
+ */
+public class CommitPathFilter extends CommitDiffFilter {
+
+	private final TreeFilter paths;
+
+	/**
+	 * Create filter for the given paths
+	 *
+	 * @param paths
+	 *            must be non-null
+	 */
+	public CommitPathFilter(final TreeFilter paths) {
+		if (paths == null)
+			throw new IllegalArgumentException(Assert.formatNotNull("Paths"));
+
+		this.paths = paths;
+	}
+
+	/**
+	 * Get the tree filter matching changed paths
+	 *
+	 * @return paths
+	 */
+	public TreeFilter getPaths() {
+		return paths;
+	}
+
+	@Override
+	protected TreeWalk createTreeWalk(final RevWalk walker,
+			final RevCommit commit) {
+		final TreeWalk walk = super.createTreeWalk(walker, commit);
+		walk.setFilter(AndTreeFilter.create(paths, walk.getFilter()));
+		return walk;
+	}
+
+	@Override
+	public boolean include(final RevWalk walker, final RevCommit commit,
+			final Collection<DiffEntry> diffs) {
+		return include(!diffs.isEmpty());
+	}
+
+	@Override
+	public RevFilter clone() {
+		return new CommitPathFilter(paths.clone());
+	}
+}
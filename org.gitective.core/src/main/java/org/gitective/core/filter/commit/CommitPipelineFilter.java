@@ -31,11 +31,16 @@ import org.eclipse.jgit.revwalk.RevWalk;
 import org.eclipse.jgit.revwalk.filter.RevFilter;
 import org.eclipse.jgit.treewalk.TreeWalk;
 import org.eclipse.jgit.treewalk.filter.TreeFilter;
+import org.gitective.core.TreeWalkCache;
 import org.gitective.core.filter.tree.BaseTreeFilter;
 
 /**
  * Commit pipeline filter that includes commit that are included by each
  * configured pipe.
+ * <p>
+ * The pipes of nested pipelines that do not stop the search are flattened into
+ * a single array of pipes each time {@link #setRepository(Repository)} is
+ * called and a single tree walk is reused for every commit visited.
  */
 public class CommitPipelineFilter extends CommitFilter {
 
@@ -45,11 +50,13 @@ public class CommitPipelineFilter extends CommitFilter {
 				throws IOException;
 
 		Pipe setRepository(Repository repository);
+
+		void replaceFilters(ProfilingFilter.Replacer replacer);
 	}
 
 	private static class CommitPipe implements Pipe {
 
-		private final RevFilter filter;
+		private RevFilter filter;
 
 		public CommitPipe(final RevFilter filter) {
 			this.filter = filter;
@@ -66,6 +73,10 @@ public class CommitPipelineFilter extends CommitFilter {
 				((CommitFilter) filter).setRepository(repository);
 			return this;
 		}
+
+		public void replaceFilters(final ProfilingFilter.Replacer replacer) {
+			filter = replacer.replace(filter);
+		}
 	}
 
 	private static class TreePipe implements Pipe {
@@ -79,7 +90,7 @@ public class CommitPipelineFilter extends CommitFilter {
 		public boolean include(final RevWalk commitWalk,
 				final TreeWalk treeWalk, final RevCommit commit)
 				throws IOException {
-			treeWalk.reset();
+			treeWalk.reset(commit.getTree());
 			treeWalk.setFilter(filter);
 			while (treeWalk.next())
 				if (treeWalk.isSubtree())
@@ -92,11 +103,15 @@ public class CommitPipelineFilter extends CommitFilter {
 				((BaseTreeFilter) filter).setRepository(repository);
 			return this;
 		}
+
+		public void replaceFilters(final ProfilingFilter.Replacer replacer) {
+			// Tree filters are not commit filters
+		}
 	}
 
 	private static class CommitTreePipe extends TreePipe {
 
-		private final RevFilter commitFilter;
+		private RevFilter commitFilter;
 
 		public CommitTreePipe(final RevFilter commitFilter,
 				final TreeFilter treeFilter) {
@@ -117,6 +132,10 @@ public class CommitPipelineFilter extends CommitFilter {
 				((CommitFilter) commitFilter).setRepository(repository);
 			return super.setRepository(repository);
 		}
+
+		public void replaceFilters(final ProfilingFilter.Replacer replacer) {
+			commitFilter = replacer.replace(commitFilter);
+		}
 	}
 
 	private static class NestedPipe implements Pipe {
@@ -137,10 +156,18 @@ public class CommitPipelineFilter extends CommitFilter {
 			pipeline.setRepository(repository);
 			return this;
 		}
+
+		public void replaceFilters(final ProfilingFilter.Replacer replacer) {
+			pipeline.replaceFilters(replacer);
+		}
 	}
 
 	private final List<Pipe> pipes = new ArrayList<Pipe>();
 
+	private final TreeWalkCache treeWalks = new TreeWalkCache();
+
+	private Pipe[] flattened;
+
 	/**
 	 * Add nested pipeline
 	 *
@@ -148,8 +175,10 @@ public class CommitPipelineFilter extends CommitFilter {
 	 * @return this pipeline
 	 */
 	public CommitPipelineFilter add(final CommitPipelineFilter pipeline) {
-		if (pipeline != this)
+		if (pipeline != this) {
 			pipes.add(new NestedPipe(pipeline));
+			flattened = null;
+		}
 		return this;
 	}
 
@@ -168,6 +197,7 @@ public class CommitPipelineFilter extends CommitFilter {
 			pipes.add(new CommitPipe(commitFilter));
 		else if (treeFilter != null)
 			pipes.add(new TreePipe(treeFilter));
+		flattened = null;
 		return this;
 	}
 
@@ -191,10 +221,54 @@ public class CommitPipelineFilter extends CommitFilter {
 		return add(commitFilter, null);
 	}
 
+	/**
+	 * Replace the commit filters of each pipe, including the pipes of nested
+	 * pipelines, with the filters returned by the given replacer
+	 *
+	 * @param replacer
+	 */
+	void replaceFilters(final ProfilingFilter.Replacer replacer) {
+		for (Pipe pipe : pipes)
+			pipe.replaceFilters(replacer);
+		flattened = null;
+	}
+
+	/**
+	 * Can the pipes of this pipeline be run in place of this pipeline when
+	 * nested in another pipeline?
+	 *
+	 * @return true if flattenable, false otherwise
+	 */
+	private boolean isFlattenable() {
+		return getClass() == CommitPipelineFilter.class && !isStop();
+	}
+
+	private void flatten(final List<Pipe> flat) {
+		for (Pipe pipe : pipes)
+			if (pipe instanceof NestedPipe
+					&& ((NestedPipe) pipe).pipeline.isFlattenable())
+				((NestedPipe) pipe).pipeline.flatten(flat);
+			else
+				flat.add(pipe);
+	}
+
+	private Pipe[] getPipes() {
+		Pipe[] current = flattened;
+		if (current == null) {
+			final List<Pipe> flat = new ArrayList<Pipe>(pipes.size());
+			flatten(flat);
+			current = flat.toArray(new Pipe[flat.size()]);
+			flattened = current;
+		}
+		return current;
+	}
+
 	@Override
 	public CommitFilter setRepository(final Repository repository) {
 		for (Pipe pipe : pipes)
 			pipe.setRepository(repository);
+		flattened = null;
+		getPipes();
 		return super.setRepository(repository);
 	}
 
@@ -209,8 +283,9 @@ public class CommitPipelineFilter extends CommitFilter {
 	 */
 	protected boolean include(final RevCommit commit, final RevWalk commitWalk,
 			final TreeWalk treeWalk) throws IOException {
-		for (Pipe pipe : pipes)
-			if (!pipe.include(commitWalk, treeWalk, commit))
+		final Pipe[] current = getPipes();
+		for (int i = 0; i < current.length; i++)
+			if (!current[i].include(commitWalk, treeWalk, commit))
 				return include(false);
 		return true;
 	}
@@ -219,6 +294,6 @@ public class CommitPipelineFilter extends CommitFilter {
 	public boolean include(final RevWalk commitWalk, final RevCommit commit)
 			throws IOException {
 		return include(commit, commitWalk,
-				new TreeWalk(commitWalk.getObjectReader()));
+				treeWalks.get(commitWalk.getObjectReader()));
 	}
 }
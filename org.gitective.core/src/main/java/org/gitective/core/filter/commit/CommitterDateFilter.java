@@ -57,6 +57,7 @@ public class CommitterDateFilter extends DateFilter {
 
 	@Override
 	public RevFilter clone() {
-		return new CommitterDateFilter(time);
+		return new CommitterDateFilter(time).setSince(isSince()).setSlop(
+				getSlop());
 	}
 }
@@ -35,6 +35,11 @@ import org.gitective.core.Check;
  */
 public class CommitterDiffFilter extends CommitFilter {
 
+	@Override
+	public boolean isStateless() {
+		return true;
+	}
+
 	@Override
 	public boolean include(final RevWalk walker, final RevCommit commit)
 			throws IOException {
@@ -53,6 +53,11 @@ public class CommitterFilter extends PersonFilter {
 		super(name, email);
 	}
 
+	@Override
+	public boolean isStateless() {
+		return true;
+	}
+
 	@Override
 	public boolean include(final RevWalk walker, final RevCommit commit)
 			throws IOException {
@@ -86,6 +86,26 @@ public abstract class CompositeCommitFilter extends CommitFilter {
 		return super.reset();
 	}
 
+	/**
+	 * Composite filters are stateless when every child filter is stateless and
+	 * not configured to stop the walk.
+	 */
+	@Override
+	public boolean isStateless() {
+		for (RevFilter filter : filters)
+			if (!AdaptiveFilterOrder.isMovable(filter))
+				return false;
+		return true;
+	}
+
+	@Override
+	public boolean requiresCommitBody() {
+		for (RevFilter filter : filters)
+			if (filter.requiresCommitBody())
+				return true;
+		return false;
+	}
+
 	/**
 	 * Clone each filter into a new array.
 	 *
@@ -97,6 +117,18 @@ public abstract class CompositeCommitFilter extends CommitFilter {
 		return copy;
 	}
 
+	/**
+	 * Replace each filter with the filter returned by the given replacer
+	 *
+	 * @param replacer
+	 */
+	void replaceFilters(final ProfilingFilter.Replacer replacer) {
+		final RevFilter[] replaced = new RevFilter[filters.length];
+		for (int i = 0; i < replaced.length; i++)
+			replaced[i] = replacer.replace(filters[i]);
+		filters = replaced;
+	}
+
 	/**
 	 * Get the number of filters that have been added as a child filter to this
 	 * filter
@@ -100,6 +100,14 @@ public class CompositeDiffEditFilter extends CommitDiffEditFilter {
 		return super.setRepository(repository);
 	}
 
+	@Override
+	public boolean requiresCommitBody() {
+		for (CommitDiffEditFilter filter : filters)
+			if (filter.requiresCommitBody())
+				return true;
+		return false;
+	}
+
 	@Override
 	public CommitFilter reset() {
 		for (CommitDiffEditFilter filter : filters)
@@ -95,6 +95,14 @@ public class CompositeDiffFilter extends CommitDiffFilter {
 		return super.setRepository(repository);
 	}
 
+	@Override
+	public boolean requiresCommitBody() {
+		for (CommitDiffFilter filter : filters)
+			if (filter.requiresCommitBody())
+				return true;
+		return false;
+	}
+
 	@Override
 	public CommitFilter reset() {
 		for (CommitDiffFilter filter : filters)
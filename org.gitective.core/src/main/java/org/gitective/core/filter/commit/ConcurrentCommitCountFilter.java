@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2012 Kevin Sawicki <kevinsawicki@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+package org.gitective.core.filter.commit;
+
+import java.io.IOException;
+
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.revwalk.filter.RevFilter;
+import org.gitective.core.ConcurrentCounter;
+
+/**
+ * Commit count filter that can be shared by walks running concurrently on
+ * different threads.
+ * <p>
+ * The count can be read at any time from any thread while walks are in
+ * progress.
+ */
+public class ConcurrentCommitCountFilter extends CommitCountFilter {
+
+	private final ConcurrentCounter count = new ConcurrentCounter();
+
+	@Override
+	public boolean include(final RevWalk walker, final RevCommit commit)
+			throws IOException {
+		count.increment();
+		return true;
+	}
+
+	@Override
+	public long getCount() {
+		return count.get();
+	}
+
+	@Override
+	public CommitFilter reset() {
+		count.reset();
+		return super.reset();
+	}
+
+	@Override
+	public RevFilter clone() {
+		return new ConcurrentCommitCountFilter();
+	}
+}
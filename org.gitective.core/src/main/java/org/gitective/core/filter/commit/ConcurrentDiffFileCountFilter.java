@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2012 Kevin Sawicki <kevinsawicki@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+package org.gitective.core.filter.commit;
+
+import java.util.Collection;
+
+import org.eclipse.jgit.diff.DiffEntry;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.filter.RevFilter;
+import org.gitective.core.ConcurrentCounter;
+import org.gitective.core.TreeWalkCache;
+
+/**
+ * Diff file count filter that can be shared by walks running concurrently on
+ * different threads.
+ * <p>
+ * Rename detection is not supported since the rename detector of a
+ * {@link CommitDiffFilter} holds per-commit state that cannot be shared
+ * between walks.
+ */
+public class ConcurrentDiffFileCountFilter extends DiffFileCountFilter {
+
+	private final ConcurrentCounter added = new ConcurrentCounter();
+
+	private final ConcurrentCounter edited = new ConcurrentCounter();
+
+	private final ConcurrentCounter deleted = new ConcurrentCounter();
+
+	@Override
+	public long getAdded() {
+		return added.get();
+	}
+
+	@Override
+	public long getEdited() {
+		return edited.get();
+	}
+
+	@Override
+	public long getDeleted() {
+		return deleted.get();
+	}
+
+	@Override
+	public long getRenamed() {
+		return 0L;
+	}
+
+	@Override
+	public long getCopied() {
+		return 0L;
+	}
+
+	@Override
+	public long getTotal() {
+		return getAdded() + getEdited() + getDeleted();
+	}
+
+	@Override
+	public boolean include(final RevCommit commit,
+			final Collection<DiffEntry> diffs) {
+		long add = 0;
+		long edit = 0;
+		long delete = 0;
+		for (DiffEntry diff : diffs)
+			switch (diff.getChangeType()) {
+			case ADD:
+				add++;
+				break;
+			case MODIFY:
+				edit++;
+				break;
+			case DELETE:
+				delete++;
+				break;
+			}
+		if (add > 0)
+			added.add(add);
+		if (edit > 0)
+			edited.add(edit);
+		if (delete > 0)
+			deleted.add(delete);
+		return true;
+	}
+
+	@Override
+	protected TreeWalkCache createTreeWalkCache() {
+		return TreeWalkCache.perThread();
+	}
+
+	@Override
+	public CommitFilter reset() {
+		added.reset();
+		edited.reset();
+		deleted.reset();
+		return super.reset();
+	}
+
+	@Override
+	public RevFilter clone() {
+		return new ConcurrentDiffFileCountFilter();
+	}
+}
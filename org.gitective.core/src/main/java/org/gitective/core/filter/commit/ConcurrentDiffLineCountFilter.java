@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2012 Kevin Sawicki <kevinsawicki@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+package org.gitective.core.filter.commit;
+
+import org.eclipse.jgit.diff.DiffEntry;
+import org.eclipse.jgit.diff.Edit;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.filter.RevFilter;
+import org.gitective.core.BlobPrefetcher;
+import org.gitective.core.ConcurrentCounter;
+import org.gitective.core.TreeWalkCache;
+
+/**
+ * Diff line count filter that can be shared by walks running concurrently on
+ * different threads.
+ * <p>
+ * Rename detection is not supported since the rename detector of a
+ * {@link CommitDiffFilter} holds per-commit state that cannot be shared
+ * between walks. Blob prefetching holds a separate {@link BlobPrefetcher} for
+ * each thread.
+ */
+public class ConcurrentDiffLineCountFilter extends DiffLineCountFilter {
+
+	private final ConcurrentCounter added = new ConcurrentCounter();
+
+	private final ConcurrentCounter edited = new ConcurrentCounter();
+
+	private final ConcurrentCounter deleted = new ConcurrentCounter();
+
+	private volatile ThreadLocal<BlobPrefetcher> prefetchers = new ThreadLocal<BlobPrefetcher>();
+
+	@Override
+	public long getAdded() {
+		return added.get();
+	}
+
+	@Override
+	public long getEdited() {
+		return edited.get();
+	}
+
+	@Override
+	public long getDeleted() {
+		return deleted.get();
+	}
+
+	@Override
+	public long getTotal() {
+		return getAdded() + getEdited() + getDeleted();
+	}
+
+	@Override
+	protected boolean include(RevCommit commit, DiffEntry diff, Edit hunk) {
+		switch (hunk.getType()) {
+		case DELETE:
+			deleted.add(hunk.getLengthA());
+			break;
+		case INSERT:
+			added.add(hunk.getLengthB());
+			break;
+		case REPLACE:
+			edited.add(hunk.getLengthB());
+			break;
+		}
+		return true;
+	}
+
+	@Override
+	protected TreeWalkCache createTreeWalkCache() {
+		return TreeWalkCache.perThread();
+	}
+
+	@Override
+	protected BlobPrefetcher getCachedPrefetcher() {
+		return prefetchers.get();
+	}
+
+	@Override
+	protected void setCachedPrefetcher(final BlobPrefetcher prefetcher) {
+		prefetchers.set(prefetcher);
+	}
+
+	@Override
+	public CommitFilter reset() {
+		prefetchers = new ThreadLocal<BlobPrefetcher>();
+		added.reset();
+		edited.reset();
+		deleted.reset();
+		return super.reset();
+	}
+
+	@Override
+	public RevFilter clone() {
+		return new ConcurrentDiffLineCountFilter();
+	}
+}
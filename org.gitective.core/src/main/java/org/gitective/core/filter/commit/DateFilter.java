@@ -24,6 +24,7 @@ package org.gitective.core.filter.commit;
 import java.io.IOException;
 import java.util.Date;
 
+import org.eclipse.jgit.errors.StopWalkException;
 import org.eclipse.jgit.lib.PersonIdent;
 import org.eclipse.jgit.revwalk.RevCommit;
 import org.eclipse.jgit.revwalk.RevWalk;
@@ -33,14 +34,47 @@ import org.gitective.core.Assert;
  * Commit filter that includes commits until one is encountered that returns a
  * date from {@link #getDate(RevCommit)} that has occurred before the configured
  * date.
+ * <p>
+ * In since mode the walk is stopped once enough consecutive commits have been
+ * visited with a commit time older than the configured date. Visiting a newer
+ * commit resets the count so that commits with skewed clocks do not end the
+ * walk before the remaining newer commits have been visited. This mirrors the
+ * behavior of <code>git log --since</code>.
+ * <p>
+ * The since check only counts the commits this filter is asked to include, it
+ * does not look at the commits queued by the walk. A filter in since mode must
+ * therefore see every commit the walk visits and so should be placed before
+ * any other filter in an {@link AndCommitFilter} or
+ * {@link CommitPipelineFilter}. Behind a selective filter it only sees the
+ * commits that filter matched and the walk may continue to the root commits.
+ * The same applies to a {@link org.eclipse.jgit.treewalk.filter.TreeFilter}
+ * set on the walk, which is applied before the commit filter and hides the
+ * commits it excludes from the since count, so paths should be matched with
+ * a {@link CommitPathFilter} placed after this filter instead.
+ * A {@link RevWalk} evaluates its filter as commits are popped from its queue
+ * in descending commit time order, even when the output is sorted
+ * topologically or reversed, so the sorting of the walk does not change when
+ * the walk is stopped.
  */
 public abstract class DateFilter extends CommitFilter {
 
+	/**
+	 * Default number of consecutive older commits visited before a walk in
+	 * since mode is stopped
+	 */
+	public static final int DEFAULT_SLOP = 5;
+
 	/**
 	 * Time
 	 */
 	protected final long time;
 
+	private boolean since;
+
+	private int slop = DEFAULT_SLOP;
+
+	private int remaining = DEFAULT_SLOP;
+
 	/**
 	 * Create a date filter for a given time
 	 *
@@ -63,9 +97,80 @@ public abstract class DateFilter extends CommitFilter {
 		time = date.getTime();
 	}
 
+	/**
+	 * Set whether the walk should be stopped once the commits remaining to be
+	 * visited are older than the configured date.
+	 * <p>
+	 * This filter must be the first filter applied to each commit visited, and
+	 * the walk must not have a tree filter, for the walk to be stopped as soon
+	 * as possible.
+	 *
+	 * @param since
+	 * @return this filter
+	 */
+	public DateFilter setSince(final boolean since) {
+		this.since = since;
+		remaining = slop;
+		return this;
+	}
+
+	/**
+	 * Is this filter stopping the walk once the remaining commits are older
+	 * than the configured date?
+	 *
+	 * @return true if in since mode, false otherwise
+	 */
+	public boolean isSince() {
+		return since;
+	}
+
+	/**
+	 * Set the number of consecutive commits older than the configured date
+	 * that are visited before a walk in since mode is stopped
+	 *
+	 * @param slop
+	 *            must be zero or greater
+	 * @return this filter
+	 */
+	public DateFilter setSlop(final int slop) {
+		if (slop < 0)
+			throw new IllegalArgumentException("Slop cannot be negative");
+
+		this.slop = slop;
+		remaining = slop;
+		return this;
+	}
+
+	/**
+	 * Get the number of consecutive commits older than the configured date
+	 * that are visited before a walk in since mode is stopped
+	 *
+	 * @return slop
+	 */
+	public int getSlop() {
+		return slop;
+	}
+
+	@Override
+	public boolean isStateless() {
+		return !since;
+	}
+
+	@Override
+	public CommitFilter reset() {
+		remaining = slop;
+		return super.reset();
+	}
+
 	@Override
 	public boolean include(final RevWalk walker, final RevCommit commit)
 			throws IOException {
+		if (since) {
+			if (commit.getCommitTime() * 1000L >= time)
+				remaining = slop;
+			else if (remaining-- <= 0)
+				throw StopWalkException.INSTANCE;
+		}
 		final Date date = getDate(commit);
 		if (date == null)
 			return include(false);
@@ -101,6 +101,11 @@ public class DiffFileCountFilter extends CommitDiffFilter {
 		return added + edited + deleted + renamed + copied;
 	}
 
+	@Override
+	public boolean requiresCommitBody() {
+		return false;
+	}
+
 	@Override
 	public boolean include(final RevCommit commit,
 			final Collection<DiffEntry> diffs) {
@@ -66,6 +66,16 @@ public class DiffFileSizeFilter extends CommitDiffFilter {
 		return total;
 	}
 
+	@Override
+	public boolean isStateless() {
+		return true;
+	}
+
+	@Override
+	public boolean requiresCommitBody() {
+		return false;
+	}
+
 	@Override
 	public boolean include(final RevCommit commit,
 			final Collection<DiffEntry> diffs) {
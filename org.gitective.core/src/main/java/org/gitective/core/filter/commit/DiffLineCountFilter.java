@@ -96,6 +96,11 @@ public class DiffLineCountFilter extends CommitDiffEditFilter {
 		return true;
 	}
 
+	@Override
+	public boolean requiresCommitBody() {
+		return false;
+	}
+
 	@Override
 	public CommitFilter reset() {
 		added = 0;
@@ -73,6 +73,16 @@ public class DiffLineSizeFilter extends CommitDiffEditFilter {
 		return total;
 	}
 
+	@Override
+	public boolean isStateless() {
+		return true;
+	}
+
+	@Override
+	public boolean requiresCommitBody() {
+		return false;
+	}
+
 	@Override
 	public boolean include(RevWalk walker, RevCommit commit,
 			Collection<DiffEntry> diffs) {
@@ -32,6 +32,7 @@ import org.eclipse.jgit.revwalk.RevWalk;
 import org.eclipse.jgit.revwalk.filter.RevFilter;
 import org.eclipse.jgit.treewalk.TreeWalk;
 import org.gitective.core.TreeUtils;
+import org.gitective.core.TreeWalkCache;
 
 /**
  * Filter that tracks any duplicate trees introduced in a visited commit.
@@ -40,9 +41,12 @@ public class DuplicateTreeFilter extends CommitFilter {
 
 	private final Map<RevCommit, DuplicateContainer> duplicates = new HashMap<RevCommit, DuplicateContainer>();
 
+	private final TreeWalkCache walks = new TreeWalkCache();
+
 	public boolean include(final RevWalk walker, final RevCommit commit)
 			throws IOException {
-		final TreeWalk walk = TreeUtils.diffWithParents(walker, commit);
+		final TreeWalk walk = TreeUtils.diffWithParents(
+				walks.get(walker.getObjectReader()), walker, commit);
 		final MutableObjectId id = new MutableObjectId();
 		final ObjectId zero = ObjectId.zeroId();
 		final DuplicateContainer dupes = new DuplicateContainer(commit);
@@ -83,6 +87,7 @@ public class DuplicateTreeFilter extends CommitFilter {
 	@Override
 	public CommitFilter reset() {
 		duplicates.clear();
+		walks.clear();
 		return super.reset();
 	}
 
@@ -56,6 +56,16 @@ public class EmptyBlobRemoveFilter extends CommitDiffFilter {
 		super(detectRenames);
 	}
 
+	@Override
+	public boolean isStateless() {
+		return true;
+	}
+
+	@Override
+	public boolean requiresCommitBody() {
+		return false;
+	}
+
 	@Override
 	public boolean include(final RevCommit commit,
 			final Collection<DiffEntry> diffs) throws IOException {
@@ -70,9 +70,9 @@ public class LastCommitDiffFilter extends CommitDiffFilter {
 			final Collection<DiffEntry> diffs) throws IOException {
 		if (tree == null) {
 			tree = commit.getTree();
-			final TreeWalk treeWalk = new TreeWalk(walker.getObjectReader());
+			final TreeWalk treeWalk = treeWalks.get(walker.getObjectReader());
 			treeWalk.setRecursive(true);
-			treeWalk.addTree(tree);
+			treeWalk.reset(tree);
 			while (treeWalk.next())
 				commits.put(treeWalk.getPathString(), null);
 			remaining = commits.size();
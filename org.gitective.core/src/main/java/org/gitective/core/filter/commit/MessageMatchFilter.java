@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2012 Kevin Sawicki <kevinsawicki@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+package org.gitective.core.filter.commit;
+
+import java.io.IOException;
+import java.util.BitSet;
+
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.revwalk.filter.RevFilter;
+import org.gitective.core.Assert;
+import org.gitective.core.MessageMatcher;
+
+/**
+ * Filter that includes commits where at least one of many patterns can be
+ * found in the commit's full message.
+ * <p>
+ * All patterns are found with a single {@link MessageMatcher} pass over each
+ * commit visited and the number of commits each pattern was found in is
+ * tracked.
+ */
+public class MessageMatchFilter extends CommitFilter {
+
+	private final MessageMatcher matcher;
+
+	private final BitSet matched = new BitSet();
+
+	private long[] counts;
+
+	/**
+	 * Create filter for patterns of given matcher
+	 *
+	 * @param matcher
+	 */
+	public MessageMatchFilter(final MessageMatcher matcher) {
+		if (matcher == null)
+			throw new IllegalArgumentException(Assert.formatNotNull("Matcher"));
+		if (matcher.getPatternCount() == 0)
+			throw new IllegalArgumentException(Assert.formatNotEmpty("Matcher"));
+
+		this.matcher = matcher;
+		counts = new long[matcher.getPatternCount()];
+	}
+
+	/**
+	 * Create filter for regular expressions
+	 *
+	 * @param patterns
+	 */
+	public MessageMatchFilter(final String... patterns) {
+		this(toMatcher(patterns));
+	}
+
+	/**
+	 * Create filter for the patterns of the given message filters
+	 * <p>
+	 * This allows filters such as {@link BugFilter}, {@link ChangeIdFilter},
+	 * and {@link SignedOffByFilter} to be combined into a single pass.
+	 *
+	 * @param filters
+	 */
+	public MessageMatchFilter(final CommitMessageFindFilter... filters) {
+		this(toMatcher(filters));
+	}
+
+	private static MessageMatcher toMatcher(final String... patterns) {
+		if (patterns == null)
+			throw new IllegalArgumentException(Assert.formatNotNull("Patterns"));
+		final MessageMatcher matcher = new MessageMatcher();
+		for (String pattern : patterns)
+			matcher.addPattern(pattern);
+		return matcher;
+	}
+
+	private static MessageMatcher toMatcher(
+			final CommitMessageFindFilter... filters) {
+		if (filters == null)
+			throw new IllegalArgumentException(Assert.formatNotNull("Filters"));
+		final MessageMatcher matcher = new MessageMatcher();
+		for (CommitMessageFindFilter filter : filters) {
+			if (filter == null)
+				throw new IllegalArgumentException(
+						Assert.formatNotNull("Filter"));
+			matcher.addPattern(filter.pattern, filter.flags);
+		}
+		return matcher;
+	}
+
+	@Override
+	public boolean include(final RevWalk walker, final RevCommit commit)
+			throws IOException {
+		if (matcher.match(commit, matched) == 0)
+			return include(false);
+		if (counts.length < matcher.getPatternCount()) {
+			final long[] grown = new long[matcher.getPatternCount()];
+			System.arraycopy(counts, 0, grown, 0, counts.length);
+			counts = grown;
+		}
+		for (int i = matched.nextSetBit(0); i >= 0; i = matched
+				.nextSetBit(i + 1))
+			counts[i]++;
+		return true;
+	}
+
+	/**
+	 * Get matcher used by this filter
+	 *
+	 * @return matcher
+	 */
+	public MessageMatcher getMatcher() {
+		return matcher;
+	}
+
+	/**
+	 * Get indexes of the patterns found in the last commit visited
+	 *
+	 * @return non-null but possibly empty set of pattern indexes
+	 */
+	public BitSet getMatched() {
+		return matched;
+	}
+
+	/**
+	 * Get number of commits the pattern at the given index was found in
+	 *
+	 * @param index
+	 * @return commit count
+	 */
+	public long getCount(final int index) {
+		return index < counts.length ? counts[index] : 0L;
+	}
+
+	@Override
+	public CommitFilter reset() {
+		matched.clear();
+		for (int i = 0; i < counts.length; i++)
+			counts[i] = 0L;
+		return super.reset();
+	}
+
+	@Override
+	public RevFilter clone() {
+		return new MessageMatchFilter(matcher.copy());
+	}
+}
@@ -67,6 +67,16 @@ public class NoteFilter extends CommitFilter {
 		return refs.toArray(new String[refs.size()]);
 	}
 
+	@Override
+	public boolean isStateless() {
+		return true;
+	}
+
+	@Override
+	public boolean requiresCommitBody() {
+		return false;
+	}
+
 	@Override
 	public boolean include(final RevWalk walker, final RevCommit commit)
 			throws IOException {
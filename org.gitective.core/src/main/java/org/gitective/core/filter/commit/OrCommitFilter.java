@@ -36,6 +36,10 @@ import org.eclipse.jgit.revwalk.filter.RevFilter;
  */
 public class OrCommitFilter extends CompositeCommitFilter {
 
+	private boolean adaptive;
+
+	private AdaptiveFilterOrder order;
+
 	/**
 	 * Create an empty or commit filter
 	 */
@@ -52,9 +56,47 @@ public class OrCommitFilter extends CompositeCommitFilter {
 		super(filters);
 	}
 
+	/**
+	 * Set whether child filters should be reordered during the walk based on
+	 * their measured cost and how often each includes the commit.
+	 * <p>
+	 * Only child filters that are stateless and not configured to stop the
+	 * walk are reordered, all other filters remain at the position they were
+	 * added at.
+	 *
+	 * @see CommitFilter#isStateless()
+	 * @param adaptive
+	 * @return this filter
+	 */
+	public OrCommitFilter setAdaptive(final boolean adaptive) {
+		this.adaptive = adaptive;
+		order = null;
+		return this;
+	}
+
+	/**
+	 * Are child filters reordered during the walk?
+	 *
+	 * @return true if adaptive, false otherwise
+	 */
+	public boolean isAdaptive() {
+		return adaptive;
+	}
+
+	@Override
+	public CommitFilter reset() {
+		order = null;
+		return super.reset();
+	}
+
 	@Override
 	public boolean include(final RevWalk walker, final RevCommit commit)
 			throws IOException {
+		if (adaptive) {
+			if (order == null || !order.isFor(filters))
+				order = new AdaptiveFilterOrder(filters);
+			return order.decide(walker, commit, true) ? true : include(false);
+		}
 		final int length = filters.length;
 		for (int i = 0; i < length; i++)
 			if (filters[i].include(walker, commit))
@@ -64,6 +106,6 @@ public class OrCommitFilter extends CompositeCommitFilter {
 
 	@Override
 	public RevFilter clone() {
-		return new OrCommitFilter(cloneFilters());
+		return new OrCommitFilter(cloneFilters()).setAdaptive(adaptive);
 	}
 }
@@ -76,6 +76,11 @@ public abstract class PatternFindCommitFilter extends CommitFilter {
 		matcher = Pattern.compile(pattern, flags).matcher("");
 	}
 
+	@Override
+	public boolean isStateless() {
+		return true;
+	}
+
 	@Override
 	public boolean include(final RevWalk walker, final RevCommit commit)
 			throws IOException {
@@ -0,0 +1,384 @@
+/*
+ * Copyright (c) 2012 Kevin Sawicki <kevinsawicki@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+package org.gitective.core.filter.commit;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Formatter;
+import java.util.List;
+
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.revwalk.filter.RevFilter;
+import org.gitective.core.Assert;
+import org.gitective.core.ConcurrentCounter;
+import org.gitective.core.monitor.LatencyHistogram;
+
+/**
+ * Filter that records the number of calls, included commits, latency and
+ * allocation of a wrapped filter.
+ * <p>
+ * {@link #profile(RevFilter)} wraps every node of a composed filter tree so
+ * that {@link #getReport()} can show where the time of a walk was spent. The
+ * children of {@link CompositeCommitFilter}, {@link CommitCursorFilter} and
+ * {@link CommitPipelineFilter} filters are replaced in place and are restored
+ * by {@link #unwrap()}. Filters nested in pipelines added to a pipeline are
+ * reported as children of the outermost pipeline.
+ * <p>
+ * Latency and allocation of a node include the latency and allocation of its
+ * children. Allocation is measured with the per-thread allocation counters of
+ * the JVM and is reported as -1 when the JVM does not support them.
+ * <p>
+ * Clones of a profiling filter record into the same statistics so walks that
+ * clone filters across threads are reported together.
+ */
+public class ProfilingFilter extends CommitFilter {
+
+	/**
+	 * Callback used to replace the children of a composed filter
+	 */
+	static interface Replacer {
+
+		/**
+		 * Get filter to use in place of the given filter
+		 *
+		 * @param filter
+		 * @return filter
+		 */
+		RevFilter replace(RevFilter filter);
+	}
+
+	/**
+	 * Statistics shared by a profiling filter and its clones
+	 */
+	private static class Profile {
+
+		final ConcurrentCounter calls = new ConcurrentCounter();
+
+		final ConcurrentCounter accepted = new ConcurrentCounter();
+
+		final ConcurrentCounter allocated = new ConcurrentCounter();
+
+		final LatencyHistogram latency = new LatencyHistogram();
+
+		final List<ProfilingFilter> children = new ArrayList<ProfilingFilter>();
+	}
+
+	private static final ThreadMXBean THREADS = ManagementFactory
+			.getThreadMXBean();
+
+	private static final boolean ALLOCATION = isAllocationSupported();
+
+	private static boolean isAllocationSupported() {
+		try {
+			if (!(THREADS instanceof com.sun.management.ThreadMXBean))
+				return false;
+			final com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) THREADS;
+			return threads.isThreadAllocatedMemorySupported()
+					&& threads.isThreadAllocatedMemoryEnabled();
+		} catch (LinkageError e) {
+			return false;
+		}
+	}
+
+	private static long getThreadAllocatedBytes() {
+		return ((com.sun.management.ThreadMXBean) THREADS)
+				.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	/**
+	 * Wrap the given filter and every filter nested in it with profiling
+	 * filters
+	 *
+	 * @param filter
+	 * @return profiling filter wrapping the given filter
+	 */
+	public static ProfilingFilter profile(final RevFilter filter) {
+		if (filter == null)
+			throw new IllegalArgumentException(Assert.formatNotNull("Filter"));
+
+		if (filter instanceof ProfilingFilter)
+			return (ProfilingFilter) filter;
+
+		final ProfilingFilter profiled = new ProfilingFilter(filter);
+		replaceChildren(filter, new Replacer() {
+
+			public RevFilter replace(final RevFilter child) {
+				final ProfilingFilter profiledChild = profile(child);
+				profiled.profile.children.add(profiledChild);
+				return profiledChild;
+			}
+		});
+		return profiled;
+	}
+
+	private static void replaceChildren(final RevFilter filter,
+			final Replacer replacer) {
+		if (filter instanceof CompositeCommitFilter)
+			((CompositeCommitFilter) filter).replaceFilters(replacer);
+		else if (filter instanceof CommitCursorFilter)
+			((CommitCursorFilter) filter).replaceFilters(replacer);
+		else if (filter instanceof CommitPipelineFilter)
+			((CommitPipelineFilter) filter).replaceFilters(replacer);
+	}
+
+	private static String getName(final RevFilter filter) {
+		final String name = filter.getClass().getSimpleName();
+		return name.length() > 0 ? name : filter.getClass().getName();
+	}
+
+	private final RevFilter filter;
+
+	private final Profile profile;
+
+	/**
+	 * Create profiling filter for the given filter without wrapping the
+	 * filters nested in it
+	 *
+	 * @param filter
+	 */
+	public ProfilingFilter(final RevFilter filter) {
+		this(filter, new Profile());
+	}
+
+	private ProfilingFilter(final RevFilter filter, final Profile profile) {
+		if (filter == null)
+			throw new IllegalArgumentException(Assert.formatNotNull("Filter"));
+
+		this.filter = filter;
+		this.profile = profile;
+	}
+
+	/**
+	 * Restore the filters nested in the wrapped filter that were replaced by
+	 * {@link #profile(RevFilter)}
+	 *
+	 * @return wrapped filter
+	 */
+	public RevFilter unwrap() {
+		replaceChildren(filter, new Replacer() {
+
+			public RevFilter replace(final RevFilter child) {
+				return child instanceof ProfilingFilter ? ((ProfilingFilter) child)
+						.unwrap() : child;
+			}
+		});
+		return filter;
+	}
+
+	/**
+	 * Get wrapped filter
+	 *
+	 * @return filter
+	 */
+	public RevFilter getFilter() {
+		return filter;
+	}
+
+	/**
+	 * Get profiling filters of the filters nested in the wrapped filter
+	 *
+	 * @return non-null but possibly empty list
+	 */
+	public List<ProfilingFilter> getChildren() {
+		return Collections.unmodifiableList(profile.children);
+	}
+
+	/**
+	 * Get number of commits passed to the wrapped filter
+	 *
+	 * @return call count
+	 */
+	public long getCalls() {
+		return profile.calls.get();
+	}
+
+	/**
+	 * Get number of commits included by the wrapped filter
+	 *
+	 * @return accepted count
+	 */
+	public long getAccepted() {
+		return profile.accepted.get();
+	}
+
+	/**
+	 * Get number of commits not included by the wrapped filter, including
+	 * commits that stopped the walk
+	 *
+	 * @return rejected count
+	 */
+	public long getRejected() {
+		return getCalls() - getAccepted();
+	}
+
+	/**
+	 * Get fraction of commits included by the wrapped filter
+	 *
+	 * @return ratio between 0 and 1
+	 */
+	public double getAcceptRatio() {
+		final long calls = getCalls();
+		return calls > 0 ? (double) getAccepted() / calls : 0;
+	}
+
+	/**
+	 * Get latency of calls to the wrapped filter
+	 *
+	 * @return histogram of call durations
+	 */
+	public LatencyHistogram getLatency() {
+		return profile.latency;
+	}
+
+	/**
+	 * Get time spent in the wrapped filter excluding the time spent in the
+	 * profiled filters nested in it
+	 *
+	 * @return duration in nanoseconds
+	 */
+	public long getSelfTime() {
+		long self = profile.latency.getTotal();
+		for (ProfilingFilter child : profile.children)
+			self -= child.getLatency().getTotal();
+		return Math.max(0, self);
+	}
+
+	/**
+	 * Get bytes allocated during calls to the wrapped filter
+	 *
+	 * @return allocated bytes or -1 if not supported by the JVM
+	 */
+	public long getAllocatedBytes() {
+		return ALLOCATION ? profile.allocated.get() : -1L;
+	}
+
+	/**
+	 * Get average bytes allocated per call to the wrapped filter
+	 *
+	 * @return allocated bytes per call or -1 if not supported by the JVM
+	 */
+	public long getAllocatedBytesPerCall() {
+		if (!ALLOCATION)
+			return -1L;
+		final long calls = getCalls();
+		return calls > 0 ? profile.allocated.get() / calls : 0;
+	}
+
+	/**
+	 * Get tree-shaped report of the statistics of this filter and the
+	 * profiling filters nested in it
+	 *
+	 * @return report
+	 */
+	public String getReport() {
+		final Formatter formatter = new Formatter();
+		formatter.format("%-48s %10s %8s %10s %10s %8s %8s %10s%n", "filter",
+				"calls", "accept%", "total ms", "self ms", "p50 us", "p99 us",
+				"alloc/call");
+		report(formatter, "");
+		return formatter.toString();
+	}
+
+	private void report(final Formatter formatter, final String indent) {
+		formatter.format("%-48s %10d %8.1f %10.3f %10.3f %8d %8d %10d%n",
+				indent + getName(filter), getCalls(), getAcceptRatio() * 100,
+				profile.latency.getTotal() / 1e6, getSelfTime() / 1e6,
+				profile.latency.get50thPercentileMicros(),
+				profile.latency.get99thPercentileMicros(),
+				getAllocatedBytesPerCall());
+		for (ProfilingFilter child : profile.children)
+			child.report(formatter, indent + "  ");
+	}
+
+	/**
+	 * Print report to given stream
+	 *
+	 * @see #getReport()
+	 * @param out
+	 * @return this filter
+	 */
+	public ProfilingFilter printReport(final PrintStream out) {
+		if (out == null)
+			throw new IllegalArgumentException(Assert.formatNotNull("Stream"));
+
+		out.print(getReport());
+		return this;
+	}
+
+	@Override
+	public boolean include(final RevWalk walker, final RevCommit commit)
+			throws IOException {
+		profile.calls.increment();
+		final long allocated = ALLOCATION ? getThreadAllocatedBytes() : 0L;
+		final long start = System.nanoTime();
+		try {
+			final boolean include = filter.include(walker, commit);
+			if (include)
+				profile.accepted.increment();
+			return include;
+		} finally {
+			profile.latency.record(System.nanoTime() - start);
+			if (ALLOCATION)
+				profile.allocated.add(getThreadAllocatedBytes() - allocated);
+		}
+	}
+
+	@Override
+	public boolean requiresCommitBody() {
+		return filter.requiresCommitBody();
+	}
+
+	@Override
+	public boolean isStateless() {
+		return AdaptiveFilterOrder.isMovable(filter);
+	}
+
+	@Override
+	public CommitFilter setRepository(final Repository repository) {
+		if (filter instanceof CommitFilter)
+			((CommitFilter) filter).setRepository(repository);
+		return super.setRepository(repository);
+	}
+
+	@Override
+	public CommitFilter reset() {
+		if (filter instanceof CommitFilter)
+			((CommitFilter) filter).reset();
+		return super.reset();
+	}
+
+	@Override
+	public RevFilter clone() {
+		return new ProfilingFilter(filter.clone(), profile);
+	}
+
+	@Override
+	public String toString() {
+		return "PROFILE(" + filter.toString() + ")";
+	}
+}
@@ -30,7 +30,10 @@ import org.eclipse.jgit.revwalk.RevWalk;
 import org.eclipse.jgit.revwalk.filter.RevFilter;
 import org.eclipse.jgit.treewalk.TreeWalk;
 import org.eclipse.jgit.treewalk.filter.TreeFilter;
+import org.gitective.core.TreeWalkCache;
 import org.gitective.core.filter.commit.CommitFilter;
+import org.gitective.core.monitor.WalkListener;
+import org.gitective.core.monitor.WalkMonitor;
 
 /**
  * Commit filter that wraps a tree filter that includes commits that the tree
@@ -41,6 +44,8 @@ public class CommitParentTreeFilter extends CommitFilter {
 
 	private final BaseTreeFilter filter;
 
+	private final TreeWalkCache walks = new TreeWalkCache();
+
 	/**
 	 * Create commit filter for given tree filter
 	 *
@@ -59,29 +64,43 @@ public class CommitParentTreeFilter extends CommitFilter {
 	@Override
 	public CommitFilter reset() {
 		filter.reset();
+		walks.clear();
 		return super.reset();
 	}
 
 	@Override
 	public boolean include(final RevWalk walker, final RevCommit commit)
 			throws IOException {
-		final TreeWalk walk = new TreeWalk(walker.getObjectReader());
-		walk.addTree(commit.getTree());
-		RevTree tree = null;
-		for (RevCommit parent : commit.getParents()) {
+		final TreeWalk walk = walks.get(walker.getObjectReader());
+		final RevCommit[] parents = commit.getParents();
+		final RevTree[] trees = new RevTree[parents.length + 1];
+		trees[0] = commit.getTree();
+		RevTree tree;
+		for (int i = 0; i < parents.length; i++) {
+			final RevCommit parent = parents[i];
 			tree = parent.getTree();
 			if (tree == null) {
 				walker.parseHeaders(parent);
 				tree = parent.getTree();
 			}
-			walk.addTree(tree);
+			trees[i + 1] = tree;
 		}
+		walk.reset(trees);
 
-		while (walk.next()) {
-			if (filter.include(walker, commit, walk))
-				return true;
-			if (walk.isSubtree())
-				walk.enterSubtree();
+		final WalkListener listener = WalkMonitor.getListener();
+		final long start = listener != null ? System.nanoTime() : 0L;
+		int entries = 0;
+		try {
+			while (walk.next()) {
+				entries++;
+				if (filter.include(walker, commit, walk))
+					return true;
+				if (walk.isSubtree())
+					walk.enterSubtree();
+			}
+		} finally {
+			if (listener != null)
+				listener.treeWalked(entries, System.nanoTime() - start);
 		}
 		return include(false);
 	}
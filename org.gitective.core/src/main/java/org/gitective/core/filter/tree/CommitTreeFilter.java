@@ -28,7 +28,10 @@ import org.eclipse.jgit.revwalk.RevCommit;
 import org.eclipse.jgit.revwalk.RevWalk;
 import org.eclipse.jgit.treewalk.TreeWalk;
 import org.eclipse.jgit.treewalk.filter.TreeFilter;
+import org.gitective.core.TreeWalkCache;
 import org.gitective.core.filter.commit.CommitFilter;
+import org.gitective.core.monitor.WalkListener;
+import org.gitective.core.monitor.WalkMonitor;
 
 /**
  * Filter that wraps a {@link TreeFilter} and includes commits included by the
@@ -38,6 +41,8 @@ public class CommitTreeFilter extends CommitFilter {
 
 	private final BaseTreeFilter filter;
 
+	private final TreeWalkCache walks = new TreeWalkCache();
+
 	/**
 	 * Create commit filter for given tree filter
 	 *
@@ -56,19 +61,29 @@ public class CommitTreeFilter extends CommitFilter {
 	@Override
 	public CommitFilter reset() {
 		filter.reset();
+		walks.clear();
 		return super.reset();
 	}
 
 	@Override
 	public boolean include(final RevWalk walker, final RevCommit commit)
 			throws IOException {
-		final TreeWalk walk = new TreeWalk(walker.getObjectReader());
-		walk.addTree(commit.getTree());
-		while (walk.next()) {
-			if (!filter.include(walker, commit, walk))
-				return include(false);
-			if (walk.isSubtree())
-				walk.enterSubtree();
+		final TreeWalk walk = walks.get(walker.getObjectReader());
+		walk.reset(commit.getTree());
+		final WalkListener listener = WalkMonitor.getListener();
+		final long start = listener != null ? System.nanoTime() : 0L;
+		int entries = 0;
+		try {
+			while (walk.next()) {
+				entries++;
+				if (!filter.include(walker, commit, walk))
+					return include(false);
+				if (walk.isSubtree())
+					walk.enterSubtree();
+			}
+		} finally {
+			if (listener != null)
+				listener.treeWalked(entries, System.nanoTime() - start);
 		}
 		return true;
 	}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2012 Kevin Sawicki <kevinsawicki@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+package org.gitective.core.filter.tree;
+
+import static org.eclipse.jgit.lib.FileMode.TYPE_FILE;
+import static org.eclipse.jgit.lib.FileMode.TYPE_GITLINK;
+import static org.eclipse.jgit.lib.FileMode.TYPE_MASK;
+import static org.eclipse.jgit.lib.FileMode.TYPE_SYMLINK;
+import static org.eclipse.jgit.lib.FileMode.TYPE_TREE;
+
+import java.io.IOException;
+
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+import org.gitective.core.ConcurrentCounter;
+
+/**
+ * Type count filter that can be shared by walks running concurrently on
+ * different threads.
+ */
+public class ConcurrentTypeCountFilter extends TypeCountFilter {
+
+	/**
+	 * Count filter that counts submodules
+	 *
+	 * @return submodule type filter
+	 */
+	public static ConcurrentTypeCountFilter submodule() {
+		return new ConcurrentTypeCountFilter(TYPE_GITLINK);
+	}
+
+	/**
+	 * Create filter that counts files
+	 *
+	 * @return file type filter
+	 */
+	public static ConcurrentTypeCountFilter file() {
+		return new ConcurrentTypeCountFilter(TYPE_FILE);
+	}
+
+	/**
+	 * Create filter that counts symbolic links
+	 *
+	 * @return symbolic link type filter
+	 */
+	public static ConcurrentTypeCountFilter symlink() {
+		return new ConcurrentTypeCountFilter(TYPE_SYMLINK);
+	}
+
+	/**
+	 * Create filter that counts trees
+	 *
+	 * @return tree type filter
+	 */
+	public static ConcurrentTypeCountFilter tree() {
+		return new ConcurrentTypeCountFilter(TYPE_TREE);
+	}
+
+	private final ConcurrentCounter count = new ConcurrentCounter();
+
+	/**
+	 * Create filter that counts the configured type
+	 *
+	 * @param type
+	 */
+	public ConcurrentTypeCountFilter(final int type) {
+		super(type);
+	}
+
+	@Override
+	public long getCount() {
+		return count.get();
+	}
+
+	@Override
+	public BaseTreeFilter reset() {
+		count.reset();
+		return super.reset();
+	}
+
+	@Override
+	public boolean include(final TreeWalk walker) throws IOException {
+		if (getType() == (walker.getRawMode(0) & TYPE_MASK))
+			count.increment();
+		return true;
+	}
+
+	@Override
+	public TreeFilter clone() {
+		return new ConcurrentTypeCountFilter(getType());
+	}
+}
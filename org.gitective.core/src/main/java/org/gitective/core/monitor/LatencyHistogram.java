@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2012 Kevin Sawicki <kevinsawicki@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+package org.gitective.core.monitor;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of durations recorded into power of two nanosecond buckets.
+ * <p>
+ * Recording is lock-free and percentiles are approximated by the upper bound
+ * of the bucket containing them, capped at the maximum duration recorded.
+ */
+public class LatencyHistogram implements LatencyHistogramMBean {
+
+	private static final int BUCKETS = 64;
+
+	private static final long NANOS_PER_MICRO = 1000L;
+
+	private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+
+	private final AtomicLong count = new AtomicLong();
+
+	private final AtomicLong total = new AtomicLong();
+
+	private final AtomicLong max = new AtomicLong();
+
+	/**
+	 * Record duration
+	 *
+	 * @param nanos
+	 * @return this histogram
+	 */
+	public LatencyHistogram record(final long nanos) {
+		final long duration = Math.max(0L, nanos);
+		buckets.incrementAndGet(Math.min(BUCKETS - 1,
+				64 - Long.numberOfLeadingZeros(duration)));
+		count.incrementAndGet();
+		total.addAndGet(duration);
+		long current = max.get();
+		while (duration > current && !max.compareAndSet(current, duration))
+			current = max.get();
+		return this;
+	}
+
+	/**
+	 * Get approximate duration below which the given fraction of recorded
+	 * durations fall
+	 *
+	 * @param fraction
+	 *            between 0 and 1
+	 * @return duration in nanoseconds
+	 */
+	public long getPercentile(final double fraction) {
+		if (fraction < 0 || fraction > 1)
+			throw new IllegalArgumentException(
+					"Fraction must be between 0 and 1");
+
+		final long maximum = max.get();
+		long remaining = (long) Math.ceil(count.get() * fraction);
+		if (remaining == 0)
+			return 0L;
+		for (int i = 0; i < BUCKETS; i++) {
+			remaining -= buckets.get(i);
+			if (remaining <= 0)
+				return Math.min(maximum, i == 0 ? 0L : (1L << i) - 1);
+		}
+		return maximum;
+	}
+
+	/**
+	 * Get number of durations recorded in each bucket.
+	 * <p>
+	 * Bucket i contains durations in nanoseconds of at least 2^(i-1) and less
+	 * than 2^i.
+	 *
+	 * @return copy of bucket counts
+	 */
+	public long[] getBuckets() {
+		final long[] counts = new long[BUCKETS];
+		for (int i = 0; i < BUCKETS; i++)
+			counts[i] = buckets.get(i);
+		return counts;
+	}
+
+	/**
+	 * Get sum of all durations recorded
+	 *
+	 * @return duration in nanoseconds
+	 */
+	public long getTotal() {
+		return total.get();
+	}
+
+	/**
+	 * Get maximum duration recorded
+	 *
+	 * @return duration in nanoseconds
+	 */
+	public long getMax() {
+		return max.get();
+	}
+
+	public long getCount() {
+		return count.get();
+	}
+
+	public long getTotalMicros() {
+		return total.get() / NANOS_PER_MICRO;
+	}
+
+	public double getMeanMicros() {
+		final long recorded = count.get();
+		return recorded > 0 ? (double) total.get() / recorded
+				/ NANOS_PER_MICRO : 0;
+	}
+
+	public long getMaxMicros() {
+		return max.get() / NANOS_PER_MICRO;
+	}
+
+	public long get50thPercentileMicros() {
+		return getPercentile(0.5) / NANOS_PER_MICRO;
+	}
+
+	public long get90thPercentileMicros() {
+		return getPercentile(0.9) / NANOS_PER_MICRO;
+	}
+
+	public long get99thPercentileMicros() {
+		return getPercentile(0.99) / NANOS_PER_MICRO;
+	}
+
+	public void reset() {
+		for (int i = 0; i < BUCKETS; i++)
+			buckets.set(i, 0L);
+		count.set(0L);
+		total.set(0L);
+		max.set(0L);
+	}
+}
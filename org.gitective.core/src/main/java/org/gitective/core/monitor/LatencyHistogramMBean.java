@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2012 Kevin Sawicki <kevinsawicki@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+package org.gitective.core.monitor;
+
+/**
+ * Management interface of a {@link LatencyHistogram}
+ */
+public interface LatencyHistogramMBean {
+
+	/**
+	 * @return number of durations recorded
+	 */
+	long getCount();
+
+	/**
+	 * @return sum of all durations recorded in microseconds
+	 */
+	long getTotalMicros();
+
+	/**
+	 * @return mean duration in microseconds
+	 */
+	double getMeanMicros();
+
+	/**
+	 * @return maximum duration in microseconds
+	 */
+	long getMaxMicros();
+
+	/**
+	 * @return median duration in microseconds
+	 */
+	long get50thPercentileMicros();
+
+	/**
+	 * @return 90th percentile duration in microseconds
+	 */
+	long get90thPercentileMicros();
+
+	/**
+	 * @return 99th percentile duration in microseconds
+	 */
+	long get99thPercentileMicros();
+
+	/**
+	 * Clear all recorded durations
+	 */
+	void reset();
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2012 Kevin Sawicki <kevinsawicki@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+package org.gitective.core.monitor;
+
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+
+/**
+ * Walk listener with empty implementations of all callbacks that sub-classes
+ * can selectively override
+ */
+public abstract class WalkAdapter implements WalkListener {
+
+	public void walkStarted(final Repository repository) {
+		// Does nothing
+	}
+
+	public void walkFinished(final Repository repository, final long duration) {
+		// Does nothing
+	}
+
+	public void commitVisited(final RevCommit commit) {
+		// Does nothing
+	}
+
+	public void commitAccepted(final RevCommit commit) {
+		// Does nothing
+	}
+
+	public void treeWalked(final int entries, final long duration) {
+		// Does nothing
+	}
+
+	public void treeDiffed(final int trees, final int changes,
+			final long duration) {
+		// Does nothing
+	}
+
+	public void renamesDetected(final int changes, final long duration) {
+		// Does nothing
+	}
+
+	public void blobLoaded(final long size) {
+		// Does nothing
+	}
+
+	public void blobDiffed(final long size1, final long size2,
+			final int edits, final long duration) {
+		// Does nothing
+	}
+}
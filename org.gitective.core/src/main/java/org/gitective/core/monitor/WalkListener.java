@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2012 Kevin Sawicki <kevinsawicki@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+package org.gitective.core.monitor;
+
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+
+/**
+ * Listener notified of the work performed while walking commits.
+ * <p>
+ * Listeners are registered with {@link WalkMonitor} and are called by commit
+ * finders, diff filters, tree filters and blob utilities. Callbacks can be
+ * invoked concurrently from multiple threads and are on the hot path of a walk
+ * so implementations should be thread-safe and do as little work as possible.
+ * <p>
+ * All durations are in nanoseconds.
+ */
+public interface WalkListener {
+
+	/**
+	 * A walk of the given repository started
+	 *
+	 * @param repository
+	 */
+	void walkStarted(Repository repository);
+
+	/**
+	 * A walk of the given repository finished
+	 *
+	 * @param repository
+	 * @param duration
+	 */
+	void walkFinished(Repository repository, long duration);
+
+	/**
+	 * A commit was passed to the commit filter of a walk
+	 *
+	 * @param commit
+	 */
+	void commitVisited(RevCommit commit);
+
+	/**
+	 * A commit was included by the commit filter of a walk
+	 *
+	 * @param commit
+	 */
+	void commitAccepted(RevCommit commit);
+
+	/**
+	 * The tree of a commit was walked by a tree filter
+	 *
+	 * @param entries
+	 *            number of tree entries visited
+	 * @param duration
+	 */
+	void treeWalked(int entries, long duration);
+
+	/**
+	 * The trees of a commit and its parents were compared
+	 *
+	 * @param trees
+	 *            number of trees compared
+	 * @param changes
+	 *            number of differences found
+	 * @param duration
+	 */
+	void treeDiffed(int trees, int changes, long duration);
+
+	/**
+	 * Renames were detected in the differences of a commit
+	 *
+	 * @param changes
+	 *            number of differences considered
+	 * @param duration
+	 */
+	void renamesDetected(int changes, long duration);
+
+	/**
+	 * The content of a blob was loaded
+	 *
+	 * @param size
+	 *            number of bytes inflated
+	 */
+	void blobLoaded(long size);
+
+	/**
+	 * The contents of two blobs were compared
+	 *
+	 * @param size1
+	 *            number of bytes in the first blob
+	 * @param size2
+	 *            number of bytes in the second blob
+	 * @param edits
+	 *            number of edits found
+	 * @param duration
+	 */
+	void blobDiffed(long size1, long size2, int edits, long duration);
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2012 Kevin Sawicki <kevinsawicki@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+package org.gitective.core.monitor;
+
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.gitective.core.Assert;
+
+/**
+ * Registry of the {@link WalkListener} instances notified of walk activity.
+ * <p>
+ * Instrumented code calls {@link #getListener()} once per unit of work and
+ * skips all measurement when it returns null, so monitoring costs a single
+ * volatile read when no listeners are registered.
+ */
+public abstract class WalkMonitor {
+
+	/**
+	 * Listener that forwards every callback to several listeners
+	 */
+	private static class CompositeListener implements WalkListener {
+
+		private final WalkListener[] listeners;
+
+		CompositeListener(final WalkListener[] listeners) {
+			this.listeners = listeners;
+		}
+
+		public void walkStarted(final Repository repository) {
+			for (WalkListener listener : listeners)
+				listener.walkStarted(repository);
+		}
+
+		public void walkFinished(final Repository repository,
+				final long duration) {
+			for (WalkListener listener : listeners)
+				listener.walkFinished(repository, duration);
+		}
+
+		public void commitVisited(final RevCommit commit) {
+			for (WalkListener listener : listeners)
+				listener.commitVisited(commit);
+		}
+
+		public void commitAccepted(final RevCommit commit) {
+			for (WalkListener listener : listeners)
+				listener.commitAccepted(commit);
+		}
+
+		public void treeWalked(final int entries, final long duration) {
+			for (WalkListener listener : listeners)
+				listener.treeWalked(entries, duration);
+		}
+
+		public void treeDiffed(final int trees, final int changes,
+				final long duration) {
+			for (WalkListener listener : listeners)
+				listener.treeDiffed(trees, changes, duration);
+		}
+
+		public void renamesDetected(final int changes, final long duration) {
+			for (WalkListener listener : listeners)
+				listener.renamesDetected(changes, duration);
+		}
+
+		public void blobLoaded(final long size) {
+			for (WalkListener listener : listeners)
+				listener.blobLoaded(size);
+		}
+
+		public void blobDiffed(final long size1, final long size2,
+				final int edits, final long duration) {
+			for (WalkListener listener : listeners)
+				listener.blobDiffed(size1, size2, edits, duration);
+		}
+	}
+
+	private static final WalkListener[] NONE = new WalkListener[0];
+
+	private static WalkListener[] listeners = NONE;
+
+	private static volatile WalkListener listener;
+
+	/**
+	 * Get listener to notify of walk activity
+	 *
+	 * @return listener or null if no listeners are registered
+	 */
+	public static WalkListener getListener() {
+		return listener;
+	}
+
+	/**
+	 * Register listener
+	 *
+	 * @param listener
+	 */
+	public static synchronized void addListener(final WalkListener listener) {
+		if (listener == null)
+			throw new IllegalArgumentException(Assert.formatNotNull("Listener"));
+
+		final WalkListener[] added = new WalkListener[listeners.length + 1];
+		System.arraycopy(listeners, 0, added, 0, listeners.length);
+		added[listeners.length] = listener;
+		update(added);
+	}
+
+	/**
+	 * Unregister listener
+	 *
+	 * @param listener
+	 * @return true if removed, false if not registered
+	 */
+	public static synchronized boolean removeListener(
+			final WalkListener listener) {
+		for (int i = 0; i < listeners.length; i++)
+			if (listeners[i] == listener) {
+				final WalkListener[] removed = new WalkListener[listeners.length - 1];
+				System.arraycopy(listeners, 0, removed, 0, i);
+				System.arraycopy(listeners, i + 1, removed, i, removed.length
+						- i);
+				update(removed);
+				return true;
+			}
+		return false;
+	}
+
+	private static void update(final WalkListener[] updated) {
+		listeners = updated;
+		switch (updated.length) {
+		case 0:
+			listener = null;
+			break;
+		case 1:
+			listener = updated[0];
+			break;
+		default:
+			listener = new CompositeListener(updated.clone());
+		}
+	}
+}
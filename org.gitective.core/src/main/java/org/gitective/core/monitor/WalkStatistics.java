@@ -0,0 +1,313 @@
+/*
+ * Copyright (c) 2012 Kevin Sawicki <kevinsawicki@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+package org.gitective.core.monitor;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.gitective.core.Assert;
+import org.gitective.core.ConcurrentCounter;
+
+/**
+ * Walk listener that maintains live counters and latency histograms of walk
+ * activity.
+ * <p>
+ * Statistics can be exported as JMX MBeans through {@link #register()} which
+ * registers an MBean named <code>org.gitective:type=WalkStatistics,name=</code>
+ * followed by the name of these statistics as well as one MBean per latency
+ * histogram with an additional <code>histogram</code> key.
+ */
+public class WalkStatistics implements WalkListener, WalkStatisticsMBean {
+
+	/**
+	 * Domain of registered MBean names
+	 */
+	public static final String DOMAIN = "org.gitective";
+
+	private final String name;
+
+	private final ConcurrentCounter walks = new ConcurrentCounter();
+
+	private final ConcurrentCounter commitsVisited = new ConcurrentCounter();
+
+	private final ConcurrentCounter commitsAccepted = new ConcurrentCounter();
+
+	private final ConcurrentCounter treeEntries = new ConcurrentCounter();
+
+	private final ConcurrentCounter treeChanges = new ConcurrentCounter();
+
+	private final ConcurrentCounter renameChanges = new ConcurrentCounter();
+
+	private final ConcurrentCounter blobsLoaded = new ConcurrentCounter();
+
+	private final ConcurrentCounter bytesInflated = new ConcurrentCounter();
+
+	private final ConcurrentCounter blobEdits = new ConcurrentCounter();
+
+	private final LatencyHistogram walkLatency = new LatencyHistogram();
+
+	private final LatencyHistogram treeWalkLatency = new LatencyHistogram();
+
+	private final LatencyHistogram treeDiffLatency = new LatencyHistogram();
+
+	private final LatencyHistogram renameLatency = new LatencyHistogram();
+
+	private final LatencyHistogram blobDiffLatency = new LatencyHistogram();
+
+	/**
+	 * Create statistics with given name
+	 *
+	 * @param name
+	 */
+	public WalkStatistics(final String name) {
+		if (name == null)
+			throw new IllegalArgumentException(Assert.formatNotNull("Name"));
+		if (name.length() == 0)
+			throw new IllegalArgumentException(Assert.formatNotEmpty("Name"));
+
+		this.name = name;
+	}
+
+	/**
+	 * Get name
+	 *
+	 * @return name
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Get MBean name of these statistics
+	 *
+	 * @return object name
+	 * @throws JMException
+	 */
+	public ObjectName getObjectName() throws JMException {
+		return new ObjectName(DOMAIN + ":type=WalkStatistics,name="
+				+ ObjectName.quote(name));
+	}
+
+	private ObjectName getObjectName(final String histogram)
+			throws JMException {
+		return new ObjectName(getObjectName().getCanonicalName()
+				+ ",histogram=" + histogram);
+	}
+
+	private String[] getHistogramNames() {
+		return new String[] { "walk", "treeWalk", "treeDiff", "rename",
+				"blobDiff" };
+	}
+
+	private LatencyHistogram[] getHistograms() {
+		return new LatencyHistogram[] { walkLatency, treeWalkLatency,
+				treeDiffLatency, renameLatency, blobDiffLatency };
+	}
+
+	/**
+	 * Add these statistics as a walk listener and register them and their
+	 * histograms with the platform MBean server
+	 *
+	 * @return this statistics
+	 * @throws JMException
+	 */
+	public WalkStatistics register() throws JMException {
+		final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		server.registerMBean(this, getObjectName());
+		final String[] names = getHistogramNames();
+		final LatencyHistogram[] histograms = getHistograms();
+		for (int i = 0; i < names.length; i++)
+			server.registerMBean(histograms[i], getObjectName(names[i]));
+		WalkMonitor.addListener(this);
+		return this;
+	}
+
+	/**
+	 * Remove these statistics as a walk listener and unregister them and
+	 * their histograms from the platform MBean server
+	 *
+	 * @return this statistics
+	 * @throws JMException
+	 */
+	public WalkStatistics unregister() throws JMException {
+		WalkMonitor.removeListener(this);
+		final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		for (String histogram : getHistogramNames())
+			server.unregisterMBean(getObjectName(histogram));
+		server.unregisterMBean(getObjectName());
+		return this;
+	}
+
+	/**
+	 * @return latency of walks
+	 */
+	public LatencyHistogram getWalkLatency() {
+		return walkLatency;
+	}
+
+	/**
+	 * @return latency of tree filter walks of commit trees
+	 */
+	public LatencyHistogram getTreeWalkLatency() {
+		return treeWalkLatency;
+	}
+
+	/**
+	 * @return latency of commit tree diffs
+	 */
+	public LatencyHistogram getTreeDiffLatency() {
+		return treeDiffLatency;
+	}
+
+	/**
+	 * @return latency of rename detection
+	 */
+	public LatencyHistogram getRenameLatency() {
+		return renameLatency;
+	}
+
+	/**
+	 * @return latency of blob diffs
+	 */
+	public LatencyHistogram getBlobDiffLatency() {
+		return blobDiffLatency;
+	}
+
+	public void walkStarted(final Repository repository) {
+		walks.increment();
+	}
+
+	public void walkFinished(final Repository repository, final long duration) {
+		walkLatency.record(duration);
+	}
+
+	public void commitVisited(final RevCommit commit) {
+		commitsVisited.increment();
+	}
+
+	public void commitAccepted(final RevCommit commit) {
+		commitsAccepted.increment();
+	}
+
+	public void treeWalked(final int entries, final long duration) {
+		treeEntries.add(entries);
+		treeWalkLatency.record(duration);
+	}
+
+	public void treeDiffed(final int trees, final int changes,
+			final long duration) {
+		treeChanges.add(changes);
+		treeDiffLatency.record(duration);
+	}
+
+	public void renamesDetected(final int changes, final long duration) {
+		renameChanges.add(changes);
+		renameLatency.record(duration);
+	}
+
+	public void blobLoaded(final long size) {
+		blobsLoaded.increment();
+		bytesInflated.add(size);
+	}
+
+	public void blobDiffed(final long size1, final long size2,
+			final int edits, final long duration) {
+		blobEdits.add(edits);
+		blobDiffLatency.record(duration);
+	}
+
+	public long getWalks() {
+		return walks.get();
+	}
+
+	public long getCommitsVisited() {
+		return commitsVisited.get();
+	}
+
+	public long getCommitsAccepted() {
+		return commitsAccepted.get();
+	}
+
+	public long getTreesWalked() {
+		return treeWalkLatency.getCount();
+	}
+
+	public long getTreeEntriesWalked() {
+		return treeEntries.get();
+	}
+
+	public long getTreeDiffs() {
+		return treeDiffLatency.getCount();
+	}
+
+	public long getTreeChanges() {
+		return treeChanges.get();
+	}
+
+	public long getRenameDetections() {
+		return renameLatency.getCount();
+	}
+
+	public long getRenameChanges() {
+		return renameChanges.get();
+	}
+
+	public long getBlobsLoaded() {
+		return blobsLoaded.get();
+	}
+
+	public long getBytesInflated() {
+		return bytesInflated.get();
+	}
+
+	public long getBlobDiffs() {
+		return blobDiffLatency.getCount();
+	}
+
+	public long getBlobEdits() {
+		return blobEdits.get();
+	}
+
+	public void reset() {
+		walks.reset();
+		commitsVisited.reset();
+		commitsAccepted.reset();
+		treeEntries.reset();
+		treeChanges.reset();
+		renameChanges.reset();
+		blobsLoaded.reset();
+		bytesInflated.reset();
+		blobEdits.reset();
+		for (LatencyHistogram histogram : getHistograms())
+			histogram.reset();
+	}
+
+	public String toString() {
+		return name + ": " + getCommitsAccepted() + "/" + getCommitsVisited()
+				+ " commits";
+	}
+}
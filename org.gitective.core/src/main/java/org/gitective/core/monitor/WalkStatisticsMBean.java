@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2012 Kevin Sawicki <kevinsawicki@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+package org.gitective.core.monitor;
+
+/**
+ * Management interface of {@link WalkStatistics}
+ */
+public interface WalkStatisticsMBean {
+
+	/**
+	 * @return number of walks started
+	 */
+	long getWalks();
+
+	/**
+	 * @return number of commits passed to commit filters
+	 */
+	long getCommitsVisited();
+
+	/**
+	 * @return number of commits included by commit filters
+	 */
+	long getCommitsAccepted();
+
+	/**
+	 * @return number of commit trees walked by tree filters
+	 */
+	long getTreesWalked();
+
+	/**
+	 * @return number of tree entries visited by tree filters
+	 */
+	long getTreeEntriesWalked();
+
+	/**
+	 * @return number of commit tree diffs computed
+	 */
+	long getTreeDiffs();
+
+	/**
+	 * @return number of differences found by tree diffs
+	 */
+	long getTreeChanges();
+
+	/**
+	 * @return number of rename detections run
+	 */
+	long getRenameDetections();
+
+	/**
+	 * @return number of differences considered by rename detection
+	 */
+	long getRenameChanges();
+
+	/**
+	 * @return number of blobs loaded
+	 */
+	long getBlobsLoaded();
+
+	/**
+	 * @return number of bytes inflated when loading blobs
+	 */
+	long getBytesInflated();
+
+	/**
+	 * @return number of blob diffs computed
+	 */
+	long getBlobDiffs();
+
+	/**
+	 * @return number of edits found by blob diffs
+	 */
+	long getBlobEdits();
+
+	/**
+	 * Clear all counters and histograms
+	 */
+	void reset();
+}
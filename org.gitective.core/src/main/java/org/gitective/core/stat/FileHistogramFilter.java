@@ -78,6 +78,7 @@ public class FileHistogramFilter extends CommitDiffFilter {
 
 	@Override
 	public RevFilter clone() {
-		return new FileHistogramFilter(detectRenames);
+		return new FileHistogramFilter(detectRenames).setMergeDiff(mergeDiff)
+				.setRenameFinder(renameFinder);
 	}
 }
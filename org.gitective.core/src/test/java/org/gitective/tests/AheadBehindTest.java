@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2012 Kevin Sawicki <kevinsawicki@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+package org.gitective.tests;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.storage.file.FileRepository;
+import org.gitective.core.RepositoryUtils;
+import org.gitective.core.RepositoryUtils.AheadBehind;
+import org.junit.Test;
+
+/**
+ * Unit tests of {@link RepositoryUtils#getAheadBehind}
+ */
+public class AheadBehindTest extends GitTestCase {
+
+	private RevCommit base;
+
+	private RevCommit head;
+
+	private RevCommit commitAt(final String content, final long seconds)
+			throws Exception {
+		committer = new PersonIdent("Test Committer", "committer@test.com",
+				seconds * 1000L, 0);
+		return add("file.txt", content);
+	}
+
+	private void createHistory(final long branchTime) throws Exception {
+		commitAt("1", 1000);
+		base = commitAt("2", 2000);
+		branch("b1");
+		commitAt("b1", branchTime);
+		commitAt("b2", branchTime + 1);
+		checkout("master");
+		head = commitAt("3", 3000);
+		branch("b2");
+		checkout("master");
+	}
+
+	private Map<String, AheadBehind> compare() throws Exception {
+		Collection<AheadBehind> results = RepositoryUtils
+				.getBranchesAheadBehind(new FileRepository(testRepo), "master");
+		Map<String, AheadBehind> byRef = new HashMap<String, AheadBehind>();
+		for (AheadBehind result : results) {
+			assertEquals("master", result.getBase());
+			byRef.put(result.getRef(), result);
+		}
+		assertEquals(3, byRef.size());
+		return byRef;
+	}
+
+	private void assertResults(final Map<String, AheadBehind> results) {
+		AheadBehind b1 = results.get("refs/heads/b1");
+		assertEquals(2, b1.getAhead());
+		assertEquals(1, b1.getBehind());
+		assertEquals(Arrays.asList(base), b1.getMergeBases());
+		RevCommit mergeBase = b1.getMergeBases().iterator().next();
+		assertEquals(base.getFullMessage(), mergeBase.getFullMessage());
+		assertEquals(base.getAuthorIdent(), mergeBase.getAuthorIdent());
+
+		AheadBehind b2 = results.get("refs/heads/b2");
+		assertEquals(0, b2.getAhead());
+		assertEquals(0, b2.getBehind());
+		assertEquals(Arrays.asList(head), b2.getMergeBases());
+
+		AheadBehind master = results.get("refs/heads/master");
+		assertEquals(0, master.getAhead());
+		assertEquals(0, master.getBehind());
+		assertEquals(Arrays.asList(head), master.getMergeBases());
+	}
+
+	/**
+	 * Test ahead and behind counts of branches
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void branches() throws Exception {
+		createHistory(2500);
+		assertResults(compare());
+	}
+
+	/**
+	 * Test ahead and behind counts of branches with commits dated before their
+	 * parents
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void clockSkew() throws Exception {
+		createHistory(500);
+		assertResults(compare());
+	}
+
+	/**
+	 * Test ahead and behind with multiple bases
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void multipleBases() throws Exception {
+		createHistory(2500);
+		Collection<AheadBehind> results = RepositoryUtils.getAheadBehind(
+				new FileRepository(testRepo), Arrays.asList("b1"), "master",
+				"b2", base.name());
+		assertEquals(3, results.size());
+		for (AheadBehind result : results) {
+			assertEquals("b1", result.getRef());
+			assertEquals(2, result.getAhead());
+			assertEquals(result.getBase().equals(base.name()) ? 0 : 1,
+					result.getBehind());
+			assertEquals(Arrays.asList(base), result.getMergeBases());
+		}
+	}
+
+	/**
+	 * Test ahead and behind with no bases
+	 *
+	 * @throws Exception
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void emptyBases() throws Exception {
+		RepositoryUtils.getAheadBehind(new FileRepository(testRepo),
+				Arrays.asList("master"));
+	}
+}
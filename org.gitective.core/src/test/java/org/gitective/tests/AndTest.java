@@ -21,8 +21,13 @@
  */
 package org.gitective.tests;
 
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
 import org.eclipse.jgit.revwalk.filter.RevFilter;
+import org.eclipse.jgit.storage.file.FileRepository;
 import org.gitective.core.filter.commit.AndCommitFilter;
+import org.gitective.core.filter.commit.AuthorFilter;
+import org.gitective.core.filter.commit.CommitCountFilter;
 import org.gitective.core.filter.commit.CommitLimitFilter;
 import org.junit.Test;
 
@@ -43,4 +48,30 @@ public class AndTest extends GitTestCase {
 		assertNotSame(and, clone);
 		assertTrue(clone instanceof AndCommitFilter);
 	}
+
+	/**
+	 * Test cheap rejecting filter being moved ahead of an expensive filter
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void adaptiveOrder() throws Exception {
+		RevCommit commit = add("file.txt", "content");
+		SlowFilter slow = new SlowFilter(true);
+		CommitCountFilter count = new CommitCountFilter();
+		AndCommitFilter and = new AndCommitFilter(slow, new AuthorFilter(
+				"not", "author"), count).setAdaptive(true);
+		assertTrue(and.isAdaptive());
+		assertTrue(((AndCommitFilter) and.clone()).isAdaptive());
+		RevWalk walk = new RevWalk(new FileRepository(testRepo));
+		try {
+			commit = walk.parseCommit(commit);
+			for (int i = 0; i < 1000; i++)
+				assertFalse(and.include(walk, commit));
+		} finally {
+			walk.release();
+		}
+		assertTrue(slow.getCalls() < 500);
+		assertEquals(0, count.getCount());
+	}
 }
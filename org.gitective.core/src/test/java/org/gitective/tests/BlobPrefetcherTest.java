@@ -0,0 +1,210 @@
+/*
+ * Copyright (c) 2012 Kevin Sawicki <kevinsawicki@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+package org.gitective.tests;
+
+import java.io.IOException;
+
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.storage.file.FileRepository;
+import org.gitective.core.BlobPrefetcher;
+import org.gitective.core.BlobUtils;
+import org.gitective.core.CommitFinder;
+import org.gitective.core.filter.commit.DiffLineCountFilter;
+import org.junit.Assume;
+import org.junit.Test;
+
+/**
+ * Unit tests of {@link BlobPrefetcher}
+ */
+public class BlobPrefetcherTest extends GitTestCase {
+
+	private void repack() throws Exception {
+		int status;
+		try {
+			Process process = new ProcessBuilder("git", "--git-dir",
+					testRepo.getAbsolutePath(), "repack", "-a", "-d", "-q")
+					.redirectErrorStream(true).start();
+			while (process.getInputStream().read() != -1)
+				;
+			status = process.waitFor();
+		} catch (IOException e) {
+			status = -1;
+		}
+		Assume.assumeTrue(status == 0);
+	}
+
+	/**
+	 * Test prefetching blobs from a pack
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void packed() throws Exception {
+		RevCommit commit1 = add("a.txt", "a1\n");
+		RevCommit commit2 = add("b.txt", "b1\n");
+		repack();
+		RevCommit commit3 = add("a.txt", "a1\na2\n");
+
+		Repository repo = new FileRepository(testRepo);
+		ObjectId blob1 = BlobUtils.getId(repo, commit1, "a.txt");
+		ObjectId blob2 = BlobUtils.getId(repo, commit2, "b.txt");
+		ObjectId blob3 = BlobUtils.getId(repo, commit3, "a.txt");
+		BlobPrefetcher prefetcher = new BlobPrefetcher(repo, 1024);
+		ObjectReader reader = repo.newObjectReader();
+		try {
+			prefetcher.add(blob3).add(blob2).add(blob1)
+					.add(ObjectId.zeroId());
+			assertEquals(3, prefetcher.prefetch(reader));
+			assertEquals(12, prefetcher.getBuffered());
+			assertEquals("a1\na2\n",
+					new String(prefetcher.getBytes(reader, blob3), "UTF-8"));
+			assertEquals("b1\n",
+					new String(prefetcher.getBytes(reader, blob2), "UTF-8"));
+			assertEquals(0, prefetcher.getBytes(reader, ObjectId.zeroId()).length);
+			assertEquals(0, prefetcher.prefetch(reader));
+
+			prefetcher.clear();
+			assertEquals(0, prefetcher.getBuffered());
+			assertEquals("a1\n",
+					new String(prefetcher.getBytes(reader, blob1), "UTF-8"));
+		} finally {
+			reader.release();
+		}
+	}
+
+	/**
+	 * Test pack indexes only read within the index cache size
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void indexCache() throws Exception {
+		RevCommit commit1 = add("a.txt", "a1\n");
+		repack();
+		RevCommit commit2 = add("a.txt", "a1\na2\n");
+
+		Repository repo = new FileRepository(testRepo);
+		ObjectId blob1 = BlobUtils.getId(repo, commit1, "a.txt");
+		ObjectId blob2 = BlobUtils.getId(repo, commit2, "a.txt");
+		ObjectReader reader = repo.newObjectReader();
+		try {
+			BlobPrefetcher uncached = new BlobPrefetcher(repo, 1024, 0);
+			assertEquals(0, uncached.getIndexCacheSize());
+			assertEquals(2, uncached.add(blob1).add(blob2).prefetch(reader));
+			assertEquals(0, uncached.getIndexCached());
+			assertEquals("a1\n",
+					new String(uncached.getBytes(reader, blob1), "UTF-8"));
+
+			BlobPrefetcher cached = new BlobPrefetcher(repo, 1024);
+			assertEquals(BlobPrefetcher.DEFAULT_INDEX_CACHE_SIZE,
+					cached.getIndexCacheSize());
+			assertEquals(2, cached.add(blob1).add(blob2).prefetch(reader));
+			assertTrue(cached.getIndexCached() > 0);
+			cached.clear();
+			assertTrue(cached.getIndexCached() > 0);
+			cached.release();
+			assertEquals(0, cached.getIndexCached());
+			assertEquals(0, cached.getBuffered());
+		} finally {
+			reader.release();
+		}
+	}
+
+	/**
+	 * Test prefetching more content than fits in the buffer
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void bufferFull() throws Exception {
+		RevCommit commit1 = add("a.txt", "aaaa\n");
+		RevCommit commit2 = add("b.txt", "bb\n");
+
+		Repository repo = new FileRepository(testRepo);
+		BlobPrefetcher prefetcher = new BlobPrefetcher(repo, 4);
+		ObjectReader reader = repo.newObjectReader();
+		try {
+			prefetcher.add(BlobUtils.getId(repo, commit1, "a.txt")).add(
+					BlobUtils.getId(repo, commit2, "b.txt"));
+			assertEquals(1, prefetcher.prefetch(reader));
+			assertEquals(3, prefetcher.getBuffered());
+			assertEquals("aaaa\n", new String(prefetcher.getBytes(reader,
+					BlobUtils.getId(repo, commit1, "a.txt")), "UTF-8"));
+		} finally {
+			reader.release();
+		}
+	}
+
+	/**
+	 * Test edit filter producing the same edits with prefetching enabled
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void editFilter() throws Exception {
+		add("a.txt", "a1\n");
+		add("b.txt", "b1\nb2\n");
+		repack();
+		add("a.txt", "a1\na2\na3\n");
+		add("b.txt", "b2\n");
+
+		DiffLineCountFilter plain = new DiffLineCountFilter();
+		new CommitFinder(testRepo).setFilter(plain).find();
+		DiffLineCountFilter prefetched = new DiffLineCountFilter();
+		prefetched.setPrefetchSize(1024);
+		assertEquals(1024, prefetched.getPrefetchSize());
+		new CommitFinder(testRepo).setFilter(prefetched).find();
+		assertEquals(plain.getTotal(), prefetched.getTotal());
+		assertTrue(prefetched.getTotal() > 0);
+	}
+
+	/**
+	 * Test creating prefetcher with a negative buffer size
+	 *
+	 * @throws Exception
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void negativeBufferSize() throws Exception {
+		new BlobPrefetcher(new FileRepository(testRepo), -1);
+	}
+
+	/**
+	 * Test creating prefetcher with a negative index cache size
+	 *
+	 * @throws Exception
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void negativeIndexCacheSize() throws Exception {
+		new BlobPrefetcher(new FileRepository(testRepo), 0, -1);
+	}
+
+	/**
+	 * Test setting a negative prefetch size
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void negativePrefetchSize() {
+		new DiffLineCountFilter().setPrefetchSize(-1);
+	}
+}
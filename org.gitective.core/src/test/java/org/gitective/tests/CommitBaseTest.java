@@ -21,7 +21,11 @@
  */
 package org.gitective.tests;
 
+import java.util.Arrays;
+import java.util.Map;
+
 import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.revwalk.RevCommit;
 import org.eclipse.jgit.storage.file.FileRepository;
@@ -33,7 +37,8 @@ import org.junit.Test;
 /**
  * Tests of
  * {@link CommitUtils#getBase(Repository, org.eclipse.jgit.lib.ObjectId...)} and
- * {@link CommitUtils#getBase(Repository, String...)}
+ * {@link CommitUtils#getBase(Repository, String...)} and
+ * {@link CommitUtils#getBases(Repository, String, java.util.Collection)}
  */
 public class CommitBaseTest extends GitTestCase {
 
@@ -66,4 +71,50 @@ public class CommitBaseTest extends GitTestCase {
 		assertEquals(commit3, filter.getCommits().get(0));
 		assertEquals(commit2, filter.getCommits().get(1));
 	}
+
+	/**
+	 * Test getting the base commits of many branches and master at once
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void batchBaseCommits() throws Exception {
+		RevCommit commit1 = add("file.txt", "content");
+		branch("release1");
+		add("file.txt", "edit 1");
+		checkout(Constants.MASTER);
+		RevCommit commit3 = add("file.txt", "edit 2");
+		branch("release2");
+		RevCommit commit4 = add("file.txt", "edit 3");
+		checkout(Constants.MASTER);
+		RevCommit commit5 = add("file.txt", "edit 4");
+
+		Repository repo = new FileRepository(testRepo);
+		Map<String, RevCommit> bases = CommitUtils.getBases(repo,
+				Constants.MASTER, Arrays.asList("release1", "release2",
+						Constants.MASTER));
+		assertEquals(3, bases.size());
+		assertEquals(commit1, bases.get("release1"));
+		assertEquals(commit3, bases.get("release2"));
+		assertEquals(commit5, bases.get(Constants.MASTER));
+		assertEquals(Arrays.asList("release1", "release2", Constants.MASTER),
+				Arrays.asList(bases.keySet().toArray()));
+
+		Map<ObjectId, RevCommit> commitBases = CommitUtils.getBases(repo,
+				commit5, Arrays.asList(commit4, commit1));
+		assertEquals(commit3, commitBases.get(commit4));
+		assertEquals(commit1, commitBases.get(commit1));
+		assertNotNull(commitBases.get(commit4).getFullMessage());
+	}
+
+	/**
+	 * Test getting base commits with a null base
+	 *
+	 * @throws Exception
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void batchNullBase() throws Exception {
+		CommitUtils.getBases(new FileRepository(testRepo), (String) null,
+				Arrays.asList(Constants.MASTER));
+	}
 }
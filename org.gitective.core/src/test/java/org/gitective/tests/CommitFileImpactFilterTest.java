@@ -88,4 +88,42 @@ public class CommitFileImpactFilterTest extends GitTestCase {
 		assertEquals(commit2, filter.getCommits().first().getCommit());
 		assertEquals(2, filter.getCommits().first().getAdd());
 	}
+
+	/**
+	 * Merge impacts from filters used in separate walks
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void mergeFilters() throws Exception {
+		RevCommit commit1 = add("test1.txt", "content1");
+		RevCommit commit2 = add(testRepo,
+				Arrays.asList("test2.txt", "test3.txt"),
+				Arrays.asList("content2", "content3"), "second commit");
+		RevCommit commit3 = add(testRepo,
+				Arrays.asList("test4.txt", "test5.txt", "test6.txt"),
+				Arrays.asList("content4", "content5", "content6"),
+				"third commit");
+		CommitFileImpactFilter first = new CommitFileImpactFilter(2);
+		new CommitFinder(testRepo).setFilter(first).findBetween(commit2,
+				commit1);
+		CommitFileImpactFilter second = new CommitFileImpactFilter(2);
+		new CommitFinder(testRepo).setFilter(second).find();
+		assertEquals(2, second.getCommits().size());
+		assertEquals(commit3, second.getCommits().first().getCommit());
+		assertEquals(commit2, second.getCommits().last().getCommit());
+
+		CommitFileImpactFilter merged = new CommitFileImpactFilter(2);
+		merged.merge(first).merge(second);
+		assertEquals(2, merged.getCommits().size());
+		assertEquals(commit3, merged.getCommits().first().getCommit());
+		assertEquals(commit2, merged.getCommits().last().getCommit());
+		assertEquals(2, merged.getCommits().last().getAdd());
+
+		CommitFileImpactFilter all = new CommitFileImpactFilter(5);
+		new CommitFinder(testRepo).setFilter(all).find();
+		all.merge(second).merge(merged);
+		assertEquals(3, all.getCommits().size());
+		assertEquals(commit1, all.getCommits().last().getCommit());
+	}
 }
@@ -22,6 +22,8 @@
 package org.gitective.tests;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.eclipse.jgit.errors.StopWalkException;
 import org.eclipse.jgit.lib.Constants;
@@ -32,8 +34,10 @@ import org.eclipse.jgit.revwalk.filter.RevFilter;
 import org.gitective.core.CommitFinder;
 import org.gitective.core.GitException;
 import org.gitective.core.filter.commit.AndCommitFilter;
+import org.gitective.core.filter.commit.AuthorFilter;
 import org.gitective.core.filter.commit.CommitCountFilter;
 import org.gitective.core.filter.commit.CommitFilter;
+import org.gitective.core.filter.commit.CommitLimitFilter;
 import org.gitective.core.filter.commit.CommitListFilter;
 import org.junit.Test;
 
@@ -189,4 +193,50 @@ public class CommitFinderTest extends GitTestCase {
 		assertTrue(commits.getCommits().contains(commit4));
 		assertTrue(commits.getCommits().contains(commit3));
 	}
+
+	/**
+	 * Test filters reporting whether commit bodies are required
+	 */
+	@Test
+	public void requiresCommitBody() {
+		assertFalse(new CommitCountFilter().requiresCommitBody());
+		assertFalse(new AndCommitFilter(new CommitCountFilter(),
+				new CommitLimitFilter(2)).requiresCommitBody());
+		assertTrue(new AndCommitFilter(new CommitCountFilter(),
+				new AuthorFilter(author)).requiresCommitBody());
+		assertTrue(new CommitListFilter().requiresCommitBody());
+	}
+
+	/**
+	 * Test disposing commit bodies after filters have seen them
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void disposeBodies() throws Exception {
+		add("a.txt", "a", "first");
+		add("a.txt", "b", "second");
+		final CommitListFilter list = new CommitListFilter();
+		final List<String> messages = new ArrayList<String>();
+		CommitFinder finder = new CommitFinder(testRepo);
+		assertFalse(finder.isDisposeBodies());
+		finder.setDisposeBodies(true);
+		assertTrue(finder.isDisposeBodies());
+		finder.setFilter(new AndCommitFilter(list, new CommitFilter() {
+
+			public boolean include(RevWalk walker, RevCommit cmit) {
+				messages.add(cmit.getFullMessage());
+				return true;
+			}
+
+			public RevFilter clone() {
+				return this;
+			}
+		}));
+		finder.find();
+		assertEquals(2, list.getCommits().size());
+		assertEquals(2, messages.size());
+		assertEquals("second", messages.get(0));
+		assertEquals("first", messages.get(1));
+	}
 }
@@ -0,0 +1,178 @@
+/*
+ * Copyright (c) 2012 Kevin Sawicki <kevinsawicki@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+package org.gitective.tests;
+
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.storage.file.FileRepository;
+import org.gitective.core.CommitFinder;
+import org.gitective.core.CommitGraphIndex;
+import org.gitective.core.CommitUtils;
+import org.gitective.core.filter.commit.CommitListFilter;
+import org.junit.Test;
+
+/**
+ * Unit tests of {@link CommitGraphIndex}
+ */
+public class CommitGraphIndexTest extends GitTestCase {
+
+	/**
+	 * Test ancestry queries against an index of a merged branch
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void ancestry() throws Exception {
+		RevCommit commit1 = add("file1.txt", "content");
+		branch("b1");
+		RevCommit commit2 = add("file2.txt", "a");
+		checkout(Constants.MASTER);
+		RevCommit commit3 = add("file1.txt", "edit 1");
+		RevCommit commit4 = add("file1.txt", "edit 2");
+		RevCommit merge = (RevCommit) merge("b1").getNewHead();
+		RevCommit commit5 = add("file1.txt", "edit 3");
+
+		CommitGraphIndex index = new CommitGraphIndex(new FileRepository(
+				testRepo));
+		assertEquals(6, index.size());
+		assertTrue(index.contains(merge));
+		assertFalse(index.contains(ObjectId.zeroId()));
+
+		assertTrue(index.isAncestor(commit1, commit5));
+		assertTrue(index.isAncestor(commit2, commit5));
+		assertTrue(index.isAncestor(commit5, commit5));
+		assertFalse(index.isAncestor(commit3, commit2));
+		assertFalse(index.isAncestor(commit5, commit1));
+
+		assertEquals(commit1, index.getMergeBase(commit2, commit4));
+		assertEquals(commit2, index.getMergeBase(commit2, commit5));
+		assertEquals(commit1, index.getMergeBase(commit2, commit3, commit5));
+		assertEquals(Collections.singletonList(commit3),
+				index.getMergeBases(commit3, merge));
+
+		assertEquals(6, index.count(commit5));
+		assertEquals(1, index.count(commit1));
+		assertEquals(4, index.countBetween(commit5, commit2));
+		assertEquals(0, index.countBetween(commit2, commit5));
+
+		assertEquals(Arrays.asList(commit5, merge, commit4, commit3, commit1),
+				index.getFirstParents(commit5, -1));
+		assertEquals(Arrays.asList(commit5, merge),
+				index.getFirstParents(commit5, 2));
+		assertEquals(commit1.getCommitTime() * 1000L,
+				index.getCommitTime(commit1));
+	}
+
+	/**
+	 * Test querying for a commit that is not in the index
+	 *
+	 * @throws Exception
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void unindexedCommit() throws Exception {
+		add("file.txt", "content");
+		new CommitGraphIndex(new FileRepository(testRepo)).count(ObjectId
+				.zeroId());
+	}
+
+	/**
+	 * Test an attached index refreshing and being used for merge bases and
+	 * commit ranges
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void attached() throws Exception {
+		RevCommit commit1 = add("file1.txt", "content");
+		branch("b1");
+		RevCommit commit2 = add("file2.txt", "a");
+		checkout(Constants.MASTER);
+		add("file1.txt", "edit 1");
+
+		Repository repo = new FileRepository(testRepo);
+		CommitGraphIndex index = CommitGraphIndex.attach(repo);
+		try {
+			assertSame(index, CommitGraphIndex.get(repo));
+			assertEquals(3, index.size());
+			RevCommit commit4 = add("file1.txt", "edit 2");
+			assertEquals(commit1,
+					CommitUtils.getBase(repo, Constants.MASTER, "b1"));
+			assertEquals(4, index.size());
+			assertTrue(index.contains(commit4));
+
+			CommitListFilter filter = new CommitListFilter();
+			new CommitFinder(repo).setFilter(filter).findBetween(commit4,
+					commit2);
+			assertEquals(2, filter.getCommits().size());
+			assertEquals(commit4, filter.getCommits().get(0));
+
+			filter.reset();
+			new CommitFinder(repo).setFilter(filter).findBetween(commit2,
+					commit4);
+			assertEquals(1, filter.getCommits().size());
+			assertEquals(commit2, filter.getCommits().get(0));
+
+			filter.reset();
+			new CommitFinder(repo).setFilter(filter).findBetween(commit1,
+					commit4);
+			assertTrue(filter.getCommits().isEmpty());
+		} finally {
+			assertSame(index, CommitGraphIndex.detach(repo));
+		}
+		assertNull(CommitGraphIndex.get(repo));
+	}
+
+	private WeakReference<CommitGraphIndex> attachUnreferenced()
+			throws Exception {
+		Repository repo = new FileRepository(testRepo);
+		CommitGraphIndex index = CommitGraphIndex.attach(repo);
+		assertSame(index, CommitGraphIndex.get(repo));
+		repo.close();
+		return new WeakReference<CommitGraphIndex>(index);
+	}
+
+	/**
+	 * Test an attached index being released with its repository
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void attachedReleased() throws Exception {
+		add("file1.txt", "content");
+		WeakReference<CommitGraphIndex> index = attachUnreferenced();
+		Repository other = new FileRepository(testRepo);
+		for (int i = 0; i < 20 && index.get() != null; i++) {
+			System.gc();
+			Thread.sleep(10);
+			// Stale entries are expunged when the attached indexes are accessed
+			assertNull(CommitGraphIndex.get(other));
+		}
+		other.close();
+		assertNull(index.get());
+	}
+}
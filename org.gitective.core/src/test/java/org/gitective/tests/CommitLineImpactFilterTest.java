@@ -21,9 +21,12 @@
  */
 package org.gitective.tests;
 
+import java.util.SortedSet;
+
 import org.eclipse.jgit.revwalk.RevCommit;
 import org.eclipse.jgit.revwalk.filter.RevFilter;
 import org.gitective.core.CommitFinder;
+import org.gitective.core.filter.commit.CommitImpact;
 import org.gitective.core.filter.commit.CommitLineImpactFilter;
 import org.junit.Test;
 
@@ -82,4 +85,53 @@ public class CommitLineImpactFilterTest extends GitTestCase {
 		assertEquals(commit2, filter.getCommits().first().getCommit());
 		assertEquals(3, filter.getCommits().last().getEdit());
 	}
+
+	/**
+	 * Merge impacts from filters used in separate walks
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void mergeFilters() throws Exception {
+		RevCommit commit1 = add("test.txt", "line1");
+		RevCommit commit2 = add("test.txt", "line1\nline2\nline3");
+		RevCommit commit3 = add("test.txt",
+				"line1\nline2\nline3\nline4\nline5\nline6\nline7\nline8");
+		CommitLineImpactFilter first = new CommitLineImpactFilter(1);
+		new CommitFinder(testRepo).setFilter(first).findBetween(commit2,
+				commit1);
+		assertEquals(commit2, first.getCommits().first().getCommit());
+		CommitLineImpactFilter second = new CommitLineImpactFilter(1);
+		new CommitFinder(testRepo).setFilter(second).findFrom(commit1);
+		assertEquals(commit1, second.getCommits().first().getCommit());
+		CommitLineImpactFilter merged = new CommitLineImpactFilter(2);
+		merged.merge(second).merge(first).merge(first);
+		assertEquals(2, merged.getCommits().size());
+		assertEquals(commit2, merged.getCommits().first().getCommit());
+		assertEquals(commit1, merged.getCommits().last().getCommit());
+		new CommitFinder(testRepo).setFilter(merged).findBetween(commit3,
+				commit2);
+		assertEquals(2, merged.getCommits().size());
+		assertEquals(commit3, merged.getCommits().first().getCommit());
+		assertEquals(commit2, merged.getCommits().last().getCommit());
+	}
+
+	/**
+	 * Retain every commit using the largest possible limit
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void unboundedLimit() throws Exception {
+		RevCommit commit1 = add("test.txt", "line1");
+		RevCommit commit2 = add("test.txt", "line1\nline2\nline3");
+		CommitLineImpactFilter filter = new CommitLineImpactFilter(
+				Integer.MAX_VALUE);
+		SortedSet<CommitImpact> commits = filter.getCommits();
+		new CommitFinder(testRepo).setFilter(filter).find();
+		assertSame(commits, filter.getCommits());
+		assertEquals(2, commits.size());
+		assertEquals(commit2, commits.first().getCommit());
+		assertEquals(commit1, commits.last().getCommit());
+	}
 }
@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2012 Kevin Sawicki <kevinsawicki@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+package org.gitective.tests;
+
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.treewalk.filter.PathFilter;
+import org.gitective.core.CommitFinder;
+import org.gitective.core.PathFilterUtils;
+import org.gitective.core.filter.commit.AndCommitFilter;
+import org.gitective.core.filter.commit.CommitCountFilter;
+import org.gitective.core.filter.commit.CommitListFilter;
+import org.gitective.core.filter.commit.CommitPathFilter;
+import org.junit.Test;
+
+/**
+ * Unit tests of {@link CommitPathFilter}
+ */
+public class CommitPathFilterTest extends GitTestCase {
+
+	/**
+	 * Test matching commits that changed a path
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void changedPath() throws Exception {
+		RevCommit commit1 = add("a.txt", "a1");
+		add("b.txt", "b1");
+		RevCommit commit3 = add("a.txt", "a2");
+		add("b.txt", "b2");
+
+		CommitCountFilter visited = new CommitCountFilter();
+		CommitListFilter list = new CommitListFilter();
+		new CommitFinder(testRepo).setFilter(
+				new AndCommitFilter(visited, new CommitPathFilter(
+						PathFilterUtils.or("a.txt")), list)).find();
+		assertEquals(4, visited.getCount());
+		assertEquals(2, list.getCommits().size());
+		assertEquals(commit3, list.getCommits().get(0));
+		assertEquals(commit1, list.getCommits().get(1));
+	}
+
+	/**
+	 * Test cloning filter
+	 */
+	@Test
+	public void cloneFilter() {
+		CommitPathFilter filter = new CommitPathFilter(
+				PathFilter.create("a.txt"));
+		assertNotNull(filter.getPaths());
+		assertTrue(filter.clone() instanceof CommitPathFilter);
+		assertNotSame(filter, filter.clone());
+	}
+
+	/**
+	 * Test creating filter with null paths
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void nullPaths() {
+		new CommitPathFilter(null);
+	}
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2012 Kevin Sawicki <kevinsawicki@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+package org.gitective.tests;
+
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.gitective.core.CommitFinder;
+import org.gitective.core.PathFilterUtils;
+import org.gitective.core.filter.commit.CommitCountFilter;
+import org.gitective.core.filter.commit.CommitListFilter;
+import org.gitective.core.filter.commit.CommitMessageFindFilter;
+import org.gitective.core.filter.commit.CommitPipelineFilter;
+import org.gitective.core.filter.tree.TypeCountFilter;
+import org.junit.Test;
+
+/**
+ * Unit tests of {@link CommitPipelineFilter}
+ */
+public class CommitPipelineFilterTest extends GitTestCase {
+
+	/**
+	 * Test pipeline with nested pipelines that are flattened
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void flattenedNestedPipelines() throws Exception {
+		RevCommit commit1 = add("a.txt", "a1", "fix 1");
+		add("b.txt", "b1", "add 2");
+		RevCommit commit3 = add("a.txt", "a2", "fix 3");
+
+		CommitListFilter commits = new CommitListFilter();
+		CommitPipelineFilter inner = new CommitPipelineFilter().add(commits);
+		CommitPipelineFilter middle = new CommitPipelineFilter().add(inner);
+		CommitPipelineFilter pipeline = new CommitPipelineFilter()
+				.add(PathFilterUtils.and("a.txt"))
+				.add(new CommitMessageFindFilter("fix")).add(middle);
+		CommitFinder finder = new CommitFinder(testRepo).setFilter(pipeline);
+
+		finder.find();
+		assertEquals(2, commits.getCommits().size());
+		assertEquals(commit3, commits.getCommits().get(0));
+		assertEquals(commit1, commits.getCommits().get(1));
+
+		commits.reset();
+		finder.find();
+		assertEquals(2, commits.getCommits().size());
+		assertEquals(commit3, commits.getCommits().get(0));
+		assertEquals(commit1, commits.getCommits().get(1));
+	}
+
+	/**
+	 * Test pipeline with nested pipeline that stops the walk
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void stoppingNestedPipeline() throws Exception {
+		add("a.txt", "a1", "fix 1");
+		RevCommit commit2 = add("b.txt", "b1", "add 2");
+		add("a.txt", "a2", "fix 3");
+		add("b.txt", "b2", "fix 4");
+
+		CommitListFilter commits = new CommitListFilter();
+		CommitPipelineFilter stopping = new CommitPipelineFilter();
+		stopping.add(PathFilterUtils.and("a.txt"))
+				.add(new CommitMessageFindFilter("fix")).setStop(true);
+		CommitPipelineFilter pipeline = new CommitPipelineFilter().add(
+				commits).add(stopping);
+		new CommitFinder(testRepo).setFilter(pipeline).find();
+		assertEquals(3, commits.getCommits().size());
+		assertEquals(commit2, commits.getCommits().get(2));
+	}
+
+	/**
+	 * Test pipeline with a tree pipe visiting the tree of each commit
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void treePipe() throws Exception {
+		add("a.txt", "a1");
+		add("b.txt", "b1");
+		add("a.txt", "a2");
+
+		TypeCountFilter files = TypeCountFilter.file();
+		CommitCountFilter commits = new CommitCountFilter();
+		CommitPipelineFilter pipeline = new CommitPipelineFilter().add(files)
+				.add(commits);
+		new CommitFinder(testRepo).setFilter(pipeline).find();
+		assertEquals(5, files.getCount());
+		assertEquals(3, commits.getCount());
+	}
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2012 Kevin Sawicki <kevinsawicki@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+package org.gitective.tests;
+
+import java.io.File;
+import java.util.Date;
+
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.gitective.core.CommitQuery;
+import org.gitective.core.filter.commit.CommitListFilter;
+import org.gitective.core.filter.commit.DiffLineCountFilter;
+import org.junit.Test;
+
+/**
+ * Unit tests of {@link CommitQuery}
+ */
+public class CommitQueryTest extends GitTestCase {
+
+	/**
+	 * Test query with paths, message and limit
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void pathsMessageAndLimit() throws Exception {
+		add("a.txt", "a1", "fix a");
+		RevCommit commit2 = add("b.txt", "b1", "fix b");
+		RevCommit commit3 = add("a.txt", "a2", "fix a again");
+		add("a.txt", "a3", "change a");
+		RevCommit commit5 = add("a.txt", "a4", "fix a once more");
+		CommitListFilter list = new CommitListFilter();
+		DiffLineCountFilter lines = new DiffLineCountFilter();
+		CommitQuery query = new CommitQuery(testRepo).setPaths("a.txt")
+				.setMessage("fix").setAuthor(author).setLimit(2)
+				.addAggregate(lines, list);
+		query.find();
+		assertEquals(2, list.getCommits().size());
+		assertEquals(commit5, list.getCommits().get(0));
+		assertEquals(commit3, list.getCommits().get(1));
+		assertFalse(list.getCommits().contains(commit2));
+		assertEquals(2, lines.getTotal());
+	}
+
+	/**
+	 * Test query with date bounds stopping the walk
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void dateBounds() throws Exception {
+		RevCommit commit1 = add("a.txt", "a1");
+		RevCommit commit2 = add("a.txt", "a2");
+		CommitListFilter list = new CommitListFilter();
+		new CommitQuery(testRepo)
+				.setAfter(new Date(commit2.getCommitTime() * 1000L))
+				.setBefore(new Date(commit2.getCommitTime() * 1000L))
+				.addAggregate(list).find();
+		assertTrue(list.getCommits().contains(commit2));
+		if (commit1.getCommitTime() != commit2.getCommitTime())
+			assertFalse(list.getCommits().contains(commit1));
+	}
+
+	private RevCommit commitAt(final String path, final String content,
+			final long seconds) throws Exception {
+		committer = new PersonIdent("Test Committer", "committer@test.com",
+				seconds * 1000L, 0);
+		return add(path, content);
+	}
+
+	/**
+	 * Test query with paths and a lower date bound stopping the walk before
+	 * the older history of a rarely changed path is read
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void pathsAndAfterStopWalk() throws Exception {
+		commitAt("a.txt", "a1", 1000);
+		RevCommit missing = null;
+		for (int i = 1; i <= 40; i++) {
+			RevCommit commit = commitAt("b.txt", "b" + i, 1000 + i * 1000);
+			if (i == 10)
+				missing = commit;
+		}
+		RevCommit match = commitAt("a.txt", "a2", 100000);
+		commitAt("b.txt", "b41", 100001);
+
+		String name = missing.name();
+		File object = new File(new File(new File(testRepo, "objects"),
+				name.substring(0, 2)), name.substring(2));
+		assertTrue(object.delete());
+
+		CommitListFilter list = new CommitListFilter();
+		new CommitQuery(testRepo).setPaths("a.txt")
+				.setAfter(new Date(50000 * 1000L)).addAggregate(list).find();
+		assertEquals(1, list.getCommits().size());
+		assertEquals(match, list.getCommits().get(0));
+	}
+
+	/**
+	 * Test explaining a query plan
+	 */
+	@Test
+	public void explain() {
+		String plan = new CommitQuery(testRepo).setPaths("src")
+				.setAfter(new Date(0)).setMessage("fix").setAuthor(author)
+				.setLimit(10).addAggregate(new DiffLineCountFilter())
+				.addAggregate(new CommitListFilter()).explain();
+		assertNotNull(plan);
+		String[] stages = plan.split("\n");
+		assertEquals(9, stages.length);
+		assertTrue(stages[0].startsWith("1. Walk HEAD"));
+		assertTrue(stages[1].contains("Stop walk"));
+		assertTrue(stages[4].contains("Reorder"));
+		assertTrue(stages[5].contains("Match changes to src"));
+		assertTrue(stages[6].contains("10"));
+		assertTrue(stages[7].contains("CommitListFilter"));
+		assertTrue(plan.indexOf("CommitListFilter") < plan
+				.indexOf("DiffLineCountFilter"));
+		assertFalse(plan.contains("Tree filter"));
+	}
+
+	/**
+	 * Test explaining a query plan with paths and no lower date bound
+	 */
+	@Test
+	public void explainPathsWithoutAfter() {
+		String plan = new CommitQuery(testRepo).setPaths("src")
+				.setMessage("fix").explain();
+		String[] stages = plan.split("\n");
+		assertEquals(3, stages.length);
+		assertTrue(stages[1].contains("Tree filter"));
+		assertTrue(stages[2].contains("Match message"));
+	}
+
+	/**
+	 * Test setting null refs
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void nullRefs() {
+		new CommitQuery(testRepo).setRefs((String[]) null);
+	}
+}
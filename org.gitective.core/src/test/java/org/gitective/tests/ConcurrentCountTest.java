@@ -0,0 +1,214 @@
+/*
+ * Copyright (c) 2012 Kevin Sawicki <kevinsawicki@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+package org.gitective.tests;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.filter.RevFilter;
+import org.eclipse.jgit.storage.file.FileRepository;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.gitective.core.CommitFinder;
+import org.gitective.core.TreeWalkCache;
+import org.gitective.core.filter.commit.AllCommitFilter;
+import org.gitective.core.filter.commit.ConcurrentCommitCountFilter;
+import org.gitective.core.filter.commit.ConcurrentDiffFileCountFilter;
+import org.gitective.core.filter.commit.ConcurrentDiffLineCountFilter;
+import org.gitective.core.filter.commit.DiffLineCountFilter;
+import org.gitective.core.filter.tree.ConcurrentTypeCountFilter;
+import org.gitective.core.filter.tree.TypeCountFilter;
+import org.junit.Test;
+
+/**
+ * Unit tests of concurrent count filters
+ */
+public class ConcurrentCountTest extends GitTestCase {
+
+	/**
+	 * Clone concurrent filters
+	 */
+	@Test
+	public void cloneFilters() {
+		RevFilter clone = new ConcurrentCommitCountFilter().clone();
+		assertTrue(clone instanceof ConcurrentCommitCountFilter);
+		clone = new ConcurrentDiffFileCountFilter().clone();
+		assertTrue(clone instanceof ConcurrentDiffFileCountFilter);
+		clone = new ConcurrentDiffLineCountFilter().clone();
+		assertTrue(clone instanceof ConcurrentDiffLineCountFilter);
+		assertTrue(ConcurrentTypeCountFilter.file().clone() instanceof ConcurrentTypeCountFilter);
+	}
+
+	/**
+	 * Share filters across walks running on several threads
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void sharedAcrossThreads() throws Exception {
+		add("file1.txt", "a");
+		add("file2.txt", "b\nc");
+		add("file1.txt", "d");
+
+		final TypeCountFilter single = TypeCountFilter.file();
+		new CommitFinder(testRepo).setFilter(single).find();
+		assertTrue(single.getCount() > 0);
+
+		final ConcurrentCommitCountFilter commits = new ConcurrentCommitCountFilter();
+		final ConcurrentDiffFileCountFilter files = new ConcurrentDiffFileCountFilter();
+		final ConcurrentDiffLineCountFilter lines = new ConcurrentDiffLineCountFilter();
+		final ConcurrentTypeCountFilter types = ConcurrentTypeCountFilter
+				.file();
+		final int threadCount = 8;
+		final List<Thread> threads = new ArrayList<Thread>(threadCount);
+		final List<Throwable> failures = new ArrayList<Throwable>();
+		for (int i = 0; i < threadCount; i++)
+			threads.add(new Thread() {
+
+				public void run() {
+					try {
+						new CommitFinder(testRepo).setFilter(
+								new AllCommitFilter(commits, files, lines))
+								.find();
+						new CommitFinder(testRepo).setFilter(types).find();
+					} catch (Throwable t) {
+						synchronized (failures) {
+							failures.add(t);
+						}
+					}
+				}
+			});
+		for (Thread thread : threads)
+			thread.start();
+		for (Thread thread : threads)
+			thread.join();
+		assertTrue(failures.isEmpty());
+
+		assertEquals(3 * threadCount, commits.getCount());
+		assertEquals(2 * threadCount, files.getAdded());
+		assertEquals(threadCount, files.getEdited());
+		assertEquals(0, files.getDeleted());
+		assertEquals(3 * threadCount, files.getTotal());
+		assertEquals(3 * threadCount, lines.getAdded());
+		assertEquals(threadCount, lines.getEdited());
+		assertEquals(4 * threadCount, lines.getTotal());
+		assertEquals(threadCount * single.getCount(), types.getCount());
+
+		commits.reset();
+		files.reset();
+		lines.reset();
+		types.reset();
+		assertEquals(0, commits.getCount());
+		assertEquals(0, files.getTotal());
+		assertEquals(0, lines.getTotal());
+		assertEquals(0, types.getCount());
+	}
+
+	/**
+	 * Get tree walks from a per-thread cache on several threads
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void perThreadTreeWalks() throws Exception {
+		final Repository repo = new FileRepository(testRepo);
+		final ObjectReader reader = repo.newObjectReader();
+		try {
+			final TreeWalkCache cache = TreeWalkCache.perThread();
+			final TreeWalk walk = cache.get(reader);
+			assertSame(walk, cache.get(reader));
+			final AtomicReference<TreeWalk> other = new AtomicReference<TreeWalk>();
+			Thread thread = new Thread() {
+
+				public void run() {
+					other.set(cache.get(reader));
+				}
+			};
+			thread.start();
+			thread.join();
+			assertNotNull(other.get());
+			assertNotSame(walk, other.get());
+			assertSame(walk, cache.get(reader));
+			cache.clear();
+			assertNotSame(walk, cache.get(reader));
+		} finally {
+			reader.release();
+			repo.close();
+		}
+	}
+
+	/**
+	 * Share a line count filter with prefetching enabled across walks running
+	 * on several threads
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void prefetchAcrossThreads() throws Exception {
+		StringBuilder content = new StringBuilder();
+		for (int i = 0; i < 20; i++) {
+			content.append("line").append(i).append('\n');
+			List<String> paths = new ArrayList<String>();
+			List<String> contents = new ArrayList<String>();
+			for (int j = 0; j < 20; j++) {
+				paths.add("file" + j + ".txt");
+				contents.add(j + content.toString());
+			}
+			add(paths, contents);
+		}
+
+		final Repository repo = new FileRepository(testRepo);
+		final DiffLineCountFilter single = new DiffLineCountFilter();
+		new CommitFinder(repo).setFilter(single).find();
+		assertTrue(single.getTotal() > 0);
+
+		final ConcurrentDiffLineCountFilter lines = new ConcurrentDiffLineCountFilter();
+		lines.setPrefetchSize(1024 * 1024);
+		final int threadCount = 8;
+		final List<Thread> threads = new ArrayList<Thread>(threadCount);
+		final List<Throwable> failures = new ArrayList<Throwable>();
+		for (int i = 0; i < threadCount; i++)
+			threads.add(new Thread() {
+
+				public void run() {
+					try {
+						for (int j = 0; j < 5; j++)
+							new CommitFinder(repo).setFilter(lines).find();
+					} catch (Throwable t) {
+						synchronized (failures) {
+							failures.add(t);
+						}
+					}
+				}
+			});
+		for (Thread thread : threads)
+			thread.start();
+		for (Thread thread : threads)
+			thread.join();
+		assertTrue(failures.toString(), failures.isEmpty());
+		assertEquals(5 * threadCount * single.getAdded(), lines.getAdded());
+		assertEquals(5 * threadCount * single.getTotal(), lines.getTotal());
+		repo.close();
+	}
+}
@@ -22,13 +22,19 @@
 package org.gitective.tests;
 
 import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevSort;
+import org.eclipse.jgit.revwalk.RevWalk;
 import org.eclipse.jgit.revwalk.filter.RevFilter;
+import org.eclipse.jgit.storage.file.FileRepository;
 import org.gitective.core.CommitFinder;
+import org.gitective.core.CommitUtils;
 import org.gitective.core.filter.commit.AndCommitFilter;
 import org.gitective.core.filter.commit.AuthorDateFilter;
 import org.gitective.core.filter.commit.CommitCountFilter;
 import org.gitective.core.filter.commit.CommitterDateFilter;
+import org.gitective.core.filter.commit.DateFilter;
 import org.junit.Test;
 
 /**
@@ -145,4 +151,103 @@ public class DateTest extends GitTestCase {
 	public void constructorWithNullDate() {
 		new AuthorDateFilter(null);
 	}
+
+	private void commitAt(final String content, final long seconds)
+			throws Exception {
+		committer = new PersonIdent("Test Committer", "committer@test.com",
+				seconds * 1000L, 0);
+		add("file.txt", content);
+	}
+
+	/**
+	 * Test since mode including newer commits after a clock skewed commit
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void sinceWithSkew() throws Exception {
+		commitAt("a", 10000);
+		commitAt("b", 20000);
+		commitAt("c", 5000);
+		commitAt("d", 30000);
+		CommitCountFilter count = new CommitCountFilter();
+		CommitFinder finder = new CommitFinder(testRepo);
+		finder.setFilter(new AndCommitFilter(new CommitterDateFilter(
+				15000 * 1000L).setSince(true), count));
+		finder.find();
+		assertEquals(2, count.getCount());
+
+		count.reset();
+		finder.setFilter(new AndCommitFilter(new CommitterDateFilter(
+				15000 * 1000L).setStop(true), count));
+		finder.find();
+		assertEquals(1, count.getCount());
+	}
+
+	/**
+	 * Test since mode stopping the walk after the configured slop
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void sinceStopsWalk() throws Exception {
+		for (int i = 1; i <= 10; i++)
+			commitAt(Integer.toString(i), i * 1000);
+		commitAt("new", 100000);
+		CommitCountFilter visited = new CommitCountFilter();
+		CommitCountFilter matched = new CommitCountFilter();
+		DateFilter since = new CommitterDateFilter(50000 * 1000L).setSince(
+				true).setSlop(2);
+		assertFalse(since.isStateless());
+		CommitFinder finder = new CommitFinder(testRepo);
+		finder.setFilter(new AndCommitFilter(visited, since, matched));
+		finder.find();
+		assertEquals(1, matched.getCount());
+		assertEquals(4, visited.getCount());
+
+		DateFilter clone = (DateFilter) since.clone();
+		assertTrue(clone.isSince());
+		assertEquals(2, clone.getSlop());
+	}
+
+	/**
+	 * Test since mode stopping a walk sorted topologically and in reverse
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void sinceStopsSortedWalk() throws Exception {
+		for (int i = 1; i <= 10; i++)
+			commitAt(Integer.toString(i), i * 1000);
+		commitAt("new", 100000);
+		CommitCountFilter visited = new CommitCountFilter();
+		CommitCountFilter matched = new CommitCountFilter();
+		DateFilter since = new CommitterDateFilter(50000 * 1000L).setSince(
+				true).setSlop(2);
+		Repository repo = new FileRepository(testRepo);
+		RevWalk walk = new RevWalk(repo);
+		try {
+			walk.sort(RevSort.TOPO);
+			walk.sort(RevSort.REVERSE, true);
+			walk.setRevFilter(new AndCommitFilter(visited, since, matched));
+			walk.markStart(walk.parseCommit(CommitUtils.getHead(repo)));
+			int count = 0;
+			while (walk.next() != null)
+				count++;
+			assertEquals(1, count);
+			assertEquals(1, matched.getCount());
+			assertEquals(4, visited.getCount());
+		} finally {
+			walk.release();
+			repo.close();
+		}
+	}
+
+	/**
+	 * Test setting negative slop
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void negativeSlop() {
+		new CommitterDateFilter(1).setSlop(-1);
+	}
 }
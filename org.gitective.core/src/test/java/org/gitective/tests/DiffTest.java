@@ -31,6 +31,7 @@ import org.eclipse.jgit.errors.StopWalkException;
 import org.eclipse.jgit.revwalk.RevCommit;
 import org.gitective.core.CommitFinder;
 import org.gitective.core.filter.commit.CommitDiffFilter;
+import org.gitective.core.filter.commit.CommitDiffFilter.MergeDiff;
 import org.junit.Test;
 
 /**
@@ -122,4 +123,132 @@ public class DiffTest extends GitTestCase {
 		assertEquals("test.txt", diff.getOldPath());
 		assertEquals("test.txt", diff.getNewPath());
 	}
+
+	/**
+	 * Test diffs introduced by merge commit against its first parent
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void mergeFirstParent() throws Exception {
+		add("test.txt", "a\nb\nc");
+		branch("test");
+		add("other.txt", "a");
+		checkout("master");
+		add("test.txt", "1\na\nb\nc");
+		merge("test");
+		final AtomicReference<Collection<DiffEntry>> ref = new AtomicReference<Collection<DiffEntry>>();
+		CommitDiffFilter filter = new CommitDiffFilter() {
+
+			public boolean include(RevCommit commit, Collection<DiffEntry> diffs) {
+				ref.set(diffs);
+				throw StopWalkException.INSTANCE;
+			}
+		};
+		assertEquals(MergeDiff.COMBINED, filter.getMergeDiff());
+		new CommitFinder(testRepo).setFilter(filter).find();
+		assertNotNull(ref.get());
+		assertTrue(ref.get().isEmpty());
+
+		filter.setMergeDiff(MergeDiff.FIRST_PARENT);
+		new CommitFinder(testRepo).setFilter(filter).find();
+		Collection<DiffEntry> diffs = ref.get();
+		assertEquals(1, diffs.size());
+		DiffEntry diff = diffs.iterator().next();
+		assertEquals(ChangeType.ADD, diff.getChangeType());
+		assertEquals("other.txt", diff.getNewPath());
+	}
+
+	/**
+	 * Test skipping the diff of a merge commit
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void mergeSkip() throws Exception {
+		add("test.txt", "a\nb\nc");
+		branch("test");
+		add("other.txt", "a");
+		checkout("master");
+		add("test.txt", "1\na\nb\nc");
+		merge("test");
+		final AtomicReference<Collection<DiffEntry>> ref = new AtomicReference<Collection<DiffEntry>>();
+		CommitDiffFilter filter = new CommitDiffFilter() {
+
+			public boolean include(RevCommit commit, Collection<DiffEntry> diffs) {
+				ref.set(diffs);
+				throw StopWalkException.INSTANCE;
+			}
+		}.setMergeDiff(MergeDiff.SKIP);
+		new CommitFinder(testRepo).setFilter(filter).find();
+		assertNotNull(ref.get());
+		assertTrue(ref.get().isEmpty());
+	}
+
+	/**
+	 * Test setting a null merge diff
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void nullMergeDiff() {
+		new CommitDiffFilter().setMergeDiff(null);
+	}
+
+	/**
+	 * Test dense combined diff of a clean merge
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void mergeDense() throws Exception {
+		add("test.txt", "a\nb\nc\n");
+		branch("test");
+		add("test.txt", "a\nb\nc\nd\n");
+		checkout("master");
+		add("test.txt", "1\na\nb\nc\n");
+		merge("test");
+		final AtomicReference<Collection<DiffEntry>> ref = new AtomicReference<Collection<DiffEntry>>();
+		CommitDiffFilter filter = new CommitDiffFilter() {
+
+			public boolean include(RevCommit commit, Collection<DiffEntry> diffs) {
+				ref.set(diffs);
+				throw StopWalkException.INSTANCE;
+			}
+		}.setMergeDiff(MergeDiff.DENSE);
+		new CommitFinder(testRepo).setFilter(filter).find();
+		assertNotNull(ref.get());
+		assertTrue(ref.get().isEmpty());
+	}
+
+	/**
+	 * Test dense combined diff of a merge with a conflict resolved by a new
+	 * line
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void mergeDenseConflict() throws Exception {
+		add("test.txt", "a\nb\nc");
+		add("other.txt", "o");
+		branch("test");
+		add("test.txt", "a\nB\nc");
+		add("other.txt", "o\np");
+		checkout("master");
+		add("test.txt", "a\nX\nc");
+		merge("test");
+		RevCommit merge = add("test.txt", "a\nY\nc");
+		assertEquals(2, merge.getParentCount());
+		final AtomicReference<Collection<DiffEntry>> ref = new AtomicReference<Collection<DiffEntry>>();
+		CommitDiffFilter filter = new CommitDiffFilter() {
+
+			public boolean include(RevCommit commit, Collection<DiffEntry> diffs) {
+				ref.set(diffs);
+				throw StopWalkException.INSTANCE;
+			}
+		}.setMergeDiff(MergeDiff.DENSE);
+		new CommitFinder(testRepo).setFilter(filter).find();
+		Collection<DiffEntry> diffs = ref.get();
+		assertNotNull(diffs);
+		assertEquals(1, diffs.size());
+		assertEquals("test.txt", diffs.iterator().next().getNewPath());
+	}
 }
@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2012 Kevin Sawicki <kevinsawicki@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+package org.gitective.tests;
+
+import java.util.Arrays;
+
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.gitective.core.CommitFinder;
+import org.gitective.core.CommitQuery;
+import org.gitective.core.PathFilterUtils;
+import org.gitective.core.filter.commit.CommitListFilter;
+import org.junit.Test;
+
+/**
+ * Unit tests of {@link CommitFinder#setFirstParent(boolean)}
+ */
+public class FirstParentTest extends GitTestCase {
+
+	/**
+	 * Test walking only the first parents of a history with a merged branch
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void mainline() throws Exception {
+		RevCommit commit1 = add("a.txt", "a");
+		branch("b1");
+		add("b.txt", "b");
+		add("b.txt", "b2");
+		checkout(Constants.MASTER);
+		RevCommit commit2 = add("a.txt", "a2");
+		RevCommit merge = (RevCommit) merge("b1").getNewHead();
+		RevCommit commit3 = add("a.txt", "a3");
+
+		CommitListFilter all = new CommitListFilter();
+		new CommitFinder(testRepo).setFilter(all).find();
+		assertEquals(6, all.getCommits().size());
+
+		CommitListFilter mainline = new CommitListFilter();
+		CommitFinder finder = new CommitFinder(testRepo).setFirstParent(true);
+		assertTrue(finder.isFirstParent());
+		finder.setFilter(mainline).find();
+		assertEquals(Arrays.asList(commit3, merge, commit2, commit1),
+				mainline.getCommits());
+
+		mainline.reset();
+		finder.findBetween(commit3, commit2);
+		assertEquals(Arrays.asList(commit3, merge), mainline.getCommits());
+
+		mainline.reset();
+		finder.setFilter(PathFilterUtils.and("b.txt")).find();
+		assertEquals(Arrays.asList(merge), mainline.getCommits());
+	}
+
+	/**
+	 * Test a query that only follows first parents
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void query() throws Exception {
+		add("a.txt", "a");
+		branch("b1");
+		add("b.txt", "b");
+		checkout(Constants.MASTER);
+		add("a.txt", "a2");
+		merge("b1");
+
+		CommitListFilter mainline = new CommitListFilter();
+		CommitQuery query = new CommitQuery(testRepo).setFirstParent(true)
+				.addAggregate(mainline);
+		query.find();
+		assertEquals(3, mainline.getCommits().size());
+		assertTrue(query.explain().startsWith("1. Walk first parents of "));
+
+		CommitListFilter all = new CommitListFilter();
+		new CommitQuery(testRepo).addAggregate(all).find();
+		assertEquals(4, all.getCommits().size());
+	}
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright (c) 2012 Kevin Sawicki <kevinsawicki@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+package org.gitective.tests;
+
+import java.io.File;
+import java.io.FileWriter;
+
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.RefUpdate;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.storage.file.FileRepository;
+import org.gitective.core.CommitFinder;
+import org.gitective.core.ForkIndex;
+import org.gitective.core.ForkIndex.Fork;
+import org.gitective.core.filter.commit.AndCommitFilter;
+import org.gitective.core.filter.commit.CommitCountFilter;
+import org.gitective.core.filter.commit.DiffFileCountFilter;
+import org.junit.Test;
+
+/**
+ * Unit tests of fork-aware searches with {@link CommitFinder} and
+ * {@link ForkIndex}
+ */
+public class ForkTest extends GitTestCase {
+
+	private File fork(final ObjectId head) throws Exception {
+		File fork = initRepo();
+		FileWriter writer = new FileWriter(new File(fork,
+				"objects/info/alternates"));
+		try {
+			writer.write(new File(testRepo, "objects").getAbsolutePath());
+			writer.write('\n');
+		} finally {
+			writer.close();
+		}
+		Repository repository = new FileRepository(fork);
+		try {
+			RefUpdate update = repository.updateRef(Constants.R_HEADS
+					+ Constants.MASTER);
+			update.setNewObjectId(head);
+			update.forceUpdate();
+		} finally {
+			repository.close();
+		}
+		return fork;
+	}
+
+	/**
+	 * Test filtering shared commits once across forks
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void filterSharedCommitsOnce() throws Exception {
+		add("a.txt", "a");
+		RevCommit head = add("b.txt", "b");
+		File fork1 = fork(head);
+		File fork2 = fork(head);
+		RevCommit commit1 = add(fork1, "c.txt", "c");
+		add(fork2, "d.txt", "d");
+		File other = initRepo();
+		add(other, "e.txt", "e");
+
+		CommitCountFilter count = new CommitCountFilter();
+		DiffFileCountFilter files = new DiffFileCountFilter();
+		CommitFinder finder = new CommitFinder(testRepo, fork1, fork2, other);
+		assertFalse(finder.isForkAware());
+		assertNull(finder.getForkIndex());
+		finder.setForkAware(true);
+		assertTrue(finder.isForkAware());
+		finder.setFilter(new AndCommitFilter(count, files)).find();
+		assertEquals(5, count.getCount());
+		assertEquals(5, files.getTotal());
+
+		ForkIndex index = finder.getForkIndex();
+		assertEquals(2, index.getObjectStoreCount());
+		assertEquals(5, index.getUniqueCommits());
+		assertEquals(4, index.getForks().size());
+
+		Fork base = index.getFork(new FileRepository(testRepo));
+		assertNotNull(base);
+		assertEquals(testRepo, base.getDirectory());
+		assertEquals(new File(testRepo, "objects").getCanonicalPath(),
+				base.getObjectStore());
+		assertEquals(2, base.getVisited());
+		assertEquals(0, base.getShared());
+		assertEquals(2, base.getAcceptedCount());
+
+		Fork forked = index.getFork(new FileRepository(fork1));
+		assertEquals(base.getObjectStore(), forked.getObjectStore());
+		assertEquals(3, forked.getVisited());
+		assertEquals(2, forked.getShared());
+		assertEquals(3, forked.getAcceptedCount());
+		assertTrue(forked.getAccepted().contains(commit1));
+		assertTrue(forked.getAccepted().contains(head));
+		assertNotNull(forked.toString());
+
+		Fork unrelated = index.getFork(new FileRepository(other));
+		assertFalse(base.getObjectStore().equals(unrelated.getObjectStore()));
+		assertEquals(0, unrelated.getShared());
+
+		finder.setForkAware(true);
+		count.reset();
+		finder.find();
+		assertEquals(5, count.getCount());
+		assertNull(finder.getForkIndex().getFork(null));
+
+		index.reset();
+		assertEquals(0, index.getUniqueCommits());
+		assertTrue(index.getForks().isEmpty());
+	}
+
+	/**
+	 * Test search without fork awareness visiting shared commits per fork
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void filterSharedCommitsPerFork() throws Exception {
+		RevCommit head = add("a.txt", "a");
+		File fork = fork(head);
+		add(fork, "b.txt", "b");
+		CommitCountFilter count = new CommitCountFilter();
+		new CommitFinder(testRepo, fork).setFilter(count).find();
+		assertEquals(3, count.getCount());
+	}
+
+	/**
+	 * Test fork-aware first-parent search
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void firstParentForks() throws Exception {
+		RevCommit head = add("a.txt", "a");
+		File fork = fork(head);
+		add(fork, "b.txt", "b");
+		CommitCountFilter count = new CommitCountFilter();
+		CommitFinder finder = new CommitFinder(testRepo, fork)
+				.setForkAware(true).setFirstParent(true);
+		finder.setFilter(count).find();
+		assertEquals(2, count.getCount());
+		assertEquals(1, finder.getForkIndex().getObjectStoreCount());
+	}
+
+	/**
+	 * Test getting object store of null repository
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void nullObjectStore() {
+		ForkIndex.getObjectStore(null);
+	}
+}
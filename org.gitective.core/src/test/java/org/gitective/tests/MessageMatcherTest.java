@@ -0,0 +1,204 @@
+/*
+ * Copyright (c) 2012 Kevin Sawicki <kevinsawicki@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+package org.gitective.tests;
+
+import static java.util.regex.Pattern.CASE_INSENSITIVE;
+import static java.util.regex.Pattern.MULTILINE;
+
+import java.util.BitSet;
+import java.util.regex.Pattern;
+
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.storage.file.FileRepository;
+import org.gitective.core.CommitFinder;
+import org.gitective.core.MessageMatcher;
+import org.gitective.core.filter.commit.AndCommitFilter;
+import org.gitective.core.filter.commit.BugFilter;
+import org.gitective.core.filter.commit.ChangeIdFilter;
+import org.gitective.core.filter.commit.CommitCountFilter;
+import org.gitective.core.filter.commit.MessageMatchFilter;
+import org.gitective.core.filter.commit.SignedOffByFilter;
+import org.junit.Test;
+
+/**
+ * Unit tests of {@link MessageMatcher} and {@link MessageMatchFilter}
+ */
+public class MessageMatcherTest extends GitTestCase {
+
+	private RevCommit parse(final RevCommit commit) throws Exception {
+		Repository repo = new FileRepository(testRepo);
+		try {
+			return new RevWalk(repo).parseCommit(commit);
+		} finally {
+			repo.close();
+		}
+	}
+
+	/**
+	 * Test adding null literal
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void nullLiteral() {
+		new MessageMatcher().addLiteral(null);
+	}
+
+	/**
+	 * Test adding empty pattern
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void emptyPattern() {
+		new MessageMatcher().addPattern("");
+	}
+
+	/**
+	 * Test creating filter with matcher that has no patterns
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void emptyMatcher() {
+		new MessageMatchFilter(new MessageMatcher());
+	}
+
+	/**
+	 * Test patterns that only match literal text are scanned as literals
+	 */
+	@Test
+	public void literalPatterns() {
+		MessageMatcher matcher = new MessageMatcher();
+		matcher.addLiteral("a.b");
+		matcher.addPattern("Reviewed-by");
+		matcher.addPattern(Pattern.quote("x+y"), MULTILINE);
+		matcher.addPattern(BugFilter.BUG_REGEX, MULTILINE);
+		matcher.addPattern("fix", CASE_INSENSITIVE);
+		assertEquals(5, matcher.getPatternCount());
+		assertTrue(matcher.isLiteral(0));
+		assertTrue(matcher.isLiteral(1));
+		assertTrue(matcher.isLiteral(2));
+		assertFalse(matcher.isLiteral(3));
+		assertFalse(matcher.isLiteral(4));
+		assertEquals("a.b", matcher.getPattern(0));
+	}
+
+	/**
+	 * Test overlapping literals and regular expressions found in one pass
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void overlappingLiterals() throws Exception {
+		RevCommit commit = parse(add("file.txt", "a", "ushers\n\nBug: 123"));
+		MessageMatcher matcher = new MessageMatcher();
+		matcher.addLiteral("he").addLiteral("she").addLiteral("hers");
+		matcher.addLiteral("his").addPattern(BugFilter.BUG_REGEX, MULTILINE);
+		matcher.addPattern("^ushers$");
+		BitSet matched = new BitSet();
+		assertEquals(4, matcher.match(commit, matched));
+		assertTrue(matched.get(0));
+		assertTrue(matched.get(1));
+		assertTrue(matched.get(2));
+		assertFalse(matched.get(3));
+		assertTrue(matched.get(4));
+		assertFalse(matched.get(5));
+
+		MessageMatcher copy = matcher.copy();
+		BitSet copied = new BitSet();
+		assertEquals(4, copy.match(commit, copied));
+		assertEquals(matched, copied);
+	}
+
+	/**
+	 * Test literals with characters outside of ASCII
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void nonAsciiLiteral() throws Exception {
+		RevCommit commit = parse(add("file.txt", "a", "café naïve"));
+		MessageMatcher matcher = new MessageMatcher();
+		matcher.addLiteral("naïve").addLiteral("cafe");
+		BitSet matched = new BitSet();
+		assertEquals(1, matcher.match(commit, matched));
+		assertTrue(matched.get(0));
+	}
+
+	/**
+	 * Test combining message filters into a single filter
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void combinedFilters() throws Exception {
+		PersonIdent person = new PersonIdent("Test user", "test@user.com");
+		String signedOff = Constants.SIGNED_OFF_BY_TAG + person.getName()
+				+ " <" + person.getEmailAddress() + ">";
+		String changeId = "Change-Id: I"
+				+ "0123456789abcdef0123456789abcdef01234567";
+		add("file.txt", "1", "first\n\nBug: 1\n" + signedOff);
+		add("file.txt", "2", "second\n\n" + changeId + "\n" + signedOff);
+		add("file.txt", "3", "third");
+
+		MessageMatchFilter filter = new MessageMatchFilter(new BugFilter(),
+				new ChangeIdFilter(), new SignedOffByFilter(person));
+		assertFalse(filter.getMatcher().isLiteral(0));
+		assertTrue(filter.getMatcher().isLiteral(2));
+		CommitCountFilter count = new CommitCountFilter();
+		CommitFinder finder = new CommitFinder(testRepo);
+		finder.setFilter(new AndCommitFilter(filter, count)).find();
+		assertEquals(2, count.getCount());
+		assertEquals(1, filter.getCount(0));
+		assertEquals(1, filter.getCount(1));
+		assertEquals(2, filter.getCount(2));
+
+		filter.reset();
+		assertEquals(0, filter.getCount(2));
+		count.reset();
+		MessageMatchFilter clone = (MessageMatchFilter) filter.clone();
+		finder.setFilter(new AndCommitFilter(clone, count)).find();
+		assertEquals(2, count.getCount());
+		assertEquals(2, clone.getCount(2));
+	}
+
+	/**
+	 * Test filter created from regular expressions
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void patternFilter() throws Exception {
+		add("file.txt", "1", "fix one");
+		add("file.txt", "2", "add two");
+		add("file.txt", "3", "Fix three");
+
+		MessageMatchFilter filter = new MessageMatchFilter("fix", "F.x");
+		CommitCountFilter count = new CommitCountFilter();
+		new CommitFinder(testRepo).setFilter(
+				new AndCommitFilter(filter, count)).find();
+		assertEquals(2, count.getCount());
+		assertEquals(1, filter.getCount(0));
+		assertEquals(1, filter.getCount(1));
+		assertTrue(filter.getMatched().get(0));
+		assertFalse(filter.getMatched().get(1));
+	}
+}
@@ -21,9 +21,13 @@
  */
 package org.gitective.tests;
 
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
 import org.eclipse.jgit.revwalk.filter.RevFilter;
+import org.eclipse.jgit.storage.file.FileRepository;
 import org.gitective.core.CommitFinder;
 import org.gitective.core.filter.commit.AndCommitFilter;
+import org.gitective.core.filter.commit.AuthorFilter;
 import org.gitective.core.filter.commit.CommitCountFilter;
 import org.gitective.core.filter.commit.CommitLimitFilter;
 import org.gitective.core.filter.commit.OrCommitFilter;
@@ -83,4 +87,27 @@ public class OrTest extends GitTestCase {
 		service.find();
 		assertEquals(2, count.getCount());
 	}
+
+	/**
+	 * Test cheap including filter being moved ahead of an expensive filter
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void adaptiveOrder() throws Exception {
+		RevCommit commit = add("file.txt", "content");
+		SlowFilter slow = new SlowFilter(false);
+		OrCommitFilter or = new OrCommitFilter(slow, new AuthorFilter(author))
+				.setAdaptive(true);
+		assertTrue(or.isAdaptive());
+		RevWalk walk = new RevWalk(new FileRepository(testRepo));
+		try {
+			commit = walk.parseCommit(commit);
+			for (int i = 0; i < 1000; i++)
+				assertTrue(or.include(walk, commit));
+		} finally {
+			walk.release();
+		}
+		assertTrue(slow.getCalls() < 500);
+	}
 }
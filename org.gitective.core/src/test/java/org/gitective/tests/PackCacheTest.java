@@ -0,0 +1,181 @@
+/*
+ * Copyright (c) 2012 Kevin Sawicki <kevinsawicki@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+package org.gitective.tests;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.Collections;
+import java.util.Set;
+
+import org.eclipse.jgit.lib.NullProgressMonitor;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.storage.file.FileRepository;
+import org.eclipse.jgit.storage.pack.PackWriter;
+import org.gitective.core.CommitFinder;
+import org.gitective.core.PackCacheConfig;
+import org.gitective.core.PackCacheStatistics;
+import org.gitective.core.RepositoryService;
+import org.gitective.core.filter.commit.DiffLineCountFilter;
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Unit tests of {@link PackCacheConfig} and {@link PackCacheStatistics}
+ */
+public class PackCacheTest extends GitTestCase {
+
+	/**
+	 * Restore default cache configuration
+	 */
+	@After
+	public void restoreDefaults() {
+		new PackCacheConfig().apply();
+	}
+
+	private void pack(final RevCommit commit) throws Exception {
+		final Repository repository = new FileRepository(testRepo);
+		final PackWriter writer = new PackWriter(repository);
+		try {
+			final Set<ObjectId> none = Collections.emptySet();
+			writer.preparePack(NullProgressMonitor.INSTANCE,
+					Collections.singleton(commit), none);
+			final File directory = new File(testRepo, "objects/pack");
+			directory.mkdirs();
+			final String name = "pack-" + writer.computeName().name();
+			final FileOutputStream pack = new FileOutputStream(new File(
+					directory, name + ".pack"));
+			try {
+				writer.writePack(null, null, pack);
+			} finally {
+				pack.close();
+			}
+			final FileOutputStream index = new FileOutputStream(new File(
+					directory, name + ".idx"));
+			try {
+				writer.writeIndex(index);
+			} finally {
+				index.close();
+			}
+		} finally {
+			writer.release();
+			repository.close();
+		}
+	}
+
+	/**
+	 * Test presets
+	 */
+	@Test
+	public void presets() {
+		PackCacheConfig defaults = new PackCacheConfig();
+		PackCacheConfig scan = PackCacheConfig.fullHistoryScan();
+		PackCacheConfig lookups = PackCacheConfig.smallLookups();
+		assertTrue(scan.isMemoryMapped());
+		assertFalse(lookups.isMemoryMapped());
+		assertTrue(scan.getWindowCacheLimit() > defaults.getWindowCacheLimit());
+		assertTrue(scan.getWindowSize() > lookups.getWindowSize());
+		assertTrue(scan.getDeltaBaseCacheLimit() >= lookups
+				.getDeltaBaseCacheLimit());
+		assertTrue(lookups.getOpenFiles() > defaults.getOpenFiles());
+		assertEquals(scan.getWindowCacheLimit(), scan.toWindowCacheConfig()
+				.getPackedGitLimit());
+		assertNotNull(scan.toString());
+	}
+
+	/**
+	 * Test cache statistics after walking a packed repository
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void statisticsAfterWalk() throws Exception {
+		add("a.txt", "a\nb\nc\n");
+		pack(add("a.txt", "a\nb2\nc\n"));
+
+		PackCacheConfig config = PackCacheConfig.smallLookups();
+		RepositoryService service = new RepositoryService(testRepo);
+		assertSame(service, service.setCacheConfig(config));
+		assertSame(config, service.getCacheConfig());
+		assertSame(config, PackCacheConfig.getActive());
+
+		PackCacheStatistics before = service.getCacheStatistics();
+		assertSame(config, before.getConfig());
+		assertEquals(0, before.getOpenBytes());
+		assertEquals(0, before.getOpenFiles());
+		assertEquals(0, before.getUtilization(), 0);
+		assertFalse(before.isSaturated());
+
+		DiffLineCountFilter filter = new DiffLineCountFilter();
+		new CommitFinder(testRepo).setFilter(filter).find();
+		assertEquals(3, filter.getAdded());
+
+		PackCacheStatistics after = service.getCacheStatistics();
+		assertEquals(1, after.getOpenFiles());
+		assertTrue(after.getOpenBytes() > 0);
+		assertTrue(after.getUtilization() > 0);
+		assertFalse(after.isSaturated());
+		assertTrue(after.toString().contains("1 of 512 files"));
+	}
+
+	/**
+	 * Test saturated cache
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void saturated() throws Exception {
+		pack(add("a.txt", "a"));
+		new PackCacheConfig().setWindowCacheLimit(8192).setWindowSize(8192)
+				.setOpenFiles(1).apply();
+		new CommitFinder(testRepo).find();
+		PackCacheStatistics statistics = PackCacheStatistics.snapshot();
+		assertTrue(statistics.isSaturated());
+		assertTrue(statistics.toString().endsWith("saturated"));
+	}
+
+	/**
+	 * Test applying window size larger than limit
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void windowLargerThanLimit() {
+		new PackCacheConfig().setWindowCacheLimit(1024).setWindowSize(8192)
+				.apply();
+	}
+
+	/**
+	 * Test setting null configuration
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void nullConfig() {
+		new RepositoryService(testRepo).setCacheConfig(null);
+	}
+
+	/**
+	 * Test setting invalid open files
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void invalidOpenFiles() {
+		new PackCacheConfig().setOpenFiles(0);
+	}
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) 2012 Kevin Sawicki <kevinsawicki@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+package org.gitective.tests;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+import org.eclipse.jgit.revwalk.filter.RevFilter;
+import org.gitective.core.CommitFinder;
+import org.gitective.core.PathFilterUtils;
+import org.gitective.core.filter.commit.AndCommitFilter;
+import org.gitective.core.filter.commit.CommitCountFilter;
+import org.gitective.core.filter.commit.CommitCursorFilter;
+import org.gitective.core.filter.commit.CommitMessageFindFilter;
+import org.gitective.core.filter.commit.CommitPipelineFilter;
+import org.gitective.core.filter.commit.OrCommitFilter;
+import org.gitective.core.filter.commit.ProfilingFilter;
+import org.junit.Test;
+
+/**
+ * Unit tests of {@link ProfilingFilter}
+ */
+public class ProfilingFilterTest extends GitTestCase {
+
+	/**
+	 * Test profiling a composed filter tree
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void profileTree() throws Exception {
+		add("a.txt", "a", "fix 1");
+		add("b.txt", "b", "feature 2");
+		add("c.txt", "c", "fix 3");
+
+		CommitMessageFindFilter fix = new CommitMessageFindFilter("fix");
+		CommitCountFilter count = new CommitCountFilter();
+		CommitCursorFilter cursor = new CommitCursorFilter(count);
+		CommitCountFilter pipelineCount = new CommitCountFilter();
+		CommitPipelineFilter nested = new CommitPipelineFilter()
+				.add(pipelineCount);
+		CommitPipelineFilter pipeline = new CommitPipelineFilter().add(
+				PathFilterUtils.and("a.txt")).add(nested);
+		AndCommitFilter and = new AndCommitFilter(new OrCommitFilter(fix),
+				cursor, pipeline);
+
+		ProfilingFilter profiled = ProfilingFilter.profile(and);
+		assertSame(profiled, ProfilingFilter.profile(profiled));
+		assertSame(and, profiled.getFilter());
+		new CommitFinder(testRepo).setFilter(profiled).find();
+
+		assertEquals(2, count.getCount());
+		assertEquals(2, pipelineCount.getCount());
+		assertEquals(3, profiled.getCalls());
+		assertEquals(2, profiled.getAccepted());
+		assertEquals(1, profiled.getRejected());
+		assertEquals(2.0 / 3, profiled.getAcceptRatio(), 0.001);
+		assertEquals(3, profiled.getLatency().getCount());
+		assertEquals(3, profiled.getChildren().size());
+
+		ProfilingFilter or = profiled.getChildren().get(0);
+		assertEquals(3, or.getCalls());
+		assertEquals(1, or.getChildren().size());
+		assertSame(fix, or.getChildren().get(0).getFilter());
+		ProfilingFilter cursorProfile = profiled.getChildren().get(1);
+		assertSame(cursor, cursorProfile.getFilter());
+		assertEquals(2, cursorProfile.getCalls());
+		assertEquals(2, cursorProfile.getChildren().get(0).getAccepted());
+		ProfilingFilter pipelineProfile = profiled.getChildren().get(2);
+		assertEquals(1, pipelineProfile.getChildren().size());
+		assertSame(pipelineCount, pipelineProfile.getChildren().get(0)
+				.getFilter());
+		assertTrue(profiled.getSelfTime() <= profiled.getLatency()
+				.getTotal());
+		assertTrue(profiled.getAllocatedBytes() != 0);
+
+		String report = profiled.getReport();
+		assertTrue(report.contains("\nAndCommitFilter "));
+		assertTrue(report.contains("\n  OrCommitFilter "));
+		assertTrue(report.contains("\n    CommitMessageFindFilter "));
+		assertTrue(report.contains("\n  CommitCursorFilter "));
+		assertTrue(report.contains("\n    CommitCountFilter "));
+		assertTrue(report.contains("\n  CommitPipelineFilter "));
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		profiled.printReport(new PrintStream(output, true));
+		assertEquals(report, output.toString());
+
+		assertSame(and, profiled.unwrap());
+		count.reset();
+		pipelineCount.reset();
+		new CommitFinder(testRepo).setFilter(and).find();
+		assertEquals(2, count.getCount());
+		assertEquals(3, profiled.getCalls());
+		assertEquals(3, or.getCalls());
+	}
+
+	/**
+	 * Test clones recording into the same statistics
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void cloneFilter() throws Exception {
+		add("a.txt", "a");
+		add("b.txt", "b");
+
+		ProfilingFilter profiled = new ProfilingFilter(RevFilter.ALL);
+		RevFilter clone = profiled.clone();
+		assertTrue(clone instanceof ProfilingFilter);
+		new CommitFinder(testRepo).setFilter(profiled).find();
+		new CommitFinder(testRepo).setFilter(clone).find();
+		assertEquals(4, profiled.getCalls());
+		assertEquals(4, ((ProfilingFilter) clone).getCalls());
+		assertTrue(profiled.getChildren().isEmpty());
+	}
+
+	/**
+	 * Test profiling null filter
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void profileNull() {
+		ProfilingFilter.profile(null);
+	}
+
+	/**
+	 * Test creating profiling filter with null filter
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void constructorNull() {
+		new ProfilingFilter(null);
+	}
+
+	/**
+	 * Test printing report to null stream
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void printNull() {
+		new ProfilingFilter(RevFilter.ALL).printReport(null);
+	}
+}
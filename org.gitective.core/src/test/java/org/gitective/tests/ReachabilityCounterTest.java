@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2012 Kevin Sawicki <kevinsawicki@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+package org.gitective.tests;
+
+import java.io.IOException;
+import java.util.Map;
+
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.storage.file.FileRepository;
+import org.gitective.core.CommitUtils;
+import org.gitective.core.ReachabilityCounter;
+import org.junit.Assume;
+import org.junit.Test;
+
+/**
+ * Unit tests of {@link ReachabilityCounter}
+ */
+public class ReachabilityCounterTest extends GitTestCase {
+
+	private RevCommit first;
+
+	private RevCommit second;
+
+	private RevCommit branched;
+
+	private void createHistory() throws Exception {
+		first = add("a.txt", "1");
+		second = add("a.txt", "2");
+		branch("b1");
+		branched = add("b.txt", "1");
+		checkout("master");
+		add("a.txt", "3");
+		merge("b1");
+	}
+
+	private void repack() throws Exception {
+		int status;
+		try {
+			Process process = new ProcessBuilder("git", "--git-dir",
+					testRepo.getAbsolutePath(), "repack", "-a", "-d", "-b",
+					"-q").redirectErrorStream(true).start();
+			while (process.getInputStream().read() != -1)
+				;
+			status = process.waitFor();
+		} catch (IOException e) {
+			status = -1;
+		}
+		Assume.assumeTrue(status == 0);
+	}
+
+	private void assertCounts(final Repository repository, final long total) {
+		ReachabilityCounter counter = new ReachabilityCounter(repository);
+		RevCommit head = CommitUtils.getHead(repository);
+		assertEquals(1, counter.count(first));
+		assertEquals(2, counter.count(second));
+		assertEquals(3, counter.count(branched));
+		assertEquals(total, counter.count(head));
+		assertEquals(total - 3, counter.countBetween(head, branched));
+		assertEquals(0, counter.countBetween(second, head));
+		assertEquals(1, counter.countBetween(branched, second));
+
+		Map<String, Long> branches = counter.countBranches();
+		assertEquals(2, branches.size());
+		assertEquals(Long.valueOf(total), branches.get("refs/heads/master"));
+		assertEquals(Long.valueOf(3), branches.get("refs/heads/b1"));
+		assertTrue(counter.countTags().isEmpty());
+	}
+
+	/**
+	 * Test counting commits without a bitmap
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void countWithoutBitmap() throws Exception {
+		createHistory();
+		Repository repository = new FileRepository(testRepo);
+		assertFalse(new ReachabilityCounter(repository).isBitmapped());
+		assertCounts(repository, 5);
+	}
+
+	/**
+	 * Test counting commits using a bitmap with commits outside the pack
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void countWithBitmap() throws Exception {
+		createHistory();
+		repack();
+		add("a.txt", "4");
+		Repository repository = new FileRepository(testRepo);
+		assertTrue(new ReachabilityCounter(repository).isBitmapped());
+		assertCounts(repository, 6);
+	}
+
+	/**
+	 * Test creating counter with null repository
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void nullRepository() {
+		new ReachabilityCounter(null);
+	}
+}
@@ -0,0 +1,221 @@
+/*
+ * Copyright (c) 2012 Kevin Sawicki <kevinsawicki@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+package org.gitective.tests;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.diff.DiffEntry;
+import org.eclipse.jgit.diff.DiffEntry.ChangeType;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.gitective.core.CommitFinder;
+import org.gitective.core.RenameFinder;
+import org.gitective.core.filter.commit.CommitDiffFilter;
+import org.junit.Test;
+
+/**
+ * Unit tests of {@link RenameFinder}
+ */
+public class RenameFinderTest extends GitTestCase {
+
+	private static final String CONTENT = "line 1\nline 2\nline 3\nline 4\nline 5\nline 6\nline 7\nline 8\nline 9\nline 10\n";
+
+	private static class LastDiffs extends CommitDiffFilter {
+
+		Collection<DiffEntry> diffs;
+
+		public boolean include(RevCommit commit, Collection<DiffEntry> diffs) {
+			if (this.diffs == null)
+				this.diffs = diffs;
+			return true;
+		}
+	}
+
+	private void write(String path, String content) throws Exception {
+		FileWriter writer = new FileWriter(new File(testRepo.getParentFile(),
+				path));
+		try {
+			writer.write(content);
+		} finally {
+			writer.close();
+		}
+	}
+
+	private Collection<DiffEntry> diffs(RenameFinder finder) {
+		LastDiffs filter = new LastDiffs();
+		filter.setRenameFinder(finder);
+		new CommitFinder(testRepo).setFilter(filter).find();
+		return filter.diffs;
+	}
+
+	/**
+	 * Test detecting a rename of identical content
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void exactRename() throws Exception {
+		add("a.txt", CONTENT);
+		mv("a.txt", "b.txt");
+		RenameFinder finder = new RenameFinder().setPairLimit(0);
+		Collection<DiffEntry> diffs = diffs(finder);
+		assertEquals(1, diffs.size());
+		DiffEntry diff = diffs.iterator().next();
+		assertEquals(ChangeType.RENAME, diff.getChangeType());
+		assertEquals("a.txt", diff.getOldPath());
+		assertEquals("b.txt", diff.getNewPath());
+		assertEquals(100, diff.getScore());
+		assertEquals(0, finder.getLimitedCount());
+	}
+
+	/**
+	 * Test detecting a rename of similar content and reusing cached
+	 * similarities
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void similarRename() throws Exception {
+		add("a.txt", CONTENT);
+		write("a.txt", CONTENT.replace("line 5", "line five"));
+		mv("a.txt", "b.txt");
+		RenameFinder finder = new RenameFinder();
+		Collection<DiffEntry> diffs = diffs(finder);
+		assertEquals(1, diffs.size());
+		DiffEntry diff = diffs.iterator().next();
+		assertEquals(ChangeType.RENAME, diff.getChangeType());
+		assertEquals("b.txt", diff.getNewPath());
+		assertTrue(diff.getScore() >= finder.getScore());
+		assertTrue(diff.getScore() < 100);
+		assertEquals(2, finder.getCacheSize());
+
+		assertEquals(ChangeType.RENAME, diffs(finder).iterator().next()
+				.getChangeType());
+		assertEquals(2, finder.getCacheSize());
+	}
+
+	/**
+	 * Test limits preventing similar content from being scored
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void limits() throws Exception {
+		add("a.txt", CONTENT);
+		write("a.txt", CONTENT.replace("line 5", "line five"));
+		mv("a.txt", "b.txt");
+
+		RenameFinder finder = new RenameFinder().setPairLimit(0);
+		Collection<DiffEntry> diffs = diffs(finder);
+		assertEquals(2, diffs.size());
+		assertEquals(1, finder.getLimitedCount());
+
+		finder = new RenameFinder().setBlobSizeLimit(10);
+		diffs = diffs(finder);
+		assertEquals(2, diffs.size());
+		assertEquals(1, finder.getLimitedCount());
+		assertEquals(0, finder.getCacheSize());
+
+		finder = new RenameFinder().setScore(100);
+		diffs = diffs(finder);
+		assertEquals(2, diffs.size());
+		assertEquals(0, finder.getLimitedCount());
+	}
+
+	/**
+	 * Test scoring pairs on an executor
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void parallel() throws Exception {
+		List<String> paths = new ArrayList<String>();
+		List<String> contents = new ArrayList<String>();
+		for (int i = 0; i < 4; i++) {
+			paths.add("file" + i + ".txt");
+			contents.add(i + CONTENT + i);
+		}
+		add(paths, contents);
+		Git git = Git.open(testRepo);
+		for (int i = 0; i < 4; i++) {
+			write(paths.get(i), contents.get(i) + "\nmore");
+			new File(testRepo.getParentFile(), paths.get(i))
+					.renameTo(new File(testRepo.getParentFile(), "moved" + i
+							+ ".txt"));
+			git.add().addFilepattern("moved" + i + ".txt").call();
+		}
+		git.commit().setAll(true).setMessage("move").setAuthor(author)
+				.setCommitter(committer).call();
+
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			Collection<DiffEntry> diffs = diffs(new RenameFinder()
+					.setExecutor(executor));
+			assertEquals(4, diffs.size());
+			for (DiffEntry diff : diffs) {
+				assertEquals(ChangeType.RENAME, diff.getChangeType());
+				assertEquals(diff.getOldPath().substring(4),
+						diff.getNewPath().substring(5));
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * Test setting a negative cache size
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void negativeCacheSize() {
+		new RenameFinder(-1);
+	}
+
+	/**
+	 * Test setting a score over 100
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void invalidScore() {
+		new RenameFinder().setScore(101);
+	}
+
+	/**
+	 * Test setting a negative pair limit
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void negativePairLimit() {
+		new RenameFinder().setPairLimit(-1);
+	}
+
+	/**
+	 * Test setting a negative time budget
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void negativeTimeBudget() {
+		new RenameFinder().setTimeBudget(-1);
+	}
+}
@@ -0,0 +1,690 @@
+/*
+ * Copyright (c) 2012 Kevin Sawicki <kevinsawicki@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+package org.gitective.tests;
+
+import static org.eclipse.jgit.lib.Constants.OBJ_BLOB;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.eclipse.jgit.lib.CommitBuilder;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.RefUpdate;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.lib.TreeFormatter;
+import org.eclipse.jgit.storage.dfs.DfsRepositoryDescription;
+import org.eclipse.jgit.storage.dfs.InMemoryRepository;
+import org.eclipse.jgit.storage.file.FileRepository;
+
+/**
+ * Generator of synthetic repositories used by scale tests.
+ * <p>
+ * Objects are written directly through an {@link ObjectInserter} into either
+ * an {@link InMemoryRepository} or a bare {@link FileRepository}. Trees are
+ * kept in memory and only the directories changed by a commit are rewritten
+ * so histories with hundreds of thousands of commits can be generated.
+ * <p>
+ * All content, paths, authors, dates and the shape of the history are derived
+ * from the seed so the same configuration always writes the same commits.
+ */
+public class RepositoryGenerator {
+
+	/**
+	 * Preset history shapes
+	 */
+	public static enum Shape {
+
+		/**
+		 * Single line of history
+		 */
+		LINEAR,
+
+		/**
+		 * Frequent short branches merged back into master
+		 */
+		MERGES,
+
+		/**
+		 * Branches merged back into master with octopus merges
+		 */
+		OCTOPUS,
+
+		/**
+		 * Many files in a single directory
+		 */
+		WIDE,
+
+		/**
+		 * Files nested in deep directories
+		 */
+		DEEP,
+
+		/**
+		 * Files frequently renamed with and without content changes
+		 */
+		RENAMES,
+
+		/**
+		 * Thousands of distinct authors and committers
+		 */
+		AUTHORS,
+
+		/**
+		 * Commit times frequently older than parent commit times
+		 */
+		SKEWED_DATES,
+
+		/**
+		 * Large blobs rewritten periodically
+		 */
+		LARGE_BLOBS
+	}
+
+	/**
+	 * Name of branch generated history is written to
+	 */
+	public static final String MASTER = Constants.R_HEADS + Constants.MASTER;
+
+	/**
+	 * Prefix of branches written for the tips of merged side branches
+	 */
+	public static final String BRANCH_PREFIX = Constants.R_HEADS + "branch";
+
+	/**
+	 * Start of time used for generated commits (2001-09-09)
+	 */
+	public static final long EPOCH = 1000000000000L;
+
+	private static final String LARGE_PATH = "large.txt";
+
+	private static int mix(final long value) {
+		long h = value * 0x9E3779B97F4A7C15L;
+		h ^= h >>> 29;
+		h *= 0xBF58476D1CE4E5B9L;
+		h ^= h >>> 32;
+		return (int) h & Integer.MAX_VALUE;
+	}
+
+	/**
+	 * Directory in the tree being generated
+	 */
+	private static class Dir {
+
+		/**
+		 * Entries sorted in Git tree order, directories are keyed by their name
+		 * with a trailing slash and map to {@link Dir} instances, files map to
+		 * their blob id
+		 */
+		final TreeMap<String, Object> entries = new TreeMap<String, Object>();
+
+		ObjectId id;
+	}
+
+	/**
+	 * File in the tree being generated
+	 */
+	private static class FileState {
+
+		final int seed;
+
+		String path;
+
+		int version;
+
+		FileState(final int seed, final String path) {
+			this.seed = seed;
+			this.path = path;
+		}
+	}
+
+	private final long seed;
+
+	private int commits = 1000;
+
+	private int files = 100;
+
+	private int lines = 20;
+
+	private int depth = 2;
+
+	private int fanout = 10;
+
+	private int edits = 3;
+
+	private int branchInterval;
+
+	private int branchLength = 2;
+
+	private int mergeParents = 2;
+
+	private int renamePercent;
+
+	private int authors = 10;
+
+	private int skewPercent;
+
+	private int largeBlobSize;
+
+	private int largeBlobInterval = 100;
+
+	private Random random;
+
+	private ObjectInserter inserter;
+
+	private Dir root;
+
+	private List<FileState> fileStates;
+
+	private long time;
+
+	private int written;
+
+	private int merges;
+
+	private int renames;
+
+	private int largeVersion;
+
+	/**
+	 * Create generator using given seed
+	 *
+	 * @param seed
+	 */
+	public RepositoryGenerator(final long seed) {
+		this.seed = seed;
+	}
+
+	/**
+	 * Configure generator with preset values for the given shape
+	 *
+	 * @param shape
+	 * @return this generator
+	 */
+	public RepositoryGenerator setShape(final Shape shape) {
+		switch (shape) {
+		case MERGES:
+			branchInterval = 5;
+			branchLength = 3;
+			mergeParents = 2;
+			break;
+		case OCTOPUS:
+			branchInterval = 20;
+			branchLength = 2;
+			mergeParents = 8;
+			break;
+		case WIDE:
+			files = 50000;
+			depth = 0;
+			lines = 5;
+			break;
+		case DEEP:
+			files = 1000;
+			depth = 12;
+			fanout = 2;
+			break;
+		case RENAMES:
+			renamePercent = 50;
+			break;
+		case AUTHORS:
+			authors = 5000;
+			break;
+		case SKEWED_DATES:
+			skewPercent = 20;
+			break;
+		case LARGE_BLOBS:
+			largeBlobSize = 4 * 1024 * 1024;
+			largeBlobInterval = 50;
+			break;
+		default:
+			break;
+		}
+		return this;
+	}
+
+	/**
+	 * Set total number of commits to generate including branch and merge
+	 * commits
+	 *
+	 * @param commits
+	 * @return this generator
+	 */
+	public RepositoryGenerator setCommits(final int commits) {
+		this.commits = commits;
+		return this;
+	}
+
+	/**
+	 * Set number of files in each tree
+	 *
+	 * @param files
+	 * @return this generator
+	 */
+	public RepositoryGenerator setFiles(final int files) {
+		this.files = files;
+		return this;
+	}
+
+	/**
+	 * Set number of lines in each file
+	 *
+	 * @param lines
+	 * @return this generator
+	 */
+	public RepositoryGenerator setLines(final int lines) {
+		this.lines = lines;
+		return this;
+	}
+
+	/**
+	 * Set depth and number of sub-directories of each directory files are
+	 * spread over
+	 *
+	 * @param depth
+	 * @param fanout
+	 * @return this generator
+	 */
+	public RepositoryGenerator setDirectories(final int depth, final int fanout) {
+		this.depth = depth;
+		this.fanout = fanout;
+		return this;
+	}
+
+	/**
+	 * Set maximum number of files edited by each commit
+	 *
+	 * @param edits
+	 * @return this generator
+	 */
+	public RepositoryGenerator setEdits(final int edits) {
+		this.edits = edits;
+		return this;
+	}
+
+	/**
+	 * Set the number of master commits between merges, the number of commits
+	 * on each merged branch and the number of parents of each merge.
+	 * <p>
+	 * An interval of zero generates linear history.
+	 *
+	 * @param interval
+	 * @param length
+	 * @param parents
+	 * @return this generator
+	 */
+	public RepositoryGenerator setMerges(final int interval, final int length,
+			final int parents) {
+		branchInterval = interval;
+		branchLength = length;
+		mergeParents = parents;
+		return this;
+	}
+
+	/**
+	 * Set percentage of commits that rename a file
+	 *
+	 * @param percent
+	 * @return this generator
+	 */
+	public RepositoryGenerator setRenamePercent(final int percent) {
+		renamePercent = percent;
+		return this;
+	}
+
+	/**
+	 * Set number of distinct authors
+	 *
+	 * @param authors
+	 * @return this generator
+	 */
+	public RepositoryGenerator setAuthors(final int authors) {
+		this.authors = authors;
+		return this;
+	}
+
+	/**
+	 * Set percentage of commits dated before their parent
+	 *
+	 * @param percent
+	 * @return this generator
+	 */
+	public RepositoryGenerator setSkewPercent(final int percent) {
+		skewPercent = percent;
+		return this;
+	}
+
+	/**
+	 * Set size in bytes of a large blob rewritten every given number of
+	 * commits.
+	 * <p>
+	 * A size of zero disables large blobs.
+	 *
+	 * @param size
+	 * @param interval
+	 * @return this generator
+	 */
+	public RepositoryGenerator setLargeBlobs(final int size, final int interval) {
+		largeBlobSize = size;
+		largeBlobInterval = interval;
+		return this;
+	}
+
+	/**
+	 * Get number of merge commits written by the last generation
+	 *
+	 * @return merge count
+	 */
+	public int getMergeCount() {
+		return merges;
+	}
+
+	/**
+	 * Get number of renames written by the last generation
+	 *
+	 * @return rename count
+	 */
+	public int getRenameCount() {
+		return renames;
+	}
+
+	/**
+	 * Get the path the given file is first written to
+	 *
+	 * @param file
+	 *            index of file, less than the number of files
+	 * @return path
+	 */
+	public String getPath(final int file) {
+		return path(file);
+	}
+
+	/**
+	 * Generate history into a new in-memory repository.
+	 * <p>
+	 * The repository is unnamed since the shared pack block cache identifies
+	 * packs by repository name.
+	 *
+	 * @return repository
+	 * @throws IOException
+	 */
+	public InMemoryRepository generate() throws IOException {
+		final InMemoryRepository repository = new InMemoryRepository(
+				new DfsRepositoryDescription());
+		generate(repository);
+		return repository;
+	}
+
+	/**
+	 * Generate history into a new bare repository at the given directory
+	 *
+	 * @param directory
+	 * @return repository
+	 * @throws IOException
+	 */
+	public FileRepository generate(final File directory) throws IOException {
+		final FileRepository repository = new FileRepository(directory);
+		repository.create(true);
+		generate(repository);
+		return repository;
+	}
+
+	/**
+	 * Generate history into the given repository and update master and HEAD
+	 * to reference the last commit
+	 *
+	 * @param repository
+	 * @return id of last commit
+	 * @throws IOException
+	 */
+	public ObjectId generate(final Repository repository) throws IOException {
+		if (files < 1)
+			throw new IllegalArgumentException("Files must be at least 1");
+		if (mergeParents < 2)
+			throw new IllegalArgumentException(
+					"Merge parents must be at least 2");
+
+		random = new Random(seed);
+		root = new Dir();
+		fileStates = new ArrayList<FileState>(files);
+		time = EPOCH;
+		written = 0;
+		merges = 0;
+		renames = 0;
+		largeVersion = 0;
+
+		inserter = repository.newObjectInserter();
+		final Map<String, ObjectId> branches = new LinkedHashMap<String, ObjectId>();
+		ObjectId head = null;
+		try {
+			for (int i = 0; i < files; i++) {
+				final FileState file = new FileState(i, path(i));
+				fileStates.add(file);
+				put(file.path, blob(file));
+			}
+			int master = 0;
+			while (written < commits) {
+				if (branchInterval > 0 && master > 0
+						&& master % branchInterval == 0
+						&& written + branchLength * (mergeParents - 1) < commits) {
+					final ObjectId[] parents = new ObjectId[mergeParents];
+					parents[0] = head;
+					for (int p = 1; p < mergeParents; p++) {
+						ObjectId tip = head;
+						for (int j = 0; j < branchLength; j++)
+							tip = commit(tip);
+						parents[p] = tip;
+						branches.put(BRANCH_PREFIX + master + "-" + p, tip);
+					}
+					head = commit(parents);
+					merges++;
+				} else
+					head = commit(head);
+				master++;
+			}
+			inserter.flush();
+		} finally {
+			inserter.release();
+			inserter = null;
+			root = null;
+			fileStates = null;
+		}
+
+		for (Entry<String, ObjectId> branch : branches.entrySet())
+			updateRef(repository, branch.getKey(), branch.getValue());
+		updateRef(repository, MASTER, head);
+		final RefUpdate update = repository.updateRef(Constants.HEAD);
+		update.disableRefLog();
+		update.link(MASTER);
+		return head;
+	}
+
+	private void updateRef(final Repository repository, final String name,
+			final ObjectId id) throws IOException {
+		final RefUpdate update = repository.updateRef(name);
+		update.setNewObjectId(id);
+		update.disableRefLog();
+		update.forceUpdate();
+	}
+
+	private String path(final int file) {
+		final StringBuilder path = new StringBuilder();
+		int hash = mix(seed ^ file);
+		for (int i = 0; i < depth; i++) {
+			path.append("dir").append(hash % fanout).append('/');
+			hash /= fanout;
+			if (hash == 0)
+				hash = mix(hash + i);
+		}
+		return path.append("File").append(file).append(".txt").toString();
+	}
+
+	private ObjectId blob(final FileState file) throws IOException {
+		final int[] revisions = new int[lines];
+		for (int v = 1; v <= file.version; v++)
+			revisions[mix(((long) file.seed << 32) + v) % lines] = v;
+		final StringBuilder content = new StringBuilder(lines * 32);
+		for (int i = 0; i < lines; i++)
+			content.append("line ").append(i).append(" of file ")
+					.append(file.seed).append(" revision ")
+					.append(revisions[i]).append('\n');
+		return inserter.insert(OBJ_BLOB, Constants.encode(content.toString()));
+	}
+
+	private ObjectId largeBlob() throws IOException {
+		final StringBuilder content = new StringBuilder(largeBlobSize + 64);
+		for (int i = 0; content.length() < largeBlobSize; i++)
+			content.append("large line ").append(i).append(" revision ")
+					.append(largeVersion).append('\n');
+		return inserter.insert(OBJ_BLOB, Constants.encode(content.toString()));
+	}
+
+	private Dir parent(final String path, final boolean create) {
+		Dir dir = root;
+		int start = 0;
+		int slash;
+		while ((slash = path.indexOf('/', start)) != -1) {
+			final String name = path.substring(start, slash + 1);
+			Dir child = (Dir) dir.entries.get(name);
+			if (child == null) {
+				if (!create)
+					return null;
+				child = new Dir();
+				dir.entries.put(name, child);
+			}
+			dir.id = null;
+			dir = child;
+			start = slash + 1;
+		}
+		dir.id = null;
+		return dir;
+	}
+
+	private void put(final String path, final ObjectId blob) {
+		parent(path, true).entries.put(
+				path.substring(path.lastIndexOf('/') + 1), blob);
+	}
+
+	private void remove(final String path) {
+		remove(root, path, 0);
+	}
+
+	private boolean remove(final Dir dir, final String path, final int start) {
+		dir.id = null;
+		final int slash = path.indexOf('/', start);
+		if (slash == -1)
+			dir.entries.remove(path.substring(start));
+		else {
+			final String name = path.substring(start, slash + 1);
+			if (remove((Dir) dir.entries.get(name), path, slash + 1))
+				dir.entries.remove(name);
+		}
+		return dir.entries.isEmpty();
+	}
+
+	private ObjectId write(final Dir dir) throws IOException {
+		if (dir.id != null)
+			return dir.id;
+		final TreeFormatter formatter = new TreeFormatter();
+		for (Entry<String, Object> entry : dir.entries.entrySet()) {
+			final String name = entry.getKey();
+			if (entry.getValue() instanceof Dir)
+				formatter.append(name.substring(0, name.length() - 1),
+						FileMode.TREE, write((Dir) entry.getValue()));
+			else
+				formatter.append(name, FileMode.REGULAR_FILE,
+						(ObjectId) entry.getValue());
+		}
+		dir.id = formatter.insertTo(inserter);
+		return dir.id;
+	}
+
+	private void change() throws IOException {
+		final int count = 1 + random.nextInt(edits);
+		for (int i = 0; i < count; i++) {
+			final FileState file = fileStates.get(random.nextInt(fileStates
+					.size()));
+			file.version++;
+			put(file.path, blob(file));
+		}
+
+		if (renamePercent > 0 && random.nextInt(100) < renamePercent) {
+			final FileState file = fileStates.get(random.nextInt(fileStates
+					.size()));
+			final ObjectId blob;
+			if (random.nextBoolean()) {
+				file.version++;
+				blob = blob(file);
+			} else
+				blob = (ObjectId) parent(file.path, true).entries.get(file.path
+						.substring(file.path.lastIndexOf('/') + 1));
+			remove(file.path);
+			file.path = path(files + renames) + ".renamed";
+			put(file.path, blob);
+			renames++;
+		}
+
+		if (largeBlobSize > 0 && written % largeBlobInterval == 0) {
+			largeVersion++;
+			put(LARGE_PATH, largeBlob());
+		}
+	}
+
+	private PersonIdent person(final int index, final long when) {
+		return new PersonIdent("Person " + index, "person" + index
+				+ "@example.com", when, 0);
+	}
+
+	private ObjectId commit(final ObjectId... parents) throws IOException {
+		if (parents.length < 2)
+			change();
+
+		time += 1000L * (1 + random.nextInt(3600));
+		long when = time;
+		if (skewPercent > 0 && random.nextInt(100) < skewPercent)
+			when -= 1000L * random.nextInt(30 * 24 * 60 * 60);
+		final int author = random.nextInt(authors);
+		final int committer = random.nextInt(10) == 0 ? random
+				.nextInt(authors) : author;
+
+		final CommitBuilder commit = new CommitBuilder();
+		commit.setTreeId(write(root));
+		for (ObjectId parent : parents)
+			if (parent != null)
+				commit.addParentId(parent);
+		commit.setAuthor(person(author, when - 1000L * random.nextInt(3600)));
+		commit.setCommitter(person(committer, when));
+		commit.setMessage((parents.length > 1 ? "Merge " : "Commit ")
+				+ written + "\n");
+		written++;
+		return inserter.insert(commit);
+	}
+}
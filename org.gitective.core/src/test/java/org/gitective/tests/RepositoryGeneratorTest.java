@@ -0,0 +1,224 @@
+/*
+ * Copyright (c) 2012 Kevin Sawicki <kevinsawicki@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+package org.gitective.tests;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+
+import org.eclipse.jgit.diff.DiffEntry;
+import org.eclipse.jgit.diff.DiffEntry.ChangeType;
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.gitective.core.BlobUtils;
+import org.gitective.core.CommitUtils;
+import org.gitective.core.CommitFinder;
+import org.gitective.core.TreeUtils;
+import org.gitective.core.TreeUtils.ITreeVisitor;
+import org.gitective.core.filter.commit.AndCommitFilter;
+import org.gitective.core.filter.commit.CommitCountFilter;
+import org.gitective.core.filter.commit.CommitDiffFilter;
+import org.gitective.core.filter.commit.CommitFilter;
+import org.gitective.core.filter.commit.ParentCountFilter;
+import org.gitective.tests.RepositoryGenerator.Shape;
+import org.junit.Test;
+
+/**
+ * Unit tests of {@link RepositoryGenerator}
+ */
+public class RepositoryGeneratorTest extends GitTestCase {
+
+	private long count(final Repository repository, final CommitFilter filter) {
+		final CommitCountFilter count = new CommitCountFilter();
+		new CommitFinder(repository).setFilter(
+				new AndCommitFilter(filter, count)).find();
+		return count.getCount();
+	}
+
+	/**
+	 * Test generating the same history from the same seed
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void deterministic() throws Exception {
+		Repository repo1 = new RepositoryGenerator(5).setCommits(50)
+				.generate();
+		Repository repo2 = new RepositoryGenerator(5).setCommits(50)
+				.generate();
+		Repository repo3 = new RepositoryGenerator(6).setCommits(50)
+				.generate();
+		ObjectId head = CommitUtils.getHead(repo1);
+		assertEquals(head, CommitUtils.getHead(repo2));
+		assertFalse(head.equals(CommitUtils.getHead(repo3)));
+		assertEquals(50, count(repo1, new CommitCountFilter()));
+	}
+
+	/**
+	 * Test generating the same history into a file repository
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void fileRepository() throws Exception {
+		RepositoryGenerator generator = new RepositoryGenerator(7)
+				.setCommits(20);
+		ObjectId expected = CommitUtils.getHead(generator.generate());
+		File directory = new File(testRepo.getParentFile(), "generated.git");
+		Repository repo = generator.generate(directory);
+		assertEquals(expected, CommitUtils.getHead(repo));
+		assertEquals(expected,
+				CommitUtils.getRef(repo, RepositoryGenerator.MASTER));
+	}
+
+	/**
+	 * Test getting the paths files are first written to
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void paths() throws Exception {
+		RepositoryGenerator generator = new RepositoryGenerator(8).setCommits(
+				10).setFiles(20);
+		Repository repo = generator.generate();
+		RevCommit head = CommitUtils.getHead(repo);
+		for (int i = 0; i < 20; i++)
+			assertNotNull(BlobUtils.getId(repo, head, generator.getPath(i)));
+		assertEquals(generator.getPath(3), new RepositoryGenerator(8)
+				.getPath(3));
+	}
+
+	/**
+	 * Test generating merges and octopus merges
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void merges() throws Exception {
+		RepositoryGenerator generator = new RepositoryGenerator(1).setShape(
+				Shape.MERGES).setCommits(100);
+		Repository repo = generator.generate();
+		assertTrue(generator.getMergeCount() > 0);
+		assertEquals(100, count(repo, new CommitCountFilter()));
+		assertEquals(generator.getMergeCount(),
+				count(repo, new ParentCountFilter(2)));
+
+		generator = new RepositoryGenerator(1).setShape(Shape.OCTOPUS)
+				.setCommits(100);
+		repo = generator.generate();
+		assertTrue(generator.getMergeCount() > 0);
+		assertEquals(generator.getMergeCount(),
+				count(repo, new ParentCountFilter(8, 8)));
+	}
+
+	/**
+	 * Test generating renames
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void renames() throws Exception {
+		RepositoryGenerator generator = new RepositoryGenerator(2).setShape(
+				Shape.RENAMES).setCommits(40);
+		Repository repo = generator.generate();
+		assertTrue(generator.getRenameCount() > 0);
+		final int[] renames = new int[1];
+		new CommitFinder(repo).setFilter(new CommitDiffFilter(true) {
+
+			public boolean include(RevCommit commit,
+					Collection<DiffEntry> diffs) throws IOException {
+				for (DiffEntry diff : diffs)
+					if (diff.getChangeType() == ChangeType.RENAME)
+						renames[0]++;
+				return true;
+			}
+		}).find();
+		assertEquals(generator.getRenameCount(), renames[0]);
+	}
+
+	/**
+	 * Test generating deep directories
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void deep() throws Exception {
+		Repository repo = new RepositoryGenerator(3).setShape(Shape.DEEP)
+				.setCommits(5).generate();
+		final int[] files = new int[1];
+		final int[] depth = new int[1];
+		TreeUtils.visit(repo, CommitUtils.getHead(repo).getTree(),
+				new ITreeVisitor() {
+
+					public boolean accept(FileMode mode, String path,
+							String name, AnyObjectId id) {
+						if (mode == FileMode.REGULAR_FILE) {
+							files[0]++;
+							depth[0] = Math.max(depth[0],
+									path.split("/").length);
+						}
+						return true;
+					}
+				});
+		assertEquals(1000, files[0]);
+		assertEquals(12, depth[0]);
+	}
+
+	/**
+	 * Test generating commits dated before their parents
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void skewedDates() throws Exception {
+		Repository repo = new RepositoryGenerator(4)
+				.setShape(Shape.SKEWED_DATES).setCommits(100).generate();
+		RevWalk walk = new RevWalk(repo);
+		int skewed = 0;
+		try {
+			walk.markStart(walk.parseCommit(repo.resolve(Constants.HEAD)));
+			for (RevCommit commit : walk)
+				for (RevCommit parent : commit.getParents())
+					if (walk.parseCommit(parent).getCommitTime() > commit
+							.getCommitTime())
+						skewed++;
+		} finally {
+			walk.release();
+		}
+		assertTrue(skewed > 0);
+	}
+
+	/**
+	 * Test generating with invalid file count
+	 *
+	 * @throws Exception
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void noFiles() throws Exception {
+		new RepositoryGenerator(1).setFiles(0).generate();
+	}
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright (c) 2012 Kevin Sawicki <kevinsawicki@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+package org.gitective.tests;
+
+import java.io.File;
+
+import org.eclipse.jgit.lib.Repository;
+import org.gitective.core.CommitFinder;
+import org.gitective.core.CommitQuery;
+import org.gitective.core.GitException;
+import org.gitective.core.RepositoryPool;
+import org.gitective.core.filter.commit.CommitCountFilter;
+import org.gitective.core.filter.commit.CommitListFilter;
+import org.junit.Test;
+
+/**
+ * Unit tests of {@link RepositoryPool}
+ */
+public class RepositoryPoolTest extends GitTestCase {
+
+	/**
+	 * Test finding commits in more repositories than the pool holds open
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void findInPooledRepositories() throws Exception {
+		File repo2 = initRepo();
+		File repo3 = initRepo();
+		add("a.txt", "a");
+		add(repo2, "b.txt", "b");
+		add(repo2, "c.txt", "c");
+		add(repo3, "d.txt", "d");
+
+		RepositoryPool pool = new RepositoryPool(2);
+		CommitFinder finder = new CommitFinder(pool, testRepo, repo2, repo3);
+		assertSame(pool, finder.getPool());
+		assertEquals(0, pool.size());
+
+		CommitCountFilter count = new CommitCountFilter();
+		finder.setFilter(count).find();
+		assertEquals(4, count.getCount());
+		assertEquals(2, pool.size());
+		assertEquals(3, pool.getOpened());
+		assertEquals(1, pool.getEvictions());
+		assertEquals(0, pool.getHits());
+
+		count.reset();
+		finder.findInBranches();
+		assertEquals(4, count.getCount());
+		assertEquals(6, pool.getOpened() + pool.getReopened());
+		assertEquals(4, pool.getEvictions());
+		assertEquals(0, pool.getHits());
+		assertEquals(2, pool.size());
+
+		pool.close();
+		assertEquals(0, pool.size());
+		count.reset();
+		finder.find();
+		assertEquals(4, count.getCount());
+		assertEquals(9, pool.getOpened() + pool.getReopened());
+		assertEquals(6, pool.getOpened());
+	}
+
+	/**
+	 * Test acquiring the same repository twice
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void acquireTwice() throws Exception {
+		RepositoryPool pool = new RepositoryPool();
+		assertEquals(RepositoryPool.DEFAULT_CAPACITY, pool.getCapacity());
+		Repository repository = pool.acquire(testRepo);
+		assertNotNull(repository);
+		assertSame(repository, pool.acquire(testRepo));
+		assertEquals(1, pool.getHits());
+		assertEquals(1, pool.getOpened());
+		pool.release(repository).release(repository).release(null);
+		assertEquals(1, pool.size());
+	}
+
+	/**
+	 * Test reusing a repository closed on eviction
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void reopenEvicted() throws Exception {
+		add("a.txt", "a");
+		File repo2 = initRepo();
+		RepositoryPool pool = new RepositoryPool(1);
+		Repository repository = pool.acquire(testRepo);
+		pool.release(repository);
+		pool.release(pool.acquire(repo2));
+		assertEquals(1, pool.getEvictions());
+
+		Repository reopened = pool.acquire(testRepo);
+		try {
+			if (pool.getReopened() == 1)
+				assertSame(repository, reopened);
+			else
+				assertEquals(3, pool.getOpened());
+			CommitListFilter commits = new CommitListFilter();
+			new CommitFinder(reopened).setFilter(commits).find();
+			assertEquals(1, commits.getCommits().size());
+		} finally {
+			pool.release(reopened);
+		}
+	}
+
+	/**
+	 * Test query over pooled repositories
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void queryPooledRepositories() throws Exception {
+		File repo2 = initRepo();
+		add("a.txt", "a");
+		add(repo2, "b.txt", "b");
+		RepositoryPool pool = new RepositoryPool(1);
+		CommitQuery query = new CommitQuery(pool, testRepo, repo2);
+		CommitCountFilter count = new CommitCountFilter();
+		query.addAggregate(count).find();
+		assertEquals(2, count.getCount());
+		assertTrue(query.explain().contains("in 2 repositories"));
+		assertEquals(1, pool.size());
+	}
+
+	/**
+	 * Test acquiring directory that is not a repository
+	 *
+	 * @throws Exception
+	 */
+	@Test(expected = GitException.class)
+	public void acquireMissing() throws Exception {
+		new RepositoryPool().acquire(new File(testRepo, "missing"));
+	}
+
+	/**
+	 * Test creating pool with invalid capacity
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void invalidCapacity() {
+		new RepositoryPool(0);
+	}
+
+	/**
+	 * Test creating finder with null pool
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void nullPool() {
+		new CommitFinder((RepositoryPool) null, testRepo);
+	}
+
+	/**
+	 * Test acquiring null directory
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void acquireNull() {
+		new RepositoryPool().acquire(null);
+	}
+}
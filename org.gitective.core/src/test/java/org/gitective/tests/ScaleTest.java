@@ -0,0 +1,228 @@
+/*
+ * Copyright (c) 2012 Kevin Sawicki <kevinsawicki@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+package org.gitective.tests;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.filter.RevFilter;
+import org.gitective.core.CommitFinder;
+import org.gitective.core.filter.commit.AndCommitFilter;
+import org.gitective.core.filter.commit.AuthorFilter;
+import org.gitective.core.filter.commit.CommitCountFilter;
+import org.gitective.core.filter.commit.DiffFileCountFilter;
+import org.gitective.core.filter.commit.DiffLineCountFilter;
+import org.gitective.core.filter.commit.ParentCountFilter;
+import org.gitective.core.stat.AuthorHistogramFilter;
+import org.gitective.tests.RepositoryGenerator.Shape;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Scale tests of the main filters against large generated repositories.
+ * <p>
+ * These tests only run when the <code>gitective.scale</code> system property
+ * is set to true. Each test asserts that a walk completes within a time budget
+ * and that the heap retained by the walk and its filters after a full
+ * collection stays within a heap budget.
+ * Both budgets are multiplied by the <code>gitective.scale.factor</code>
+ * system property which defaults to 1.
+ */
+public class ScaleTest extends GitTestCase {
+
+	private static final long MB = 1024 * 1024;
+
+	private static final int FACTOR = Integer.getInteger(
+			"gitective.scale.factor", 1);
+
+	private static long getUsedHeap() {
+		System.gc();
+		final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+		return memory.getHeapMemoryUsage().getUsed();
+	}
+
+	/**
+	 * Skip tests unless enabled
+	 */
+	@Before
+	public void enabled() {
+		Assume.assumeTrue(Boolean.getBoolean("gitective.scale"));
+	}
+
+	private Repository generate(final Shape shape, final int commits)
+			throws Exception {
+		return new RepositoryGenerator(shape.ordinal()).setShape(shape)
+				.setCommits(commits).generate();
+	}
+
+	private void find(final Repository repository, final RevFilter filter,
+			final long seconds, final long heap) {
+		final long before = getUsedHeap();
+		final long start = System.currentTimeMillis();
+		new CommitFinder(repository).setFilter(filter).find();
+		final long elapsed = System.currentTimeMillis() - start;
+		final long retained = getUsedHeap() - before;
+		assertTrue("Walk took " + elapsed + "ms", elapsed <= seconds * 1000L
+				* FACTOR);
+		assertTrue("Walk retained " + retained / MB + "MB", retained <= heap
+				* MB * FACTOR);
+	}
+
+	/**
+	 * Walk a 100,000 commit linear history with header-only filters
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void linearHistory() throws Exception {
+		Repository repo = generate(Shape.LINEAR, 100000);
+		CommitCountFilter count = new CommitCountFilter();
+		find(repo, new AndCommitFilter(new AuthorFilter("Person 0", null),
+				count), 30, 64);
+		assertTrue(count.getCount() > 0);
+	}
+
+	/**
+	 * Diff every commit of a history with frequent merges
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void mergeDiffs() throws Exception {
+		Repository repo = generate(Shape.MERGES, 20000);
+		DiffFileCountFilter count = new DiffFileCountFilter();
+		find(repo, count, 60, 64);
+		assertTrue(count.getTotal() > 0);
+	}
+
+	/**
+	 * Count parents of a history with octopus merges
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void octopusMerges() throws Exception {
+		Repository repo = generate(Shape.OCTOPUS, 50000);
+		CommitCountFilter count = new CommitCountFilter();
+		find(repo, new AndCommitFilter(new ParentCountFilter(8, 8), count),
+				30, 64);
+		assertTrue(count.getCount() > 0);
+	}
+
+	/**
+	 * Count lines changed by every commit
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void lineDiffs() throws Exception {
+		Repository repo = generate(Shape.LINEAR, 10000);
+		DiffLineCountFilter count = new DiffLineCountFilter();
+		find(repo, count, 60, 64);
+		assertTrue(count.getTotal() > 0);
+	}
+
+	/**
+	 * Diff every commit of a history of 50,000 file trees
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void wideTrees() throws Exception {
+		Repository repo = generate(Shape.WIDE, 50);
+		DiffFileCountFilter count = new DiffFileCountFilter();
+		find(repo, count, 60, 64);
+		assertTrue(count.getTotal() > 0);
+	}
+
+	/**
+	 * Diff every commit of a history of deep directories
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void deepTrees() throws Exception {
+		Repository repo = generate(Shape.DEEP, 10000);
+		DiffFileCountFilter count = new DiffFileCountFilter();
+		find(repo, count, 60, 64);
+		assertTrue(count.getTotal() > 0);
+	}
+
+	/**
+	 * Detect renames in every commit of a rename heavy history
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void renames() throws Exception {
+		RepositoryGenerator generator = new RepositoryGenerator(
+				Shape.RENAMES.ordinal()).setShape(Shape.RENAMES).setCommits(
+				5000);
+		Repository repo = generator.generate();
+		DiffFileCountFilter count = new DiffFileCountFilter(true);
+		find(repo, count, 60, 64);
+		assertTrue(generator.getRenameCount() > 0);
+		assertTrue(count.getRenamed() > 0);
+		assertTrue(count.getRenamed() <= generator.getRenameCount());
+	}
+
+	/**
+	 * Count lines changed in a history with large blobs
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void largeBlobs() throws Exception {
+		Repository repo = generate(Shape.LARGE_BLOBS, 500);
+		DiffLineCountFilter count = new DiffLineCountFilter();
+		find(repo, count, 60, 64);
+		assertTrue(count.getTotal() > 0);
+	}
+
+	/**
+	 * Build a histogram of a history with thousands of authors
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void manyAuthors() throws Exception {
+		Repository repo = generate(Shape.AUTHORS, 100000);
+		AuthorHistogramFilter histogram = new AuthorHistogramFilter();
+		find(repo, histogram, 30, 128);
+		assertEquals(5000, histogram.getHistogram().getUserActivity().length);
+	}
+
+	/**
+	 * Walk a history with commits dated before their parents
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void skewedDates() throws Exception {
+		Repository repo = generate(Shape.SKEWED_DATES, 100000);
+		CommitCountFilter count = new CommitCountFilter();
+		find(repo, count, 30, 64);
+		assertEquals(100000, count.getCount());
+	}
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2012 Kevin Sawicki <kevinsawicki@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+package org.gitective.tests;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.gitective.core.CommitFinder;
+import org.gitective.core.PathFilterUtils;
+import org.gitective.core.filter.commit.CommitListFilter;
+import org.junit.Test;
+
+/**
+ * Unit tests of segmented walks using {@link CommitFinder#setSegmentSize(int)}
+ */
+public class SegmentTest extends GitTestCase {
+
+	private RevCommit first;
+
+	private RevCommit base;
+
+	private Set<RevCommit> find(final int segmentSize, final String path,
+			final RevCommit end) {
+		CommitListFilter list = new CommitListFilter();
+		CommitFinder finder = new CommitFinder(testRepo).setSegmentSize(
+				segmentSize).setFilter(list);
+		if (path != null)
+			finder.setFilter(PathFilterUtils.and(path));
+		if (end != null)
+			finder.findUntil(end);
+		else
+			finder.find();
+		return new HashSet<RevCommit>(list.getCommits());
+	}
+
+	private void createHistory() throws Exception {
+		first = add("a.txt", "a1");
+		branch("b1");
+		add("b.txt", "b1");
+		add("b.txt", "b2");
+		checkout("master");
+		base = add("a.txt", "a2");
+		add("a.txt", "a3");
+		merge("b1");
+	}
+
+	/**
+	 * Test segmented walks visiting the same commits as a regular walk
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void sameCommits() throws Exception {
+		createHistory();
+		Set<RevCommit> expected = find(0, null, null);
+		assertEquals(6, expected.size());
+		for (int size = 1; size <= 7; size++)
+			assertEquals(expected, find(size, null, null));
+	}
+
+	/**
+	 * Test segmented walks with a tree filter
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void sameCommitsWithPath() throws Exception {
+		createHistory();
+		Set<RevCommit> expected = find(0, "b.txt", null);
+		assertEquals(2, expected.size());
+		for (int size = 1; size <= 7; size++)
+			assertEquals(expected, find(size, "b.txt", null));
+	}
+
+	/**
+	 * Test segmented walks with an end commit
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void sameCommitsWithEnd() throws Exception {
+		createHistory();
+		Set<RevCommit> expected = find(0, null, base);
+		assertEquals(4, expected.size());
+		assertFalse(expected.contains(first));
+		for (int size = 1; size <= 7; size++)
+			assertEquals(expected, find(size, null, base));
+	}
+
+	/**
+	 * Test setting negative segment size
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void negativeSegmentSize() {
+		new CommitFinder(testRepo).setSegmentSize(-1);
+	}
+}
@@ -0,0 +1,217 @@
+/*
+ * Copyright (c) 2012 Kevin Sawicki <kevinsawicki@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+package org.gitective.tests;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+import org.gitective.core.CommitFinder;
+import org.gitective.core.filter.commit.AndCommitFilter;
+import org.gitective.core.filter.commit.CommitCountFilter;
+import org.gitective.core.filter.commit.DiffLineCountFilter;
+import org.gitective.core.filter.tree.CommitTreeFilter;
+import org.gitective.core.monitor.LatencyHistogram;
+import org.gitective.core.monitor.WalkAdapter;
+import org.gitective.core.monitor.WalkMonitor;
+import org.gitective.core.monitor.WalkStatistics;
+import org.junit.Test;
+
+/**
+ * Unit tests of {@link WalkMonitor} and {@link WalkStatistics}
+ */
+public class WalkMonitorTest extends GitTestCase {
+
+	private void find(final boolean renames) {
+		new CommitFinder(testRepo).setFilter(
+				new AndCommitFilter(new CommitTreeFilter(TreeFilter.ALL),
+						new DiffLineCountFilter(renames))).find();
+	}
+
+	/**
+	 * Test statistics collected during a walk
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void statistics() throws Exception {
+		add("a.txt", "a\nb\nc\n");
+		add("a.txt", "a\nb2\nc\n");
+		mv("a.txt", "b.txt");
+
+		WalkStatistics stats = new WalkStatistics("test");
+		WalkMonitor.addListener(stats);
+		try {
+			assertSame(stats, WalkMonitor.getListener());
+			find(true);
+		} finally {
+			assertTrue(WalkMonitor.removeListener(stats));
+		}
+		assertNull(WalkMonitor.getListener());
+		assertFalse(WalkMonitor.removeListener(stats));
+
+		assertEquals(1, stats.getWalks());
+		assertEquals(1, stats.getWalkLatency().getCount());
+		assertEquals(3, stats.getCommitsVisited());
+		assertEquals(3, stats.getCommitsAccepted());
+		assertEquals(3, stats.getTreesWalked());
+		assertEquals(3, stats.getTreeEntriesWalked());
+		assertEquals(3, stats.getTreeDiffs());
+		assertEquals(4, stats.getTreeChanges());
+		assertEquals(3, stats.getRenameDetections());
+		assertEquals(4, stats.getRenameChanges());
+		assertEquals(2, stats.getBlobDiffs());
+		assertEquals(2, stats.getBlobEdits());
+		assertEquals(3, stats.getBlobsLoaded());
+		assertEquals(19, stats.getBytesInflated());
+
+		find(true);
+		assertEquals(1, stats.getWalks());
+
+		stats.reset();
+		assertEquals(0, stats.getWalks());
+		assertEquals(0, stats.getCommitsVisited());
+		assertEquals(0, stats.getBlobDiffLatency().getCount());
+	}
+
+	/**
+	 * Test notifying multiple listeners
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void multipleListeners() throws Exception {
+		add("a.txt", "a");
+		add("b.txt", "b");
+
+		final int[] accepted = new int[1];
+		WalkAdapter adapter = new WalkAdapter() {
+
+			public void commitAccepted(RevCommit commit) {
+				accepted[0]++;
+			}
+		};
+		WalkStatistics stats = new WalkStatistics("test");
+		WalkMonitor.addListener(stats);
+		WalkMonitor.addListener(adapter);
+		try {
+			CommitCountFilter count = new CommitCountFilter();
+			new CommitFinder(testRepo).setFilter(count).find();
+			assertEquals(2, count.getCount());
+		} finally {
+			WalkMonitor.removeListener(stats);
+			WalkMonitor.removeListener(adapter);
+		}
+		assertEquals(2, accepted[0]);
+		assertEquals(2, stats.getCommitsAccepted());
+		assertEquals(0, stats.getTreeDiffs());
+	}
+
+	/**
+	 * Test registering statistics as MBeans
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void registerMBeans() throws Exception {
+		add("a.txt", "a");
+		WalkStatistics stats = new WalkStatistics("mbean test");
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		ObjectName name = stats.getObjectName();
+		ObjectName histogram = new ObjectName(name.getCanonicalName()
+				+ ",histogram=walk");
+		stats.register();
+		try {
+			find(false);
+			assertEquals(1L, server.getAttribute(name, "CommitsVisited"));
+			assertEquals(1L, server.getAttribute(histogram, "Count"));
+			server.invoke(name, "reset", null, null);
+			assertEquals(0L, server.getAttribute(histogram, "Count"));
+		} finally {
+			stats.unregister();
+		}
+		assertFalse(server.isRegistered(name));
+		assertFalse(server.isRegistered(histogram));
+		assertNull(WalkMonitor.getListener());
+	}
+
+	/**
+	 * Test latency histogram percentiles
+	 */
+	@Test
+	public void histogram() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		assertEquals(0, histogram.getPercentile(0.5));
+		assertEquals(0, histogram.getMeanMicros(), 0);
+		for (int i = 0; i < 90; i++)
+			histogram.record(1000);
+		for (int i = 0; i < 10; i++)
+			histogram.record(1000000);
+		assertEquals(100, histogram.getCount());
+		assertEquals(1000000, histogram.getMax());
+		assertEquals(90000 + 10000000, histogram.getTotal());
+		assertEquals(1, histogram.get50thPercentileMicros());
+		assertEquals(1, histogram.get90thPercentileMicros());
+		assertEquals(1000, histogram.get99thPercentileMicros());
+		assertEquals(1000, histogram.getMaxMicros());
+		assertEquals(100.9, histogram.getMeanMicros(), 0.01);
+		assertEquals(90, histogram.getBuckets()[10]);
+		histogram.reset();
+		assertEquals(0, histogram.getCount());
+		assertEquals(0, histogram.getMax());
+	}
+
+	/**
+	 * Test adding null listener
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void addNullListener() {
+		WalkMonitor.addListener(null);
+	}
+
+	/**
+	 * Test creating statistics with null name
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void nullName() {
+		new WalkStatistics(null);
+	}
+
+	/**
+	 * Test creating statistics with empty name
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void emptyName() {
+		new WalkStatistics("");
+	}
+
+	/**
+	 * Test percentile with invalid fraction
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void invalidPercentile() {
+		new LatencyHistogram().getPercentile(1.5);
+	}
+}
@@ -0,0 +1,277 @@
+/*
+ * Copyright (c) 2012 Kevin Sawicki <kevinsawicki@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+package org.gitective.jfr;
+
+import java.io.File;
+
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.gitective.core.monitor.WalkAdapter;
+import org.gitective.core.monitor.WalkMonitor;
+
+/**
+ * Walk listener that emits Java Flight Recorder events for walks, commit
+ * diffs, rename detection, blob loads and blob diffs.
+ * <p>
+ * Events are only committed when enabled in the active recording. Walk events
+ * span the entire walk and use the standard JFR threshold setting. All other
+ * events are reported after the measured work has completed and are filtered
+ * by the thresholds configured on this listener, which default to 1
+ * millisecond for diffs and rename detection and 1 MiB for blob loads.
+ * <p>
+ * The repository and commit being walked are tracked per thread so events
+ * emitted during a walk carry the repository path and the id of the commit
+ * being filtered. Events emitted outside of a walk leave these fields empty.
+ * <p>
+ * Register an instance through {@link WalkMonitor#addListener} or use
+ * {@link #register()}.
+ */
+public class FlightRecorderListener extends WalkAdapter {
+
+	/**
+	 * Default duration threshold of diff and rename detection events in
+	 * nanoseconds
+	 */
+	public static final long DEFAULT_DURATION_THRESHOLD = 1000L * 1000L;
+
+	/**
+	 * Default size threshold of blob load events in bytes
+	 */
+	public static final long DEFAULT_SIZE_THRESHOLD = 1024L * 1024L;
+
+	/**
+	 * Walk state of a single thread
+	 */
+	private static class Context {
+
+		int depth;
+
+		WalkEvent walk;
+
+		String repository;
+
+		String commit;
+	}
+
+	private static String getName(final Repository repository) {
+		final File directory = repository.getDirectory();
+		return directory != null ? directory.getAbsolutePath() : repository
+				.toString();
+	}
+
+	private final ThreadLocal<Context> contexts = new ThreadLocal<Context>() {
+
+		@Override
+		protected Context initialValue() {
+			return new Context();
+		}
+	};
+
+	private volatile long diffThreshold = DEFAULT_DURATION_THRESHOLD;
+
+	private volatile long renameThreshold = DEFAULT_DURATION_THRESHOLD;
+
+	private volatile long blobDiffThreshold = DEFAULT_DURATION_THRESHOLD;
+
+	private volatile long blobLoadThreshold = DEFAULT_SIZE_THRESHOLD;
+
+	/**
+	 * Set minimum duration of commit diff events
+	 *
+	 * @param threshold
+	 *            in nanoseconds
+	 * @return this listener
+	 */
+	public FlightRecorderListener setDiffThreshold(final long threshold) {
+		diffThreshold = threshold;
+		return this;
+	}
+
+	/**
+	 * Set minimum duration of rename detection events
+	 *
+	 * @param threshold
+	 *            in nanoseconds
+	 * @return this listener
+	 */
+	public FlightRecorderListener setRenameThreshold(final long threshold) {
+		renameThreshold = threshold;
+		return this;
+	}
+
+	/**
+	 * Set minimum duration of blob diff events
+	 *
+	 * @param threshold
+	 *            in nanoseconds
+	 * @return this listener
+	 */
+	public FlightRecorderListener setBlobDiffThreshold(final long threshold) {
+		blobDiffThreshold = threshold;
+		return this;
+	}
+
+	/**
+	 * Set minimum size of blob load events
+	 *
+	 * @param threshold
+	 *            in bytes
+	 * @return this listener
+	 */
+	public FlightRecorderListener setBlobLoadThreshold(final long threshold) {
+		blobLoadThreshold = threshold;
+		return this;
+	}
+
+	/**
+	 * Register this listener with the {@link WalkMonitor}
+	 *
+	 * @return this listener
+	 */
+	public FlightRecorderListener register() {
+		WalkMonitor.addListener(this);
+		return this;
+	}
+
+	/**
+	 * Unregister this listener from the {@link WalkMonitor}
+	 *
+	 * @return this listener
+	 */
+	public FlightRecorderListener unregister() {
+		WalkMonitor.removeListener(this);
+		return this;
+	}
+
+	@Override
+	public void walkStarted(final Repository repository) {
+		final Context context = contexts.get();
+		if (context.depth++ > 0)
+			return;
+		context.repository = getName(repository);
+		context.commit = null;
+		final WalkEvent event = new WalkEvent();
+		if (event.isEnabled()) {
+			event.repository = context.repository;
+			event.begin();
+			context.walk = event;
+		}
+	}
+
+	@Override
+	public void walkFinished(final Repository repository, final long duration) {
+		final Context context = contexts.get();
+		if (--context.depth > 0)
+			return;
+		final WalkEvent event = context.walk;
+		if (event != null) {
+			event.end();
+			if (event.shouldCommit())
+				event.commit();
+		}
+		contexts.remove();
+	}
+
+	@Override
+	public void commitVisited(final RevCommit commit) {
+		final Context context = contexts.get();
+		context.commit = commit.name();
+		if (context.walk != null)
+			context.walk.visited++;
+	}
+
+	@Override
+	public void commitAccepted(final RevCommit commit) {
+		final WalkEvent event = contexts.get().walk;
+		if (event != null)
+			event.accepted++;
+	}
+
+	@Override
+	public void treeDiffed(final int trees, final int changes,
+			final long duration) {
+		if (duration < diffThreshold)
+			return;
+		final CommitDiffEvent event = new CommitDiffEvent();
+		if (!event.isEnabled())
+			return;
+		final Context context = contexts.get();
+		event.repository = context.repository;
+		event.commit = context.commit;
+		event.trees = trees;
+		event.files = changes;
+		event.elapsed = duration;
+		event.commit();
+	}
+
+	@Override
+	public void renamesDetected(final int changes, final long duration) {
+		if (duration < renameThreshold)
+			return;
+		final RenameDetectionEvent event = new RenameDetectionEvent();
+		if (!event.isEnabled())
+			return;
+		final Context context = contexts.get();
+		event.repository = context.repository;
+		event.commit = context.commit;
+		event.files = changes;
+		event.elapsed = duration;
+		event.commit();
+	}
+
+	@Override
+	public void blobLoaded(final long size) {
+		final Context context = contexts.get();
+		final WalkEvent walk = context.walk;
+		if (walk != null) {
+			walk.blobs++;
+			walk.bytes += size;
+		}
+		if (size < blobLoadThreshold)
+			return;
+		final BlobLoadEvent event = new BlobLoadEvent();
+		if (!event.isEnabled())
+			return;
+		event.repository = context.repository;
+		event.commit = context.commit;
+		event.size = size;
+		event.commit();
+	}
+
+	@Override
+	public void blobDiffed(final long size1, final long size2,
+			final int edits, final long duration) {
+		if (duration < blobDiffThreshold)
+			return;
+		final BlobDiffEvent event = new BlobDiffEvent();
+		if (!event.isEnabled())
+			return;
+		final Context context = contexts.get();
+		event.repository = context.repository;
+		event.commit = context.commit;
+		event.oldSize = size1;
+		event.newSize = size2;
+		event.edits = edits;
+		event.elapsed = duration;
+		event.commit();
+	}
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2012 Kevin Sawicki <kevinsawicki@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+package org.gitective.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Event spanning a commit walk of a repository.
+ * <p>
+ * The event is begun when the walk starts and committed when it finishes so
+ * the standard <code>threshold</code> setting applies and defaults to 10
+ * milliseconds.
+ */
+@Name(WalkEvent.NAME)
+@Label("Commit Walk")
+@Description("Walk of the commits of a repository")
+@Category({ "gitective" })
+@Threshold("10 ms")
+@StackTrace(false)
+public class WalkEvent extends Event {
+
+	/**
+	 * Event name
+	 */
+	public static final String NAME = "org.gitective.Walk";
+
+	@Label("Repository")
+	String repository;
+
+	@Label("Commits Visited")
+	long visited;
+
+	@Label("Commits Accepted")
+	long accepted;
+
+	@Label("Blobs Loaded")
+	long blobs;
+
+	@Label("Bytes Inflated")
+	@DataAmount
+	long bytes;
+}
@@ -0,0 +1,197 @@
+/*
+ * Copyright (c) 2012 Kevin Sawicki <kevinsawicki@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+package org.gitective.jfr;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.util.FileUtils;
+import org.gitective.core.CommitFinder;
+import org.gitective.core.filter.commit.DiffLineCountFilter;
+import org.gitective.core.monitor.WalkMonitor;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests of {@link FlightRecorderListener}
+ */
+public class FlightRecorderListenerTest {
+
+	private File directory;
+
+	private Git git;
+
+	private Repository repository;
+
+	/**
+	 * Create test repository
+	 *
+	 * @throws Exception
+	 */
+	@Before
+	public void setUp() throws Exception {
+		directory = Files.createTempDirectory("gitective-jfr").toFile();
+		git = Git.init().setDirectory(directory).call();
+		repository = git.getRepository();
+	}
+
+	/**
+	 * Delete test repository
+	 *
+	 * @throws Exception
+	 */
+	@After
+	public void tearDown() throws Exception {
+		repository.close();
+		FileUtils.delete(directory, FileUtils.RECURSIVE);
+	}
+
+	private RevCommit add(final String path, final String content)
+			throws Exception {
+		final FileOutputStream output = new FileOutputStream(new File(
+				directory, path));
+		try {
+			output.write(content.getBytes("UTF-8"));
+		} finally {
+			output.close();
+		}
+		git.add().addFilepattern(path).call();
+		return git.commit().setMessage(path).call();
+	}
+
+	private List<RecordedEvent> record(final FlightRecorderListener listener)
+			throws IOException {
+		final Recording recording = new Recording();
+		recording.enable(WalkEvent.NAME).withoutThreshold();
+		recording.enable(CommitDiffEvent.NAME);
+		recording.enable(RenameDetectionEvent.NAME);
+		recording.enable(BlobLoadEvent.NAME);
+		recording.enable(BlobDiffEvent.NAME);
+		final Path file = Files.createTempFile("gitective", ".jfr");
+		try {
+			recording.start();
+			listener.register();
+			try {
+				new CommitFinder(repository).setFilter(
+						new DiffLineCountFilter(true)).find();
+			} finally {
+				listener.unregister();
+			}
+			recording.stop();
+			recording.dump(file);
+			final List<RecordedEvent> events = new ArrayList<RecordedEvent>();
+			for (RecordedEvent event : RecordingFile.readAllEvents(file))
+				if (event.getEventType().getName().startsWith("org.gitective."))
+					events.add(event);
+			return events;
+		} finally {
+			recording.close();
+			Files.delete(file);
+		}
+	}
+
+	private static List<RecordedEvent> filter(final List<RecordedEvent> events,
+			final String name) {
+		final List<RecordedEvent> filtered = new ArrayList<RecordedEvent>();
+		for (RecordedEvent event : events)
+			if (name.equals(event.getEventType().getName()))
+				filtered.add(event);
+		return filtered;
+	}
+
+	/**
+	 * Test events recorded during a walk with all thresholds disabled
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void recordEvents() throws Exception {
+		add("a.txt", "a\nb\nc\n");
+		final RevCommit commit = add("a.txt", "a\nb2\nc\n");
+
+		final List<RecordedEvent> events = record(new FlightRecorderListener()
+				.setDiffThreshold(0).setRenameThreshold(0)
+				.setBlobDiffThreshold(0).setBlobLoadThreshold(0));
+		assertNull(WalkMonitor.getListener());
+
+		final List<RecordedEvent> walks = filter(events, WalkEvent.NAME);
+		assertEquals(1, walks.size());
+		final RecordedEvent walk = walks.get(0);
+		assertEquals(repository.getDirectory().getAbsolutePath(),
+				walk.getString("repository"));
+		assertEquals(2, walk.getLong("visited"));
+		assertEquals(2, walk.getLong("accepted"));
+		assertEquals(3, walk.getLong("blobs"));
+		assertEquals(19, walk.getLong("bytes"));
+
+		assertEquals(2, filter(events, CommitDiffEvent.NAME).size());
+		assertEquals(2, filter(events, RenameDetectionEvent.NAME).size());
+		assertEquals(3, filter(events, BlobLoadEvent.NAME).size());
+
+		final List<RecordedEvent> diffs = filter(events, BlobDiffEvent.NAME);
+		assertEquals(2, diffs.size());
+		final RecordedEvent diff = diffs.get(0);
+		assertEquals(commit.name(), diff.getString("commit"));
+		assertEquals(walk.getString("repository"),
+				diff.getString("repository"));
+		assertEquals(6, diff.getLong("oldSize"));
+		assertEquals(7, diff.getLong("newSize"));
+		assertEquals(1, diff.getInt("edits"));
+		assertTrue(diff.getLong("elapsed") >= 0);
+	}
+
+	/**
+	 * Test default thresholds filtering out small diffs and blob loads
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void defaultThresholds() throws Exception {
+		add("a.txt", "a\nb\nc\n");
+		add("a.txt", "a\nb2\nc\n");
+
+		final List<RecordedEvent> events = record(new FlightRecorderListener()
+				.setDiffThreshold(Long.MAX_VALUE)
+				.setRenameThreshold(Long.MAX_VALUE)
+				.setBlobDiffThreshold(Long.MAX_VALUE));
+		assertEquals(1, events.size());
+		assertNotNull(filter(events, WalkEvent.NAME).get(0));
+	}
+}